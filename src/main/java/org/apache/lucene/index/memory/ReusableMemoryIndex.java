@@ -0,0 +1,39 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.lucene.index.memory;
+
+/**
+ * A {@link MemoryIndex} that keeps up to <tt>maxReusedBytes</tt> of its internal byte and int blocks when
+ * it is {@link #reset()}, so that the same instance can index the next document without allocating them again.
+ */
+// LUCENE MONITOR - the constructor of MemoryIndex that allows to keep the blocks is package private
+public final class ReusableMemoryIndex extends MemoryIndex {
+
+    private final long maxReusedBytes;
+
+    public ReusableMemoryIndex(boolean storeOffsets, long maxReusedBytes) {
+        super(storeOffsets, maxReusedBytes);
+        this.maxReusedBytes = maxReusedBytes;
+    }
+
+    public long maxReusedBytes() {
+        return this.maxReusedBytes;
+    }
+}
@@ -21,6 +21,7 @@ package org.elasticsearch.action.admin.cluster.health;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
+import org.elasticsearch.Version;
 import org.elasticsearch.action.ActionResponse;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -46,6 +47,7 @@ public class ClusterHealthResponse extends ActionResponse implements Iterable<Cl
     int activePrimaryShards = 0;
     int initializingShards = 0;
     int unassignedShards = 0;
+    int numberOfPendingTasks = 0;
     boolean timedOut = false;
     ClusterHealthStatus status = ClusterHealthStatus.RED;
     private List<String> validationFailures;
@@ -156,6 +158,17 @@ public class ClusterHealthResponse extends ActionResponse implements Iterable<Cl
         return numberOfDataNodes();
     }
 
+    /**
+     * The number of cluster state update tasks pending on the master.
+     */
+    public int numberOfPendingTasks() {
+        return this.numberOfPendingTasks;
+    }
+
+    public int getNumberOfPendingTasks() {
+        return numberOfPendingTasks();
+    }
+
     /**
      * <tt>true</tt> if the waitForXXX has timeout out and did not match.
      */
@@ -214,6 +227,9 @@ public class ClusterHealthResponse extends ActionResponse implements Iterable<Cl
                 validationFailures.add(in.readString());
             }
         }
+        if (in.getVersion().onOrAfter(Version.V_0_21_0_Beta1)) {
+            numberOfPendingTasks = in.readVInt();
+        }
     }
 
     @Override
@@ -238,6 +254,9 @@ public class ClusterHealthResponse extends ActionResponse implements Iterable<Cl
         for (String failure : validationFailures) {
             out.writeString(failure);
         }
+        if (out.getVersion().onOrAfter(Version.V_0_21_0_Beta1)) {
+            out.writeVInt(numberOfPendingTasks);
+        }
     }
 
 }
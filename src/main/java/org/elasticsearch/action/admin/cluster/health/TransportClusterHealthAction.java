@@ -186,6 +186,7 @@ public class TransportClusterHealthAction extends TransportMasterNodeOperationAc
         ClusterHealthResponse response = new ClusterHealthResponse(clusterName.value(), validation.failures());
         response.numberOfNodes = clusterState.nodes().size();
         response.numberOfDataNodes = clusterState.nodes().dataNodes().size();
+        response.numberOfPendingTasks = clusterService.numberOfPendingTasks();
 
         for (String index : clusterState.metaData().concreteIndicesIgnoreMissing(request.indices())) {
             IndexRoutingTable indexRoutingTable = clusterState.routingTable().index(index);
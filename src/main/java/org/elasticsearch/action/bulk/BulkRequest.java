@@ -207,11 +207,26 @@ public class BulkRequest extends ActionRequest<BulkRequest> {
     }
 
     public BulkRequest add(BytesReference data, boolean contentUnsafe, @Nullable String defaultIndex, @Nullable String defaultType, @Nullable Object payload) throws Exception {
+        addBatch(data, 0, contentUnsafe, defaultIndex, defaultType, payload, -1, -1);
+        return this;
+    }
+
+    /**
+     * Adds the framed data in binary format starting at <tt>from</tt>, until this request holds <tt>maxActions</tt>
+     * actions or <tt>maxSizeInBytes</tt> bytes (<tt>-1</tt> for no limit). Allows to parse large data in bounded
+     * batches, each executed as its own bulk request.
+     *
+     * @return the position the next actions start at, or <tt>-1</tt> once all the data got added
+     */
+    public int addBatch(BytesReference data, int from, boolean contentUnsafe, @Nullable String defaultIndex, @Nullable String defaultType, @Nullable Object payload,
+                        int maxActions, long maxSizeInBytes) throws Exception {
         XContent xContent = XContentFactory.xContent(data);
-        int from = 0;
         int length = data.length();
         byte marker = xContent.streamSeparator();
         while (true) {
+            if ((maxActions != -1 && requests.size() >= maxActions) || (maxSizeInBytes != -1 && sizeInBytes >= maxSizeInBytes)) {
+                return from;
+            }
             int nextMarker = findNextMarker(marker, from, data, length);
             if (nextMarker == -1) {
                 break;
@@ -318,7 +333,7 @@ public class BulkRequest extends ActionRequest<BulkRequest> {
                 parser.close();
             }
         }
-        return this;
+        return -1;
     }
 
     /**
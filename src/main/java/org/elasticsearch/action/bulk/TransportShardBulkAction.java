@@ -19,7 +19,9 @@
 
 package org.elasticsearch.action.bulk;
 
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import org.apache.lucene.search.Query;
 import org.elasticsearch.ElasticSearchException;
 import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.ActionListener;
@@ -56,6 +58,7 @@ import org.elasticsearch.transport.TransportRequestOptions;
 import org.elasticsearch.transport.TransportService;
 
 import java.io.IOException;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -253,6 +256,8 @@ public class TransportShardBulkAction extends TransportShardReplicationOperation
         if (ops == null) {
             return;
         }
+        // the docs are percolated from the already parsed docs, parse each percolate query only once per shard request
+        Map<String, Query> percolateQueries = null;
         for (int i = 0; i < ops.length; i++) {
             BulkItemRequest itemRequest = request.items()[i];
             BulkItemResponse itemResponse = response.response().responses()[i];
@@ -270,7 +275,15 @@ public class TransportShardBulkAction extends TransportShardReplicationOperation
                     continue;
                 }
                 try {
-                    PercolatorExecutor.Response percolate = indexService.percolateService().percolate(new PercolatorExecutor.DocAndSourceQueryRequest(op.parsedDoc(), indexRequest.percolate()));
+                    if (percolateQueries == null) {
+                        percolateQueries = Maps.newHashMap();
+                    }
+                    Query query = percolateQueries.get(indexRequest.percolate());
+                    if (query == null && !percolateQueries.containsKey(indexRequest.percolate())) {
+                        query = indexService.percolateService().parseQueryString(indexRequest.percolate());
+                        percolateQueries.put(indexRequest.percolate(), query);
+                    }
+                    PercolatorExecutor.Response percolate = indexService.percolateService().percolate(new PercolatorExecutor.DocAndQueryRequest(op.parsedDoc(), query));
                     ((IndexResponse) itemResponse.response()).matches(percolate.matches());
                 } catch (Exception e) {
                     logger.warn("failed to percolate [{}]", e, itemRequest.request());
@@ -107,6 +107,19 @@ public class TransportShardMultiGetAction extends TransportShardSingleOperationA
         }
 
         MultiGetShardResponse response = new MultiGetShardResponse();
+        GetResult[] getResults = null;
+        try {
+            getResults = indexShard.getService().multiGet(request.types, request.ids, request.fields, request.realtime());
+        } catch (Exception e) {
+            logger.debug("[{}][{}] failed to execute multi_get as a batch, executing the gets one by one", e, request.index(), shardId);
+        }
+        if (getResults != null) {
+            for (int i = 0; i < getResults.length; i++) {
+                response.add(request.locations.get(i), new GetResponse(getResults[i]));
+            }
+            return response;
+        }
+
         for (int i = 0; i < request.locations.size(); i++) {
             String type = request.types.get(i);
             String id = request.ids.get(i);
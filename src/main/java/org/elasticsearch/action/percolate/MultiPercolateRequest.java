@@ -0,0 +1,192 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.percolate;
+
+import com.google.common.collect.Lists;
+import org.elasticsearch.ElasticSearchParseException;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.XContent;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentParser;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.elasticsearch.action.ValidateActions.addValidationError;
+
+/**
+ * A multi percolate API request, percolating several documents in one request. The documents
+ * percolated against the same index are sent together to a single node.
+ */
+public class MultiPercolateRequest extends ActionRequest<MultiPercolateRequest> {
+
+    private List<PercolateRequest> requests = Lists.newArrayList();
+
+    /**
+     * Add a percolate request to execute. Note, the order is important, the percolate response will be returned in the
+     * same order as the percolate requests.
+     */
+    public MultiPercolateRequest add(PercolateRequestBuilder request) {
+        requests.add(request.request());
+        return this;
+    }
+
+    /**
+     * Add a percolate request to execute. Note, the order is important, the percolate response will be returned in the
+     * same order as the percolate requests.
+     */
+    public MultiPercolateRequest add(PercolateRequest request) {
+        requests.add(request);
+        return this;
+    }
+
+    public MultiPercolateRequest add(byte[] data, int from, int length, boolean contentUnsafe,
+                                     @Nullable String index, @Nullable String type) throws Exception {
+        return add(new BytesArray(data, from, length), contentUnsafe, index, type);
+    }
+
+    /**
+     * Adds the percolate requests of the provided data, a header line with the <tt>index</tt> and <tt>type</tt> of
+     * the document (both optional if defaults are provided) followed by a line with the percolate source, for each
+     * document.
+     */
+    public MultiPercolateRequest add(BytesReference data, boolean contentUnsafe, @Nullable String index, @Nullable String type) throws Exception {
+        XContent xContent = XContentFactory.xContent(data);
+        int from = 0;
+        int length = data.length();
+        byte marker = xContent.streamSeparator();
+        while (true) {
+            int nextMarker = findNextMarker(marker, from, data, length);
+            if (nextMarker == -1) {
+                break;
+            }
+            // support first line with \n
+            if (nextMarker == 0) {
+                from = nextMarker + 1;
+                continue;
+            }
+
+            PercolateRequest percolateRequest = new PercolateRequest(index, type);
+
+            // now parse the header
+            if (nextMarker - from > 0) {
+                XContentParser parser = xContent.createParser(data.slice(from, nextMarker - from));
+                try {
+                    // Move to START_OBJECT, if token is null, its an empty data
+                    XContentParser.Token token = parser.nextToken();
+                    if (token != null) {
+                        assert token == XContentParser.Token.START_OBJECT;
+                        String currentFieldName = null;
+                        while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+                            if (token == XContentParser.Token.FIELD_NAME) {
+                                currentFieldName = parser.currentName();
+                            } else if (token.isValue()) {
+                                if ("index".equals(currentFieldName) || "_index".equals(currentFieldName)) {
+                                    percolateRequest.index(parser.text());
+                                } else if ("type".equals(currentFieldName) || "_type".equals(currentFieldName)) {
+                                    percolateRequest.type(parser.text());
+                                } else if ("prefer_local".equals(currentFieldName) || "preferLocal".equals(currentFieldName)) {
+                                    percolateRequest.preferLocal(parser.booleanValue());
+                                }
+                            } else if (token == XContentParser.Token.START_ARRAY) {
+                                throw new ElasticSearchParseException(currentFieldName + " doesn't support arrays");
+                            }
+                        }
+                    }
+                } finally {
+                    parser.close();
+                }
+            }
+
+            // move pointers
+            from = nextMarker + 1;
+            // now for the body
+            nextMarker = findNextMarker(marker, from, data, length);
+            if (nextMarker == -1) {
+                break;
+            }
+
+            percolateRequest.source(data.slice(from, nextMarker - from), contentUnsafe);
+            // move pointers
+            from = nextMarker + 1;
+
+            add(percolateRequest);
+        }
+
+        return this;
+    }
+
+    private int findNextMarker(byte marker, int from, BytesReference data, int length) {
+        for (int i = from; i < length; i++) {
+            if (data.get(i) == marker) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public List<PercolateRequest> requests() {
+        return this.requests;
+    }
+
+    @Override
+    public ActionRequestValidationException validate() {
+        ActionRequestValidationException validationException = null;
+        if (requests.isEmpty()) {
+            validationException = addValidationError("no requests added", validationException);
+        }
+        for (int i = 0; i < requests.size(); i++) {
+            ActionRequestValidationException ex = requests.get(i).validate();
+            if (ex != null) {
+                if (validationException == null) {
+                    validationException = new ActionRequestValidationException();
+                }
+                validationException.addValidationErrors(ex.validationErrors());
+            }
+        }
+        return validationException;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        int size = in.readVInt();
+        for (int i = 0; i < size; i++) {
+            PercolateRequest request = new PercolateRequest();
+            request.readFrom(in);
+            requests.add(request);
+        }
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeVInt(requests.size());
+        for (PercolateRequest request : requests) {
+            request.writeTo(out);
+        }
+    }
+}
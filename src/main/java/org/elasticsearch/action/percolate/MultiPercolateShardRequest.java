@@ -0,0 +1,106 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.percolate;
+
+import gnu.trove.list.array.TIntArrayList;
+import org.elasticsearch.action.support.single.custom.SingleCustomOperationRequest;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The documents of a multi percolate request that are percolated against the same index.
+ */
+public class MultiPercolateShardRequest extends SingleCustomOperationRequest<MultiPercolateShardRequest> {
+
+    private String index;
+
+    TIntArrayList locations;
+    List<String> types;
+    List<BytesReference> sources;
+    private boolean sourcesUnsafe;
+
+    MultiPercolateShardRequest() {
+
+    }
+
+    MultiPercolateShardRequest(String index) {
+        this.index = index;
+        locations = new TIntArrayList();
+        types = new ArrayList<String>();
+        sources = new ArrayList<BytesReference>();
+    }
+
+    public String index() {
+        return this.index;
+    }
+
+    public void add(int location, String type, BytesReference source, boolean unsafe) {
+        this.locations.add(location);
+        this.types.add(type);
+        this.sources.add(source);
+        this.sourcesUnsafe |= unsafe;
+    }
+
+    /**
+     * Before we fork on a local thread, make sure we copy over the bytes if they are unsafe
+     */
+    @Override
+    public void beforeLocalFork() {
+        if (sourcesUnsafe) {
+            for (int i = 0; i < sources.size(); i++) {
+                sources.set(i, sources.get(i).copyBytesArray());
+            }
+            sourcesUnsafe = false;
+        }
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        index = in.readString();
+        int size = in.readVInt();
+        locations = new TIntArrayList(size);
+        types = new ArrayList<String>(size);
+        sources = new ArrayList<BytesReference>(size);
+        for (int i = 0; i < size; i++) {
+            locations.add(in.readVInt());
+            types.add(in.readString());
+            sources.add(in.readBytesReference());
+        }
+        sourcesUnsafe = false;
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeString(index);
+        out.writeVInt(types.size());
+        for (int i = 0; i < types.size(); i++) {
+            out.writeVInt(locations.get(i));
+            out.writeString(types.get(i));
+            out.writeBytesReference(sources.get(i));
+        }
+    }
+}
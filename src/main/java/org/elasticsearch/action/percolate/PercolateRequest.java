@@ -95,6 +95,10 @@ public class PercolateRequest extends SingleCustomOperationRequest<PercolateRequ
         return source;
     }
 
+    boolean sourceUnsafe() {
+        return sourceUnsafe;
+    }
+
     @Required
     public PercolateRequest source(Map source) throws ElasticSearchGenerationException {
         return source(source, XContentType.SMILE);
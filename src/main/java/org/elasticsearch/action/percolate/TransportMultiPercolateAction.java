@@ -0,0 +1,164 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.percolate;
+
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.TransportAction;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.block.ClusterBlockLevel;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.BaseTransportRequestHandler;
+import org.elasticsearch.transport.TransportChannel;
+import org.elasticsearch.transport.TransportService;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Groups the documents of a multi percolate request by index, and percolates each group with a single
+ * request to a node holding a shard of the index.
+ */
+public class TransportMultiPercolateAction extends TransportAction<MultiPercolateRequest, MultiPercolateResponse> {
+
+    private final ClusterService clusterService;
+
+    private final TransportShardMultiPercolateAction shardAction;
+
+    @Inject
+    public TransportMultiPercolateAction(Settings settings, ThreadPool threadPool, TransportService transportService, ClusterService clusterService,
+                                         TransportShardMultiPercolateAction shardAction) {
+        super(settings, threadPool);
+        this.clusterService = clusterService;
+        this.shardAction = shardAction;
+
+        transportService.registerHandler(MultiPercolateAction.NAME, new TransportHandler());
+    }
+
+    @Override
+    protected void doExecute(final MultiPercolateRequest request, final ActionListener<MultiPercolateResponse> listener) {
+        ClusterState clusterState = clusterService.state();
+
+        clusterState.blocks().globalBlockedRaiseException(ClusterBlockLevel.READ);
+
+        final MultiPercolateResponse.Item[] responses = new MultiPercolateResponse.Item[request.requests().size()];
+
+        Map<String, MultiPercolateShardRequest> shardRequests = new HashMap<String, MultiPercolateShardRequest>();
+        for (int i = 0; i < request.requests().size(); i++) {
+            PercolateRequest percolateRequest = request.requests().get(i);
+            String index;
+            try {
+                index = clusterState.metaData().concreteIndex(percolateRequest.index());
+            } catch (Exception e) {
+                responses[i] = new MultiPercolateResponse.Item(null, ExceptionsHelper.detailedMessage(e));
+                continue;
+            }
+            MultiPercolateShardRequest shardRequest = shardRequests.get(index);
+            if (shardRequest == null) {
+                shardRequest = new MultiPercolateShardRequest(index);
+                shardRequest.preferLocal(percolateRequest.preferLocalShard());
+                shardRequests.put(index, shardRequest);
+            }
+            shardRequest.add(i, percolateRequest.type(), percolateRequest.source(), percolateRequest.sourceUnsafe());
+        }
+
+        if (shardRequests.isEmpty()) {
+            listener.onResponse(new MultiPercolateResponse(responses));
+            return;
+        }
+
+        final AtomicInteger counter = new AtomicInteger(shardRequests.size());
+        for (final MultiPercolateShardRequest shardRequest : shardRequests.values()) {
+            shardAction.execute(shardRequest, new ActionListener<MultiPercolateShardResponse>() {
+                @Override
+                public void onResponse(MultiPercolateShardResponse response) {
+                    synchronized (responses) {
+                        for (int i = 0; i < response.locations.size(); i++) {
+                            responses[response.locations.get(i)] = new MultiPercolateResponse.Item(response.responses.get(i), response.failures.get(i));
+                        }
+                    }
+                    if (counter.decrementAndGet() == 0) {
+                        finishHim();
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    // create failures for all relevant requests
+                    String message = ExceptionsHelper.detailedMessage(e);
+                    synchronized (responses) {
+                        for (int i = 0; i < shardRequest.locations.size(); i++) {
+                            responses[shardRequest.locations.get(i)] = new MultiPercolateResponse.Item(null, message);
+                        }
+                    }
+                    if (counter.decrementAndGet() == 0) {
+                        finishHim();
+                    }
+                }
+
+                private void finishHim() {
+                    listener.onResponse(new MultiPercolateResponse(responses));
+                }
+            });
+        }
+    }
+
+    class TransportHandler extends BaseTransportRequestHandler<MultiPercolateRequest> {
+
+        @Override
+        public MultiPercolateRequest newInstance() {
+            return new MultiPercolateRequest();
+        }
+
+        @Override
+        public void messageReceived(final MultiPercolateRequest request, final TransportChannel channel) throws Exception {
+            // no need to use threaded listener, since we just send a response
+            request.listenerThreaded(false);
+            execute(request, new ActionListener<MultiPercolateResponse>() {
+                @Override
+                public void onResponse(MultiPercolateResponse response) {
+                    try {
+                        channel.sendResponse(response);
+                    } catch (Exception e) {
+                        onFailure(e);
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    try {
+                        channel.sendResponse(e);
+                    } catch (Exception e1) {
+                        logger.warn("Failed to send error response for action [" + MultiPercolateAction.NAME + "] and request [" + request + "]", e1);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public String executor() {
+            return ThreadPool.Names.SAME;
+        }
+    }
+}
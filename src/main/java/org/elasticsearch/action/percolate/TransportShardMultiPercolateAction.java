@@ -0,0 +1,114 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.percolate;
+
+import org.elasticsearch.ElasticSearchException;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.support.single.custom.TransportSingleCustomOperationAction;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.block.ClusterBlockException;
+import org.elasticsearch.cluster.block.ClusterBlockLevel;
+import org.elasticsearch.cluster.routing.IndexRoutingTable;
+import org.elasticsearch.cluster.routing.ShardsIterator;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.percolator.PercolatorExecutor;
+import org.elasticsearch.index.percolator.PercolatorService;
+import org.elasticsearch.index.service.IndexService;
+import org.elasticsearch.indices.IndexMissingException;
+import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+/**
+ * Percolates all the documents of a multi percolate request targeting the same index on a single node.
+ */
+public class TransportShardMultiPercolateAction extends TransportSingleCustomOperationAction<MultiPercolateShardRequest, MultiPercolateShardResponse> {
+
+    private final IndicesService indicesService;
+
+    @Inject
+    public TransportShardMultiPercolateAction(Settings settings, ThreadPool threadPool, ClusterService clusterService, TransportService transportService,
+                                              IndicesService indicesService) {
+        super(settings, threadPool, clusterService, transportService);
+        this.indicesService = indicesService;
+    }
+
+    @Override
+    protected String executor() {
+        return ThreadPool.Names.PERCOLATE;
+    }
+
+    @Override
+    protected String transportAction() {
+        return MultiPercolateAction.NAME + "/shard";
+    }
+
+    @Override
+    protected MultiPercolateShardRequest newRequest() {
+        return new MultiPercolateShardRequest();
+    }
+
+    @Override
+    protected MultiPercolateShardResponse newResponse() {
+        return new MultiPercolateShardResponse();
+    }
+
+    @Override
+    protected ClusterBlockException checkGlobalBlock(ClusterState state, MultiPercolateShardRequest request) {
+        return state.blocks().globalBlockedException(ClusterBlockLevel.READ);
+    }
+
+    @Override
+    protected ClusterBlockException checkRequestBlock(ClusterState state, MultiPercolateShardRequest request) {
+        // the concrete index has already been set by the multi percolate action
+        return state.blocks().indexBlockedException(ClusterBlockLevel.READ, request.index());
+    }
+
+    @Override
+    protected ShardsIterator shards(ClusterState clusterState, MultiPercolateShardRequest request) {
+        IndexRoutingTable indexRoutingTable = clusterState.routingTable().index(request.index());
+        if (indexRoutingTable == null) {
+            throw new IndexMissingException(new Index(request.index()));
+        }
+        return indexRoutingTable.randomAllActiveShardsIt();
+    }
+
+    @Override
+    protected MultiPercolateShardResponse shardOperation(MultiPercolateShardRequest request, int shardId) throws ElasticSearchException {
+        IndexService indexService = indicesService.indexServiceSafe(request.index());
+        PercolatorService percolatorService = indexService.percolateService();
+
+        MultiPercolateShardResponse response = new MultiPercolateShardResponse();
+        for (int i = 0; i < request.locations.size(); i++) {
+            String type = request.types.get(i);
+            try {
+                PercolatorExecutor.Response percolate = percolatorService.percolate(new PercolatorExecutor.SourceRequest(type, request.sources.get(i)));
+                response.add(request.locations.get(i), new PercolateResponse(percolate.matches()));
+            } catch (Exception e) {
+                logger.debug("[{}] failed to execute multi_percolate for type [{}]", e, request.index(), type);
+                response.add(request.locations.get(i), ExceptionsHelper.detailedMessage(e));
+            }
+        }
+        return response;
+    }
+}
@@ -471,6 +471,15 @@ public class SearchRequestBuilder extends ActionRequestBuilder<SearchRequest, Se
         return this;
     }
 
+    /**
+     * Applies when scanning, and controls if the scan releases the shard searchers between batches, resuming
+     * from the last returned document. Defaults to <tt>false</tt>.
+     */
+    public SearchRequestBuilder setResumableScan(boolean resumableScan) {
+        sourceBuilder().resumableScan(resumableScan);
+        return this;
+    }
+
     /**
      * Adds the fields to load and return as part of the search request. If none are specified,
      * the source of the document will be returned.
@@ -31,6 +31,7 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.search.SearchShardTarget;
 import org.elasticsearch.search.action.SearchServiceListener;
 import org.elasticsearch.search.action.SearchServiceTransportAction;
+import org.elasticsearch.search.controller.QueryResultsReducer;
 import org.elasticsearch.search.controller.SearchPhaseController;
 import org.elasticsearch.search.controller.ShardDoc;
 import org.elasticsearch.search.fetch.FetchSearchResultProvider;
@@ -64,6 +65,8 @@ public class TransportSearchCountAction extends TransportSearchTypeAction {
 
         private final Map<SearchShardTarget, QuerySearchResultProvider> queryFetchResults = searchCache.obtainQueryResults();
 
+        private final QueryResultsReducer queryResultsReducer = searchPhaseController.newQueryResultsReducer(expectedSuccessfulOps, queryFetchResults);
+
         private AsyncAction(SearchRequest request, ActionListener<SearchResponse> listener) {
             super(request, listener);
         }
@@ -80,13 +83,22 @@ public class TransportSearchCountAction extends TransportSearchTypeAction {
 
         @Override
         protected void processFirstPhaseResult(ShardRouting shard, QuerySearchResult result) {
-            queryFetchResults.put(result.shardTarget(), result);
+            if (queryResultsReducer != null) {
+                queryResultsReducer.add(result);
+            } else {
+                queryFetchResults.put(result.shardTarget(), result);
+            }
         }
 
         @Override
         protected void moveToSecondPhase() throws Exception {
             // no need to sort, since we know we have no hits back
-            final InternalSearchResponse internalResponse = searchPhaseController.merge(EMPTY_DOCS, queryFetchResults, ImmutableMap.<SearchShardTarget, FetchSearchResultProvider>of());
+            final InternalSearchResponse internalResponse;
+            if (queryResultsReducer != null) {
+                internalResponse = queryResultsReducer.merge(EMPTY_DOCS, ImmutableMap.<SearchShardTarget, FetchSearchResultProvider>of());
+            } else {
+                internalResponse = searchPhaseController.merge(EMPTY_DOCS, queryFetchResults, ImmutableMap.<SearchShardTarget, FetchSearchResultProvider>of());
+            }
             String scrollId = null;
             if (request.scroll() != null) {
                 scrollId = buildScrollId(request.searchType(), queryFetchResults.values(), null);
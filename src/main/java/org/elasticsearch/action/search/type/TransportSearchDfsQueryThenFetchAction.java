@@ -30,6 +30,7 @@ import org.elasticsearch.common.trove.ExtTIntArrayList;
 import org.elasticsearch.search.SearchShardTarget;
 import org.elasticsearch.search.action.SearchServiceListener;
 import org.elasticsearch.search.action.SearchServiceTransportAction;
+import org.elasticsearch.search.controller.QueryResultsReducer;
 import org.elasticsearch.search.controller.SearchPhaseController;
 import org.elasticsearch.search.dfs.AggregatedDfs;
 import org.elasticsearch.search.dfs.DfsSearchResult;
@@ -70,6 +71,8 @@ public class TransportSearchDfsQueryThenFetchAction extends TransportSearchTypeA
 
         private final Map<SearchShardTarget, FetchSearchResult> fetchResults = searchCache.obtainFetchResults();
 
+        private final QueryResultsReducer queryResultsReducer = searchPhaseController.newQueryResultsReducer(expectedSuccessfulOps, queryResults);
+
         private volatile Map<SearchShardTarget, ExtTIntArrayList> docIdsToLoad;
 
         private AsyncAction(SearchRequest request, ActionListener<SearchResponse> listener) {
@@ -149,7 +152,11 @@ public class TransportSearchDfsQueryThenFetchAction extends TransportSearchTypeA
                 @Override
                 public void onResult(QuerySearchResult result) {
                     result.shardTarget(dfsResult.shardTarget());
-                    queryResults.put(result.shardTarget(), result);
+                    if (queryResultsReducer != null) {
+                        queryResultsReducer.add(result);
+                    } else {
+                        queryResults.put(result.shardTarget(), result);
+                    }
                     if (counter.decrementAndGet() == 0) {
                         executeFetchPhase();
                     }
@@ -178,7 +185,11 @@ public class TransportSearchDfsQueryThenFetchAction extends TransportSearchTypeA
         }
 
         void innerExecuteFetchPhase() {
-            sortedShardList = searchPhaseController.sortDocs(queryResults.values());
+            if (queryResultsReducer != null) {
+                sortedShardList = queryResultsReducer.sortDocs();
+            } else {
+                sortedShardList = searchPhaseController.sortDocs(queryResults.values());
+            }
             final Map<SearchShardTarget, ExtTIntArrayList> docIdsToLoad = searchPhaseController.docIdsToLoad(sortedShardList);
             this.docIdsToLoad = docIdsToLoad;
 
@@ -278,7 +289,12 @@ public class TransportSearchDfsQueryThenFetchAction extends TransportSearchTypeA
         }
 
         void innerFinishHim() throws Exception {
-            final InternalSearchResponse internalResponse = searchPhaseController.merge(sortedShardList, queryResults, fetchResults);
+            final InternalSearchResponse internalResponse;
+            if (queryResultsReducer != null) {
+                internalResponse = queryResultsReducer.merge(sortedShardList, fetchResults);
+            } else {
+                internalResponse = searchPhaseController.merge(sortedShardList, queryResults, fetchResults);
+            }
             String scrollId = null;
             if (request.scroll() != null) {
                 scrollId = TransportSearchHelper.buildScrollId(request.searchType(), dfsResults, null);
@@ -30,6 +30,7 @@ import org.elasticsearch.common.trove.ExtTIntArrayList;
 import org.elasticsearch.search.SearchShardTarget;
 import org.elasticsearch.search.action.SearchServiceListener;
 import org.elasticsearch.search.action.SearchServiceTransportAction;
+import org.elasticsearch.search.controller.QueryResultsReducer;
 import org.elasticsearch.search.controller.SearchPhaseController;
 import org.elasticsearch.search.fetch.FetchSearchRequest;
 import org.elasticsearch.search.fetch.FetchSearchResult;
@@ -64,6 +65,8 @@ public class TransportSearchQueryThenFetchAction extends TransportSearchTypeActi
 
         private final Map<SearchShardTarget, FetchSearchResult> fetchResults = searchCache.obtainFetchResults();
 
+        private final QueryResultsReducer queryResultsReducer = searchPhaseController.newQueryResultsReducer(expectedSuccessfulOps, queryResults);
+
         private volatile Map<SearchShardTarget, ExtTIntArrayList> docIdsToLoad;
 
         private AsyncAction(SearchRequest request, ActionListener<SearchResponse> listener) {
@@ -82,12 +85,20 @@ public class TransportSearchQueryThenFetchAction extends TransportSearchTypeActi
 
         @Override
         protected void processFirstPhaseResult(ShardRouting shard, QuerySearchResult result) {
-            queryResults.put(result.shardTarget(), result);
+            if (queryResultsReducer != null) {
+                queryResultsReducer.add(result);
+            } else {
+                queryResults.put(result.shardTarget(), result);
+            }
         }
 
         @Override
         protected void moveToSecondPhase() {
-            sortedShardList = searchPhaseController.sortDocs(queryResults.values());
+            if (queryResultsReducer != null) {
+                sortedShardList = queryResultsReducer.sortDocs();
+            } else {
+                sortedShardList = searchPhaseController.sortDocs(queryResults.values());
+            }
             final Map<SearchShardTarget, ExtTIntArrayList> docIdsToLoad = searchPhaseController.docIdsToLoad(sortedShardList);
             this.docIdsToLoad = docIdsToLoad;
 
@@ -187,7 +198,12 @@ public class TransportSearchQueryThenFetchAction extends TransportSearchTypeActi
         }
 
         void innerFinishHim() throws Exception {
-            InternalSearchResponse internalResponse = searchPhaseController.merge(sortedShardList, queryResults, fetchResults);
+            InternalSearchResponse internalResponse;
+            if (queryResultsReducer != null) {
+                internalResponse = queryResultsReducer.merge(sortedShardList, fetchResults);
+            } else {
+                internalResponse = searchPhaseController.merge(sortedShardList, queryResults, fetchResults);
+            }
             String scrollId = null;
             if (request.scroll() != null) {
                 scrollId = TransportSearchHelper.buildScrollId(request.searchType(), queryResults.values(), null);
@@ -249,7 +249,7 @@ public class TransportSearchScrollScanAction extends AbstractComponent {
             for (QueryFetchSearchResult shardResult : queryFetchResults.values()) {
                 ScoreDoc[] scoreDocs = shardResult.queryResult().topDocs().scoreDocs;
                 for (ScoreDoc scoreDoc : scoreDocs) {
-                    docs[counter++] = new ShardScoreDoc(shardResult.shardTarget(), scoreDoc.doc, 0.0f);
+                    docs[counter++] = new ShardScoreDoc(shardResult.shardTarget(), scoreDoc.doc, scoreDoc.score);
                 }
             }
             final InternalSearchResponse internalResponse = searchPhaseController.merge(docs, queryFetchResults, queryFetchResults);
@@ -91,4 +91,9 @@ public interface ClusterService extends LifecycleComponent<ClusterService> {
      * Submits a task that will update the cluster state.
      */
     void submitStateUpdateTask(final String source, final ClusterStateUpdateTask updateTask);
+
+    /**
+     * The number of submitted state update tasks (and other cluster state events) waiting to be processed.
+     */
+    int numberOfPendingTasks();
 }
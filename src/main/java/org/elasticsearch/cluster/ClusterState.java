@@ -19,6 +19,7 @@
 
 package org.elasticsearch.cluster;
 
+import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import org.elasticsearch.ElasticSearchIllegalArgumentException;
@@ -564,5 +565,56 @@ public class ClusterState implements ToXContent {
             }
             return builder.build();
         }
+
+        /**
+         * Writes the changes of the cluster state compared to the previous cluster state. Only the meta data and
+         * routing table are diffed, as they are the bulk of a cluster state, the rest is written in full.
+         */
+        public static void writeDiffTo(ClusterState previous, ClusterState state, StreamOutput out) throws IOException {
+            out.writeLong(previous.version());
+            out.writeOptionalString(previous.nodes().masterNodeId());
+            out.writeLong(state.version());
+            MetaData.Builder.writeDiffTo(previous.metaData(), state.metaData(), out);
+            RoutingTable.Builder.writeDiffTo(previous.routingTable(), state.routingTable(), out);
+            DiscoveryNodes.Builder.writeTo(state.nodes(), out);
+            ClusterBlocks.Builder.writeClusterBlocks(state.blocks(), out);
+            state.allocationExplanation().writeTo(out);
+            out.writeVInt(state.customs().size());
+            for (Map.Entry<String, Custom> entry : state.customs().entrySet()) {
+                out.writeString(entry.getKey());
+                lookupFactorySafe(entry.getKey()).writeTo(entry.getValue(), out);
+            }
+        }
+
+        /**
+         * Reads a cluster state diff and applies it to the previous cluster state. Fails with
+         * {@link IncompatibleClusterStateVersionException} if the diff was not computed against the provided
+         * previous cluster state.
+         */
+        public static ClusterState readDiffFrom(StreamInput in, @Nullable ClusterState previous, @Nullable DiscoveryNode localNode) throws IOException {
+            long fromVersion = in.readLong();
+            String fromMasterNodeId = in.readOptionalString();
+            if (previous == null) {
+                throw new IncompatibleClusterStateVersionException("received a diff against cluster state version [" + fromVersion + "], but no cluster state exists");
+            }
+            if (previous.version() != fromVersion || !Objects.equal(previous.nodes().masterNodeId(), fromMasterNodeId)) {
+                throw new IncompatibleClusterStateVersionException("received a diff against cluster state version [" + fromVersion + "] from master [" + fromMasterNodeId
+                        + "], but current cluster state version is [" + previous.version() + "] from master [" + previous.nodes().masterNodeId() + "]");
+            }
+            Builder builder = new Builder();
+            builder.version = in.readLong();
+            builder.metaData = MetaData.Builder.readDiffFrom(in, previous.metaData());
+            builder.routingTable = RoutingTable.Builder.readDiffFrom(in, previous.routingTable());
+            builder.nodes = DiscoveryNodes.Builder.readFrom(in, localNode);
+            builder.blocks = ClusterBlocks.Builder.readClusterBlocks(in);
+            builder.allocationExplanation = AllocationExplanation.readAllocationExplanation(in);
+            int customSize = in.readVInt();
+            for (int i = 0; i < customSize; i++) {
+                String type = in.readString();
+                Custom customIndexMetaData = lookupFactorySafe(type).readFrom(in);
+                builder.putCustom(type, customIndexMetaData);
+            }
+            return builder.build();
+        }
     }
 }
@@ -59,6 +59,8 @@ public class ShardStateAction extends AbstractComponent {
 
     private final BlockingQueue<ShardRouting> startedShardsQueue = ConcurrentCollections.newBlockingQueue();
 
+    private final BlockingQueue<ShardRoutingEntry> failedShardsQueue = ConcurrentCollections.newBlockingQueue();
+
     @Inject
     public ShardStateAction(Settings settings, ClusterService clusterService, TransportService transportService,
                             AllocationService allocationService, ThreadPool threadPool) {
@@ -108,18 +110,35 @@ public class ShardStateAction extends AbstractComponent {
 
     private void innerShardFailed(final ShardRouting shardRouting, final String reason) {
         logger.warn("received shard failed for {}, reason [{}]", shardRouting, reason);
+        // buffer failed shard requests, same as with started shards, the first state update task drains
+        // all the pending ones and applies them with a single reroute, the rest will find nothing to process
+        failedShardsQueue.add(new ShardRoutingEntry(shardRouting, reason));
+
         clusterService.submitStateUpdateTask("shard-failed (" + shardRouting + "), reason [" + reason + "]", new ClusterStateUpdateTask() {
             @Override
             public ClusterState execute(ClusterState currentState) {
+
+                List<ShardRoutingEntry> shardRoutingEntries = new ArrayList<ShardRoutingEntry>();
+                failedShardsQueue.drainTo(shardRoutingEntries);
+
+                // nothing to process (a previous event has processed it already)
+                if (shardRoutingEntries.isEmpty()) {
+                    return currentState;
+                }
+
+                List<ShardRouting> shards = new ArrayList<ShardRouting>(shardRoutingEntries.size());
+                for (ShardRoutingEntry shardRoutingEntry : shardRoutingEntries) {
+                    shards.add(shardRoutingEntry.shardRouting);
+                }
                 if (logger.isDebugEnabled()) {
-                    logger.debug("Received failed shard {}, reason [{}]", shardRouting, reason);
+                    logger.debug("Received failed shards {}", shardRoutingEntries);
                 }
-                RoutingAllocation.Result routingResult = allocationService.applyFailedShard(currentState, shardRouting);
+                RoutingAllocation.Result routingResult = allocationService.applyFailedShards(currentState, shards);
                 if (!routingResult.changed()) {
                     return currentState;
                 }
                 if (logger.isDebugEnabled()) {
-                    logger.debug("Applying failed shard {}, reason [{}]", shardRouting, reason);
+                    logger.debug("Applying failed shards {}", shardRoutingEntries);
                 }
                 return newClusterStateBuilder().state(currentState).routingResult(routingResult).build();
             }
@@ -259,5 +278,10 @@ public class ShardStateAction extends AbstractComponent {
             shardRouting.writeTo(out);
             out.writeString(reason);
         }
+
+        @Override
+        public String toString() {
+            return shardRouting + ", reason [" + reason + "]";
+        }
     }
 }
@@ -26,6 +26,7 @@ import com.google.common.collect.UnmodifiableIterator;
 import gnu.trove.set.hash.THashSet;
 import org.elasticsearch.ElasticSearchIllegalArgumentException;
 import org.elasticsearch.action.support.IgnoreIndices;
+import org.elasticsearch.cluster.IncompatibleClusterStateVersionException;
 import org.elasticsearch.cluster.block.ClusterBlock;
 import org.elasticsearch.cluster.block.ClusterBlockLevel;
 import org.elasticsearch.common.Nullable;
@@ -1064,5 +1065,77 @@ public class MetaData implements Iterable<IndexMetaData> {
                 lookupFactorySafe(entry.getKey()).writeTo(entry.getValue(), out);
             }
         }
+
+        /**
+         * Writes only the indices that changed (by identity) compared to the previous meta data,
+         * the rest of the meta data is written in full. Read back using {@link #readDiffFrom(StreamInput, MetaData)}
+         * with the same previous meta data.
+         */
+        public static void writeDiffTo(MetaData previous, MetaData metaData, StreamOutput out) throws IOException {
+            out.writeLong(metaData.version);
+            writeSettingsToStream(metaData.transientSettings(), out);
+            writeSettingsToStream(metaData.persistentSettings(), out);
+            List<String> removed = Lists.newArrayList();
+            for (String index : previous.indices.keySet()) {
+                if (!metaData.indices.containsKey(index)) {
+                    removed.add(index);
+                }
+            }
+            out.writeVInt(removed.size());
+            for (String index : removed) {
+                out.writeString(index);
+            }
+            List<IndexMetaData> changed = Lists.newArrayList();
+            for (IndexMetaData indexMetaData : metaData) {
+                if (previous.indices.get(indexMetaData.index()) != indexMetaData) {
+                    changed.add(indexMetaData);
+                }
+            }
+            out.writeVInt(changed.size());
+            for (IndexMetaData indexMetaData : changed) {
+                IndexMetaData.Builder.writeTo(indexMetaData, out);
+            }
+            out.writeVInt(metaData.indices.size());
+            out.writeVInt(metaData.templates.size());
+            for (IndexTemplateMetaData template : metaData.templates.values()) {
+                IndexTemplateMetaData.Builder.writeTo(template, out);
+            }
+            out.writeVInt(metaData.customs().size());
+            for (Map.Entry<String, Custom> entry : metaData.customs().entrySet()) {
+                out.writeString(entry.getKey());
+                lookupFactorySafe(entry.getKey()).writeTo(entry.getValue(), out);
+            }
+        }
+
+        public static MetaData readDiffFrom(StreamInput in, MetaData previous) throws IOException {
+            Builder builder = new Builder();
+            builder.version = in.readLong();
+            builder.transientSettings(readSettingsFromStream(in));
+            builder.persistentSettings(readSettingsFromStream(in));
+            builder.indices.putAll(previous.indices);
+            int size = in.readVInt();
+            for (int i = 0; i < size; i++) {
+                builder.indices.remove(in.readString());
+            }
+            size = in.readVInt();
+            for (int i = 0; i < size; i++) {
+                builder.put(IndexMetaData.Builder.readFrom(in), false);
+            }
+            int expectedSize = in.readVInt();
+            if (builder.indices.map().size() != expectedSize) {
+                throw new IncompatibleClusterStateVersionException("meta data diff expected [" + expectedSize + "] indices, but got [" + builder.indices.map().size() + "]");
+            }
+            size = in.readVInt();
+            for (int i = 0; i < size; i++) {
+                builder.put(IndexTemplateMetaData.Builder.readFrom(in));
+            }
+            int customSize = in.readVInt();
+            for (int i = 0; i < customSize; i++) {
+                String type = in.readString();
+                Custom customIndexMetaData = lookupFactorySafe(type).readFrom(in);
+                builder.putCustom(type, customIndexMetaData);
+            }
+            return builder.build();
+        }
     }
 }
@@ -21,6 +21,7 @@ package org.elasticsearch.cluster.routing;
 
 import com.google.common.collect.*;
 import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.IncompatibleClusterStateVersionException;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -413,6 +414,79 @@ public class RoutingTable implements Iterable<IndexRoutingTable> {
                 IndexRoutingTable.Builder.writeTo(index, out);
             }
         }
+
+        /**
+         * Writes only the index routing tables that changed compared to the previous routing table.
+         * Read back using {@link #readDiffFrom(StreamInput, RoutingTable)} with the same previous routing table.
+         */
+        public static void writeDiffTo(RoutingTable previous, RoutingTable table, StreamOutput out) throws IOException {
+            out.writeLong(table.version);
+            List<String> removed = newArrayList();
+            for (String index : previous.indicesRouting.keySet()) {
+                if (!table.indicesRouting.containsKey(index)) {
+                    removed.add(index);
+                }
+            }
+            out.writeVInt(removed.size());
+            for (String index : removed) {
+                out.writeString(index);
+            }
+            // routing tables are rebuilt on each reroute, so we compare them by content and not by identity
+            List<IndexRoutingTable> changed = newArrayList();
+            for (IndexRoutingTable index : table.indicesRouting.values()) {
+                if (!sameRouting(previous.indicesRouting.get(index.index()), index)) {
+                    changed.add(index);
+                }
+            }
+            out.writeVInt(changed.size());
+            for (IndexRoutingTable index : changed) {
+                IndexRoutingTable.Builder.writeTo(index, out);
+            }
+            out.writeVInt(table.indicesRouting.size());
+        }
+
+        public static RoutingTable readDiffFrom(StreamInput in, RoutingTable previous) throws IOException {
+            Builder builder = new Builder();
+            builder.version = in.readLong();
+            builder.indicesRouting.putAll(previous.indicesRouting);
+            int size = in.readVInt();
+            for (int i = 0; i < size; i++) {
+                builder.remove(in.readString());
+            }
+            size = in.readVInt();
+            for (int i = 0; i < size; i++) {
+                builder.add(IndexRoutingTable.Builder.readFrom(in));
+            }
+            int expectedSize = in.readVInt();
+            if (builder.indicesRouting.size() != expectedSize) {
+                throw new IncompatibleClusterStateVersionException("routing table diff expected [" + expectedSize + "] indices, but got [" + builder.indicesRouting.size() + "]");
+            }
+            return builder.build();
+        }
+
+        private static boolean sameRouting(IndexRoutingTable previous, IndexRoutingTable index) {
+            if (previous == index) {
+                return true;
+            }
+            if (previous == null || previous.shards().size() != index.shards().size()) {
+                return false;
+            }
+            for (IndexShardRoutingTable indexShard : index) {
+                IndexShardRoutingTable previousIndexShard = previous.shards().get(indexShard.shardId().id());
+                if (previousIndexShard == null || previousIndexShard.primaryAllocatedPostApi() != indexShard.primaryAllocatedPostApi()
+                        || previousIndexShard.size() != indexShard.size()) {
+                    return false;
+                }
+                for (int i = 0; i < indexShard.size(); i++) {
+                    ShardRouting previousShard = previousIndexShard.shards().get(i);
+                    ShardRouting shard = indexShard.shards().get(i);
+                    if (!previousShard.equals(shard) || previousShard.version() != shard.version()) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
     }
 
     public String prettyPrint() {
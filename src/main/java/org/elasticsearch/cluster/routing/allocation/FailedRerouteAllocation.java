@@ -24,20 +24,26 @@ import org.elasticsearch.cluster.routing.RoutingNodes;
 import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.cluster.routing.allocation.decider.AllocationDeciders;
 
+import java.util.List;
+
 /**
- * This {@link RoutingAllocation} keeps a shard which routing
+ * This {@link RoutingAllocation} keeps the shards which routing
  * allocation has faild 
  */
 public class FailedRerouteAllocation extends RoutingAllocation {
 
-    private final ShardRouting failedShard;
+    private final List<? extends ShardRouting> failedShards;
 
-    public FailedRerouteAllocation(AllocationDeciders deciders, RoutingNodes routingNodes, DiscoveryNodes nodes, ShardRouting failedShard) {
+    public FailedRerouteAllocation(AllocationDeciders deciders, RoutingNodes routingNodes, DiscoveryNodes nodes, List<? extends ShardRouting> failedShards) {
         super(deciders, routingNodes, nodes);
-        this.failedShard = failedShard;
+        this.failedShards = failedShards;
     }
 
-    public ShardRouting failedShard() {
-        return failedShard;
+    /**
+     * Get failed shards
+     * @return list of failed shards
+     */
+    public List<? extends ShardRouting> failedShards() {
+        return failedShards;
     }
 }
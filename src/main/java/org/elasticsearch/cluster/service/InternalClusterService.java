@@ -45,7 +45,6 @@ import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.*;
 
-import static java.util.concurrent.Executors.newSingleThreadExecutor;
 import static org.elasticsearch.cluster.ClusterState.Builder;
 import static org.elasticsearch.cluster.ClusterState.newClusterStateBuilder;
 import static org.elasticsearch.common.util.concurrent.EsExecutors.daemonThreadFactory;
@@ -67,7 +66,7 @@ public class InternalClusterService extends AbstractLifecycleComponent<ClusterSe
 
     private final TimeValue reconnectInterval;
 
-    private volatile ExecutorService updateTasksExecutor;
+    private volatile ThreadPoolExecutor updateTasksExecutor;
 
     private final List<ClusterStateListener> priorityClusterStateListeners = new CopyOnWriteArrayList<ClusterStateListener>();
     private final List<ClusterStateListener> clusterStateListeners = new CopyOnWriteArrayList<ClusterStateListener>();
@@ -114,7 +113,7 @@ public class InternalClusterService extends AbstractLifecycleComponent<ClusterSe
     protected void doStart() throws ElasticSearchException {
         add(localNodeMasterListeners);
         this.clusterState = newClusterStateBuilder().blocks(initialBlocks).build();
-        this.updateTasksExecutor = newSingleThreadExecutor(daemonThreadFactory(settings, "clusterService#updateTask"));
+        this.updateTasksExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), daemonThreadFactory(settings, "clusterService#updateTask"));
         this.reconnectToNodes = threadPool.schedule(reconnectInterval, ThreadPool.Names.GENERIC, new ReconnectToNodes());
     }
 
@@ -205,6 +204,15 @@ public class InternalClusterService extends AbstractLifecycleComponent<ClusterSe
         });
     }
 
+    @Override
+    public int numberOfPendingTasks() {
+        ThreadPoolExecutor updateTasksExecutor = this.updateTasksExecutor;
+        if (updateTasksExecutor == null) {
+            return 0;
+        }
+        return updateTasksExecutor.getQueue().size();
+    }
+
     public void submitStateUpdateTask(final String source, final ClusterStateUpdateTask updateTask) {
         if (!lifecycle.started()) {
             return;
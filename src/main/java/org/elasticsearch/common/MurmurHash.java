@@ -157,6 +157,15 @@ public class MurmurHash {
         return k;
     }
 
+    /**
+     * Mixes the bits of the value using the MurmurHash 3.0 64 bit finalizer (fmix64), so every bit of the
+     * value affects every bit of the result. Note, this is only the finalization step, and does not match
+     * {@link #hash3_x64_128(byte[], int, int, long)} over the 8 bytes of the value.
+     */
+    public static long mix64(long value) {
+        return fmix(value);
+    }
+
     public static long[] hash3_x64_128(byte[] key, int offset, int length, long seed) {
         final int nblocks = length >> 4; // Process as 128-bit blocks.
 
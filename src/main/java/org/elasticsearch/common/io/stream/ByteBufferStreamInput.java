@@ -1,5 +1,8 @@
 package org.elasticsearch.common.io.stream;
 
+import org.elasticsearch.common.bytes.ByteBufferBytesReference;
+import org.elasticsearch.common.bytes.BytesReference;
+
 import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -10,8 +13,33 @@ public class ByteBufferStreamInput extends StreamInput {
 
     private final ByteBuffer buffer;
 
+    private final boolean unsafe;
+
     public ByteBufferStreamInput(ByteBuffer buffer) {
+        this(buffer, false);
+    }
+
+    /**
+     * @param unsafe if the buffer might be reused, in which case bytes references read are copied
+     *               instead of being views on the buffer
+     */
+    public ByteBufferStreamInput(ByteBuffer buffer, boolean unsafe) {
         this.buffer = buffer;
+        this.unsafe = unsafe;
+    }
+
+    @Override
+    public BytesReference readBytesReference(int length) throws IOException {
+        if (unsafe || length == 0) {
+            return super.readBytesReference(length);
+        }
+        if (buffer.remaining() < length) {
+            throw new EOFException();
+        }
+        ByteBuffer slice = buffer.slice();
+        slice.limit(length);
+        buffer.position(buffer.position() + length);
+        return new ByteBufferBytesReference(slice);
     }
 
     @Override
@@ -54,7 +82,7 @@ public class ByteBufferStreamInput extends StreamInput {
 
     @Override
     public void readBytes(byte[] b, int offset, int len) throws IOException {
-        if (buffer.remaining() > len) {
+        if (buffer.remaining() < len) {
             throw new EOFException();
         }
         buffer.get(b, offset, len);
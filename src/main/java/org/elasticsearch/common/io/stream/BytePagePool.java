@@ -0,0 +1,91 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.io.stream;
+
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of fixed size byte pages, either on heap or direct. Pages are explicitly acquired and released, up to
+ * <tt>maxPooledPages</tt> released pages are kept around for reuse, the others are left to the GC.
+ */
+public class BytePagePool {
+
+    private final int pageSize;
+    private final int maxPooledPages;
+    private final boolean direct;
+
+    private final Queue<ByteBuffer> pages = ConcurrentCollections.newQueue();
+    private final AtomicInteger pooledPages = new AtomicInteger();
+
+    public BytePagePool(int pageSize, int maxPooledPages, boolean direct) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("page size must be positive, got [" + pageSize + "]");
+        }
+        this.pageSize = pageSize;
+        this.maxPooledPages = maxPooledPages;
+        this.direct = direct;
+    }
+
+    public int pageSize() {
+        return pageSize;
+    }
+
+    public boolean direct() {
+        return direct;
+    }
+
+    /**
+     * The number of released pages currently kept for reuse.
+     */
+    public int pooledPages() {
+        return pooledPages.get();
+    }
+
+    /**
+     * Returns a cleared page, with its position at 0 and its limit at the page size.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer page = pages.poll();
+        if (page == null) {
+            return direct ? ByteBuffer.allocateDirect(pageSize) : ByteBuffer.allocate(pageSize);
+        }
+        pooledPages.decrementAndGet();
+        return page;
+    }
+
+    /**
+     * Returns the page to the pool. The page must not be used once released.
+     */
+    public void release(ByteBuffer page) {
+        if (page.capacity() != pageSize || page.isDirect() != direct) {
+            return;
+        }
+        if (pooledPages.incrementAndGet() > maxPooledPages) {
+            pooledPages.decrementAndGet();
+            return;
+        }
+        page.clear();
+        pages.add(page);
+    }
+}
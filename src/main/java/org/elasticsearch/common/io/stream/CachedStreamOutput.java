@@ -68,6 +68,15 @@ public class CachedStreamOutput {
             return compressor.streamOutput(bytes);
         }
 
+        /**
+         * Handles writing to the provided stream output instead of to the entry bytes.
+         */
+        public StreamOutput handles(StreamOutput out) throws IOException {
+            handles.clear();
+            handles.setOut(out);
+            return handles;
+        }
+
         public StreamOutput handles(Compressor compressor) throws IOException {
             StreamOutput compressed = compressor.streamOutput(bytes);
             handles.clear();
@@ -0,0 +1,171 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.io.stream;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.elasticsearch.ElasticSearchException;
+import org.elasticsearch.common.RamUsage;
+import org.elasticsearch.common.lease.Releasable;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link StreamOutput} writing into pages acquired from a {@link BytePagePool}, so that growing it never copies
+ * what was already written. The written bytes can be exposed as a {@link ChannelBuffer} composed of the pages
+ * (without merging them into a single array), and the pages must be released once it is not used anymore.
+ * <p/>
+ * Note, when writing heap pages to a socket, netty still copies them into its own direct send buffer, only
+ * direct pages are written as is.
+ */
+public class PagedBytesStreamOutput extends StreamOutput implements Releasable {
+
+    private final BytePagePool pool;
+
+    private ByteBuffer[] pages = new ByteBuffer[4];
+    private int pageCount;
+    // the last page, its position is the position at which the next byte is written
+    private ByteBuffer current;
+
+    public PagedBytesStreamOutput(BytePagePool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public long position() throws IOException {
+        return size();
+    }
+
+    /**
+     * The number of bytes written.
+     */
+    public int size() {
+        return pageCount == 0 ? 0 : (pageCount - 1) * pool.pageSize() + current.position();
+    }
+
+    @Override
+    public void writeByte(byte b) throws IOException {
+        if (current == null || !current.hasRemaining()) {
+            nextPage();
+        }
+        current.put(b);
+    }
+
+    @Override
+    public void writeBytes(byte[] b, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (current == null || !current.hasRemaining()) {
+                nextPage();
+            }
+            int toWrite = Math.min(length, current.remaining());
+            current.put(b, offset, toWrite);
+            offset += toWrite;
+            length -= toWrite;
+        }
+    }
+
+    /**
+     * Skips <tt>length</tt> bytes, to be filled later on through the {@link #toChannelBuffer()} buffer.
+     */
+    public void skip(int length) {
+        while (length > 0) {
+            if (current == null || !current.hasRemaining()) {
+                nextPage();
+            }
+            int toSkip = Math.min(length, current.remaining());
+            current.position(current.position() + toSkip);
+            length -= toSkip;
+        }
+    }
+
+    private void nextPage() {
+        if (pages == null) {
+            throw new ElasticSearchException("stream output was already released");
+        }
+        if (pageCount == pages.length) {
+            ByteBuffer[] newPages = new ByteBuffer[ArrayUtil.oversize(pageCount + 1, RamUsage.NUM_BYTES_OBJECT_REF)];
+            System.arraycopy(pages, 0, newPages, 0, pageCount);
+            pages = newPages;
+        }
+        current = pool.acquire();
+        pages[pageCount++] = current;
+    }
+
+    /**
+     * The bytes written, as a (gathering) composite buffer over the pages. Only valid until the output is released.
+     */
+    public ChannelBuffer toChannelBuffer() {
+        if (pageCount == 0) {
+            return ChannelBuffers.EMPTY_BUFFER;
+        }
+        ByteBuffer[] buffers = new ByteBuffer[pageCount];
+        for (int i = 0; i < pageCount; i++) {
+            ByteBuffer buffer = pages[i].duplicate();
+            buffer.flip();
+            buffers[i] = buffer;
+        }
+        return ChannelBuffers.wrappedBuffer(true, buffers);
+    }
+
+    /**
+     * Returns the pages to the pool, and starts writing again at position 0.
+     */
+    @Override
+    public void reset() throws IOException {
+        if (pages == null) {
+            pages = new ByteBuffer[4];
+        }
+        for (int i = 0; i < pageCount; i++) {
+            pool.release(pages[i]);
+            pages[i] = null;
+        }
+        pageCount = 0;
+        current = null;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // nothing to do there
+    }
+
+    @Override
+    public void close() throws IOException {
+        // nothing to do here, the pages are returned on release
+    }
+
+    /**
+     * Returns the pages to the pool.
+     */
+    @Override
+    public boolean release() throws ElasticSearchException {
+        if (pages == null) {
+            return false;
+        }
+        for (int i = 0; i < pageCount; i++) {
+            pool.release(pages[i]);
+        }
+        pages = null;
+        pageCount = 0;
+        current = null;
+        return true;
+    }
+}
@@ -20,9 +20,14 @@
 package org.elasticsearch.common.lucene;
 
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.elasticsearch.common.Digest;
+import org.elasticsearch.common.Hex;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.security.MessageDigest;
 
 /**
  * A set of utilities for Lucene {@link Directory}.
@@ -31,6 +36,8 @@ import java.io.IOException;
  */
 public class Directories {
 
+    private static final int BUFFER_SIZE = 16 * 1024;
+
     /**
      * Returns the estimated size of a {@link Directory}.
      */
@@ -47,6 +54,33 @@ public class Directories {
         return estimatedSize;
     }
 
+    /**
+     * Returns the MD5 digest, hex encoded, of the content of the input, read from its current position to its end.
+     */
+    public static String md5Hex(IndexInput input) throws IOException {
+        return copyWithMd5Hex(input, null);
+    }
+
+    /**
+     * Copies the input, from its current position to its end, to the output (if not <tt>null</tt>), and returns
+     * the MD5 digest, hex encoded, of the copied content.
+     */
+    public static String copyWithMd5Hex(IndexInput input, IndexOutput output) throws IOException {
+        MessageDigest digest = Digest.getMd5Digest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long left = input.length() - input.getFilePointer();
+        while (left > 0) {
+            int toRead = left > buffer.length ? buffer.length : (int) left;
+            input.readBytes(buffer, 0, toRead);
+            digest.update(buffer, 0, toRead);
+            if (output != null) {
+                output.writeBytes(buffer, 0, toRead);
+            }
+            left -= toRead;
+        }
+        return Hex.encodeHexString(digest.digest());
+    }
+
     private Directories() {
 
     }
@@ -27,7 +27,10 @@ import org.apache.lucene.document.Field;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.DocsAndPositionsEnum;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.Numbers;
 import org.elasticsearch.common.lucene.Lucene;
@@ -58,10 +61,65 @@ public class UidField extends Field {
     // so we iterate till we find the one with the payload
     // LUCENE 4 UPGRADE: We can get rid of the do while loop, since there is only one _uid value (live docs are taken into account)
     public static DocIdAndVersion loadDocIdAndVersion(AtomicReaderContext context, Term term) {
+        DocsAndPositionsEnum uid;
+        try {
+            uid = context.reader().termPositionsEnum(term);
+        } catch (Exception e) {
+            return new DocIdAndVersion(Lucene.NO_DOC, -2, context);
+        }
+        if (uid == null) {
+            return null; // no doc
+        }
+        return loadDocIdAndVersion(context, uid);
+    }
+
+    /**
+     * Loads the doc ids and versions of several uids (of the provided field) at once, walking the terms of the
+     * segment once, in order, when the uids are sorted. Only the uids with no result yet are looked up, the results
+     * of the ones found in this segment are set in <tt>results</tt> (as {@link #loadDocIdAndVersion(AtomicReaderContext, Term)}
+     * would return them), allowing to call it for all the segments of a reader with the same results.
+     */
+    public static void loadDocIdAndVersions(AtomicReaderContext context, String field, BytesRef[] uids, DocIdAndVersion[] results) {
+        TermsEnum termsEnum;
+        try {
+            Terms terms = context.reader().terms(field);
+            if (terms == null) {
+                return;
+            }
+            termsEnum = terms.iterator(null);
+        } catch (Exception e) {
+            for (int i = 0; i < uids.length; i++) {
+                if (results[i] == null) {
+                    results[i] = new DocIdAndVersion(Lucene.NO_DOC, -2, context);
+                }
+            }
+            return;
+        }
+        Bits liveDocs = context.reader().getLiveDocs();
+        DocsAndPositionsEnum uid = null;
+        for (int i = 0; i < uids.length; i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            try {
+                if (!termsEnum.seekExact(uids[i], false)) {
+                    continue;
+                }
+                uid = termsEnum.docsAndPositions(liveDocs, uid, DocsAndPositionsEnum.FLAG_PAYLOADS);
+            } catch (Exception e) {
+                results[i] = new DocIdAndVersion(Lucene.NO_DOC, -2, context);
+                continue;
+            }
+            if (uid != null) {
+                results[i] = loadDocIdAndVersion(context, uid);
+            }
+        }
+    }
+
+    private static DocIdAndVersion loadDocIdAndVersion(AtomicReaderContext context, DocsAndPositionsEnum uid) {
         int docId = Lucene.NO_DOC;
         try {
-            DocsAndPositionsEnum uid = context.reader().termPositionsEnum(term);
-            if (uid == null || uid.nextDoc() == DocIdSetIterator.NO_MORE_DOCS) {
+            if (uid.nextDoc() == DocIdSetIterator.NO_MORE_DOCS) {
                 return null; // no doc
             }
             // Note, only master docs uid have version payload, so we can use that info to not
@@ -0,0 +1,191 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.util;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.ElasticSearchException;
+import org.elasticsearch.common.RamUsage;
+import org.elasticsearch.common.lease.Releasable;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A growable, off heap byte array. The bytes are stored in fixed size pages of direct
+ * {@link ByteBuffer}s, so that large arrays neither live on the heap nor require a single
+ * contiguous allocation. Pages are aligned to 8 bytes, so as long as primitives are written
+ * at positions aligned to their own size they never cross a page boundary.
+ * <p/>
+ * Reads are thread safe once the writes are done and the instance has been safely published.
+ * Writes are not thread safe.
+ */
+public class DirectPagedBytes implements Releasable {
+
+    public static final int DEFAULT_PAGE_SHIFT = 16; // 64k
+
+    private final int pageShift;
+    private final int pageSize;
+    private final int pageMask;
+
+    private ByteBuffer[] pages;
+    private int pageCount;
+
+    private volatile boolean released;
+
+    public DirectPagedBytes() {
+        this(DEFAULT_PAGE_SHIFT);
+    }
+
+    public DirectPagedBytes(int pageShift) {
+        if (pageShift < 3 || pageShift > 30) {
+            throw new IllegalArgumentException("page shift must be in [3, 30], got [" + pageShift + "]");
+        }
+        this.pageShift = pageShift;
+        this.pageSize = 1 << pageShift;
+        this.pageMask = pageSize - 1;
+        this.pages = new ByteBuffer[4];
+        this.pageCount = 0;
+    }
+
+    /**
+     * The number of bytes allocated so far (always a multiple of the page size).
+     */
+    public long capacity() {
+        return ((long) pageCount) << pageShift;
+    }
+
+    /**
+     * Makes sure at least <tt>size</tt> bytes can be addressed, allocating new (zeroed) pages as needed.
+     */
+    public void ensureCapacity(long size) {
+        while (capacity() < size) {
+            if (pageCount == pages.length) {
+                ByteBuffer[] newPages = new ByteBuffer[ArrayUtil.oversize(pageCount + 1, RamUsage.NUM_BYTES_OBJECT_REF)];
+                System.arraycopy(pages, 0, newPages, 0, pageCount);
+                pages = newPages;
+            }
+            pages[pageCount++] = ByteBuffer.allocateDirect(pageSize).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    public byte get(long index) {
+        return pages[(int) (index >>> pageShift)].get((int) (index & pageMask));
+    }
+
+    public void set(long index, byte value) {
+        pages[(int) (index >>> pageShift)].put((int) (index & pageMask), value);
+    }
+
+    public int getInt(long index) {
+        return pages[(int) (index >>> pageShift)].getInt((int) (index & pageMask));
+    }
+
+    public void setInt(long index, int value) {
+        pages[(int) (index >>> pageShift)].putInt((int) (index & pageMask), value);
+    }
+
+    public long getLong(long index) {
+        return pages[(int) (index >>> pageShift)].getLong((int) (index & pageMask));
+    }
+
+    public void setLong(long index, long value) {
+        pages[(int) (index >>> pageShift)].putLong((int) (index & pageMask), value);
+    }
+
+    public double getDouble(long index) {
+        return pages[(int) (index >>> pageShift)].getDouble((int) (index & pageMask));
+    }
+
+    public void setDouble(long index, double value) {
+        pages[(int) (index >>> pageShift)].putDouble((int) (index & pageMask), value);
+    }
+
+    /**
+     * Copies <tt>length</tt> bytes starting at <tt>index</tt> into the provided array.
+     */
+    public void get(long index, byte[] dest, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            dest[offset + i] = get(index + i);
+        }
+    }
+
+    /**
+     * Copies the provided bytes starting at <tt>index</tt>, growing the array if needed.
+     */
+    public void set(long index, BytesRef bytes) {
+        ensureCapacity(index + bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            set(index + i, bytes.bytes[bytes.offset + i]);
+        }
+    }
+
+    /**
+     * Frees the direct memory eagerly. Must only be called once no one else reads from
+     * this instance, if it is not called the memory is reclaimed when the pages are GC'ed.
+     */
+    @Override
+    public boolean release() throws ElasticSearchException {
+        if (released) {
+            return false;
+        }
+        released = true;
+        for (int i = 0; i < pageCount; i++) {
+            ByteBuffer page = pages[i];
+            pages[i] = null;
+            clean(page);
+        }
+        pageCount = 0;
+        return true;
+    }
+
+    private static final Method CLEANER_METHOD;
+    private static final Method CLEAN_METHOD;
+
+    static {
+        Method cleanerMethod = null;
+        Method cleanMethod = null;
+        try {
+            cleanerMethod = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            cleanMethod = Class.forName("sun.misc.Cleaner").getMethod("clean");
+        } catch (Throwable t) {
+            // not available on this JVM, we rely on GC to reclaim the pages
+            cleanerMethod = null;
+            cleanMethod = null;
+        }
+        CLEANER_METHOD = cleanerMethod;
+        CLEAN_METHOD = cleanMethod;
+    }
+
+    private static void clean(ByteBuffer buffer) {
+        if (buffer == null || CLEANER_METHOD == null || !buffer.isDirect()) {
+            return;
+        }
+        try {
+            Object cleaner = CLEANER_METHOD.invoke(buffer);
+            if (cleaner != null) {
+                CLEAN_METHOD.invoke(cleaner);
+            }
+        } catch (Throwable t) {
+            // ignore, will be reclaimed by GC
+        }
+    }
+}
@@ -22,7 +22,9 @@ package org.elasticsearch.discovery.zen.publish;
 import com.google.common.collect.Maps;
 import org.elasticsearch.Version;
 import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.IncompatibleClusterStateVersionException;
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.compress.Compressor;
@@ -54,12 +56,23 @@ public class PublishClusterStateAction extends AbstractComponent {
 
     private final NewClusterStateListener listener;
 
+    private final boolean diffEnabled;
+
+    // the last cluster state published when we are master, used to compute the diff for the next one
+    private volatile ClusterState lastPublishedState;
+
+    // the last cluster state received from the master, used to apply the next diff on
+    private ClusterState lastReceivedState;
+
+    private final Object receiveMutex = new Object();
+
     public PublishClusterStateAction(Settings settings, TransportService transportService, DiscoveryNodesProvider nodesProvider,
                                      NewClusterStateListener listener) {
         super(settings);
         this.transportService = transportService;
         this.nodesProvider = nodesProvider;
         this.listener = listener;
+        this.diffEnabled = componentSettings.getAsBoolean("diff.enable", true);
 
         transportService.registerHandler(PublishClusterStateRequestHandler.ACTION, new PublishClusterStateRequestHandler());
     }
@@ -68,66 +81,140 @@ public class PublishClusterStateAction extends AbstractComponent {
         transportService.removeHandler(PublishClusterStateRequestHandler.ACTION);
     }
 
-    public void publish(ClusterState clusterState) {
+    public void publish(final ClusterState clusterState) {
         DiscoveryNode localNode = nodesProvider.nodes().localNode();
 
+        ClusterState previousState = lastPublishedState;
+        lastPublishedState = clusterState;
+        if (!diffEnabled || previousState == null || previousState.version() >= clusterState.version()) {
+            previousState = null;
+        }
+
         Map<Version, CachedStreamOutput.Entry> serializedStates = Maps.newHashMap();
+        Map<Version, CachedStreamOutput.Entry> serializedDiffs = Maps.newHashMap();
         try {
             for (final DiscoveryNode node : clusterState.nodes()) {
                 if (node.equals(localNode)) {
                     // no need to send to our self
                     continue;
                 }
+                // nodes that were part of the previously published cluster state most likely hold it, so send them
+                // only what changed, if they don't, they will fail the diff and we will send them the full state
+                if (previousState != null && previousState.nodes().nodeExists(node.id()) && node.version().onOrAfter(Version.V_0_21_0_Beta1)) {
+                    CachedStreamOutput.Entry entry = serializedDiffs.get(node.version());
+                    if (entry == null) {
+                        try {
+                            entry = serialize(previousState, clusterState, node.version());
+                            serializedDiffs.put(node.version(), entry);
+                        } catch (Exception e) {
+                            logger.warn("failed to serialize cluster_state diff before publishing it to nodes", e);
+                            return;
+                        }
+                    }
+                    sendClusterState(node, clusterState, entry, true);
+                    continue;
+                }
                 // try and serialize the cluster state once (or per version), so we don't serialize it
                 // per node when we send it over the wire, compress it while we are at it...
                 CachedStreamOutput.Entry entry = serializedStates.get(node.version());
                 if (entry == null) {
                     try {
-                        entry = CachedStreamOutput.popEntry();
-                        StreamOutput stream = entry.handles(CompressorFactory.defaultCompressor());
-                        stream.setVersion(node.version());
-                        ClusterState.Builder.writeTo(clusterState, stream);
-                        stream.close();
+                        entry = serialize(null, clusterState, node.version());
                         serializedStates.put(node.version(), entry);
                     } catch (Exception e) {
                         logger.warn("failed to serialize cluster_state before publishing it to nodes", e);
                         return;
                     }
                 }
-                transportService.sendRequest(node, PublishClusterStateRequestHandler.ACTION,
-                        new PublishClusterStateRequest(entry.bytes().bytes()),
-                        TransportRequestOptions.options().withHighType().withCompress(false), // no need to compress, we already compressed the bytes
-
-                        new EmptyTransportResponseHandler(ThreadPool.Names.SAME) {
-                            @Override
-                            public void handleException(TransportException exp) {
-                                logger.debug("failed to send cluster state to [{}], should be detected as failed soon...", exp, node);
-                            }
-                        });
+                sendClusterState(node, clusterState, entry, false);
             }
         } finally {
             for (CachedStreamOutput.Entry entry : serializedStates.values()) {
                 CachedStreamOutput.pushEntry(entry);
             }
+            for (CachedStreamOutput.Entry entry : serializedDiffs.values()) {
+                CachedStreamOutput.pushEntry(entry);
+            }
+        }
+    }
+
+    private CachedStreamOutput.Entry serialize(@Nullable ClusterState previousState, ClusterState clusterState, Version version) throws IOException {
+        CachedStreamOutput.Entry entry = CachedStreamOutput.popEntry();
+        try {
+            StreamOutput stream = entry.handles(CompressorFactory.defaultCompressor());
+            stream.setVersion(version);
+            if (previousState == null) {
+                ClusterState.Builder.writeTo(clusterState, stream);
+            } else {
+                ClusterState.Builder.writeDiffTo(previousState, clusterState, stream);
+            }
+            stream.close();
+            return entry;
+        } catch (IOException e) {
+            CachedStreamOutput.pushEntry(entry);
+            throw e;
+        }
+    }
+
+    private void sendClusterState(final DiscoveryNode node, final ClusterState clusterState, CachedStreamOutput.Entry entry, final boolean diff) {
+        // a failed diff is answered by sending the full state, do it off the network thread
+        transportService.sendRequest(node, PublishClusterStateRequestHandler.ACTION,
+                new PublishClusterStateRequest(entry.bytes().bytes(), diff),
+                TransportRequestOptions.options().withHighType().withCompress(false), // no need to compress, we already compressed the bytes
+
+                new EmptyTransportResponseHandler(diff ? ThreadPool.Names.GENERIC : ThreadPool.Names.SAME) {
+                    @Override
+                    public void handleException(TransportException exp) {
+                        if (diff && exp.unwrapCause() instanceof IncompatibleClusterStateVersionException) {
+                            sendFullClusterState(node, clusterState);
+                            return;
+                        }
+                        logger.debug("failed to send cluster state to [{}], should be detected as failed soon...", exp, node);
+                    }
+                });
+    }
+
+    private void sendFullClusterState(DiscoveryNode node, ClusterState clusterState) {
+        if (lastPublishedState != clusterState) {
+            // a newer cluster state has been published since, the node will get it (or its diff) instead
+            return;
+        }
+        logger.trace("[{}] does not hold the previous cluster state, sending full cluster state version [{}]", node, clusterState.version());
+        CachedStreamOutput.Entry entry;
+        try {
+            entry = serialize(null, clusterState, node.version());
+        } catch (Exception e) {
+            logger.warn("failed to serialize cluster_state before publishing it to [{}]", e, node);
+            return;
+        }
+        try {
+            sendClusterState(node, clusterState, entry, false);
+        } finally {
+            CachedStreamOutput.pushEntry(entry);
         }
     }
 
     class PublishClusterStateRequest extends TransportRequest {
 
         BytesReference clusterStateInBytes;
+        boolean diff;
         Version version = Version.CURRENT;
 
         private PublishClusterStateRequest() {
         }
 
-        private PublishClusterStateRequest(BytesReference clusterStateInBytes) {
+        private PublishClusterStateRequest(BytesReference clusterStateInBytes, boolean diff) {
             this.clusterStateInBytes = clusterStateInBytes;
+            this.diff = diff;
         }
 
         @Override
         public void readFrom(StreamInput in) throws IOException {
             super.readFrom(in);
             clusterStateInBytes = in.readBytesReference();
+            if (in.getVersion().onOrAfter(Version.V_0_21_0_Beta1)) {
+                diff = in.readBoolean();
+            }
             version = in.getVersion();
         }
 
@@ -135,6 +222,9 @@ public class PublishClusterStateAction extends AbstractComponent {
         public void writeTo(StreamOutput out) throws IOException {
             super.writeTo(out);
             out.writeBytesReference(clusterStateInBytes);
+            if (out.getVersion().onOrAfter(Version.V_0_21_0_Beta1)) {
+                out.writeBoolean(diff);
+            }
         }
     }
 
@@ -157,7 +247,15 @@ public class PublishClusterStateAction extends AbstractComponent {
                 in = CachedStreamInput.cachedHandles(request.clusterStateInBytes.streamInput());
             }
             in.setVersion(request.version);
-            ClusterState clusterState = ClusterState.Builder.readFrom(in, nodesProvider.nodes().localNode());
+            ClusterState clusterState;
+            synchronized (receiveMutex) {
+                if (request.diff) {
+                    clusterState = ClusterState.Builder.readDiffFrom(in, lastReceivedState, nodesProvider.nodes().localNode());
+                } else {
+                    clusterState = ClusterState.Builder.readFrom(in, nodesProvider.nodes().localNode());
+                }
+                lastReceivedState = clusterState;
+            }
             listener.onNewClusterState(clusterState);
             channel.sendResponse(TransportResponse.Empty.INSTANCE);
         }
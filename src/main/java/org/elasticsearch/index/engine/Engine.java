@@ -80,6 +80,12 @@ public interface Engine extends IndexShardComponent, CloseableComponent {
 
     GetResult get(Get get) throws EngineException;
 
+    /**
+     * Gets several docs at once, the ones not found in realtime are all looked up on the same searcher, walking
+     * each segment once for all of them. The result must be released once done with the docs.
+     */
+    MultiGetResult multiGet(List<Get> gets) throws EngineException;
+
     Searcher searcher() throws EngineException;
 
     List<Segment> segments();
@@ -883,4 +889,27 @@ public interface Engine extends IndexShardComponent, CloseableComponent {
         }
     }
 
+    static class MultiGetResult {
+        private final GetResult[] results;
+        private final Searcher searcher;
+
+        public MultiGetResult(GetResult[] results, @Nullable Searcher searcher) {
+            this.results = results;
+            this.searcher = searcher;
+        }
+
+        /**
+         * The results, in the order of the gets. They share the searcher of this result, and don't need to be released.
+         */
+        public GetResult[] results() {
+            return results;
+        }
+
+        public void release() {
+            if (searcher != null) {
+                searcher.release();
+            }
+        }
+    }
+
 }
@@ -26,12 +26,13 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.SearcherFactory;
 import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.ElasticSearchException;
 import org.elasticsearch.ElasticSearchIllegalStateException;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
-import org.elasticsearch.cluster.routing.operation.hash.djb.DjbHashFunction;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.Preconditions;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.collect.MapBuilder;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.lucene.Lucene;
@@ -41,7 +42,6 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
-import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.analysis.AnalysisService;
 import org.elasticsearch.index.codec.CodecService;
@@ -49,6 +49,7 @@ import org.elasticsearch.index.deletionpolicy.SnapshotDeletionPolicy;
 import org.elasticsearch.index.deletionpolicy.SnapshotIndexCommit;
 import org.elasticsearch.index.engine.*;
 import org.elasticsearch.index.indexing.ShardIndexingService;
+import org.elasticsearch.index.mapper.internal.UidFieldMapper;
 import org.elasticsearch.index.merge.policy.MergePolicyProvider;
 import org.elasticsearch.index.merge.scheduler.MergeSchedulerProvider;
 import org.elasticsearch.index.search.nested.IncludeNestedDocsQuery;
@@ -66,7 +67,6 @@ import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -132,9 +132,8 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
     private volatile int onGoingRecoveries = 0;
 
 
-    private final ConcurrentMap<String, VersionValue> versionMap;
-
-    private final Object[] dirtyLocks;
+    // the version map segments are also the "dirty" locks serializing operations on the same uid
+    private final VersionMap versionMap;
 
     private final Object refreshMutex = new Object();
 
@@ -179,11 +178,7 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
         this.codecService = codecService;
 
         this.indexConcurrency = indexSettings.getAsInt("index.index_concurrency", IndexWriterConfig.DEFAULT_MAX_THREAD_STATES);
-        this.versionMap = ConcurrentCollections.newConcurrentMap();
-        this.dirtyLocks = new Object[indexConcurrency * 50]; // we multiply it to have enough...
-        for (int i = 0; i < dirtyLocks.length; i++) {
-            dirtyLocks[i] = new Object();
-        }
+        this.versionMap = new VersionMap(indexConcurrency * 50); // we multiply it to have enough...
 
         this.indexSettingsService.addListener(applySettings);
     }
@@ -300,23 +295,9 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
         rwl.readLock().lock();
         try {
             if (get.realtime()) {
-                VersionValue versionValue = versionMap.get(get.uid().text());
-                if (versionValue != null) {
-                    if (versionValue.delete()) {
-                        return GetResult.NOT_EXISTS;
-                    }
-                    if (!get.loadSource()) {
-                        return new GetResult(true, versionValue.version(), null);
-                    }
-                    byte[] data = translog.read(versionValue.translogLocation());
-                    if (data != null) {
-                        try {
-                            Translog.Source source = TranslogStreams.readSource(data);
-                            return new GetResult(true, versionValue.version(), source);
-                        } catch (IOException e) {
-                            // switched on us, read it from the reader
-                        }
-                    }
+                GetResult result = realtimeGet(get);
+                if (result != null) {
+                    return result;
                 }
             }
 
@@ -343,6 +324,106 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
         }
     }
 
+    @Override
+    public MultiGetResult multiGet(List<Get> gets) throws EngineException {
+        rwl.readLock().lock();
+        try {
+            GetResult[] results = new GetResult[gets.size()];
+            int pending = 0;
+            for (int i = 0; i < results.length; i++) {
+                Get get = gets.get(i);
+                if (get.realtime()) {
+                    results[i] = realtimeGet(get);
+                }
+                if (results[i] == null) {
+                    pending++;
+                }
+            }
+            if (pending == 0) {
+                return new MultiGetResult(results, null);
+            }
+
+            // look up the rest in the index, in uid order so each segment terms are walked once
+            final BytesRef[] uids = new BytesRef[pending];
+            Integer[] slots = new Integer[pending];
+            for (int i = 0, j = 0; i < results.length; i++) {
+                if (results[i] == null) {
+                    uids[j] = gets.get(i).uid().bytes();
+                    slots[j++] = i;
+                }
+            }
+            Integer[] order = new Integer[pending];
+            for (int i = 0; i < pending; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    return uids[o1].compareTo(uids[o2]);
+                }
+            });
+            BytesRef[] sortedUids = new BytesRef[pending];
+            for (int i = 0; i < pending; i++) {
+                sortedUids[i] = uids[order[i]];
+            }
+
+            Searcher searcher = searcher();
+            try {
+                UidField.DocIdAndVersion[] docIdAndVersions = new UidField.DocIdAndVersion[pending];
+                List<AtomicReaderContext> readers = searcher.reader().leaves();
+                for (int i = 0; i < readers.size(); i++) {
+                    UidField.loadDocIdAndVersions(readers.get(i), UidFieldMapper.NAME, sortedUids, docIdAndVersions);
+                }
+                for (int i = 0; i < pending; i++) {
+                    UidField.DocIdAndVersion docIdAndVersion = docIdAndVersions[i];
+                    int slot = slots[order[i]];
+                    if (docIdAndVersion != null && docIdAndVersion.docId != Lucene.NO_DOC) {
+                        // the searcher is released by the multi get result
+                        results[slot] = new GetResult(null, docIdAndVersion);
+                    } else {
+                        results[slot] = GetResult.NOT_EXISTS;
+                    }
+                }
+            } catch (Exception e) {
+                searcher.release();
+                throw new EngineException(shardId(), "failed to load documents", e);
+            }
+            return new MultiGetResult(results, searcher);
+        } finally {
+            rwl.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the doc from the version map (and the translog when the source is needed), returns <tt>null</tt> if
+     * it needs to be loaded from the index.
+     */
+    @Nullable
+    private GetResult realtimeGet(Get get) {
+        BytesRef uid = get.uid().bytes();
+        int uidHash = VersionMap.hash(uid);
+        // lookups don't lock, so gets don't wait for the indexing (and translog sync) of docs in the same segment
+        VersionMap.Value versionValue = versionMap.segment(uidHash).lookup(uid, uidHash);
+        if (versionValue != null) {
+            if (versionValue.delete()) {
+                return GetResult.NOT_EXISTS;
+            }
+            if (!get.loadSource()) {
+                return new GetResult(true, versionValue.version(), null);
+            }
+            BytesReference data = translog.read(versionValue.translogLocation());
+            if (data != null) {
+                try {
+                    Translog.Source source = TranslogStreams.readSource(data);
+                    return new GetResult(true, versionValue.version(), source);
+                } catch (IOException e) {
+                    // switched on us, read it from the reader
+                }
+            }
+        }
+        return null;
+    }
+
     @Override
     public void create(Create create) throws EngineException {
         rwl.readLock().lock();
@@ -371,17 +452,20 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
     }
 
     private void innerCreate(Create create, IndexWriter writer) throws IOException {
-        synchronized (dirtyLock(create.uid())) {
+        final BytesRef uid = create.uid().bytes();
+        final int uidHash = VersionMap.hash(uid);
+        final VersionMap.Segment versions = versionMap.segment(uidHash);
+        synchronized (versions) {
             UidField uidField = create.uidField();
             final long currentVersion;
-            VersionValue versionValue = versionMap.get(create.uid().text());
-            if (versionValue == null) {
+            final int slot = versions.find(uid, uidHash);
+            if (slot == -1) {
                 currentVersion = loadCurrentVersionFromIndex(create.uid());
             } else {
-                if (enableGcDeletes && versionValue.delete() && (threadPool.estimatedTimeInMillis() - versionValue.time()) > gcDeletesInMillis) {
+                if (enableGcDeletes && versions.delete(slot) && (threadPool.estimatedTimeInMillis() - versions.time(slot)) > gcDeletesInMillis) {
                     currentVersion = -1; // deleted, and GC
                 } else {
-                    currentVersion = versionValue.version();
+                    currentVersion = versions.version(slot);
                 }
             }
 
@@ -433,8 +517,8 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
             }
 
             // if the doc does not exists or it exists but not delete
-            if (versionValue != null) {
-                if (!versionValue.delete()) {
+            if (slot != -1) {
+                if (!versions.delete(slot)) {
                     if (create.origin() == Operation.Origin.RECOVERY) {
                         return;
                     } else {
@@ -460,7 +544,7 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
             }
             Translog.Location translogLocation = translog.add(new Translog.Create(create));
 
-            versionMap.put(create.uid().text(), new VersionValue(updatedVersion, false, threadPool.estimatedTimeInMillis(), translogLocation));
+            versions.put(uid, uidHash, updatedVersion, false, threadPool.estimatedTimeInMillis(), translogLocation);
 
             indexingService.postCreateUnderLock(create);
         }
@@ -495,17 +579,20 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
     }
 
     private void innerIndex(Index index, IndexWriter writer) throws IOException {
-        synchronized (dirtyLock(index.uid())) {
+        final BytesRef uid = index.uid().bytes();
+        final int uidHash = VersionMap.hash(uid);
+        final VersionMap.Segment versions = versionMap.segment(uidHash);
+        synchronized (versions) {
             UidField uidField = index.uidField();
             final long currentVersion;
-            VersionValue versionValue = versionMap.get(index.uid().text());
-            if (versionValue == null) {
+            final int slot = versions.find(uid, uidHash);
+            if (slot == -1) {
                 currentVersion = loadCurrentVersionFromIndex(index.uid());
             } else {
-                if (enableGcDeletes && versionValue.delete() && (threadPool.estimatedTimeInMillis() - versionValue.time()) > gcDeletesInMillis) {
+                if (enableGcDeletes && versions.delete(slot) && (threadPool.estimatedTimeInMillis() - versions.time(slot)) > gcDeletesInMillis) {
                     currentVersion = -1; // deleted, and GC
                 } else {
-                    currentVersion = versionValue.version();
+                    currentVersion = versions.version(slot);
                 }
             }
 
@@ -574,7 +661,7 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
             }
             Translog.Location translogLocation = translog.add(new Translog.Index(index));
 
-            versionMap.put(index.uid().text(), new VersionValue(updatedVersion, false, threadPool.estimatedTimeInMillis(), translogLocation));
+            versions.put(uid, uidHash, updatedVersion, false, threadPool.estimatedTimeInMillis(), translogLocation);
 
             indexingService.postIndexUnderLock(index);
         }
@@ -608,16 +695,19 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
     }
 
     private void innerDelete(Delete delete, IndexWriter writer) throws IOException {
-        synchronized (dirtyLock(delete.uid())) {
+        final BytesRef uid = delete.uid().bytes();
+        final int uidHash = VersionMap.hash(uid);
+        final VersionMap.Segment versions = versionMap.segment(uidHash);
+        synchronized (versions) {
             final long currentVersion;
-            VersionValue versionValue = versionMap.get(delete.uid().text());
-            if (versionValue == null) {
+            final int slot = versions.find(uid, uidHash);
+            if (slot == -1) {
                 currentVersion = loadCurrentVersionFromIndex(delete.uid());
             } else {
-                if (enableGcDeletes && versionValue.delete() && (threadPool.estimatedTimeInMillis() - versionValue.time()) > gcDeletesInMillis) {
+                if (enableGcDeletes && versions.delete(slot) && (threadPool.estimatedTimeInMillis() - versions.time(slot)) > gcDeletesInMillis) {
                     currentVersion = -1; // deleted, and GC
                 } else {
-                    currentVersion = versionValue.version();
+                    currentVersion = versions.version(slot);
                 }
             }
 
@@ -667,17 +757,17 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
                 // doc does not exists and no prior deletes
                 delete.version(updatedVersion).notFound(true);
                 Translog.Location translogLocation = translog.add(new Translog.Delete(delete));
-                versionMap.put(delete.uid().text(), new VersionValue(updatedVersion, true, threadPool.estimatedTimeInMillis(), translogLocation));
-            } else if (versionValue != null && versionValue.delete()) {
+                versions.put(uid, uidHash, updatedVersion, true, threadPool.estimatedTimeInMillis(), translogLocation);
+            } else if (slot != -1 && versions.delete(slot)) {
                 // a "delete on delete", in this case, we still increment the version, log it, and return that version
                 delete.version(updatedVersion).notFound(true);
                 Translog.Location translogLocation = translog.add(new Translog.Delete(delete));
-                versionMap.put(delete.uid().text(), new VersionValue(updatedVersion, true, threadPool.estimatedTimeInMillis(), translogLocation));
+                versions.put(uid, uidHash, updatedVersion, true, threadPool.estimatedTimeInMillis(), translogLocation);
             } else {
                 delete.version(updatedVersion);
                 writer.deleteDocuments(delete.uid());
                 Translog.Location translogLocation = translog.add(new Translog.Delete(delete));
-                versionMap.put(delete.uid().text(), new VersionValue(updatedVersion, true, threadPool.estimatedTimeInMillis(), translogLocation));
+                versions.put(uid, uidHash, updatedVersion, true, threadPool.estimatedTimeInMillis(), translogLocation);
             }
 
             indexingService.postDeleteUnderLock(delete);
@@ -942,25 +1032,8 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
     private void refreshVersioningTable(long time) {
         // we need to refresh in order to clear older version values
         refresh(new Refresh(true).force(true));
-        for (Map.Entry<String, VersionValue> entry : versionMap.entrySet()) {
-            String id = entry.getKey();
-            synchronized (dirtyLock(id)) { // can we do it without this lock on each value? maybe batch to a set and get the lock once per set?
-                VersionValue versionValue = versionMap.get(id);
-                if (versionValue == null) {
-                    continue;
-                }
-                if (time - versionValue.time() <= 0) {
-                    continue; // its a newer value, from after/during we refreshed, don't clear it
-                }
-                if (versionValue.delete()) {
-                    if (enableGcDeletes && (time - versionValue.time()) > gcDeletesInMillis) {
-                        versionMap.remove(id);
-                    }
-                } else {
-                    versionMap.remove(id);
-                }
-            }
-        }
+        // values newer than the refresh are kept, deletes are kept until they are GC'ed, -1 means never GC them
+        versionMap.prune(time, enableGcDeletes ? gcDeletesInMillis : -1);
     }
 
     @Override
@@ -1267,19 +1340,6 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
         }
     }
 
-    private Object dirtyLock(String id) {
-        int hash = DjbHashFunction.DJB_HASH(id);
-        // abs returns Integer.MIN_VALUE, so we need to protect against it...
-        if (hash == Integer.MIN_VALUE) {
-            hash = 0;
-        }
-        return dirtyLocks[Math.abs(hash) % dirtyLocks.length];
-    }
-
-    private Object dirtyLock(Term uid) {
-        return dirtyLock(uid.text());
-    }
-
     private long loadCurrentVersionFromIndex(Term uid) {
         Searcher searcher = searcher();
         try {
@@ -1424,36 +1484,6 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
         }
     }
 
-    static class VersionValue {
-        private final long version;
-        private final boolean delete;
-        private final long time;
-        private final Translog.Location translogLocation;
-
-        VersionValue(long version, boolean delete, long time, Translog.Location translogLocation) {
-            this.version = version;
-            this.delete = delete;
-            this.time = time;
-            this.translogLocation = translogLocation;
-        }
-
-        public long time() {
-            return this.time;
-        }
-
-        public long version() {
-            return version;
-        }
-
-        public boolean delete() {
-            return delete;
-        }
-
-        public Translog.Location translogLocation() {
-            return this.translogLocation;
-        }
-    }
-
     class RobinSearchFactory extends SearcherFactory {
 
         @Override
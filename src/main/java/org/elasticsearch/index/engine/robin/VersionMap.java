@@ -0,0 +1,440 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.engine.robin;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.MurmurHash;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.index.translog.Translog;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The live version table of the {@link RobinEngine}, holding the latest version (and translog location) of
+ * each uid that was indexed or deleted since the last refresh.
+ * <p/>
+ * The table is split into striped {@link Segment}s by the hash of the uid bytes. Each segment is an open
+ * addressing (linear probing) hash table that keeps the uid bytes in a single byte array and the values in
+ * primitive arrays, so adding a doc does not create a key string or a value object. The segment is also the
+ * lock that serializes all the modifications of the uids that map to it, all segment methods except for
+ * {@link Segment#lookup(BytesRef, int)} must be called while holding it.
+ * <p/>
+ * Lookups don't lock. Within a {@link Table}, uids and value rows are only ever added and are published
+ * through atomic arrays, updating a uid adds a new row for it. Resizing, pruning and clearing build a new
+ * table that is published as a whole.
+ */
+public class VersionMap {
+
+    static final int MIN_CAPACITY = 16;
+
+    private final Segment[] segments;
+    private final int segmentShift;
+
+    /**
+     * @param concurrencyLevel the minimum number of segments (rounded up to a power of 2)
+     */
+    public VersionMap(int concurrencyLevel) {
+        int shift = 0;
+        int numSegments = 1;
+        while (numSegments < concurrencyLevel) {
+            ++shift;
+            numSegments <<= 1;
+        }
+        this.segmentShift = 32 - shift;
+        this.segments = new Segment[numSegments];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    public static int hash(BytesRef uid) {
+        return MurmurHash.hash32(uid.bytes, uid.offset, uid.length, 0);
+    }
+
+    /**
+     * The segment (and lock) the uid with the provided hash belongs to. The high bits of the hash select the
+     * segment, the low bits the slot within it.
+     */
+    public Segment segment(int hash) {
+        if (segments.length == 1) {
+            return segments[0];
+        }
+        return segments[hash >>> segmentShift];
+    }
+
+    public int numSegments() {
+        return segments.length;
+    }
+
+    public Segment segmentAt(int index) {
+        return segments[index];
+    }
+
+    /**
+     * The number of entries, not consistent if modified concurrently.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes the entries that are older than <tt>time</tt>, except for deletes that are not older than
+     * <tt>gcDeletesInMillis</tt> (or all deletes if <tt>gcDeletesInMillis</tt> is negative).
+     */
+    public void prune(long time, long gcDeletesInMillis) {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.prune(time, gcDeletesInMillis);
+            }
+        }
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * The values of a uid as seen by a {@link Segment#lookup(BytesRef, int)}.
+     */
+    public static final class Value {
+
+        private final long version;
+        private final boolean delete;
+        private final long time;
+        private final Translog.Location translogLocation;
+
+        Value(long version, boolean delete, long time, Translog.Location translogLocation) {
+            this.version = version;
+            this.delete = delete;
+            this.time = time;
+            this.translogLocation = translogLocation;
+        }
+
+        public long version() {
+            return version;
+        }
+
+        public boolean delete() {
+            return delete;
+        }
+
+        public long time() {
+            return time;
+        }
+
+        @Nullable
+        public Translog.Location translogLocation() {
+            return translogLocation;
+        }
+    }
+
+    public static final class Segment {
+
+        private volatile Table table = Table.EMPTY;
+        private int size;
+
+        Segment() {
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns the values of the uid, or <tt>null</tt> if it is not in the table. Does not require holding
+         * the segment lock.
+         */
+        @Nullable
+        public Value lookup(BytesRef uid, int hash) {
+            Table table = this.table;
+            int slot = table.find(uid, hash);
+            if (slot == -1) {
+                return null;
+            }
+            int row = table.rows.get(slot);
+            return new Value(table.versions[row], table.deletes[row], table.times[row], table.translogLocation(row));
+        }
+
+        /**
+         * Returns the slot of the uid, or <tt>-1</tt> if it is not in the table. The slot is only valid
+         * until the next modification of the segment.
+         */
+        public int find(BytesRef uid, int hash) {
+            if (size == 0) {
+                return -1;
+            }
+            return table.find(uid, hash);
+        }
+
+        public long version(int slot) {
+            Table table = this.table;
+            return table.versions[table.rows.get(slot)];
+        }
+
+        public long time(int slot) {
+            Table table = this.table;
+            return table.times[table.rows.get(slot)];
+        }
+
+        public boolean delete(int slot) {
+            Table table = this.table;
+            return table.deletes[table.rows.get(slot)];
+        }
+
+        public Translog.Location translogLocation(int slot) {
+            Table table = this.table;
+            return table.translogLocation(table.rows.get(slot));
+        }
+
+        public void put(BytesRef uid, int hash, long version, boolean delete, long time, Translog.Location translogLocation) {
+            assert uid.length > 0;
+            Table table = this.table;
+            int slot = table.find(uid, hash);
+            if (table.rowsUsed == table.rowCapacity || (slot == -1 && table.keys.length - table.keysUsed < uid.length)) {
+                // out of rows (each put takes one) or key space, compact the table, and grow it if it is
+                // getting full so that compacting stays amortized
+                int capacity = table.mask + 1;
+                int newCapacity = capacity;
+                if ((size + 1) > (capacity >> 3) * 3) {
+                    newCapacity = capacity << 1;
+                }
+                table = rebuild(table, newCapacity, table.keysUsed + uid.length, 0, 0, false);
+                slot = table.find(uid, hash);
+            }
+
+            int row = table.rowsUsed++;
+            table.versions[row] = version;
+            table.deletes[row] = delete;
+            table.times[row] = time;
+            if (translogLocation == null) {
+                table.translogSizes[row] = -1;
+            } else {
+                table.translogIds[row] = translogLocation.translogId;
+                table.translogLocations[row] = translogLocation.translogLocation;
+                table.translogSizes[row] = translogLocation.size;
+            }
+
+            if (slot == -1) {
+                slot = table.freeSlot(hash);
+                System.arraycopy(uid.bytes, uid.offset, table.keys, table.keysUsed, uid.length);
+                table.hashes[slot] = hash;
+                table.keyOffsets[slot] = table.keysUsed;
+                table.keysUsed += uid.length;
+                table.rows.set(slot, row);
+                // publishes the uid to lookups
+                table.keyLengths.set(slot, uid.length);
+                size++;
+            } else {
+                // publishes the new values to lookups
+                table.rows.set(slot, row);
+            }
+        }
+
+        void prune(long time, long gcDeletesInMillis) {
+            if (size == 0) {
+                return;
+            }
+            Table table = this.table;
+            int capacity = table.mask + 1;
+            int retained = 0;
+            for (int slot = 0; slot < capacity; slot++) {
+                if (table.keyLengths.get(slot) != 0) {
+                    int row = table.rows.get(slot);
+                    if (retain(table.times[row], table.deletes[row], time, gcDeletesInMillis)) {
+                        retained++;
+                    }
+                }
+            }
+            if (retained == size) {
+                return;
+            }
+            if (retained == 0) {
+                clear();
+                return;
+            }
+            // keep the capacity under steady load, halve it when the table became mostly empty
+            int newCapacity = capacity;
+            if (capacity > MIN_CAPACITY && retained < (capacity >> 3)) {
+                newCapacity = capacity >> 1;
+            }
+            rebuild(table, newCapacity, 0, time, gcDeletesInMillis, true);
+        }
+
+        private static boolean retain(long entryTime, boolean delete, long time, long gcDeletesInMillis) {
+            if (time - entryTime <= 0) {
+                return true; // its a newer value, from after/during we refreshed, don't clear it
+            }
+            if (delete) {
+                return gcDeletesInMillis < 0 || (time - entryTime) <= gcDeletesInMillis;
+            }
+            return false;
+        }
+
+        void clear() {
+            size = 0;
+            table = Table.EMPTY;
+        }
+
+        /**
+         * Copies the live entries (one row each) into a new table, and publishes it.
+         */
+        private Table rebuild(Table oldTable, int newCapacity, int minKeysCapacity, long time, long gcDeletesInMillis, boolean prune) {
+            // when pruning the removed keys are not copied, so the keys array is compacted as well
+            int keysCapacity = Math.max(16 * newCapacity, prune ? oldTable.keysUsed >> 1 : oldTable.keys.length);
+            if (keysCapacity < minKeysCapacity) {
+                keysCapacity = ArrayUtil.oversize(minKeysCapacity, 1);
+            }
+            newCapacity = Math.max(MIN_CAPACITY, newCapacity);
+            Table table = new Table(newCapacity, keysCapacity);
+            int oldCapacity = oldTable.mask + 1;
+            int size = 0;
+            for (int oldSlot = 0; oldSlot < oldCapacity; oldSlot++) {
+                int length = oldTable.keyLengths.get(oldSlot);
+                if (length == 0) {
+                    continue;
+                }
+                int oldRow = oldTable.rows.get(oldSlot);
+                if (prune && !retain(oldTable.times[oldRow], oldTable.deletes[oldRow], time, gcDeletesInMillis)) {
+                    continue;
+                }
+                if (table.keys.length - table.keysUsed < length) {
+                    table.keys = ArrayUtil.grow(table.keys, table.keysUsed + length);
+                }
+                System.arraycopy(oldTable.keys, oldTable.keyOffsets[oldSlot], table.keys, table.keysUsed, length);
+                int slot = table.freeSlot(oldTable.hashes[oldSlot]);
+                int row = table.rowsUsed++;
+                table.hashes[slot] = oldTable.hashes[oldSlot];
+                table.keyOffsets[slot] = table.keysUsed;
+                table.versions[row] = oldTable.versions[oldRow];
+                table.times[row] = oldTable.times[oldRow];
+                table.deletes[row] = oldTable.deletes[oldRow];
+                table.translogIds[row] = oldTable.translogIds[oldRow];
+                table.translogLocations[row] = oldTable.translogLocations[oldRow];
+                table.translogSizes[row] = oldTable.translogSizes[oldRow];
+                table.rows.lazySet(slot, row);
+                table.keyLengths.lazySet(slot, length);
+                table.keysUsed += length;
+                size++;
+            }
+            this.size = size;
+            // publishes the whole table to lookups
+            this.table = table;
+            return table;
+        }
+    }
+
+    /**
+     * The arrays of a segment. A slot is used iff its key length is > 0 (uid bytes are never empty), and
+     * points to the row holding the latest values of the uid. Rows take up to 3/4 of the slots, so there
+     * is always a free slot to end probing.
+     */
+    static final class Table {
+
+        static final Table EMPTY = new Table(1, 0);
+
+        final int mask;
+        final int rowCapacity;
+
+        final int[] hashes;
+        final int[] keyOffsets;
+        final AtomicIntegerArray keyLengths;
+        final AtomicIntegerArray rows;
+
+        final long[] versions;
+        final long[] times;
+        final boolean[] deletes;
+        final long[] translogIds;
+        final long[] translogLocations;
+        final int[] translogSizes;
+
+        // only replaced before the table is published
+        byte[] keys;
+        // only accessed while holding the segment lock
+        int keysUsed;
+        int rowsUsed;
+
+        Table(int capacity, int keysCapacity) {
+            this.mask = capacity - 1;
+            this.rowCapacity = capacity - (capacity >> 2) - (capacity == 1 ? 1 : 0);
+            this.hashes = new int[capacity];
+            this.keyOffsets = new int[capacity];
+            this.keyLengths = new AtomicIntegerArray(capacity);
+            this.rows = new AtomicIntegerArray(capacity);
+            this.versions = new long[rowCapacity];
+            this.times = new long[rowCapacity];
+            this.deletes = new boolean[rowCapacity];
+            this.translogIds = new long[rowCapacity];
+            this.translogLocations = new long[rowCapacity];
+            this.translogSizes = new int[rowCapacity];
+            this.keys = new byte[keysCapacity];
+        }
+
+        int find(BytesRef uid, int hash) {
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                int length = keyLengths.get(slot);
+                if (length == 0) {
+                    return -1;
+                }
+                if (hashes[slot] == hash && equals(slot, length, uid)) {
+                    return slot;
+                }
+            }
+        }
+
+        int freeSlot(int hash) {
+            int slot = hash & mask;
+            while (keyLengths.get(slot) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        Translog.Location translogLocation(int row) {
+            if (translogSizes[row] < 0) {
+                return null;
+            }
+            return new Translog.Location(translogIds[row], translogLocations[row], translogSizes[row]);
+        }
+
+        private boolean equals(int slot, int length, BytesRef uid) {
+            if (length != uid.length) {
+                return false;
+            }
+            int offset = keyOffsets[slot];
+            for (int i = 0; i < length; i++) {
+                if (keys[offset + i] != uid.bytes[uid.offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
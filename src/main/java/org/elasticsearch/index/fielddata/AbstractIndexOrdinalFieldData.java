@@ -0,0 +1,65 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.fielddata;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.IndexReader;
+import org.elasticsearch.ElasticSearchException;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.fielddata.ordinals.GlobalOrdinals;
+import org.elasticsearch.index.mapper.FieldMapper;
+import org.elasticsearch.index.settings.IndexSettings;
+
+import java.util.List;
+
+/**
+ * Ordinal based field data, caching the {@link GlobalOrdinals} of each top level reader in the field data
+ * cache until the reader is closed (refreshed).
+ */
+public abstract class AbstractIndexOrdinalFieldData<FD extends AtomicOrdinalFieldData> extends AbstractIndexFieldData<FD> implements IndexOrdinalFieldData<FD> {
+
+    public AbstractIndexOrdinalFieldData(Index index, @IndexSettings Settings indexSettings, FieldMapper.Names fieldNames, FieldDataType fieldDataType, IndexFieldDataCache cache) {
+        super(index, indexSettings, fieldNames, fieldDataType, cache);
+    }
+
+    @Override
+    public GlobalOrdinals loadGlobal(IndexReader indexReader) {
+        try {
+            return cache.loadGlobal(indexReader, this);
+        } catch (Throwable e) {
+            if (e instanceof ElasticSearchException) {
+                throw (ElasticSearchException) e;
+            } else {
+                throw new ElasticSearchException(e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public GlobalOrdinals loadGlobalDirect(IndexReader indexReader) {
+        List<AtomicReaderContext> leaves = indexReader.leaves();
+        OrdinalsBytesValues[] values = new OrdinalsBytesValues[leaves.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = load(leaves.get(i)).getBytesValues();
+        }
+        return GlobalOrdinals.build(values);
+    }
+}
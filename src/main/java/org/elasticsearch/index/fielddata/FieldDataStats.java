@@ -19,6 +19,7 @@
 
 package org.elasticsearch.index.fielddata;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
@@ -34,17 +35,27 @@ import java.io.IOException;
 public class FieldDataStats implements Streamable, ToXContent {
 
     long memorySize;
+    long evictions;
+    long rejections;
 
     public FieldDataStats() {
 
     }
 
     public FieldDataStats(long memorySize) {
+        this(memorySize, 0, 0);
+    }
+
+    public FieldDataStats(long memorySize, long evictions, long rejections) {
         this.memorySize = memorySize;
+        this.evictions = evictions;
+        this.rejections = rejections;
     }
 
     public void add(FieldDataStats stats) {
         this.memorySize += stats.memorySize;
+        this.evictions += stats.evictions;
+        this.rejections += stats.rejections;
     }
 
     public long getMemorySizeInBytes() {
@@ -55,21 +66,51 @@ public class FieldDataStats implements Streamable, ToXContent {
         return new ByteSizeValue(memorySize);
     }
 
+    /**
+     * The number of field data entries evicted from the cache because of memory pressure.
+     */
+    public long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * The number of field data loads rejected because they would have gone over the memory budget.
+     */
+    public long getRejections() {
+        return this.rejections;
+    }
+
+    public static FieldDataStats readFieldDataStats(StreamInput in) throws IOException {
+        FieldDataStats stats = new FieldDataStats();
+        stats.readFrom(in);
+        return stats;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         memorySize = in.readVLong();
+        if (in.getVersion().onOrAfter(Version.V_0_21_0_Beta1)) {
+            evictions = in.readVLong();
+            rejections = in.readVLong();
+        }
     }
 
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         out.writeVLong(memorySize);
+        if (out.getVersion().onOrAfter(Version.V_0_21_0_Beta1)) {
+            out.writeVLong(evictions);
+            out.writeVLong(rejections);
+        }
     }
 
     @Override
     public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
         builder.startObject(Fields.FIELD_DATA);
-        builder.field(Fields.MEMORY_SIZE, memorySize);
-        builder.field(Fields.MEMORY_SIZE_IN_BYTES, getMemorySize().toString());
+        builder.field(Fields.MEMORY_SIZE, getMemorySize().toString());
+        builder.field(Fields.MEMORY_SIZE_IN_BYTES, memorySize);
+        builder.field(Fields.EVICTIONS, evictions);
+        builder.field(Fields.REJECTIONS, rejections);
         builder.endObject();
         return builder;
     }
@@ -78,5 +119,7 @@ public class FieldDataStats implements Streamable, ToXContent {
         static final XContentBuilderString FIELD_DATA = new XContentBuilderString("field_data");
         static final XContentBuilderString MEMORY_SIZE = new XContentBuilderString("memory_size");
         static final XContentBuilderString MEMORY_SIZE_IN_BYTES = new XContentBuilderString("memory_size_in_bytes");
+        static final XContentBuilderString EVICTIONS = new XContentBuilderString("evictions");
+        static final XContentBuilderString REJECTIONS = new XContentBuilderString("rejections");
     }
 }
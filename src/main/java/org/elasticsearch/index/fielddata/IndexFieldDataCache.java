@@ -21,10 +21,15 @@ package org.elasticsearch.index.fielddata;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.SegmentReader;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.index.Index;
+import org.elasticsearch.index.fielddata.ordinals.GlobalOrdinals;
 
 import java.util.concurrent.Callable;
 
@@ -35,25 +40,70 @@ public interface IndexFieldDataCache {
 
     <FD extends AtomicFieldData, IFD extends IndexFieldData<FD>> FD load(AtomicReaderContext context, IFD indexFieldData) throws Exception;
 
+    /**
+     * Loads the global ordinals of the top level reader, which are accounted for and cleared along with the
+     * field data of the cache, and dropped once the reader is closed.
+     */
+    GlobalOrdinals loadGlobal(IndexReader indexReader, IndexOrdinalFieldData indexFieldData) throws Exception;
+
     void clear(Index index);
 
     void clear(Index index, String fieldName);
 
     void clear(Index index, IndexReader reader);
 
+    /**
+     * The memory used by, and evictions from, the field data held by this cache.
+     */
+    FieldDataStats stats();
+
     /**
      * The resident field data cache is a *per field* cache that keeps all the values in memory.
      */
-    static abstract class FieldBased implements IndexFieldDataCache, SegmentReader.CoreClosedListener {
-        private final Cache<Object, AtomicFieldData> cache;
+    static abstract class FieldBased implements IndexFieldDataCache, SegmentReader.CoreClosedListener, IndexReader.ReaderClosedListener, RemovalListener<Object, Object> {
+        // the per segment field data, keyed by the segment core key, and the global ordinals of top level readers
+        private final Cache<Object, Object> cache;
+
+        private final CounterMetric evictions = new CounterMetric();
+
+        protected FieldBased(CacheBuilder<Object, Object> cache) {
+            this.cache = cache.removalListener(this).build();
+        }
 
-        protected FieldBased(Cache<Object, AtomicFieldData> cache) {
-            this.cache = cache;
+        @Override
+        public void onRemoval(RemovalNotification<Object, Object> notification) {
+            if (notification.wasEvicted()) {
+                evictions.inc();
+            }
+        }
+
+        @Override
+        public FieldDataStats stats() {
+            // summed on demand, field data can grow once loaded (e.g. lazily computed hashes)
+            long memorySize = 0;
+            for (Object value : cache.asMap().values()) {
+                if (value instanceof AtomicFieldData) {
+                    memorySize += ((AtomicFieldData) value).getMemorySizeInBytes();
+                } else {
+                    memorySize += ((GlobalOrdinals) value).getMemorySizeInBytes();
+                }
+            }
+            return new FieldDataStats(memorySize, evictions.count(), 0);
         }
 
         @Override
         public void onClose(SegmentReader owner) {
-            cache.invalidate(owner.getCoreCacheKey());
+            Object fieldData = cache.asMap().remove(owner.getCoreCacheKey());
+            // the segment is closed, so no one can read from the field data anymore, free
+            // any off heap memory it holds eagerly instead of waiting for GC
+            if (fieldData instanceof Releasable) {
+                ((Releasable) fieldData).release();
+            }
+        }
+
+        @Override
+        public void onClose(IndexReader reader) {
+            cache.invalidate(new GlobalOrdinalsKey(reader.getCoreCacheKey()));
         }
 
         @Override
@@ -70,6 +120,17 @@ public interface IndexFieldDataCache {
             });
         }
 
+        @Override
+        public GlobalOrdinals loadGlobal(final IndexReader indexReader, final IndexOrdinalFieldData indexFieldData) throws Exception {
+            return (GlobalOrdinals) cache.get(new GlobalOrdinalsKey(indexReader.getCoreCacheKey()), new Callable<GlobalOrdinals>() {
+                @Override
+                public GlobalOrdinals call() throws Exception {
+                    indexReader.addReaderClosedListener(FieldBased.this);
+                    return indexFieldData.loadGlobalDirect(indexReader);
+                }
+            });
+        }
+
         @Override
         public void clear(Index index) {
             cache.invalidateAll();
@@ -83,20 +144,45 @@ public interface IndexFieldDataCache {
         @Override
         public void clear(Index index, IndexReader reader) {
             cache.invalidate(reader.getCoreCacheKey());
+            cache.invalidate(new GlobalOrdinalsKey(reader.getCoreCacheKey()));
+        }
+    }
+
+    /**
+     * Keys the global ordinals of a top level reader, apart from the field data of a segment reader with the
+     * same core key.
+     */
+    static class GlobalOrdinalsKey {
+        final Object readerKey;
+
+        GlobalOrdinalsKey(Object readerKey) {
+            this.readerKey = readerKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            return readerKey.equals(((GlobalOrdinalsKey) o).readerKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return readerKey.hashCode();
         }
     }
 
     static class Resident extends FieldBased {
 
         public Resident() {
-            super(CacheBuilder.newBuilder().<Object, AtomicFieldData>build());
+            super(CacheBuilder.newBuilder());
         }
     }
 
     static class Soft extends FieldBased {
 
         public Soft() {
-            super(CacheBuilder.newBuilder().softValues().<Object, AtomicFieldData>build());
+            super(CacheBuilder.newBuilder().softValues());
         }
     }
 }
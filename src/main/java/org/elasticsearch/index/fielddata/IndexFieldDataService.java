@@ -33,6 +33,7 @@ import org.elasticsearch.index.Index;
 import org.elasticsearch.index.fielddata.plain.*;
 import org.elasticsearch.index.mapper.FieldMapper;
 import org.elasticsearch.index.settings.IndexSettings;
+import org.elasticsearch.indices.fielddata.cache.IndicesFieldDataCache;
 
 import java.util.concurrent.ConcurrentMap;
 
@@ -58,25 +59,31 @@ public class IndexFieldDataService extends AbstractIndexComponent {
         buildersByTypeAndFormat = MapBuilder.<Tuple<String, String>, IndexFieldData.Builder>newMapBuilder()
                 .put(Tuple.tuple("string", "concrete_bytes"), new ConcreteBytesRefIndexFieldData.Builder())
                 .put(Tuple.tuple("string", "paged_bytes"), new PagedBytesIndexFieldData.Builder())
+                .put(Tuple.tuple("string", "direct"), new DirectBytesIndexFieldData.Builder())
                 .put(Tuple.tuple("float", "array"), new FloatArrayIndexFieldData.Builder())
                 .put(Tuple.tuple("double", "array"), new DoubleArrayIndexFieldData.Builder())
+                .put(Tuple.tuple("double", "direct"), new DirectDoubleIndexFieldData.Builder())
                 .put(Tuple.tuple("byte", "array"), new ByteArrayIndexFieldData.Builder())
                 .put(Tuple.tuple("short", "array"), new ShortArrayIndexFieldData.Builder())
                 .put(Tuple.tuple("int", "array"), new IntArrayIndexFieldData.Builder())
                 .put(Tuple.tuple("long", "array"), new LongArrayIndexFieldData.Builder())
+                .put(Tuple.tuple("long", "direct"), new DirectLongIndexFieldData.Builder())
                 .put(Tuple.tuple("geo_point", "array"), new GeoPointDoubleArrayIndexFieldData.Builder())
                 .immutableMap();
     }
 
+    private final IndicesFieldDataCache indicesFieldDataCache;
     private final ConcurrentMap<String, IndexFieldData> loadedFieldData = ConcurrentCollections.newConcurrentMap();
+    private final ConcurrentMap<String, IndexFieldDataCache> fieldDataCaches = ConcurrentCollections.newConcurrentMap();
 
     public IndexFieldDataService(Index index) {
-        this(index, ImmutableSettings.Builder.EMPTY_SETTINGS);
+        this(index, ImmutableSettings.Builder.EMPTY_SETTINGS, new IndicesFieldDataCache(ImmutableSettings.Builder.EMPTY_SETTINGS));
     }
 
     @Inject
-    public IndexFieldDataService(Index index, @IndexSettings Settings indexSettings) {
+    public IndexFieldDataService(Index index, @IndexSettings Settings indexSettings, IndicesFieldDataCache indicesFieldDataCache) {
         super(index, indexSettings);
+        this.indicesFieldDataCache = indicesFieldDataCache;
     }
 
     public void clear() {
@@ -85,6 +92,7 @@ public class IndexFieldDataService extends AbstractIndexComponent {
                 fieldData.clear();
             }
             loadedFieldData.clear();
+            fieldDataCaches.clear();
         }
     }
 
@@ -94,6 +102,7 @@ public class IndexFieldDataService extends AbstractIndexComponent {
             if (fieldData != null) {
                 fieldData.clear();
             }
+            fieldDataCaches.remove(fieldName);
         }
     }
 
@@ -104,8 +113,11 @@ public class IndexFieldDataService extends AbstractIndexComponent {
     }
 
     public FieldDataStats stats() {
-        // TODO: compute the memory size here...
-        return new FieldDataStats();
+        FieldDataStats stats = new FieldDataStats();
+        for (IndexFieldDataCache cache : fieldDataCaches.values()) {
+            stats.add(cache.stats());
+        }
+        return stats;
     }
 
     public <IFD extends IndexFieldData> IFD getForField(FieldMapper mapper) {
@@ -113,10 +125,10 @@ public class IndexFieldDataService extends AbstractIndexComponent {
     }
 
     public <IFD extends IndexFieldData> IFD getForField(FieldMapper.Names fieldNames, FieldDataType type) {
-        IndexFieldData fieldData = loadedFieldData.get(type.getType());
+        IndexFieldData fieldData = loadedFieldData.get(fieldNames.indexName());
         if (fieldData == null) {
             synchronized (loadedFieldData) {
-                fieldData = loadedFieldData.get(type.getType());
+                fieldData = loadedFieldData.get(fieldNames.indexName());
                 if (fieldData == null) {
                     IndexFieldData.Builder builder = null;
                     if (type.getFormat() != null) {
@@ -127,7 +139,7 @@ public class IndexFieldDataService extends AbstractIndexComponent {
                     }
                     String format = indexSettings.get("index.fielddata.type." + type.getType() + ".format", null);
                     if (format != null) {
-                        builder = buildersByTypeAndFormat.get(Tuple.tuple(type.getType(), type.getFormat()));
+                        builder = buildersByTypeAndFormat.get(Tuple.tuple(type.getType(), format));
                         if (builder == null) {
                             logger.warn("failed to find index level type format [" + format + "] for field [" + fieldNames.fullName() + "], will use default");
                         }
@@ -140,20 +152,22 @@ public class IndexFieldDataService extends AbstractIndexComponent {
                     }
 
                     IndexFieldDataCache cache;
-                    if (type.getOptions().containsKey("cache")) {
-                        String cacheType = type.getOptions().get("cache");
-                        if ("resident".equals(cacheType)) {
-                            cache = new IndexFieldDataCache.Resident();
-                        } else if ("soft".equals(cacheType)) {
-                            cache = new IndexFieldDataCache.Soft();
-                        } else {
-                            throw new ElasticSearchIllegalArgumentException("cache type not supported [" + cacheType + "] for field [" + fieldNames.fullName() + "]");
-                        }
-                    } else {
+                    String cacheType = type.getOptions().get("cache");
+                    if (cacheType == null) {
+                        cacheType = indexSettings.get("index.fielddata.cache", "resident");
+                    }
+                    if ("resident".equals(cacheType)) {
                         cache = new IndexFieldDataCache.Resident();
+                    } else if ("soft".equals(cacheType)) {
+                        cache = new IndexFieldDataCache.Soft();
+                    } else if ("node".equals(cacheType)) {
+                        cache = indicesFieldDataCache.buildIndexFieldDataCache(index, fieldNames.indexName());
+                    } else {
+                        throw new ElasticSearchIllegalArgumentException("cache type not supported [" + cacheType + "] for field [" + fieldNames.fullName() + "]");
                     }
 
                     fieldData = builder.build(index, indexSettings, fieldNames, type, cache);
+                    fieldDataCaches.put(fieldNames.indexName(), cache);
                     loadedFieldData.put(fieldNames.indexName(), fieldData);
                 }
             }
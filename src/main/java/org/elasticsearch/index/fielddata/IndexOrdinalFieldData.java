@@ -20,6 +20,8 @@
 package org.elasticsearch.index.fielddata;
 
 import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.IndexReader;
+import org.elasticsearch.index.fielddata.ordinals.GlobalOrdinals;
 
 /**
  */
@@ -34,4 +36,14 @@ public interface IndexOrdinalFieldData<FD extends AtomicOrdinalFieldData> extend
      * Loads directly the atomic field data for the reader, ignoring any caching involved.
      */
     FD loadDirect(AtomicReaderContext context) throws Exception;
+
+    /**
+     * Loads the global ordinals of the top level reader, possibly cached.
+     */
+    GlobalOrdinals loadGlobal(IndexReader indexReader);
+
+    /**
+     * Loads directly the global ordinals of the top level reader, ignoring any caching involved.
+     */
+    GlobalOrdinals loadGlobalDirect(IndexReader indexReader);
 }
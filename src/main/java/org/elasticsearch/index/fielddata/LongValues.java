@@ -20,6 +20,7 @@
 package org.elasticsearch.index.fielddata;
 
 import org.elasticsearch.ElasticSearchIllegalStateException;
+import org.elasticsearch.index.fielddata.util.DoubleArrayRef;
 import org.elasticsearch.index.fielddata.util.IntArrayRef;
 import org.elasticsearch.index.fielddata.util.LongArrayRef;
 
@@ -139,4 +140,102 @@ public interface LongValues {
         }
     }
 
+    public static class DoubleBased implements LongValues {
+
+        private final DoubleValues values;
+        private final LongArrayRef arrayScratch = new LongArrayRef(new long[1], 1);
+        private final ValueIter iter = new ValueIter();
+        private final Proc proc = new Proc();
+
+        public DoubleBased(DoubleValues values) {
+            this.values = values;
+        }
+
+        @Override
+        public boolean isMultiValued() {
+            return values.isMultiValued();
+        }
+
+        @Override
+        public boolean hasValue(int docId) {
+            return values.hasValue(docId);
+        }
+
+        @Override
+        public long getValue(int docId) {
+            return (long) values.getValue(docId);
+        }
+
+        @Override
+        public long getValueMissing(int docId, long missingValue) {
+            if (!values.hasValue(docId)) {
+                return missingValue;
+            }
+            return getValue(docId);
+        }
+
+        @Override
+        public LongArrayRef getValues(int docId) {
+            DoubleArrayRef arrayRef = values.getValues(docId);
+            int size = arrayRef.size();
+            if (size == 0) {
+                return LongArrayRef.EMPTY;
+            }
+            arrayScratch.reset(size);
+            for (int i = arrayRef.start; i < arrayRef.end; i++) {
+                arrayScratch.values[arrayScratch.end++] = (long) arrayRef.values[i];
+            }
+            return arrayScratch;
+        }
+
+        @Override
+        public Iter getIter(int docId) {
+            return this.iter.reset(values.getIter(docId));
+        }
+
+        @Override
+        public void forEachValueInDoc(int docId, ValueInDocProc proc) {
+            values.forEachValueInDoc(docId, this.proc.reset(proc));
+        }
+
+        static class ValueIter implements Iter {
+
+            private DoubleValues.Iter iter;
+
+            private ValueIter reset(DoubleValues.Iter iter) {
+                this.iter = iter;
+                return this;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            @Override
+            public long next() {
+                return (long) iter.next();
+            }
+        }
+
+        static class Proc implements DoubleValues.ValueInDocProc {
+
+            private ValueInDocProc proc;
+
+            private Proc reset(ValueInDocProc proc) {
+                this.proc = proc;
+                return this;
+            }
+
+            @Override
+            public void onValue(int docId, double value) {
+                this.proc.onValue(docId, (long) value);
+            }
+
+            @Override
+            public void onMissing(int docId) {
+                this.proc.onMissing(docId);
+            }
+        }
+    }
 }
@@ -0,0 +1,243 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.fielddata.ordinals;
+
+import org.elasticsearch.ElasticSearchException;
+import org.elasticsearch.common.RamUsage;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.util.DirectPagedBytes;
+import org.elasticsearch.index.fielddata.util.IntArrayRef;
+
+/**
+ * "Flat" ordinals stored off heap, one {@link DirectPagedBytes} level per value a doc can have,
+ * similar to {@link MultiFlatArrayOrdinals}. With a single level, the ordinals are single valued.
+ */
+public class DirectOrdinals implements Ordinals, Releasable {
+
+    // ordinals with value 0 indicates no value
+    private final DirectPagedBytes[] levels;
+    private final int numDocs;
+    private final int numOrds;
+
+    public DirectOrdinals(DirectPagedBytes[] levels, int numDocs, int numOrds) {
+        assert levels.length > 0;
+        this.levels = levels;
+        this.numDocs = numDocs;
+        this.numOrds = numOrds;
+    }
+
+    @Override
+    public boolean hasSingleArrayBackingStorage() {
+        return false;
+    }
+
+    @Override
+    public Object getBackingStorage() {
+        return levels;
+    }
+
+    /**
+     * The ordinals are not stored on the heap, the only heap cost is the page references.
+     */
+    @Override
+    public long getMemorySizeInBytes() {
+        return RamUsage.NUM_BYTES_ARRAY_HEADER + levels.length * RamUsage.NUM_BYTES_OBJECT_REF;
+    }
+
+    /**
+     * The off heap memory used by the ordinals.
+     */
+    public long getDirectMemorySizeInBytes() {
+        long size = 0;
+        for (DirectPagedBytes level : levels) {
+            size += level.capacity();
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isMultiValued() {
+        return levels.length > 1;
+    }
+
+    @Override
+    public int getNumDocs() {
+        return numDocs;
+    }
+
+    @Override
+    public int getNumOrds() {
+        return numOrds;
+    }
+
+    @Override
+    public Docs ordinals() {
+        return new Docs(this, levels);
+    }
+
+    @Override
+    public boolean release() throws ElasticSearchException {
+        for (DirectPagedBytes level : levels) {
+            level.release();
+        }
+        return true;
+    }
+
+    /**
+     * Builds the ordinals by adding the docs of each term in term order. Only a per doc
+     * counter is kept on the heap while building, levels are allocated off heap as needed.
+     */
+    public static class Builder {
+
+        private final int numDocs;
+        private final int[] idx;
+        private DirectPagedBytes[] levels = new DirectPagedBytes[1];
+        private int numLevels = 0;
+
+        public Builder(int numDocs) {
+            this.numDocs = numDocs;
+            this.idx = new int[numDocs];
+            newLevel();
+        }
+
+        public void addDoc(int docId, int termOrd) {
+            int level = idx[docId];
+            if (level >= numLevels) {
+                newLevel();
+            }
+            levels[level].setInt(((long) docId) << 2, termOrd);
+            idx[docId]++;
+        }
+
+        private void newLevel() {
+            if (numLevels == levels.length) {
+                DirectPagedBytes[] newLevels = new DirectPagedBytes[numLevels + 1];
+                System.arraycopy(levels, 0, newLevels, 0, numLevels);
+                levels = newLevels;
+            }
+            DirectPagedBytes level = new DirectPagedBytes();
+            level.ensureCapacity(((long) numDocs) << 2);
+            levels[numLevels++] = level;
+        }
+
+        public DirectOrdinals build(int numOrds) {
+            return new DirectOrdinals(levels, numDocs, numOrds);
+        }
+    }
+
+    public static class Docs implements Ordinals.Docs {
+
+        private final DirectOrdinals parent;
+        private final DirectPagedBytes[] levels;
+        private final IterImpl iter;
+
+        private final IntArrayRef intsScratch;
+
+        public Docs(DirectOrdinals parent, DirectPagedBytes[] levels) {
+            this.parent = parent;
+            this.levels = levels;
+            this.iter = new IterImpl(levels);
+            this.intsScratch = new IntArrayRef(new int[levels.length]);
+        }
+
+        @Override
+        public Ordinals ordinals() {
+            return this.parent;
+        }
+
+        @Override
+        public int getNumDocs() {
+            return parent.getNumDocs();
+        }
+
+        @Override
+        public int getNumOrds() {
+            return parent.getNumOrds();
+        }
+
+        @Override
+        public boolean isMultiValued() {
+            return parent.isMultiValued();
+        }
+
+        @Override
+        public int getOrd(int docId) {
+            return levels[0].getInt(((long) docId) << 2);
+        }
+
+        @Override
+        public IntArrayRef getOrds(int docId) {
+            intsScratch.end = 0;
+            long index = ((long) docId) << 2;
+            int i;
+            for (i = 0; i < levels.length; i++) {
+                int ordinal = levels[i].getInt(index);
+                if (ordinal == 0) {
+                    if (i == 0) return IntArrayRef.EMPTY;
+                    break;
+                }
+                intsScratch.values[i] = ordinal;
+            }
+            intsScratch.end = i;
+            return intsScratch;
+        }
+
+        @Override
+        public Iter getIter(int docId) {
+            return iter.reset(docId);
+        }
+
+        @Override
+        public void forEachOrdinalInDoc(int docId, OrdinalInDocProc proc) {
+            long index = ((long) docId) << 2;
+            for (int i = 0; i < levels.length; i++) {
+                int ordinal = levels[i].getInt(index);
+                if (ordinal == 0) {
+                    if (i == 0) proc.onOrdinal(docId, 0);
+                    return;
+                }
+                proc.onOrdinal(docId, ordinal);
+            }
+        }
+
+        public static class IterImpl implements Docs.Iter {
+
+            private final DirectPagedBytes[] levels;
+            private long index;
+            private int i;
+
+            public IterImpl(DirectPagedBytes[] levels) {
+                this.levels = levels;
+            }
+
+            public IterImpl reset(int docId) {
+                this.index = ((long) docId) << 2;
+                this.i = 0;
+                return this;
+            }
+
+            @Override
+            public int next() {
+                if (i >= levels.length) return 0;
+                return levels[i++].getInt(index);
+            }
+        }
+    }
+}
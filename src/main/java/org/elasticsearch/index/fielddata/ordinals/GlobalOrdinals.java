@@ -0,0 +1,181 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.fielddata.ordinals;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.PriorityQueue;
+import org.elasticsearch.common.RamUsage;
+import org.elasticsearch.index.fielddata.OrdinalsBytesValues;
+
+import java.util.Arrays;
+
+/**
+ * Maps the ordinals of each segment of a top level reader to "global" ordinals, shared by all the
+ * segments of the reader and in the same (term) order. Like the segment ordinals, the global ordinal
+ * 0 indicates no value.
+ * <p/>
+ * This allows to aggregate on the ordinals of all the segments using a single array, and only resolve
+ * the terms that end up being needed.
+ */
+public class GlobalOrdinals {
+
+    // per segment (by its ord in the top level reader), indexed by the segment ordinal
+    private final int[][] segmentToGlobal;
+    // the segment and segment ordinal a global ordinal can be resolved with
+    private final int[] globalToSegment;
+    private final int[] globalToSegmentOrd;
+    private final int numOrds;
+
+    private long size = -1;
+
+    GlobalOrdinals(int[][] segmentToGlobal, int[] globalToSegment, int[] globalToSegmentOrd, int numOrds) {
+        this.segmentToGlobal = segmentToGlobal;
+        this.globalToSegment = globalToSegment;
+        this.globalToSegmentOrd = globalToSegmentOrd;
+        this.numOrds = numOrds;
+    }
+
+    /**
+     * The number of global ordinals, including the 0 ordinal indicating no value.
+     */
+    public int getNumOrds() {
+        return numOrds;
+    }
+
+    /**
+     * The global ordinals of the segment, indexed by the segment ordinal.
+     */
+    public int[] segmentToGlobal(int segment) {
+        return segmentToGlobal[segment];
+    }
+
+    /**
+     * The segment the value of the global ordinal can be resolved with.
+     */
+    public int segment(int globalOrd) {
+        return globalToSegment[globalOrd];
+    }
+
+    /**
+     * The ordinal of the value of the global ordinal within {@link #segment(int)}.
+     */
+    public int segmentOrd(int globalOrd) {
+        return globalToSegmentOrd[globalOrd];
+    }
+
+    public long getMemorySizeInBytes() {
+        if (size == -1) {
+            long size = RamUsage.NUM_BYTES_ARRAY_HEADER;
+            for (int[] ords : segmentToGlobal) {
+                size += RamUsage.NUM_BYTES_OBJECT_REF + RamUsage.NUM_BYTES_ARRAY_HEADER + (ords.length * RamUsage.NUM_BYTES_INT);
+            }
+            size += 2 * (RamUsage.NUM_BYTES_ARRAY_HEADER + (globalToSegment.length * RamUsage.NUM_BYTES_INT));
+            this.size = size;
+        }
+        return size;
+    }
+
+    /**
+     * Builds the global ordinals by merging the (ordered) values of the segments, in the order of the
+     * segments in the top level reader.
+     */
+    public static GlobalOrdinals build(OrdinalsBytesValues[] values) {
+        int[][] segmentToGlobal = new int[values.length][];
+        SegmentQueue queue = new SegmentQueue(values.length);
+        int maxOrds = 1;
+        for (int i = 0; i < values.length; i++) {
+            int numOrds = values[i].ordinals().getNumOrds();
+            segmentToGlobal[i] = new int[numOrds];
+            maxOrds += Math.max(0, numOrds - 1);
+            SegmentValues segment = new SegmentValues(i, values[i]);
+            if (segment.nextOrd()) {
+                queue.add(segment);
+            }
+        }
+
+        int[] globalToSegment = new int[maxOrds];
+        int[] globalToSegmentOrd = new int[maxOrds];
+        int globalOrd = 0;
+        BytesRef last = new BytesRef();
+        while (queue.size() > 0) {
+            SegmentValues top = queue.top();
+            if (globalOrd == 0 || !top.current.bytesEquals(last)) {
+                globalOrd++;
+                globalToSegment[globalOrd] = top.segment;
+                globalToSegmentOrd[globalOrd] = top.ord;
+                last.copyBytes(top.current);
+            }
+            segmentToGlobal[top.segment][top.ord] = globalOrd;
+            if (top.nextOrd()) {
+                queue.updateTop();
+            } else {
+                queue.pop();
+            }
+        }
+
+        int numOrds = globalOrd + 1;
+        if (numOrds < maxOrds) {
+            globalToSegment = Arrays.copyOf(globalToSegment, numOrds);
+            globalToSegmentOrd = Arrays.copyOf(globalToSegmentOrd, numOrds);
+        }
+        return new GlobalOrdinals(segmentToGlobal, globalToSegment, globalToSegmentOrd, numOrds);
+    }
+
+    static class SegmentValues {
+
+        final int segment;
+        final OrdinalsBytesValues values;
+        final int numOrds;
+
+        int ord = 0;
+        BytesRef current;
+
+        SegmentValues(int segment, OrdinalsBytesValues values) {
+            this.segment = segment;
+            this.values = values;
+            this.numOrds = values.ordinals().getNumOrds();
+        }
+
+        boolean nextOrd() {
+            if (++ord >= numOrds) {
+                return false;
+            }
+            current = values.getValueByOrd(ord);
+            return true;
+        }
+    }
+
+    static class SegmentQueue extends PriorityQueue<SegmentValues> {
+
+        SegmentQueue(int size) {
+            super(size);
+        }
+
+        @Override
+        protected boolean lessThan(SegmentValues a, SegmentValues b) {
+            int i = a.current.compareTo(b.current);
+            if (i == 0) {
+                // keep the lowest segment first, so a value resolves to the first segment it appears in
+                return a.segment < b.segment;
+            }
+            return i < 0;
+        }
+    }
+}
@@ -36,7 +36,7 @@ import java.util.ArrayList;
 
 /**
  */
-public class ConcreteBytesRefIndexFieldData extends AbstractIndexFieldData<ConcreteBytesRefAtomicFieldData> implements IndexOrdinalFieldData<ConcreteBytesRefAtomicFieldData> {
+public class ConcreteBytesRefIndexFieldData extends AbstractIndexOrdinalFieldData<ConcreteBytesRefAtomicFieldData> {
 
     public static class Builder implements IndexFieldData.Builder {
 
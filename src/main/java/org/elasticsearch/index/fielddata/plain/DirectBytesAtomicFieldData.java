@@ -0,0 +1,661 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.fielddata.plain;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.ElasticSearchException;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lucene.HashedBytesRef;
+import org.elasticsearch.common.util.DirectPagedBytes;
+import org.elasticsearch.index.fielddata.*;
+import org.elasticsearch.index.fielddata.ordinals.DirectOrdinals;
+import org.elasticsearch.index.fielddata.ordinals.Ordinals;
+import org.elasticsearch.index.fielddata.util.BytesRefArrayRef;
+import org.elasticsearch.index.fielddata.util.IntArrayRef;
+import org.elasticsearch.index.fielddata.util.StringArrayRef;
+
+/**
+ * String field data with the term bytes, the term offsets and the ordinals stored off heap. Values
+ * are copied out of the direct pages on access, into the scratch {@link BytesRef}s of the views.
+ */
+public class DirectBytesAtomicFieldData implements AtomicOrdinalFieldData<ScriptDocValues.Strings>, Releasable {
+
+    // 0 ordinal in values means no value (its null)
+    private final TermBytes bytes;
+    protected final DirectOrdinals ordinals;
+
+    private volatile DirectPagedBytes hashes;
+    private volatile long size = -1;
+
+    public DirectBytesAtomicFieldData(TermBytes bytes, DirectOrdinals ordinals) {
+        this.bytes = bytes;
+        this.ordinals = ordinals;
+    }
+
+    @Override
+    public boolean isMultiValued() {
+        return ordinals.isMultiValued();
+    }
+
+    @Override
+    public int getNumDocs() {
+        return ordinals.getNumDocs();
+    }
+
+    @Override
+    public boolean isValuesOrdered() {
+        return true;
+    }
+
+    /**
+     * Includes the off heap memory, so the stats reflect the actual footprint of the field data.
+     */
+    @Override
+    public long getMemorySizeInBytes() {
+        if (size == -1) {
+            long size = ordinals.getMemorySizeInBytes() + ordinals.getDirectMemorySizeInBytes();
+            size += bytes.bytes.capacity() + bytes.offsets.capacity();
+            DirectPagedBytes hashes = this.hashes;
+            if (hashes != null) {
+                size += hashes.capacity();
+            }
+            this.size = size;
+        }
+        return size;
+    }
+
+    @Override
+    public boolean release() throws ElasticSearchException {
+        bytes.release();
+        ordinals.release();
+        DirectPagedBytes hashes = this.hashes;
+        if (hashes != null) {
+            hashes.release();
+        }
+        return true;
+    }
+
+    @Override
+    public OrdinalsBytesValues getBytesValues() {
+        return ordinals.isMultiValued() ? new BytesValues.Multi(bytes, ordinals.ordinals()) : new BytesValues.Single(bytes, ordinals.ordinals());
+    }
+
+    @Override
+    public OrdinalsHashedBytesValues getHashedBytesValues() {
+        if (hashes == null) {
+            synchronized (this) {
+                if (hashes == null) {
+                    int numberOfValues = bytes.numOrds;
+                    DirectPagedBytes hashes = new DirectPagedBytes();
+                    hashes.ensureCapacity(((long) numberOfValues) << 2);
+                    BytesRef scratch = new BytesRef();
+                    for (int i = 0; i < numberOfValues; i++) {
+                        BytesRef value = bytes.fill(scratch, i);
+                        hashes.setInt(((long) i) << 2, value.hashCode());
+                    }
+                    this.hashes = hashes;
+                    this.size = -1;
+                }
+            }
+        }
+        return ordinals.isMultiValued() ? new HashedBytesValues.Multi(bytes, hashes, ordinals.ordinals()) : new HashedBytesValues.Single(bytes, hashes, ordinals.ordinals());
+    }
+
+    @Override
+    public OrdinalsStringValues getStringValues() {
+        return ordinals.isMultiValued() ? new StringValues.Multi(bytes, ordinals.ordinals()) : new StringValues.Single(bytes, ordinals.ordinals());
+    }
+
+    @Override
+    public ScriptDocValues.Strings getScriptValues() {
+        return new ScriptDocValues.Strings(getStringValues());
+    }
+
+    /**
+     * The term bytes stored off heap. The start offset of each term ord is stored as a long
+     * in <tt>offsets</tt>, followed by the end offset of the last term.
+     */
+    public static class TermBytes implements Releasable {
+
+        final DirectPagedBytes bytes;
+        final DirectPagedBytes offsets;
+        final int numOrds;
+
+        public TermBytes(DirectPagedBytes bytes, DirectPagedBytes offsets, int numOrds) {
+            this.bytes = bytes;
+            this.offsets = offsets;
+            this.numOrds = numOrds;
+        }
+
+        /**
+         * Fills the provided scratch with the term bytes, reusing its array if large enough. Only
+         * use with scratch refs owned by this field data.
+         */
+        BytesRef fill(BytesRef scratch, int ord) {
+            long start = offsets.getLong(((long) ord) << 3);
+            int length = (int) (offsets.getLong(((long) ord + 1) << 3) - start);
+            if (scratch.bytes.length < length) {
+                scratch.bytes = new byte[ArrayUtil.oversize(length, 1)];
+            }
+            bytes.get(start, scratch.bytes, 0, length);
+            scratch.offset = 0;
+            scratch.length = length;
+            return scratch;
+        }
+
+        /**
+         * Fills the provided ref with a newly allocated array, since a ref provided by the caller
+         * might point at bytes owned by someone else (for example, another segment field data).
+         */
+        BytesRef fillFresh(BytesRef ret, int ord) {
+            long start = offsets.getLong(((long) ord) << 3);
+            int length = (int) (offsets.getLong(((long) ord + 1) << 3) - start);
+            ret.bytes = length == 0 ? BytesRef.EMPTY_BYTES : new byte[length];
+            bytes.get(start, ret.bytes, 0, length);
+            ret.offset = 0;
+            ret.length = length;
+            return ret;
+        }
+
+        @Override
+        public boolean release() throws ElasticSearchException {
+            bytes.release();
+            offsets.release();
+            return true;
+        }
+    }
+
+    static abstract class BytesValues implements org.elasticsearch.index.fielddata.OrdinalsBytesValues {
+
+        protected final TermBytes bytes;
+        protected final Ordinals.Docs ordinals;
+
+        protected final BytesRef scratch = new BytesRef();
+
+        BytesValues(TermBytes bytes, Ordinals.Docs ordinals) {
+            this.bytes = bytes;
+            this.ordinals = ordinals;
+        }
+
+        @Override
+        public Ordinals.Docs ordinals() {
+            return this.ordinals;
+        }
+
+        @Override
+        public BytesRef getValueByOrd(int ord) {
+            return bytes.fill(scratch, ord);
+        }
+
+        @Override
+        public BytesRef getValueScratchByOrd(int ord, BytesRef ret) {
+            return bytes.fillFresh(ret, ord);
+        }
+
+        @Override
+        public BytesRef getSafeValueByOrd(int ord) {
+            return bytes.fillFresh(new BytesRef(), ord);
+        }
+
+        @Override
+        public boolean hasValue(int docId) {
+            return ordinals.getOrd(docId) != 0;
+        }
+
+        @Override
+        public BytesRef makeSafe(BytesRef bytes) {
+            return BytesRef.deepCopyOf(bytes);
+        }
+
+        @Override
+        public BytesRef getValue(int docId) {
+            int ord = ordinals.getOrd(docId);
+            if (ord == 0) return null;
+            return bytes.fill(scratch, ord);
+        }
+
+        @Override
+        public BytesRef getValueScratch(int docId, BytesRef ret) {
+            return bytes.fillFresh(ret, ordinals.getOrd(docId));
+        }
+
+        static class Single extends BytesValues {
+
+            private final BytesRefArrayRef arrayScratch = new BytesRefArrayRef(new BytesRef[1], 1);
+            private final Iter.Single iter = new Iter.Single();
+
+            Single(TermBytes bytes, Ordinals.Docs ordinals) {
+                super(bytes, ordinals);
+            }
+
+            @Override
+            public boolean isMultiValued() {
+                return false;
+            }
+
+            @Override
+            public BytesRefArrayRef getValues(int docId) {
+                int ord = ordinals.getOrd(docId);
+                if (ord == 0) return BytesRefArrayRef.EMPTY;
+                arrayScratch.values[0] = bytes.fillFresh(new BytesRef(), ord);
+                return arrayScratch;
+            }
+
+            @Override
+            public Iter getIter(int docId) {
+                int ord = ordinals.getOrd(docId);
+                if (ord == 0) return Iter.Empty.INSTANCE;
+                return iter.reset(bytes.fill(scratch, ord));
+            }
+
+            @Override
+            public void forEachValueInDoc(int docId, ValueInDocProc proc) {
+                int ord = ordinals.getOrd(docId);
+                if (ord == 0) {
+                    proc.onMissing(docId);
+                } else {
+                    proc.onValue(docId, bytes.fill(scratch, ord));
+                }
+            }
+        }
+
+        static class Multi extends BytesValues {
+
+            private final BytesRefArrayRef arrayScratch = new BytesRefArrayRef(new BytesRef[10], 0);
+            private final ValuesIter iter;
+
+            Multi(TermBytes bytes, Ordinals.Docs ordinals) {
+                super(bytes, ordinals);
+                this.iter = new ValuesIter(bytes);
+            }
+
+            @Override
+            public boolean isMultiValued() {
+                return true;
+            }
+
+            @Override
+            public BytesRefArrayRef getValues(int docId) {
+                IntArrayRef ords = ordinals.getOrds(docId);
+                int size = ords.size();
+                if (size == 0) return BytesRefArrayRef.EMPTY;
+
+                arrayScratch.reset(size);
+                for (int i = ords.start; i < ords.end; i++) {
+                    arrayScratch.values[arrayScratch.end++] = bytes.fillFresh(new BytesRef(), ords.values[i]);
+                }
+                return arrayScratch;
+            }
+
+            @Override
+            public Iter getIter(int docId) {
+                return iter.reset(ordinals.getIter(docId));
+            }
+
+            @Override
+            public void forEachValueInDoc(int docId, ValueInDocProc proc) {
+                Ordinals.Docs.Iter iter = ordinals.getIter(docId);
+                int ord = iter.next();
+                if (ord == 0) {
+                    proc.onMissing(docId);
+                    return;
+                }
+                do {
+                    proc.onValue(docId, bytes.fill(scratch, ord));
+                } while ((ord = iter.next()) != 0);
+            }
+
+            static class ValuesIter implements Iter {
+
+                private final TermBytes bytes;
+                private final BytesRef scratch = new BytesRef();
+                private Ordinals.Docs.Iter ordsIter;
+                private int ord;
+
+                ValuesIter(TermBytes bytes) {
+                    this.bytes = bytes;
+                }
+
+                public ValuesIter reset(Ordinals.Docs.Iter ordsIter) {
+                    this.ordsIter = ordsIter;
+                    this.ord = ordsIter.next();
+                    return this;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return ord != 0;
+                }
+
+                @Override
+                public BytesRef next() {
+                    BytesRef value = bytes.fill(scratch, ord);
+                    ord = ordsIter.next();
+                    return value;
+                }
+            }
+        }
+    }
+
+    static abstract class HashedBytesValues implements org.elasticsearch.index.fielddata.OrdinalsHashedBytesValues {
+
+        protected final TermBytes bytes;
+        protected final DirectPagedBytes hashes;
+        protected final Ordinals.Docs ordinals;
+
+        protected final BytesRef scratch1 = new BytesRef();
+        protected final HashedBytesRef scratch = new HashedBytesRef();
+
+        HashedBytesValues(TermBytes bytes, DirectPagedBytes hashes, Ordinals.Docs ordinals) {
+            this.bytes = bytes;
+            this.hashes = hashes;
+            this.ordinals = ordinals;
+        }
+
+        @Override
+        public Ordinals.Docs ordinals() {
+            return this.ordinals;
+        }
+
+        @Override
+        public HashedBytesRef getValueByOrd(int ord) {
+            return scratch.reset(bytes.fill(scratch1, ord), hashes.getInt(((long) ord) << 2));
+        }
+
+        @Override
+        public HashedBytesRef getSafeValueByOrd(int ord) {
+            return new HashedBytesRef(bytes.fillFresh(new BytesRef(), ord), hashes.getInt(((long) ord) << 2));
+        }
+
+        @Override
+        public boolean hasValue(int docId) {
+            return ordinals.getOrd(docId) != 0;
+        }
+
+        @Override
+        public HashedBytesRef makeSafe(HashedBytesRef bytes) {
+            return new HashedBytesRef(BytesRef.deepCopyOf(bytes.bytes), bytes.hash);
+        }
+
+        @Override
+        public HashedBytesRef getValue(int docId) {
+            int ord = ordinals.getOrd(docId);
+            if (ord == 0) return null;
+            return scratch.reset(bytes.fill(scratch1, ord), hashes.getInt(((long) ord) << 2));
+        }
+
+        static class Single extends HashedBytesValues {
+
+            private final Iter.Single iter = new Iter.Single();
+
+            Single(TermBytes bytes, DirectPagedBytes hashes, Ordinals.Docs ordinals) {
+                super(bytes, hashes, ordinals);
+            }
+
+            @Override
+            public boolean isMultiValued() {
+                return false;
+            }
+
+            @Override
+            public Iter getIter(int docId) {
+                int ord = ordinals.getOrd(docId);
+                if (ord == 0) return Iter.Empty.INSTANCE;
+                return iter.reset(scratch.reset(bytes.fill(scratch1, ord), hashes.getInt(((long) ord) << 2)));
+            }
+
+            @Override
+            public void forEachValueInDoc(int docId, ValueInDocProc proc) {
+                int ord = ordinals.getOrd(docId);
+                if (ord == 0) {
+                    proc.onMissing(docId);
+                } else {
+                    proc.onValue(docId, scratch.reset(bytes.fill(scratch1, ord), hashes.getInt(((long) ord) << 2)));
+                }
+            }
+        }
+
+        static class Multi extends HashedBytesValues {
+
+            private final ValuesIter iter;
+
+            Multi(TermBytes bytes, DirectPagedBytes hashes, Ordinals.Docs ordinals) {
+                super(bytes, hashes, ordinals);
+                this.iter = new ValuesIter(bytes, hashes);
+            }
+
+            @Override
+            public boolean isMultiValued() {
+                return true;
+            }
+
+            @Override
+            public Iter getIter(int docId) {
+                return iter.reset(ordinals.getIter(docId));
+            }
+
+            @Override
+            public void forEachValueInDoc(int docId, ValueInDocProc proc) {
+                Ordinals.Docs.Iter iter = ordinals.getIter(docId);
+                int ord = iter.next();
+                if (ord == 0) {
+                    proc.onMissing(docId);
+                    return;
+                }
+                do {
+                    proc.onValue(docId, scratch.reset(bytes.fill(scratch1, ord), hashes.getInt(((long) ord) << 2)));
+                } while ((ord = iter.next()) != 0);
+            }
+
+            static class ValuesIter implements Iter {
+
+                private final TermBytes bytes;
+                private final DirectPagedBytes hashes;
+                private Ordinals.Docs.Iter ordsIter;
+                private int ord;
+
+                private final BytesRef scratch1 = new BytesRef();
+                private final HashedBytesRef scratch = new HashedBytesRef();
+
+                ValuesIter(TermBytes bytes, DirectPagedBytes hashes) {
+                    this.bytes = bytes;
+                    this.hashes = hashes;
+                }
+
+                public ValuesIter reset(Ordinals.Docs.Iter ordsIter) {
+                    this.ordsIter = ordsIter;
+                    this.ord = ordsIter.next();
+                    return this;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return ord != 0;
+                }
+
+                @Override
+                public HashedBytesRef next() {
+                    HashedBytesRef value = scratch.reset(bytes.fill(scratch1, ord), hashes.getInt(((long) ord) << 2));
+                    ord = ordsIter.next();
+                    return value;
+                }
+            }
+        }
+    }
+
+    static abstract class StringValues implements OrdinalsStringValues {
+
+        protected final TermBytes bytes;
+        protected final Ordinals.Docs ordinals;
+
+        protected final BytesRef scratch = new BytesRef();
+
+        protected StringValues(TermBytes bytes, Ordinals.Docs ordinals) {
+            this.bytes = bytes;
+            this.ordinals = ordinals;
+        }
+
+        @Override
+        public Ordinals.Docs ordinals() {
+            return ordinals;
+        }
+
+        @Override
+        public String getValueByOrd(int ord) {
+            BytesRef value = bytes.fill(scratch, ord);
+            return value.utf8ToString();
+        }
+
+        @Override
+        public boolean hasValue(int docId) {
+            return ordinals.getOrd(docId) != 0;
+        }
+
+        @Override
+        public String getValue(int docId) {
+            int ord = ordinals.getOrd(docId);
+            if (ord == 0) return null;
+            BytesRef value = bytes.fill(scratch, ord);
+            return value.utf8ToString();
+        }
+
+        static class Single extends StringValues {
+
+            private final StringArrayRef arrayScratch = new StringArrayRef(new String[1], 1);
+            private final Iter.Single iter = new Iter.Single();
+
+            Single(TermBytes bytes, Ordinals.Docs ordinals) {
+                super(bytes, ordinals);
+            }
+
+            @Override
+            public boolean isMultiValued() {
+                return false;
+            }
+
+            @Override
+            public StringArrayRef getValues(int docId) {
+                int ord = ordinals.getOrd(docId);
+                if (ord == 0) return StringArrayRef.EMPTY;
+                BytesRef value = bytes.fill(scratch, ord);
+                arrayScratch.values[0] = value == null ? null : value.utf8ToString();
+                return arrayScratch;
+            }
+
+            @Override
+            public Iter getIter(int docId) {
+                int ord = ordinals.getOrd(docId);
+                if (ord == 0) return Iter.Empty.INSTANCE;
+                return iter.reset(bytes.fill(scratch, ord).utf8ToString());
+            }
+
+            @Override
+            public void forEachValueInDoc(int docId, ValueInDocProc proc) {
+                int ord = ordinals.getOrd(docId);
+                if (ord == 0) {
+                    proc.onMissing(docId);
+                    return;
+                }
+                proc.onValue(docId, bytes.fill(scratch, ord).utf8ToString());
+            }
+        }
+
+        static class Multi extends StringValues {
+
+            private final StringArrayRef arrayScratch = new StringArrayRef(new String[10], 0);
+            private final ValuesIter iter;
+
+            Multi(TermBytes bytes, Ordinals.Docs ordinals) {
+                super(bytes, ordinals);
+                iter = new ValuesIter(bytes);
+            }
+
+            @Override
+            public boolean isMultiValued() {
+                return true;
+            }
+
+            @Override
+            public StringArrayRef getValues(int docId) {
+                IntArrayRef ords = ordinals.getOrds(docId);
+                int size = ords.size();
+                if (size == 0) return StringArrayRef.EMPTY;
+
+                arrayScratch.reset(size);
+                for (int i = ords.start; i < ords.end; i++) {
+                    BytesRef value = bytes.fill(scratch, ords.values[i]);
+                    arrayScratch.values[arrayScratch.end++] = value == null ? null : value.utf8ToString();
+                }
+                return arrayScratch;
+            }
+
+            @Override
+            public Iter getIter(int docId) {
+                return iter.reset(ordinals.getIter(docId));
+            }
+
+            @Override
+            public void forEachValueInDoc(int docId, ValueInDocProc proc) {
+                Ordinals.Docs.Iter iter = ordinals.getIter(docId);
+                int ord = iter.next();
+                if (ord == 0) {
+                    proc.onMissing(docId);
+                    return;
+                }
+                do {
+                    BytesRef value = bytes.fill(scratch, ord);
+                    proc.onValue(docId, value == null ? null : value.utf8ToString());
+                } while ((ord = iter.next()) != 0);
+            }
+
+            static class ValuesIter implements StringValues.Iter {
+
+                private final TermBytes bytes;
+                private final BytesRef scratch = new BytesRef();
+                private Ordinals.Docs.Iter ordsIter;
+                private int ord;
+
+                ValuesIter(TermBytes bytes) {
+                    this.bytes = bytes;
+                }
+
+                public ValuesIter reset(Ordinals.Docs.Iter ordsIter) {
+                    this.ordsIter = ordsIter;
+                    this.ord = ordsIter.next();
+                    return this;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return ord != 0;
+                }
+
+                @Override
+                public String next() {
+                    BytesRef value = bytes.fill(scratch, ord);
+                    ord = ordsIter.next();
+                    return value == null ? null : value.utf8ToString();
+                }
+            }
+        }
+    }
+
+}
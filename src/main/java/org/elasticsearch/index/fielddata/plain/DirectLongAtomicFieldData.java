@@ -0,0 +1,229 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.fielddata.plain;
+
+import org.elasticsearch.ElasticSearchException;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.util.DirectPagedBytes;
+import org.elasticsearch.index.fielddata.*;
+import org.elasticsearch.index.fielddata.ordinals.DirectOrdinals;
+import org.elasticsearch.index.fielddata.ordinals.Ordinals;
+import org.elasticsearch.index.fielddata.util.IntArrayRef;
+import org.elasticsearch.index.fielddata.util.LongArrayRef;
+
+/**
+ * Long field data with both the values (indexed by ordinal) and the ordinals stored off heap.
+ */
+public class DirectLongAtomicFieldData implements AtomicNumericFieldData, Releasable {
+
+    // values are stored as longs, at ord << 3, ord 0 is the "null" value
+    private final DirectPagedBytes values;
+    private final DirectOrdinals ordinals;
+
+    private long size = -1;
+
+    public DirectLongAtomicFieldData(DirectPagedBytes values, DirectOrdinals ordinals) {
+        this.values = values;
+        this.ordinals = ordinals;
+    }
+
+    @Override
+    public boolean isMultiValued() {
+        return ordinals.isMultiValued();
+    }
+
+    @Override
+    public boolean isValuesOrdered() {
+        return true;
+    }
+
+    @Override
+    public int getNumDocs() {
+        return ordinals.getNumDocs();
+    }
+
+    /**
+     * Includes the off heap memory, so the stats reflect the actual footprint of the field data.
+     */
+    @Override
+    public long getMemorySizeInBytes() {
+        if (size == -1) {
+            size = values.capacity() + ordinals.getDirectMemorySizeInBytes() + ordinals.getMemorySizeInBytes();
+        }
+        return size;
+    }
+
+    @Override
+    public boolean release() throws ElasticSearchException {
+        values.release();
+        ordinals.release();
+        return true;
+    }
+
+    @Override
+    public BytesValues getBytesValues() {
+        return new BytesValues.StringBased(getStringValues());
+    }
+
+    @Override
+    public HashedBytesValues getHashedBytesValues() {
+        return new HashedBytesValues.StringBased(getStringValues());
+    }
+
+    @Override
+    public StringValues getStringValues() {
+        return new StringValues.LongBased(getLongValues());
+    }
+
+    @Override
+    public ScriptDocValues getScriptValues() {
+        return new ScriptDocValues.NumericLong(getLongValues());
+    }
+
+    @Override
+    public ByteValues getByteValues() {
+        return new ByteValues.LongBased(getLongValues());
+    }
+
+    @Override
+    public ShortValues getShortValues() {
+        return new ShortValues.LongBased(getLongValues());
+    }
+
+    @Override
+    public IntValues getIntValues() {
+        return new IntValues.LongBased(getLongValues());
+    }
+
+    @Override
+    public LongValues getLongValues() {
+        return new LongValues(values, ordinals.ordinals());
+    }
+
+    @Override
+    public FloatValues getFloatValues() {
+        return new FloatValues.DoubleBased(getDoubleValues());
+    }
+
+    @Override
+    public DoubleValues getDoubleValues() {
+        return new DoubleValues.LongBased(getLongValues());
+    }
+
+    static class LongValues implements org.elasticsearch.index.fielddata.LongValues {
+
+        private final DirectPagedBytes values;
+        private final Ordinals.Docs ordinals;
+
+        private final LongArrayRef arrayScratch = new LongArrayRef(new long[1], 1);
+        private final ValuesIter iter;
+
+        LongValues(DirectPagedBytes values, Ordinals.Docs ordinals) {
+            this.values = values;
+            this.ordinals = ordinals;
+            this.iter = new ValuesIter(values);
+        }
+
+        @Override
+        public boolean isMultiValued() {
+            return ordinals.isMultiValued();
+        }
+
+        @Override
+        public boolean hasValue(int docId) {
+            return ordinals.getOrd(docId) != 0;
+        }
+
+        @Override
+        public long getValue(int docId) {
+            return values.getLong(((long) ordinals.getOrd(docId)) << 3);
+        }
+
+        @Override
+        public long getValueMissing(int docId, long missingValue) {
+            int ord = ordinals.getOrd(docId);
+            if (ord == 0) {
+                return missingValue;
+            } else {
+                return values.getLong(((long) ord) << 3);
+            }
+        }
+
+        @Override
+        public LongArrayRef getValues(int docId) {
+            IntArrayRef ords = ordinals.getOrds(docId);
+            int size = ords.size();
+            if (size == 0) return LongArrayRef.EMPTY;
+
+            arrayScratch.reset(size);
+            for (int i = ords.start; i < ords.end; i++) {
+                arrayScratch.values[arrayScratch.end++] = values.getLong(((long) ords.values[i]) << 3);
+            }
+            return arrayScratch;
+        }
+
+        @Override
+        public Iter getIter(int docId) {
+            return iter.reset(ordinals.getIter(docId));
+        }
+
+        @Override
+        public void forEachValueInDoc(int docId, ValueInDocProc proc) {
+            Ordinals.Docs.Iter iter = ordinals.getIter(docId);
+            int ord = iter.next();
+            if (ord == 0) {
+                proc.onMissing(docId);
+                return;
+            }
+            do {
+                proc.onValue(docId, values.getLong(((long) ord) << 3));
+            } while ((ord = iter.next()) != 0);
+        }
+
+        static class ValuesIter implements Iter {
+
+            private final DirectPagedBytes values;
+            private Ordinals.Docs.Iter ordsIter;
+            private int ord;
+
+            ValuesIter(DirectPagedBytes values) {
+                this.values = values;
+            }
+
+            public ValuesIter reset(Ordinals.Docs.Iter ordsIter) {
+                this.ordsIter = ordsIter;
+                this.ord = ordsIter.next();
+                return this;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return ord != 0;
+            }
+
+            @Override
+            public long next() {
+                long value = values.getLong(((long) ord) << 3);
+                ord = ordsIter.next();
+                return value;
+            }
+        }
+    }
+}
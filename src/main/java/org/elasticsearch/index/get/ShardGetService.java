@@ -46,10 +46,7 @@ import org.elasticsearch.search.lookup.SearchLookup;
 import org.elasticsearch.search.lookup.SourceLookup;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
 
 import static com.google.common.collect.Maps.newHashMapWithExpectedSize;
@@ -160,10 +157,81 @@ public class ShardGetService extends AbstractIndexShardComponent {
             }
         } else {
             get = indexShard.get(new Engine.Get(realtime, new Term(UidFieldMapper.NAME, Uid.createUidAsBytes(type, id))).loadSource(loadSource));
-            if (!get.exists()) {
-                get.release();
-                return new GetResult(shardId.index().name(), type, id, -1, false, null, null);
+        }
+        return innerGet(type, id, gFields, get);
+    }
+
+    /**
+     * Gets several docs of the shard at once, the docs with a type are looked up together (see {@link Engine#multiGet(List)})
+     * and their stored fields are loaded in doc id order. The results are in the order of the provided ids.
+     */
+    public GetResult[] multiGet(List<String> types, List<String> ids, List<String[]> gFields, boolean realtime) throws ElasticSearchException {
+        currentMetric.inc();
+        try {
+            long now = System.nanoTime();
+            GetResult[] results = new GetResult[ids.size()];
+            List<Engine.Get> gets = new ArrayList<Engine.Get>(ids.size());
+            List<Integer> slots = new ArrayList<Integer>(ids.size());
+            for (int i = 0; i < results.length; i++) {
+                String type = types.get(i);
+                if (type == null || type.equals("_all")) {
+                    // we need to go over the types one by one
+                    results[i] = innerGet(type, ids.get(i), gFields.get(i), realtime);
+                    continue;
+                }
+                boolean loadSource = gFields.get(i) == null || gFields.get(i).length > 0;
+                gets.add(new Engine.Get(realtime, new Term(UidFieldMapper.NAME, Uid.createUidAsBytes(type, ids.get(i)))).loadSource(loadSource));
+                slots.add(i);
             }
+
+            if (!gets.isEmpty()) {
+                Engine.MultiGetResult multiGetResult = indexShard.multiGet(gets);
+                try {
+                    final Engine.GetResult[] getResults = multiGetResult.results();
+                    Integer[] order = new Integer[getResults.length];
+                    for (int i = 0; i < order.length; i++) {
+                        order[i] = i;
+                    }
+                    // load the docs in index order, so that stored fields are read sequentially
+                    Arrays.sort(order, new Comparator<Integer>() {
+                        @Override
+                        public int compare(Integer o1, Integer o2) {
+                            UidField.DocIdAndVersion doc1 = getResults[o1].docIdAndVersion();
+                            UidField.DocIdAndVersion doc2 = getResults[o2].docIdAndVersion();
+                            if (doc1 == null || doc2 == null) {
+                                return doc1 == null ? (doc2 == null ? 0 : -1) : 1;
+                            }
+                            int cmp = doc1.reader.docBase - doc2.reader.docBase;
+                            return cmp != 0 ? cmp : doc1.docId - doc2.docId;
+                        }
+                    });
+                    for (int i : order) {
+                        int slot = slots.get(i);
+                        results[slot] = innerGet(types.get(slot), ids.get(slot), gFields.get(slot), getResults[i]);
+                    }
+                } finally {
+                    multiGetResult.release();
+                }
+            }
+
+            long took = results.length == 0 ? 0 : (System.nanoTime() - now) / results.length;
+            for (GetResult result : results) {
+                if (result.exists()) {
+                    existsMetric.inc(took);
+                } else {
+                    missingMetric.inc(took);
+                }
+            }
+            return results;
+        } finally {
+            currentMetric.dec();
+        }
+    }
+
+    private GetResult innerGet(String type, String id, String[] gFields, Engine.GetResult get) {
+        if (!get.exists()) {
+            get.release();
+            return new GetResult(shardId.index().name(), type, id, -1, false, null, null);
         }
 
         DocumentMapper docMapper = mapperService.documentMapper(type);
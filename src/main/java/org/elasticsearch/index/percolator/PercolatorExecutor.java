@@ -20,23 +20,29 @@
 package org.elasticsearch.index.percolator;
 
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.index.AtomicReader;
 import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.Fields;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.index.memory.MemoryIndex;
+import org.apache.lucene.index.memory.ReusableMemoryIndex;
 import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CloseableThreadLocal;
 import org.elasticsearch.ElasticSearchException;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.Preconditions;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.inject.Inject;
-import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.lucene.Lucene;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
@@ -59,11 +65,16 @@ import org.elasticsearch.index.service.IndexService;
 import org.elasticsearch.index.settings.IndexSettings;
 import org.elasticsearch.index.shard.service.IndexShard;
 import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.elasticsearch.index.mapper.SourceToParse.source;
 
@@ -155,21 +166,43 @@ public class PercolatorExecutor extends AbstractIndexComponent {
 
     private final IndexCache indexCache;
     private final IndexFieldDataService fieldDataService;
+    private final ThreadPool threadPool;
 
     private final Map<String, Query> queries = ConcurrentCollections.newConcurrentMap();
 
+    // only evaluate the queries that might match the doc, based on the terms they require
+    private final boolean prefilter;
+    private final QueryTermsIndex queryTermsIndex = new QueryTermsIndex();
+
+    // the number of partitions the queries to run are split into, each evaluated on its own thread
+    private final int concurrency;
+    private final int minPartitionSize;
+
+    // each thread reuses its memory index, keeping up to max_reuse_size of its blocks across docs
+    private final ByteSizeValue memoryIndexMaxReuseSize;
+    private final CloseableThreadLocal<MemoryIndex> memoryIndexCache = new CloseableThreadLocal<MemoryIndex>() {
+        @Override
+        protected MemoryIndex initialValue() {
+            return new ReusableMemoryIndex(false, memoryIndexMaxReuseSize.bytes());
+        }
+    };
 
     private IndicesService indicesService;
 
     @Inject
     public PercolatorExecutor(Index index, @IndexSettings Settings indexSettings,
                               MapperService mapperService, IndexQueryParserService queryParserService,
-                              IndexCache indexCache, IndexFieldDataService fieldDataService) {
+                              IndexCache indexCache, IndexFieldDataService fieldDataService, ThreadPool threadPool) {
         super(index, indexSettings);
         this.mapperService = mapperService;
         this.queryParserService = queryParserService;
         this.indexCache = indexCache;
         this.fieldDataService = fieldDataService;
+        this.threadPool = threadPool;
+        this.prefilter = componentSettings.getAsBoolean("prefilter", true);
+        this.concurrency = Math.max(1, componentSettings.getAsInt("concurrency", 1));
+        this.minPartitionSize = Math.max(1, componentSettings.getAsInt("min_partition_size", 100));
+        this.memoryIndexMaxReuseSize = componentSettings.getAsBytesSize("memory_index.max_reuse_size", new ByteSizeValue(1, ByteSizeUnit.MB));
     }
 
     public void setIndicesService(IndicesService indicesService) {
@@ -178,6 +211,8 @@ public class PercolatorExecutor extends AbstractIndexComponent {
 
     public void close() {
         this.queries.clear();
+        this.queryTermsIndex.clear();
+        this.memoryIndexCache.close();
     }
 
     public void addQuery(String name, QueryBuilder queryBuilder) throws ElasticSearchException {
@@ -231,14 +266,25 @@ public class PercolatorExecutor extends AbstractIndexComponent {
     private void addQuery(String name, Query query) {
         Preconditions.checkArgument(query != null, "query must be provided for percolate request");
         this.queries.put(name, query);
+        if (prefilter) {
+            queryTermsIndex.add(name, query);
+        }
     }
 
     public void removeQuery(String name) {
         this.queries.remove(name);
+        if (prefilter) {
+            queryTermsIndex.remove(name);
+        }
     }
 
     public void addQueries(Map<String, Query> queries) {
         this.queries.putAll(queries);
+        if (prefilter) {
+            for (Map.Entry<String, Query> entry : queries.entrySet()) {
+                queryTermsIndex.add(entry.getKey(), entry.getValue());
+            }
+        }
     }
 
     public Response percolate(final SourceRequest request) throws ElasticSearchException {
@@ -283,18 +329,33 @@ public class PercolatorExecutor extends AbstractIndexComponent {
     }
 
     public Response percolate(DocAndSourceQueryRequest request) throws ElasticSearchException {
-        Query query = null;
-        if (Strings.hasLength(request.query()) && !request.query().equals("*")) {
-            query = percolatorIndexServiceSafe().queryParserService().parse(QueryBuilders.queryString(request.query())).query();
+        return percolate(new DocAndQueryRequest(request.doc(), parseQueryString(request.query())));
+    }
+
+    /**
+     * Parses the query string used to select the registered queries to percolate against, returns
+     * <tt>null</tt> if all the queries should be used. Allows to parse the query once when several
+     * docs are percolated with the same one.
+     */
+    @Nullable
+    public Query parseQueryString(@Nullable String query) throws ElasticSearchException {
+        if (Strings.hasLength(query) && !query.equals("*")) {
+            return percolatorIndexServiceSafe().queryParserService().parse(QueryBuilders.queryString(query)).query();
         }
-        return percolate(new DocAndQueryRequest(request.doc(), query));
+        return null;
     }
 
-    private Response percolate(DocAndQueryRequest request) throws ElasticSearchException {
-        // first, parse the source doc into a MemoryIndex
-        final MemoryIndex memoryIndex = new MemoryIndex();
-        // TODO MemoryIndex now supports a reset call that reuses the internal memory
-        // maybe we can utilize this here.
+    public Response percolate(DocAndQueryRequest request) throws ElasticSearchException {
+        // first, parse the source doc into a MemoryIndex, reusing the one of this thread unless reuse is disabled
+        final MemoryIndex memoryIndex = memoryIndexMaxReuseSize.bytes() > 0 ? memoryIndexCache.get() : new MemoryIndex();
+        try {
+            return percolate(request, memoryIndex);
+        } finally {
+            memoryIndex.reset();
+        }
+    }
+
+    private Response percolate(DocAndQueryRequest request, MemoryIndex memoryIndex) throws ElasticSearchException {
 
         // TODO: This means percolation does not support nested docs...
         for (IndexableField field : request.doc().rootDoc().getFields()) {
@@ -307,9 +368,9 @@ public class PercolatorExecutor extends AbstractIndexComponent {
             }
             TokenStream tokenStream;
             try {
+                // the memory index resets, ends and closes the stream, so the analyzer can reuse it for the next field
                 tokenStream = field.tokenStream(request.doc().analyzer());
                 if (tokenStream != null) {
-                    tokenStream.reset();
                     memoryIndex.addField(field.name(), tokenStream, field.boost());
                 }
             } catch (IOException e) {
@@ -318,23 +379,23 @@ public class PercolatorExecutor extends AbstractIndexComponent {
         }
 
         final IndexSearcher searcher = memoryIndex.createSearcher();
+        // the readers the queries were executed against, each partition uses its own one
+        final List<IndexReader> readers = new ArrayList<IndexReader>();
+        readers.add(searcher.getIndexReader());
         List<String> matches = new ArrayList<String>();
 
         try {
-            if (request.query() == null) {
-                Lucene.ExistsCollector collector = new Lucene.ExistsCollector();
-                for (Map.Entry<String, Query> entry : queries.entrySet()) {
-                    collector.reset();
-                    try {
-                        searcher.search(entry.getValue(), collector);
-                    } catch (IOException e) {
-                        logger.warn("[" + entry.getKey() + "] failed to execute query", e);
-                    }
-
-                    if (collector.exists()) {
-                        matches.add(entry.getKey());
-                    }
+            Set<String> candidates = null;
+            if (prefilter) {
+                try {
+                    candidates = queryTermsIndex.candidates(searcher.getIndexReader());
+                } catch (IOException e) {
+                    throw new PercolatorException(index, "failed to filter the queries to percolate", e);
                 }
+            }
+            List<String> names;
+            if (request.query() == null) {
+                names = new ArrayList<String>(candidates != null ? candidates : queries.keySet());
             } else {
                 IndexService percolatorIndex = percolatorIndexServiceSafe();
                 if (percolatorIndex.numberOfShards() == 0) {
@@ -342,23 +403,126 @@ public class PercolatorExecutor extends AbstractIndexComponent {
                 }
                 IndexShard percolatorShard = percolatorIndex.shard(0);
                 Engine.Searcher percolatorSearcher = percolatorShard.searcher();
+                names = new ArrayList<String>();
                 try {
-                    percolatorSearcher.searcher().search(request.query(), new QueryCollector(logger, queries, searcher, percolatorIndex, matches));
+                    percolatorSearcher.searcher().search(request.query(), new QueryCollector(queries, candidates, percolatorIndex, names));
                 } catch (IOException e) {
                     logger.warn("failed to execute", e);
                 } finally {
                     percolatorSearcher.release();
                 }
             }
+            execute(names, memoryIndex, searcher, readers, matches);
         } finally {
-            // explicitly clear the reader, since we can only register on callback on SegmentReader
-            indexCache.clear(searcher.getIndexReader());
-            fieldDataService.clear(searcher.getIndexReader());
+            // explicitly clear the readers, since we can only register on callback on SegmentReader
+            for (IndexReader reader : readers) {
+                indexCache.clear(reader);
+                fieldDataService.clear(reader);
+            }
         }
 
         return new Response(matches, request.doc().mappingsModified());
     }
 
+    /**
+     * Executes the named queries, splitting them into up to <tt>concurrency</tt> partitions that are
+     * evaluated in parallel on the {@link ThreadPool.Names#PERCOLATE_QUERIES} thread pool, the first
+     * partition being evaluated on the calling thread. The matches keep the order of the names.
+     */
+    private void execute(List<String> names, MemoryIndex memoryIndex, IndexSearcher searcher, List<IndexReader> readers, List<String> matches) {
+        int partitions = Math.min(concurrency, (names.size() + minPartitionSize - 1) / minPartitionSize);
+        if (partitions <= 1) {
+            execute(names, searcher, matches);
+            return;
+        }
+        // the memory index sorts its fields and terms lazily, make sure it happens before the
+        // partitions are executed concurrently
+        try {
+            Fields fields = ((AtomicReader) searcher.getIndexReader()).fields();
+            for (String field : fields) {
+                fields.terms(field);
+            }
+        } catch (IOException e) {
+            throw new PercolatorException(index, "failed to prepare the doc to percolate", e);
+        }
+
+        final int partitionSize = (names.size() + partitions - 1) / partitions;
+        partitions = (names.size() + partitionSize - 1) / partitionSize;
+        final List<List<String>> partitionMatches = new ArrayList<List<String>>(partitions);
+        final CountDownLatch latch = new CountDownLatch(partitions - 1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        for (int i = 1; i < partitions; i++) {
+            final List<String> partition = names.subList(i * partitionSize, Math.min(names.size(), (i + 1) * partitionSize));
+            // the reader caches norms, so each partition gets its own one on top of the same memory index
+            final IndexSearcher partitionSearcher = memoryIndex.createSearcher();
+            readers.add(partitionSearcher.getIndexReader());
+            final List<String> partitionResult = new ArrayList<String>();
+            partitionMatches.add(partitionResult);
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        execute(partition, partitionSearcher, partitionResult);
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            };
+            try {
+                threadPool.executor(ThreadPool.Names.PERCOLATE_QUERIES).execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        }
+        execute(names.subList(0, partitionSize), searcher, matches);
+
+        // the partitions use the readers, so we wait for them even if interrupted
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        Throwable t = failure.get();
+        if (t != null) {
+            if (t instanceof ElasticSearchException) {
+                throw (ElasticSearchException) t;
+            }
+            throw new PercolatorException(index, "failed to percolate", t);
+        }
+        for (List<String> partitionResult : partitionMatches) {
+            matches.addAll(partitionResult);
+        }
+    }
+
+    private void execute(List<String> names, IndexSearcher searcher, List<String> matches) {
+        Lucene.ExistsCollector collector = new Lucene.ExistsCollector();
+        for (String name : names) {
+            Query query = queries.get(name);
+            if (query == null) {
+                // removed concurrently
+                continue;
+            }
+            collector.reset();
+            try {
+                searcher.search(query, collector);
+            } catch (IOException e) {
+                logger.warn("[" + name + "] failed to execute query", e);
+            }
+            if (collector.exists()) {
+                matches.add(name);
+            }
+        }
+    }
+
     private IndexService percolatorIndexServiceSafe() {
         IndexService indexService = indicesService.indexService(PercolatorService.INDEX_NAME);
         if (indexService == null) {
@@ -367,24 +531,22 @@ public class PercolatorExecutor extends AbstractIndexComponent {
         return indexService;
     }
 
+    /**
+     * Collects the names of the registered queries matching the query of the request.
+     */
     static class QueryCollector extends Collector {
         private final IndexFieldData uidFieldData;
-        private final IndexSearcher searcher;
-        private final IndexService percolatorIndex;
-        private final List<String> matches;
+        private final List<String> names;
         private final Map<String, Query> queries;
-        private final ESLogger logger;
-
-        private final Lucene.ExistsCollector collector = new Lucene.ExistsCollector();
+        @Nullable
+        private final Set<String> candidates;
 
         private BytesValues values;
 
-        QueryCollector(ESLogger logger, Map<String, Query> queries, IndexSearcher searcher, IndexService percolatorIndex, List<String> matches) {
-            this.logger = logger;
+        QueryCollector(Map<String, Query> queries, @Nullable Set<String> candidates, IndexService percolatorIndex, List<String> names) {
             this.queries = queries;
-            this.searcher = searcher;
-            this.percolatorIndex = percolatorIndex;
-            this.matches = matches;
+            this.candidates = candidates;
+            this.names = names;
             // TODO: when we move to a UID level mapping def on the index level, we can use that one, now, its per type, and we can't easily choose one
             this.uidFieldData = percolatorIndex.fieldData().getForField(new FieldMapper.Names(UidFieldMapper.NAME), new FieldDataType("string", "paged_bytes"));
         }
@@ -400,21 +562,15 @@ public class PercolatorExecutor extends AbstractIndexComponent {
                 return;
             }
             String id = Uid.idFromUid(uid).toUtf8();
-            Query query = queries.get(id);
-            if (query == null) {
-                // log???
+            if (candidates != null && !candidates.contains(id)) {
+                // the doc doesn't have any of the terms the query requires
                 return;
             }
-            // run the query
-            try {
-                collector.reset();
-                searcher.search(query, collector);
-                if (collector.exists()) {
-                    matches.add(id);
-                }
-            } catch (IOException e) {
-                logger.warn("[" + id + "] failed to execute query", e);
+            if (!queries.containsKey(id)) {
+                // log???
+                return;
             }
+            names.add(id);
         }
 
         @Override
@@ -0,0 +1,294 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.percolator;
+
+import org.apache.lucene.index.*;
+import org.apache.lucene.search.*;
+import org.apache.lucene.search.spans.SpanNearQuery;
+import org.apache.lucene.search.spans.SpanOrQuery;
+import org.apache.lucene.search.spans.SpanQuery;
+import org.apache.lucene.search.spans.SpanTermQuery;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.lucene.search.TermFilter;
+import org.elasticsearch.common.lucene.search.XFilteredQuery;
+import org.elasticsearch.common.lucene.search.function.FiltersFunctionScoreQuery;
+import org.elasticsearch.common.lucene.search.function.FunctionScoreQuery;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An inverted index from terms to the registered percolator queries that require them. For each query,
+ * a set of terms is extracted such that a document can only match the query if it contains at least one
+ * of them. Percolating a document then only needs to evaluate the queries registered under the terms of
+ * the document, plus the queries no terms could be extracted from (range queries, negations, ...).
+ * <p/>
+ * Reads are lock free, modifications are serialized.
+ */
+public class QueryTermsIndex {
+
+    private final ConcurrentMap<Term, Set<String>> queriesByTerm = ConcurrentCollections.newConcurrentMap();
+
+    private final ConcurrentMap<String, Set<Term>> termsByQuery = ConcurrentCollections.newConcurrentMap();
+
+    // queries no terms could be extracted from, they need to be evaluated for each doc
+    private final Set<String> unfilteredQueries = ConcurrentCollections.newConcurrentSet();
+
+    public synchronized void add(String name, Query query) {
+        remove(name);
+        Set<Term> terms = extractTerms(query);
+        if (terms == null) {
+            unfilteredQueries.add(name);
+            return;
+        }
+        termsByQuery.put(name, terms);
+        for (Term term : terms) {
+            Set<String> names = queriesByTerm.get(term);
+            if (names == null) {
+                names = ConcurrentCollections.newConcurrentSet();
+                queriesByTerm.put(term, names);
+            }
+            names.add(name);
+        }
+    }
+
+    public synchronized void remove(String name) {
+        unfilteredQueries.remove(name);
+        Set<Term> terms = termsByQuery.remove(name);
+        if (terms == null) {
+            return;
+        }
+        for (Term term : terms) {
+            Set<String> names = queriesByTerm.get(term);
+            if (names != null) {
+                names.remove(name);
+                if (names.isEmpty()) {
+                    queriesByTerm.remove(term);
+                }
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        queriesByTerm.clear();
+        termsByQuery.clear();
+        unfilteredQueries.clear();
+    }
+
+    /**
+     * The number of queries that are always evaluated, since no terms could be extracted from them.
+     */
+    public int unfilteredQueriesCount() {
+        return unfilteredQueries.size();
+    }
+
+    /**
+     * Returns the names of the queries that might match the document(s) indexed in the provided reader.
+     */
+    public Set<String> candidates(IndexReader reader) throws IOException {
+        Set<String> candidates = new HashSet<String>(unfilteredQueries);
+        if (queriesByTerm.isEmpty()) {
+            return candidates;
+        }
+        for (AtomicReaderContext context : reader.leaves()) {
+            Fields fields = context.reader().fields();
+            if (fields == null) {
+                continue;
+            }
+            TermsEnum termsEnum = null;
+            for (String field : fields) {
+                Terms terms = fields.terms(field);
+                if (terms == null) {
+                    continue;
+                }
+                termsEnum = terms.iterator(termsEnum);
+                for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+                    // only used for the lookup, no need to copy the bytes
+                    Set<String> names = queriesByTerm.get(new Term(field, term));
+                    if (names != null) {
+                        candidates.addAll(names);
+                    }
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Returns a set of terms such that a document matching the query contains at least one of them, or
+     * <tt>null</tt> if no such set can be extracted from the query.
+     */
+    public static Set<Term> extractTerms(Query query) {
+        if (query instanceof TermQuery) {
+            return Collections.singleton(((TermQuery) query).getTerm());
+        } else if (query instanceof BooleanQuery) {
+            return extractTerms((BooleanQuery) query);
+        } else if (query instanceof PhraseQuery) {
+            // all terms are required, we pick the one most likely to be rare
+            Term[] terms = ((PhraseQuery) query).getTerms();
+            if (terms.length == 0) {
+                return null;
+            }
+            Term best = terms[0];
+            for (Term term : terms) {
+                if (term.bytes().length > best.bytes().length) {
+                    best = term;
+                }
+            }
+            return Collections.singleton(best);
+        } else if (query instanceof MultiPhraseQuery) {
+            List<Term[]> termArrays = ((MultiPhraseQuery) query).getTermArrays();
+            if (termArrays.isEmpty()) {
+                return null;
+            }
+            return new HashSet<Term>(Arrays.asList(termArrays.get(0)));
+        } else if (query instanceof DisjunctionMaxQuery) {
+            Set<Term> terms = new HashSet<Term>();
+            for (Query disjunct : ((DisjunctionMaxQuery) query).getDisjuncts()) {
+                Set<Term> disjunctTerms = extractTerms(disjunct);
+                if (disjunctTerms == null) {
+                    return null;
+                }
+                terms.addAll(disjunctTerms);
+            }
+            return terms.isEmpty() ? null : terms;
+        } else if (query instanceof XFilteredQuery) {
+            // both the query and the filter are required
+            XFilteredQuery filteredQuery = (XFilteredQuery) query;
+            Set<Term> terms = extractTerms(filteredQuery.getQuery());
+            if (terms == null) {
+                terms = extractTerms(filteredQuery.getFilter());
+            }
+            return terms;
+        } else if (query instanceof FilteredQuery) {
+            FilteredQuery filteredQuery = (FilteredQuery) query;
+            Set<Term> terms = extractTerms(filteredQuery.getQuery());
+            if (terms == null) {
+                terms = extractTerms(filteredQuery.getFilter());
+            }
+            return terms;
+        } else if (query instanceof ConstantScoreQuery) {
+            ConstantScoreQuery constantScoreQuery = (ConstantScoreQuery) query;
+            if (constantScoreQuery.getQuery() != null) {
+                return extractTerms(constantScoreQuery.getQuery());
+            }
+            return extractTerms(constantScoreQuery.getFilter());
+        } else if (query instanceof FunctionScoreQuery) {
+            return extractTerms(((FunctionScoreQuery) query).getSubQuery());
+        } else if (query instanceof FiltersFunctionScoreQuery) {
+            return extractTerms(((FiltersFunctionScoreQuery) query).getSubQuery());
+        } else if (query instanceof SpanQuery) {
+            return extractTerms((SpanQuery) query);
+        }
+        return null;
+    }
+
+    private static Set<Term> extractTerms(BooleanQuery query) {
+        Set<Term> best = null;
+        boolean hasRequired = false;
+        Set<Term> optional = new HashSet<Term>();
+        boolean optionalExtractable = true;
+        for (BooleanClause clause : query.clauses()) {
+            if (clause.isProhibited()) {
+                continue;
+            }
+            Set<Term> terms = extractTerms(clause.getQuery());
+            if (clause.isRequired()) {
+                hasRequired = true;
+                // any required clause will do, pick the best one
+                if (terms != null && (best == null || better(terms, best))) {
+                    best = terms;
+                }
+            } else {
+                if (terms == null) {
+                    optionalExtractable = false;
+                } else {
+                    optional.addAll(terms);
+                }
+            }
+        }
+        if (hasRequired) {
+            return best;
+        }
+        // only optional clauses, at least one of them needs to match
+        if (!optionalExtractable || optional.isEmpty()) {
+            return null;
+        }
+        return optional;
+    }
+
+    private static Set<Term> extractTerms(SpanQuery query) {
+        if (query instanceof SpanTermQuery) {
+            return Collections.singleton(((SpanTermQuery) query).getTerm());
+        } else if (query instanceof SpanNearQuery) {
+            Set<Term> best = null;
+            for (SpanQuery clause : ((SpanNearQuery) query).getClauses()) {
+                Set<Term> terms = extractTerms(clause);
+                if (terms != null && (best == null || better(terms, best))) {
+                    best = terms;
+                }
+            }
+            return best;
+        } else if (query instanceof SpanOrQuery) {
+            Set<Term> terms = new HashSet<Term>();
+            for (SpanQuery clause : ((SpanOrQuery) query).getClauses()) {
+                Set<Term> clauseTerms = extractTerms(clause);
+                if (clauseTerms == null) {
+                    return null;
+                }
+                terms.addAll(clauseTerms);
+            }
+            return terms.isEmpty() ? null : terms;
+        }
+        return null;
+    }
+
+    private static Set<Term> extractTerms(Filter filter) {
+        if (filter instanceof TermFilter) {
+            return Collections.singleton(((TermFilter) filter).getTerm());
+        } else if (filter instanceof QueryWrapperFilter) {
+            return extractTerms(((QueryWrapperFilter) filter).getQuery());
+        }
+        return null;
+    }
+
+    /**
+     * Prefers the set whose shortest term is the longest, since longer terms tend to be rarer, and then
+     * the set with fewer terms.
+     */
+    private static boolean better(Set<Term> terms, Set<Term> other) {
+        int minLength = minLength(terms);
+        int otherMinLength = minLength(other);
+        if (minLength != otherMinLength) {
+            return minLength > otherMinLength;
+        }
+        return terms.size() < other.size();
+    }
+
+    private static int minLength(Set<Term> terms) {
+        int min = Integer.MAX_VALUE;
+        for (Term term : terms) {
+            min = Math.min(min, term.bytes().length);
+        }
+        return min;
+    }
+}
@@ -19,6 +19,7 @@
 
 package org.elasticsearch.index.search.stats;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -46,17 +47,23 @@ public class SearchStats implements Streamable, ToXContent {
         private long fetchTimeInMillis;
         private long fetchCurrent;
 
+        private long queryCacheHitCount;
+        private long queryCacheMissCount;
+
         Stats() {
 
         }
 
-        public Stats(long queryCount, long queryTimeInMillis, long queryCurrent, long fetchCount, long fetchTimeInMillis, long fetchCurrent) {
+        public Stats(long queryCount, long queryTimeInMillis, long queryCurrent, long fetchCount, long fetchTimeInMillis, long fetchCurrent,
+                     long queryCacheHitCount, long queryCacheMissCount) {
             this.queryCount = queryCount;
             this.queryTimeInMillis = queryTimeInMillis;
             this.queryCurrent = queryCurrent;
             this.fetchCount = fetchCount;
             this.fetchTimeInMillis = fetchTimeInMillis;
             this.fetchCurrent = fetchCurrent;
+            this.queryCacheHitCount = queryCacheHitCount;
+            this.queryCacheMissCount = queryCacheMissCount;
         }
 
         public void add(Stats stats) {
@@ -67,6 +74,9 @@ public class SearchStats implements Streamable, ToXContent {
             fetchCount += stats.fetchCount;
             fetchTimeInMillis += stats.fetchTimeInMillis;
             fetchCurrent += stats.fetchCurrent;
+
+            queryCacheHitCount += stats.queryCacheHitCount;
+            queryCacheMissCount += stats.queryCacheMissCount;
         }
 
         public long queryCount() {
@@ -125,6 +135,28 @@ public class SearchStats implements Streamable, ToXContent {
             return fetchCurrent;
         }
 
+        /**
+         * The number of query phases served from the query result cache.
+         */
+        public long queryCacheHitCount() {
+            return queryCacheHitCount;
+        }
+
+        public long getQueryCacheHitCount() {
+            return queryCacheHitCount;
+        }
+
+        /**
+         * The number of cacheable query phases that were not found in the query result cache.
+         */
+        public long queryCacheMissCount() {
+            return queryCacheMissCount;
+        }
+
+        public long getQueryCacheMissCount() {
+            return queryCacheMissCount;
+        }
+
 
         public static Stats readStats(StreamInput in) throws IOException {
             Stats stats = new Stats();
@@ -141,6 +173,11 @@ public class SearchStats implements Streamable, ToXContent {
             fetchCount = in.readVLong();
             fetchTimeInMillis = in.readVLong();
             fetchCurrent = in.readVLong();
+
+            if (in.getVersion().onOrAfter(Version.V_0_21_0_Beta1)) {
+                queryCacheHitCount = in.readVLong();
+                queryCacheMissCount = in.readVLong();
+            }
         }
 
         @Override
@@ -152,6 +189,11 @@ public class SearchStats implements Streamable, ToXContent {
             out.writeVLong(fetchCount);
             out.writeVLong(fetchTimeInMillis);
             out.writeVLong(fetchCurrent);
+
+            if (out.getVersion().onOrAfter(Version.V_0_21_0_Beta1)) {
+                out.writeVLong(queryCacheHitCount);
+                out.writeVLong(queryCacheMissCount);
+            }
         }
 
         @Override
@@ -166,6 +208,9 @@ public class SearchStats implements Streamable, ToXContent {
             builder.field(Fields.FETCH_TIME_IN_MILLIS, fetchTimeInMillis);
             builder.field(Fields.FETCH_CURRENT, fetchCurrent);
 
+            builder.field(Fields.QUERY_CACHE_HIT_TOTAL, queryCacheHitCount);
+            builder.field(Fields.QUERY_CACHE_MISS_TOTAL, queryCacheMissCount);
+
             return builder;
         }
     }
@@ -245,6 +290,8 @@ public class SearchStats implements Streamable, ToXContent {
         static final XContentBuilderString FETCH_TIME = new XContentBuilderString("fetch_time");
         static final XContentBuilderString FETCH_TIME_IN_MILLIS = new XContentBuilderString("fetch_time_in_millis");
         static final XContentBuilderString FETCH_CURRENT = new XContentBuilderString("fetch_current");
+        static final XContentBuilderString QUERY_CACHE_HIT_TOTAL = new XContentBuilderString("query_cache_hit_total");
+        static final XContentBuilderString QUERY_CACHE_MISS_TOTAL = new XContentBuilderString("query_cache_miss_total");
     }
 
     public static SearchStats readSearchStats(StreamInput in) throws IOException {
@@ -29,6 +29,7 @@ import org.elasticsearch.index.search.slowlog.ShardSlowLogSearchService;
 import org.elasticsearch.index.settings.IndexSettings;
 import org.elasticsearch.index.shard.AbstractIndexShardComponent;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.search.internal.ContextIndexSearcher;
 import org.elasticsearch.search.internal.SearchContext;
 
 import java.util.HashMap;
@@ -45,10 +46,20 @@ public class ShardSearchService extends AbstractIndexShardComponent {
 
     private volatile Map<String, StatsHolder> groupsStats = ImmutableMap.of();
 
+    private final int concurrency;
+
     @Inject
     public ShardSearchService(ShardId shardId, @IndexSettings Settings indexSettings, ShardSlowLogSearchService slowLogSearchService) {
         super(shardId, indexSettings);
         this.slowLogSearchService = slowLogSearchService;
+        this.concurrency = Math.max(1, indexSettings.getAsInt(ContextIndexSearcher.INDEX_SEARCH_CONCURRENCY, 1));
+    }
+
+    /**
+     * The configured search concurrency of the shard, see {@link ContextIndexSearcher#INDEX_SEARCH_CONCURRENCY}.
+     */
+    public int concurrency() {
+        return this.concurrency;
     }
 
     /**
@@ -109,6 +120,24 @@ public class ShardSearchService extends AbstractIndexShardComponent {
         slowLogSearchService.onQueryPhase(searchContext, tookInNanos);
     }
 
+    public void onQueryCacheHit(SearchContext searchContext) {
+        totalStats.queryCacheHits.inc();
+        if (searchContext.groupStats() != null) {
+            for (int i = 0; i < searchContext.groupStats().size(); i++) {
+                groupStats(searchContext.groupStats().get(i)).queryCacheHits.inc();
+            }
+        }
+    }
+
+    public void onQueryCacheMiss(SearchContext searchContext) {
+        totalStats.queryCacheMisses.inc();
+        if (searchContext.groupStats() != null) {
+            for (int i = 0; i < searchContext.groupStats().size(); i++) {
+                groupStats(searchContext.groupStats().get(i)).queryCacheMisses.inc();
+            }
+        }
+    }
+
     public void onPreFetchPhase(SearchContext searchContext) {
         totalStats.fetchCurrent.inc();
         if (searchContext.groupStats() != null) {
@@ -176,11 +205,14 @@ public class ShardSearchService extends AbstractIndexShardComponent {
         public final MeanMetric fetchMetric = new MeanMetric();
         public final CounterMetric queryCurrent = new CounterMetric();
         public final CounterMetric fetchCurrent = new CounterMetric();
+        public final CounterMetric queryCacheHits = new CounterMetric();
+        public final CounterMetric queryCacheMisses = new CounterMetric();
 
         public SearchStats.Stats stats() {
             return new SearchStats.Stats(
                     queryMetric.count(), TimeUnit.NANOSECONDS.toMillis(queryMetric.sum()), queryCurrent.count(),
-                    fetchMetric.count(), TimeUnit.NANOSECONDS.toMillis(fetchMetric.sum()), fetchCurrent.count());
+                    fetchMetric.count(), TimeUnit.NANOSECONDS.toMillis(fetchMetric.sum()), fetchCurrent.count(),
+                    queryCacheHits.count(), queryCacheMisses.count());
         }
 
         public long totalCurrent() {
@@ -190,6 +222,8 @@ public class ShardSearchService extends AbstractIndexShardComponent {
         public void clear() {
             queryMetric.clear();
             fetchMetric.clear();
+            queryCacheHits.clear();
+            queryCacheMisses.clear();
         }
     }
 }
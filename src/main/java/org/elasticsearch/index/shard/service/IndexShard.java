@@ -43,6 +43,8 @@ import org.elasticsearch.index.store.StoreStats;
 import org.elasticsearch.index.warmer.ShardIndexWarmerService;
 import org.elasticsearch.index.warmer.WarmerStats;
 
+import java.util.List;
+
 /**
  *
  */
@@ -96,6 +98,8 @@ public interface IndexShard extends IndexShardComponent {
 
     Engine.GetResult get(Engine.Get get) throws ElasticSearchException;
 
+    Engine.MultiGetResult multiGet(List<Engine.Get> gets) throws ElasticSearchException;
+
     void refresh(Engine.Refresh refresh) throws ElasticSearchException;
 
     void flush(Engine.Flush flush) throws ElasticSearchException;
@@ -72,6 +72,7 @@ import org.elasticsearch.threadpool.ThreadPool;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.nio.channels.ClosedByInterruptException;
+import java.util.List;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -393,6 +394,12 @@ public class InternalIndexShard extends AbstractIndexShardComponent implements I
         return engine.get(get);
     }
 
+    @Override
+    public Engine.MultiGetResult multiGet(List<Engine.Get> gets) throws ElasticSearchException {
+        readAllowed();
+        return engine.multiGet(gets);
+    }
+
     @Override
     public void refresh(Engine.Refresh refresh) throws ElasticSearchException {
         verifyStarted();
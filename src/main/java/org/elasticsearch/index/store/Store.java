@@ -24,6 +24,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import jsr166y.ThreadLocalRandom;
 import org.apache.lucene.store.*;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.collect.MapBuilder;
 import org.elasticsearch.common.compress.Compressor;
@@ -112,6 +113,26 @@ public class Store extends AbstractIndexShardComponent {
         return md;
     }
 
+    /**
+     * The file backing the provided store file, or <tt>null</tt> if the file does not exist or is not
+     * stored on the file system.
+     */
+    @Nullable
+    public File file(String name) {
+        StoreFileMetaData md = filesMetadata.get(name);
+        if (md == null || md.directory() == null) {
+            return null;
+        }
+        Directory directory = md.directory();
+        if (directory instanceof RateLimitedFSDirectory) {
+            directory = ((RateLimitedFSDirectory) directory).wrappedDirectory();
+        }
+        if (directory instanceof FSDirectory) {
+            return new File(((FSDirectory) directory).getDirectory(), name);
+        }
+        return null;
+    }
+
     public void deleteContent() throws IOException {
         String[] files = directory.listAll();
         IOException lastException = null;
@@ -94,7 +94,11 @@ public interface Translog extends IndexShardComponent {
      */
     Location add(Operation operation) throws TranslogException;
 
-    byte[] read(Location location);
+    /**
+     * Reads the operation at the provided location (including its size header), <tt>null</tt> if it can't
+     * be read anymore. The returned bytes might be a view on the underlying translog file.
+     */
+    BytesReference read(Location location);
 
     /**
      * Snapshots the current transaction log allowing to safely iterate over the snapshot.
@@ -1,5 +1,7 @@
 package org.elasticsearch.index.translog.fs;
 
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.translog.Translog;
 import org.elasticsearch.index.translog.TranslogException;
@@ -17,6 +19,9 @@ public class BufferingFsTranslogFile implements FsTranslogFile {
     private final ShardId shardId;
     private final RafReference raf;
 
+    // null if reads should not use memory mapping
+    private final MappedTranslogChunks mappedChunks;
+
     private final ReadWriteLock rwl = new ReentrantReadWriteLock();
 
     private volatile int operationCounter;
@@ -26,13 +31,22 @@ public class BufferingFsTranslogFile implements FsTranslogFile {
 
     private volatile long lastSyncPosition = 0;
 
+    // the position up to which the operations are known to be durable, guarded by syncMutex for writes
+    private final Object syncMutex = new Object();
+    private volatile long lastDurablePosition = 0;
+
     private byte[] buffer;
     private int bufferCount;
 
     public BufferingFsTranslogFile(ShardId shardId, long id, RafReference raf, int bufferSize) throws IOException {
+        this(shardId, id, raf, bufferSize, false);
+    }
+
+    public BufferingFsTranslogFile(ShardId shardId, long id, RafReference raf, int bufferSize, boolean mmap) throws IOException {
         this.shardId = shardId;
         this.id = id;
         this.raf = raf;
+        this.mappedChunks = mmap ? new MappedTranslogChunks(raf) : null;
         this.buffer = new byte[bufferSize];
         raf.raf().setLength(0);
     }
@@ -87,20 +101,27 @@ public class BufferingFsTranslogFile implements FsTranslogFile {
     }
 
     @Override
-    public byte[] read(Translog.Location location) throws IOException {
+    public BytesReference read(Translog.Location location) throws IOException {
         rwl.readLock().lock();
         try {
             if (location.translogLocation >= lastWrittenPosition) {
+                // the buffer is reused, so we need to copy
                 byte[] data = new byte[location.size];
                 System.arraycopy(buffer, (int) (location.translogLocation - lastWrittenPosition), data, 0, location.size);
-                return data;
+                return new BytesArray(data);
             }
         } finally {
             rwl.readLock().unlock();
         }
+        if (mappedChunks != null) {
+            BytesReference bytes = mappedChunks.read(location.translogLocation, location.size, lastWrittenPosition);
+            if (bytes != null) {
+                return bytes;
+            }
+        }
         ByteBuffer buffer = ByteBuffer.allocate(location.size);
         raf.channel().read(buffer, location.translogLocation);
-        return buffer.array();
+        return new BytesArray(buffer.array());
     }
 
     @Override
@@ -111,7 +132,7 @@ public class BufferingFsTranslogFile implements FsTranslogFile {
             if (!raf.increaseRefCount()) {
                 return null;
             }
-            return new FsChannelSnapshot(this.id, raf, lastWrittenPosition, operationCounter);
+            return new FsChannelSnapshot(this.id, raf, lastWrittenPosition, operationCounter, mappedChunks != null);
         } catch (IOException e) {
             throw new TranslogException(shardId, "failed to flush", e);
         } finally {
@@ -145,6 +166,32 @@ public class BufferingFsTranslogFile implements FsTranslogFile {
         }
     }
 
+    @Override
+    public void syncUpTo(long position) throws IOException {
+        if (lastDurablePosition >= position) {
+            return;
+        }
+        synchronized (syncMutex) {
+            // while we waited, another thread might have synced past our position
+            if (lastDurablePosition >= position) {
+                return;
+            }
+            // flush and sync everything written so far, so the operations that were added while the
+            // previous sync was running are made durable by this single fsync
+            long last;
+            rwl.writeLock().lock();
+            try {
+                flushBuffer();
+                last = lastPosition;
+            } finally {
+                rwl.writeLock().unlock();
+            }
+            raf.channel().force(false);
+            lastDurablePosition = last;
+            lastSyncPosition = last;
+        }
+    }
+
     @Override
     public void close(boolean delete) {
         if (!delete) {
@@ -158,6 +205,9 @@ public class BufferingFsTranslogFile implements FsTranslogFile {
                 rwl.writeLock().unlock();
             }
         }
+        if (mappedChunks != null) {
+            mappedChunks.clear();
+        }
         raf.decreaseRefCount(delete);
     }
 
@@ -21,6 +21,7 @@ package org.elasticsearch.index.translog.fs;
 
 import org.elasticsearch.ElasticSearchException;
 import org.elasticsearch.common.io.FileChannelInputStream;
+import org.elasticsearch.common.io.stream.ByteBufferStreamInput;
 import org.elasticsearch.common.io.stream.BytesStreamInput;
 import org.elasticsearch.index.translog.Translog;
 import org.elasticsearch.index.translog.TranslogStreams;
@@ -29,6 +30,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 
 /**
@@ -52,12 +54,27 @@ public class FsChannelSnapshot implements Translog.Snapshot {
 
     private ByteBuffer cacheBuffer;
 
+    private final boolean mmap;
+
+    // the snapshot length of the file, mapped on first read when mmap is enabled
+    private MappedByteBuffer mappedBuffer;
+
     public FsChannelSnapshot(long id, RafReference raf, long length, int totalOperations) throws FileNotFoundException {
+        this(id, raf, length, totalOperations, false);
+    }
+
+    /**
+     * @param mmap if the snapshot should memory map the file and read the operations as views on it, instead
+     *             of copying each one from the channel
+     */
+    public FsChannelSnapshot(long id, RafReference raf, long length, int totalOperations, boolean mmap) throws FileNotFoundException {
         this.id = id;
         this.raf = raf;
         this.channel = raf.raf().getChannel();
         this.length = length;
         this.totalOperations = totalOperations;
+        // we can only map up to 2gb, fall back to reading through the channel beyond that
+        this.mmap = mmap && length <= Integer.MAX_VALUE;
     }
 
     @Override
@@ -96,6 +113,9 @@ public class FsChannelSnapshot implements Translog.Snapshot {
             if (position > length) {
                 return false;
             }
+            if (mmap) {
+                return mappedNext();
+            }
             if (cacheBuffer == null) {
                 cacheBuffer = ByteBuffer.allocate(1024);
             }
@@ -127,6 +147,30 @@ public class FsChannelSnapshot implements Translog.Snapshot {
         }
     }
 
+    private boolean mappedNext() throws IOException {
+        if (mappedBuffer == null) {
+            if (length == 0) {
+                return false;
+            }
+            mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+        if (position + 4 > length) {
+            return false;
+        }
+        int opSize = mappedBuffer.getInt(position);
+        if ((position + 4 + opSize) > length) {
+            return false;
+        }
+        position += 4;
+        ByteBuffer operation = mappedBuffer.duplicate();
+        operation.position(position);
+        operation.limit(position + opSize);
+        position += opSize;
+        // the sources of the operations are views on the mapped file, the mapping stays valid after release
+        lastOperationRead = TranslogStreams.readTranslogOperation(new ByteBufferStreamInput(operation.slice()));
+        return true;
+    }
+
     @Override
     public Translog.Operation next() {
         return this.lastOperationRead;
@@ -139,6 +183,7 @@ public class FsChannelSnapshot implements Translog.Snapshot {
 
     @Override
     public boolean release() throws ElasticSearchException {
+        mappedBuffer = null;
         raf.decreaseRefCount(true);
         return true;
     }
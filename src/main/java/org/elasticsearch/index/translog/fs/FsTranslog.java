@@ -21,10 +21,12 @@ package org.elasticsearch.index.translog.fs;
 
 import jsr166y.ThreadLocalRandom;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.io.FileSystemUtils;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.CachedStreamOutput;
+import org.elasticsearch.common.os.OsUtils;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.env.NodeEnvironment;
@@ -51,7 +53,8 @@ public class FsTranslog extends AbstractIndexShardComponent implements Translog
         IndexMetaData.addDynamicSettings(
                 "index.translog.fs.type",
                 "index.translog.fs.buffer_size",
-                "index.translog.fs.transient_buffer_size"
+                "index.translog.fs.transient_buffer_size",
+                "index.translog.fs.group_commit"
         );
     }
 
@@ -75,6 +78,15 @@ public class FsTranslog extends AbstractIndexShardComponent implements Translog
                 logger.info("updating type from [{}] to [{}]", FsTranslog.this.type, type);
                 FsTranslog.this.type = type;
             }
+
+            boolean groupCommit = settings.getAsBoolean("index.translog.fs.group_commit", FsTranslog.this.groupCommit);
+            if (groupCommit != FsTranslog.this.groupCommit) {
+                logger.info("updating group_commit from [{}] to [{}]", FsTranslog.this.groupCommit, groupCommit);
+                FsTranslog.this.groupCommit = groupCommit;
+                if (syncOnEachOperation) {
+                    syncOnEachOperation(true);
+                }
+            }
         }
     }
 
@@ -88,7 +100,13 @@ public class FsTranslog extends AbstractIndexShardComponent implements Translog
 
     private FsTranslogFile.Type type;
 
-    private boolean syncOnEachOperation = false;
+    private volatile boolean syncOnEachOperation = false;
+
+    // when syncing on each operation, have concurrent operations wait on a shared fsync instead of one each
+    private volatile boolean groupCommit;
+
+    // memory map the translog files for realtime get and snapshot reads, off on windows since mapped files can't be deleted
+    private final boolean mmap;
 
     private int bufferSize;
     private int transientBufferSize;
@@ -109,6 +127,8 @@ public class FsTranslog extends AbstractIndexShardComponent implements Translog
         this.type = FsTranslogFile.Type.fromString(componentSettings.get("type", FsTranslogFile.Type.BUFFERED.name()));
         this.bufferSize = (int) componentSettings.getAsBytesSize("buffer_size", ByteSizeValue.parseBytesSizeValue("64k")).bytes();
         this.transientBufferSize = (int) componentSettings.getAsBytesSize("transient_buffer_size", ByteSizeValue.parseBytesSizeValue("8k")).bytes();
+        this.groupCommit = componentSettings.getAsBoolean("group_commit", false);
+        this.mmap = componentSettings.getAsBoolean("mmap", !OsUtils.WINDOWS);
 
         indexSettingsService.addListener(applySettings);
     }
@@ -120,6 +140,10 @@ public class FsTranslog extends AbstractIndexShardComponent implements Translog
         FileSystemUtils.mkdirs(location);
 
         this.type = FsTranslogFile.Type.fromString(componentSettings.get("type", FsTranslogFile.Type.BUFFERED.name()));
+        this.bufferSize = (int) componentSettings.getAsBytesSize("buffer_size", ByteSizeValue.parseBytesSizeValue("64k")).bytes();
+        this.transientBufferSize = (int) componentSettings.getAsBytesSize("transient_buffer_size", ByteSizeValue.parseBytesSizeValue("8k")).bytes();
+        this.groupCommit = componentSettings.getAsBoolean("group_commit", false);
+        this.mmap = componentSettings.getAsBoolean("mmap", !OsUtils.WINDOWS);
     }
 
     @Override
@@ -222,7 +246,7 @@ public class FsTranslog extends AbstractIndexShardComponent implements Translog
                 }
             }
             try {
-                newFile = type.create(shardId, id, new RafReference(new File(location, "translog-" + id)), bufferSize);
+                newFile = type.create(shardId, id, new RafReference(new File(location, "translog-" + id)), bufferSize, mmap, groupCommit);
             } catch (IOException e) {
                 throw new TranslogException(shardId, "failed to create new translog file", e);
             }
@@ -257,7 +281,7 @@ public class FsTranslog extends AbstractIndexShardComponent implements Translog
                     location = file;
                 }
             }
-            this.trans = type.create(shardId, id, new RafReference(new File(location, "translog-" + id)), transientBufferSize);
+            this.trans = type.create(shardId, id, new RafReference(new File(location, "translog-" + id)), transientBufferSize, mmap, groupCommit);
         } catch (IOException e) {
             throw new TranslogException(shardId, "failed to create new translog file", e);
         } finally {
@@ -294,7 +318,7 @@ public class FsTranslog extends AbstractIndexShardComponent implements Translog
         old.close(true);
     }
 
-    public byte[] read(Location location) {
+    public BytesReference read(Location location) {
         rwl.readLock().lock();
         try {
             FsTranslogFile trans = this.trans;
@@ -333,13 +357,21 @@ public class FsTranslog extends AbstractIndexShardComponent implements Translog
             out.writeInt(size - 4);
 
             Location location = current.add(out.bytes().array(), out.bytes().arrayOffset(), size);
-            if (syncOnEachOperation) {
+            boolean groupCommit = syncOnEachOperation && this.groupCommit;
+            if (groupCommit) {
+                // we hold the read lock, so the file can't be rolled while we wait for the shared fsync
+                current.syncUpTo(location.translogLocation + location.size);
+            } else if (syncOnEachOperation) {
                 current.sync();
             }
             FsTranslogFile trans = this.trans;
             if (trans != null) {
                 try {
                     location = trans.add(out.bytes().array(), out.bytes().arrayOffset(), size);
+                    if (groupCommit) {
+                        // the transient translog becomes the current one after the commit, it needs to be durable as well
+                        trans.syncUpTo(location.translogLocation + location.size);
+                    }
                 } catch (ClosedChannelException e) {
                     // ignore
                 }
@@ -392,7 +424,8 @@ public class FsTranslog extends AbstractIndexShardComponent implements Translog
     public void syncOnEachOperation(boolean syncOnEachOperation) {
         this.syncOnEachOperation = syncOnEachOperation;
         if (syncOnEachOperation) {
-            type = FsTranslogFile.Type.SIMPLE;
+            // with group commit, writes are still coalesced in the buffer, and flushed by the shared fsync
+            type = groupCommit ? FsTranslogFile.Type.BUFFERED : FsTranslogFile.Type.SIMPLE;
         } else {
             type = FsTranslogFile.Type.BUFFERED;
         }
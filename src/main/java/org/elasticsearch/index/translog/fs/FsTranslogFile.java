@@ -20,6 +20,7 @@
 package org.elasticsearch.index.translog.fs;
 
 import org.elasticsearch.ElasticSearchIllegalArgumentException;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.translog.Translog;
 import org.elasticsearch.index.translog.TranslogException;
@@ -32,18 +33,22 @@ public interface FsTranslogFile {
 
         SIMPLE() {
             @Override
-            public FsTranslogFile create(ShardId shardId, long id, RafReference raf, int bufferSize) throws IOException {
-                return new SimpleFsTranslogFile(shardId, id, raf);
+            public FsTranslogFile create(ShardId shardId, long id, RafReference raf, int bufferSize, boolean mmap, boolean groupCommit) throws IOException {
+                return new SimpleFsTranslogFile(shardId, id, raf, mmap, groupCommit);
             }
         },
         BUFFERED() {
             @Override
-            public FsTranslogFile create(ShardId shardId, long id, RafReference raf, int bufferSize) throws IOException {
-                return new BufferingFsTranslogFile(shardId, id, raf, bufferSize);
+            public FsTranslogFile create(ShardId shardId, long id, RafReference raf, int bufferSize, boolean mmap, boolean groupCommit) throws IOException {
+                return new BufferingFsTranslogFile(shardId, id, raf, bufferSize, mmap);
             }
         };
 
-        public abstract FsTranslogFile create(ShardId shardId, long id, RafReference raf, int bufferSize) throws IOException;
+        /**
+         * @param mmap        if the written parts of the file should be memory mapped to read from them
+         * @param groupCommit if operations are made durable with {@link FsTranslogFile#syncUpTo(long)}
+         */
+        public abstract FsTranslogFile create(ShardId shardId, long id, RafReference raf, int bufferSize, boolean mmap, boolean groupCommit) throws IOException;
 
         public static Type fromString(String type) throws ElasticSearchIllegalArgumentException {
             if (SIMPLE.name().equalsIgnoreCase(type)) {
@@ -63,7 +68,7 @@ public interface FsTranslogFile {
 
     Translog.Location add(byte[] data, int from, int size) throws IOException;
 
-    byte[] read(Translog.Location location) throws IOException;
+    BytesReference read(Translog.Location location) throws IOException;
 
     void close(boolean delete) throws TranslogException;
 
@@ -73,5 +78,11 @@ public interface FsTranslogFile {
 
     void sync();
 
+    /**
+     * Makes sure all the operations written up to (and excluding) the provided position are durable,
+     * blocking until they are. Concurrent callers are covered by a single fsync where possible.
+     */
+    void syncUpTo(long position) throws IOException;
+
     boolean syncNeeded();
 }
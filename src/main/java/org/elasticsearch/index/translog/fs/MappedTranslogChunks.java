@@ -0,0 +1,104 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.translog.fs;
+
+import org.elasticsearch.common.bytes.ByteBufferBytesReference;
+import org.elasticsearch.common.bytes.BytesReference;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Memory maps the finished (fully written) fixed size chunks of a translog file that is still being
+ * appended to, so operations can be read as views on the mapped file without copying them. Each chunk
+ * is mapped once, when first read from. Operations crossing a chunk boundary, or within the chunk that
+ * is still being written, are not handled and should be read through the channel.
+ * <p/>
+ * The mappings are released by the GC, once there are no more views referencing them.
+ */
+public class MappedTranslogChunks {
+
+    public static final int DEFAULT_CHUNK_SHIFT = 22; // 4mb
+
+    private static final MappedByteBuffer[] EMPTY = new MappedByteBuffer[0];
+
+    private final RafReference raf;
+
+    private final int chunkShift;
+
+    private volatile MappedByteBuffer[] chunks = EMPTY;
+
+    public MappedTranslogChunks(RafReference raf) {
+        this(raf, DEFAULT_CHUNK_SHIFT);
+    }
+
+    public MappedTranslogChunks(RafReference raf, int chunkShift) {
+        this.raf = raf;
+        this.chunkShift = chunkShift;
+    }
+
+    /**
+     * Returns a view on the <tt>size</tt> bytes at <tt>position</tt>, or <tt>null</tt> if they are not
+     * within a single chunk that has been fully written (<tt>writtenLength</tt> being the number of bytes
+     * written to the channel so far).
+     */
+    public BytesReference read(long position, int size, long writtenLength) throws IOException {
+        int chunk = (int) (position >>> chunkShift);
+        if (((position + size - 1) >>> chunkShift) != chunk) {
+            return null;
+        }
+        long chunkStart = ((long) chunk) << chunkShift;
+        if (chunkStart + (1 << chunkShift) > writtenLength) {
+            return null;
+        }
+        MappedByteBuffer[] chunks = this.chunks;
+        MappedByteBuffer buffer = chunk < chunks.length ? chunks[chunk] : null;
+        if (buffer == null) {
+            buffer = map(chunk);
+        }
+        ByteBuffer view = buffer.duplicate();
+        view.position((int) (position - chunkStart));
+        view.limit((int) (position - chunkStart) + size);
+        return new ByteBufferBytesReference(view.slice());
+    }
+
+    private synchronized MappedByteBuffer map(int chunk) throws IOException {
+        MappedByteBuffer[] chunks = this.chunks;
+        if (chunk < chunks.length && chunks[chunk] != null) {
+            return chunks[chunk];
+        }
+        MappedByteBuffer buffer = raf.channel().map(FileChannel.MapMode.READ_ONLY, ((long) chunk) << chunkShift, 1 << chunkShift);
+        // copy on write, so reads don't need to synchronize
+        MappedByteBuffer[] newChunks = new MappedByteBuffer[Math.max(chunks.length, chunk + 1)];
+        System.arraycopy(chunks, 0, newChunks, 0, chunks.length);
+        newChunks[chunk] = buffer;
+        this.chunks = newChunks;
+        return buffer;
+    }
+
+    /**
+     * Drops the references to the mapped chunks, they are unmapped once GC'ed.
+     */
+    public synchronized void clear() {
+        this.chunks = EMPTY;
+    }
+}
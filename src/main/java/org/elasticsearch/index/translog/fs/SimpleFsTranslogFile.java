@@ -19,12 +19,16 @@
 
 package org.elasticsearch.index.translog.fs;
 
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.translog.Translog;
 import org.elasticsearch.index.translog.TranslogException;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
+import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -34,17 +38,42 @@ public class SimpleFsTranslogFile implements FsTranslogFile {
     private final ShardId shardId;
     private final RafReference raf;
 
+    // null if reads should not use memory mapping
+    private final MappedTranslogChunks mappedChunks;
+
     private final AtomicInteger operationCounter = new AtomicInteger();
 
     private final AtomicLong lastPosition = new AtomicLong(0);
     private final AtomicLong lastWrittenPosition = new AtomicLong(0);
 
+    // with group commit, concurrent writes can finish out of order, so lastWrittenPosition is the end of the prefix
+    // of the file that is fully written, writes that finished past it are kept in pendingWrites (start -> end) until
+    // it catches up. Without it, writes are not serialized and lastWrittenPosition only counts the written bytes
+    private final boolean groupCommit;
+    private final Object writtenMutex = new Object();
+    private final TreeMap<Long, Long> pendingWrites = new TreeMap<Long, Long>();
+    // a write that failed leaves a hole, so the written prefix can't move past it anymore, guarded by writtenMutex
+    private boolean writeFailed;
+
     private volatile long lastSyncPosition = 0;
 
+    // the position up to which the operations are known to be durable, guarded by syncMutex for writes
+    private final Object syncMutex = new Object();
+    private volatile long lastDurablePosition = 0;
+
     public SimpleFsTranslogFile(ShardId shardId, long id, RafReference raf) throws IOException {
+        this(shardId, id, raf, false, false);
+    }
+
+    /**
+     * @param groupCommit if {@link #syncUpTo(long)} is used for group commit, which tracks the written prefix of the file
+     */
+    public SimpleFsTranslogFile(ShardId shardId, long id, RafReference raf, boolean mmap, boolean groupCommit) throws IOException {
         this.shardId = shardId;
         this.id = id;
         this.raf = raf;
+        this.groupCommit = groupCommit;
+        this.mappedChunks = mmap ? new MappedTranslogChunks(raf) : null;
         raf.raf().setLength(0);
     }
 
@@ -62,20 +91,89 @@ public class SimpleFsTranslogFile implements FsTranslogFile {
 
     public Translog.Location add(byte[] data, int from, int size) throws IOException {
         long position = lastPosition.getAndAdd(size);
-        raf.channel().write(ByteBuffer.wrap(data, from, size), position);
-        lastWrittenPosition.getAndAdd(size);
+        if (!groupCommit) {
+            raf.channel().write(ByteBuffer.wrap(data, from, size), position);
+            lastWrittenPosition.getAndAdd(size);
+        } else {
+            boolean written = false;
+            try {
+                raf.channel().write(ByteBuffer.wrap(data, from, size), position);
+                written = true;
+            } finally {
+                if (written) {
+                    onWritten(position, position + size);
+                } else {
+                    onWriteFailed();
+                }
+            }
+        }
         operationCounter.incrementAndGet();
         return new Translog.Location(id, position, size);
     }
 
-    public byte[] read(Translog.Location location) throws IOException {
+    private void onWritten(long start, long end) throws IOException {
+        synchronized (writtenMutex) {
+            if (writeFailed) {
+                throw new IOException("translog file [" + id + "] failed an earlier write");
+            }
+            if (start != lastWrittenPosition.get()) {
+                pendingWrites.put(start, end);
+                return;
+            }
+            Long next;
+            while ((next = pendingWrites.remove(end)) != null) {
+                end = next;
+            }
+            lastWrittenPosition.set(end);
+            writtenMutex.notifyAll();
+        }
+    }
+
+    private void onWriteFailed() {
+        synchronized (writtenMutex) {
+            writeFailed = true;
+            pendingWrites.clear();
+            writtenMutex.notifyAll();
+        }
+    }
+
+    /**
+     * Waits for all the writes up to the provided position to finish, and returns the end of the written prefix.
+     */
+    private long awaitWritten(long position) throws IOException {
+        synchronized (writtenMutex) {
+            while (lastWrittenPosition.get() < position) {
+                if (writeFailed) {
+                    throw new IOException("translog file [" + id + "] failed a write before position [" + position + "], it can't be made durable");
+                }
+                try {
+                    writtenMutex.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while waiting for translog writes to finish");
+                }
+            }
+            return lastWrittenPosition.get();
+        }
+    }
+
+    public BytesReference read(Translog.Location location) throws IOException {
+        if (mappedChunks != null) {
+            BytesReference bytes = mappedChunks.read(location.translogLocation, location.size, lastWrittenPosition.get());
+            if (bytes != null) {
+                return bytes;
+            }
+        }
         ByteBuffer buffer = ByteBuffer.allocate(location.size);
         raf.channel().read(buffer, location.translogLocation);
-        return buffer.array();
+        return new BytesArray(buffer.array());
     }
 
     public void close(boolean delete) {
         sync();
+        if (mappedChunks != null) {
+            mappedChunks.clear();
+        }
         raf.decreaseRefCount(delete);
     }
 
@@ -87,7 +185,7 @@ public class SimpleFsTranslogFile implements FsTranslogFile {
             if (!raf.increaseRefCount()) {
                 return null;
             }
-            return new FsChannelSnapshot(this.id, raf, lastWrittenPosition.get(), operationCounter.get());
+            return new FsChannelSnapshot(this.id, raf, lastWrittenPosition.get(), operationCounter.get(), mappedChunks != null);
         } catch (Exception e) {
             throw new TranslogException(shardId, "Failed to snapshot", e);
         }
@@ -112,6 +210,29 @@ public class SimpleFsTranslogFile implements FsTranslogFile {
         }
     }
 
+    @Override
+    public void syncUpTo(long position) throws IOException {
+        if (!groupCommit) {
+            // the written prefix is not tracked, the caller's own write is done, so a plain fsync covers it
+            raf.channel().force(false);
+            return;
+        }
+        if (lastDurablePosition >= position) {
+            return;
+        }
+        synchronized (syncMutex) {
+            if (lastDurablePosition >= position) {
+                return;
+            }
+            // writes of earlier operations might still be in flight, only what was fully written before the
+            // fsync is durable, which also covers the operations that finished while the previous sync ran
+            long last = awaitWritten(position);
+            raf.channel().force(false);
+            lastDurablePosition = last;
+            lastSyncPosition = last;
+        }
+    }
+
     @Override
     public void reuse(FsTranslogFile other) {
         // nothing to do there
@@ -19,6 +19,7 @@
 
 package org.elasticsearch.indices;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
@@ -26,6 +27,7 @@ import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentBuilderString;
 import org.elasticsearch.index.cache.CacheStats;
+import org.elasticsearch.index.fielddata.FieldDataStats;
 import org.elasticsearch.index.flush.FlushStats;
 import org.elasticsearch.index.get.GetStats;
 import org.elasticsearch.index.indexing.IndexingStats;
@@ -57,6 +59,8 @@ public class NodeIndicesStats implements Streamable, Serializable, ToXContent {
 
     private CacheStats cacheStats;
 
+    private FieldDataStats fieldDataStats;
+
     private MergeStats mergeStats;
 
     private RefreshStats refreshStats;
@@ -66,13 +70,14 @@ public class NodeIndicesStats implements Streamable, Serializable, ToXContent {
     NodeIndicesStats() {
     }
 
-    public NodeIndicesStats(StoreStats storeStats, DocsStats docsStats, IndexingStats indexingStats, GetStats getStats, SearchStats searchStats, CacheStats cacheStats, MergeStats mergeStats, RefreshStats refreshStats, FlushStats flushStats) {
+    public NodeIndicesStats(StoreStats storeStats, DocsStats docsStats, IndexingStats indexingStats, GetStats getStats, SearchStats searchStats, CacheStats cacheStats, FieldDataStats fieldDataStats, MergeStats mergeStats, RefreshStats refreshStats, FlushStats flushStats) {
         this.storeStats = storeStats;
         this.docsStats = docsStats;
         this.indexingStats = indexingStats;
         this.getStats = getStats;
         this.searchStats = searchStats;
         this.cacheStats = cacheStats;
+        this.fieldDataStats = fieldDataStats;
         this.mergeStats = mergeStats;
         this.refreshStats = refreshStats;
         this.flushStats = flushStats;
@@ -129,6 +134,14 @@ public class NodeIndicesStats implements Streamable, Serializable, ToXContent {
         return this.cache();
     }
 
+    public FieldDataStats fieldData() {
+        return this.fieldDataStats;
+    }
+
+    public FieldDataStats getFieldData() {
+        return fieldData();
+    }
+
     public MergeStats merge() {
         return this.mergeStats;
     }
@@ -167,6 +180,11 @@ public class NodeIndicesStats implements Streamable, Serializable, ToXContent {
         getStats = GetStats.readGetStats(in);
         searchStats = SearchStats.readSearchStats(in);
         cacheStats = CacheStats.readCacheStats(in);
+        if (in.getVersion().onOrAfter(Version.V_0_21_0_Beta1)) {
+            fieldDataStats = FieldDataStats.readFieldDataStats(in);
+        } else {
+            fieldDataStats = new FieldDataStats();
+        }
         mergeStats = MergeStats.readMergeStats(in);
         refreshStats = RefreshStats.readRefreshStats(in);
         flushStats = FlushStats.readFlushStats(in);
@@ -180,6 +198,9 @@ public class NodeIndicesStats implements Streamable, Serializable, ToXContent {
         getStats.writeTo(out);
         searchStats.writeTo(out);
         cacheStats.writeTo(out);
+        if (out.getVersion().onOrAfter(Version.V_0_21_0_Beta1)) {
+            fieldDataStats.writeTo(out);
+        }
         mergeStats.writeTo(out);
         refreshStats.writeTo(out);
         flushStats.writeTo(out);
@@ -195,6 +216,7 @@ public class NodeIndicesStats implements Streamable, Serializable, ToXContent {
         getStats.toXContent(builder, params);
         searchStats.toXContent(builder, params);
         cacheStats.toXContent(builder, params);
+        fieldDataStats.toXContent(builder, params);
         mergeStats.toXContent(builder, params);
         refreshStats.toXContent(builder, params);
         flushStats.toXContent(builder, params);
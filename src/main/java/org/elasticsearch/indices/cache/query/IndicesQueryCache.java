@@ -0,0 +1,251 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices.cache.query;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import org.apache.lucene.index.IndexReader;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.monitor.jvm.JvmInfo;
+import org.elasticsearch.search.facet.InternalFacets;
+import org.elasticsearch.search.internal.SearchContext;
+import org.elasticsearch.search.query.QuerySearchResult;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A node level cache of the (serialized) query phase results of <tt>count</tt> search requests, for indices that
+ * enable it using <tt>index.cache.query.enable</tt>. Results are keyed by the request source and the shard reader
+ * they were computed on, so a refresh that opens a new reader invalidates them. The entries of a reader are removed
+ * as soon as it is closed, and the cache is bounded by the size of the entries (<tt>indices.cache.query.size</tt>).
+ * <p/>
+ * Requests that rely on the current time (<tt>now</tt>) are not cached.
+ */
+public class IndicesQueryCache extends AbstractComponent implements IndexReader.ReaderClosedListener, RemovalListener<IndicesQueryCache.Key, BytesReference> {
+
+    public static final String INDEX_CACHE_QUERY_ENABLED = "index.cache.query.enable";
+
+    private final Cache<Key, BytesReference> cache;
+
+    private final String size;
+    private final long sizeInBytes;
+    private final TimeValue expire;
+
+    // the keys cached for each open reader (by its core cache key), removed along with their entries when the
+    // reader closes, so neither the entries nor the keys keep closed readers around
+    private final ConcurrentMap<Object, Set<Key>> readersKeys = ConcurrentCollections.newConcurrentMap();
+
+    @Inject
+    public IndicesQueryCache(Settings settings) {
+        super(settings);
+        this.size = componentSettings.get("size", "1%");
+        this.expire = componentSettings.getAsTime("expire", null);
+        this.sizeInBytes = computeSizeInBytes(size);
+
+        CacheBuilder<Key, BytesReference> cacheBuilder = CacheBuilder.newBuilder()
+                .removalListener(this)
+                .maximumWeight(sizeInBytes).weigher(new QueryCacheWeigher());
+        // defaults to 4, but this is a busy map for all indices, increase it a bit
+        cacheBuilder.concurrencyLevel(16);
+        if (expire != null) {
+            cacheBuilder.expireAfterAccess(expire.millis(), TimeUnit.MILLISECONDS);
+        }
+        this.cache = cacheBuilder.build();
+
+        logger.debug("using size [{}], actual_size [{}], expire [{}]", size, new ByteSizeValue(sizeInBytes), expire);
+    }
+
+    private static long computeSizeInBytes(String size) {
+        if (size.endsWith("%")) {
+            double percent = Double.parseDouble(size.substring(0, size.length() - 1));
+            return (long) ((percent / 100) * JvmInfo.jvmInfo().getMem().getHeapMax().bytes());
+        } else {
+            return ByteSizeValue.parseBytesSizeValue(size).bytes();
+        }
+    }
+
+    public void close() {
+        cache.invalidateAll();
+        readersKeys.clear();
+    }
+
+    /**
+     * The number of cached entries.
+     */
+    public long count() {
+        return cache.size();
+    }
+
+    /**
+     * Can the query phase result of the provided (already parsed) context be cached.
+     */
+    public boolean canCache(SearchContext context) {
+        if (context.searchType() != SearchType.COUNT || context.scroll() != null) {
+            return false;
+        }
+        if (!context.indexService().settingsService().getSettings().getAsBoolean(INDEX_CACHE_QUERY_ENABLED, false)) {
+            return false;
+        }
+        // date math using now (and so on) resolves to a different value on each request
+        return !context.nowInMillisUsed();
+    }
+
+    /**
+     * Loads the cached query phase result into the context query result, returning <tt>true</tt> if it was found.
+     */
+    public boolean loadIntoContext(SearchContext context) throws IOException {
+        BytesReference value = cache.getIfPresent(new Key(context, false));
+        if (value == null) {
+            return false;
+        }
+        QuerySearchResult cached = QuerySearchResult.readQuerySearchResult(new BytesStreamInput(value));
+        QuerySearchResult result = context.queryResult();
+        result.from(cached.from());
+        result.size(cached.size());
+        result.topDocs(cached.topDocs());
+        result.facets((InternalFacets) cached.facets());
+        result.searchTimedOut(cached.searchTimedOut());
+        return true;
+    }
+
+    /**
+     * Caches the query phase result of the context, once the query phase has been executed.
+     */
+    public void put(SearchContext context) throws IOException {
+        if (context.queryResult().searchTimedOut() || context.nowInMillisUsed()) {
+            // partial results, or the current time was only resolved while executing, don't serve them for later requests
+            return;
+        }
+        BytesStreamOutput out = new BytesStreamOutput();
+        context.queryResult().writeTo(out);
+        Key key = new Key(context, true);
+        // the reader is open while it is searched, so it can't be closed concurrently
+        Set<Key> readerKeys = readersKeys.get(key.readerKey);
+        if (readerKeys == null) {
+            readerKeys = ConcurrentCollections.newConcurrentSet();
+            Set<Key> existing = readersKeys.putIfAbsent(key.readerKey, readerKeys);
+            if (existing != null) {
+                readerKeys = existing;
+            } else {
+                context.searcher().getIndexReader().addReaderClosedListener(this);
+            }
+        }
+        readerKeys.add(key);
+        cache.put(key, out.bytes().copyBytesArray());
+    }
+
+    @Override
+    public void onClose(IndexReader reader) {
+        Set<Key> readerKeys = readersKeys.remove(reader.getCoreCacheKey());
+        if (readerKeys != null) {
+            cache.invalidateAll(readerKeys);
+        }
+    }
+
+    @Override
+    public void onRemoval(RemovalNotification<Key, BytesReference> notification) {
+        Key key = notification.getKey();
+        if (key == null || !notification.wasEvicted()) {
+            return;
+        }
+        Set<Key> readerKeys = readersKeys.get(key.readerKey);
+        if (readerKeys != null) {
+            readerKeys.remove(key);
+        }
+    }
+
+    static class QueryCacheWeigher implements Weigher<Key, BytesReference> {
+
+        @Override
+        public int weigh(Key key, BytesReference value) {
+            return key.sizeInBytes() + value.length();
+        }
+    }
+
+    static class Key {
+
+        final Object readerKey;
+        final BytesReference source;
+        final BytesReference extraSource;
+        final String[] types;
+        final String[] filteringAliases;
+
+        /**
+         * @param copy should the request bytes be copied, so the key can outlive the request
+         */
+        Key(SearchContext context, boolean copy) {
+            this.readerKey = context.searcher().getIndexReader().getCoreCacheKey();
+            this.source = bytes(context.request().source(), copy);
+            this.extraSource = bytes(context.request().extraSource(), copy);
+            this.types = context.types();
+            this.filteringAliases = context.request().filteringAliases();
+        }
+
+        private static BytesReference bytes(BytesReference bytes, boolean copy) {
+            if (bytes == null) {
+                return BytesArray.EMPTY;
+            }
+            return copy ? bytes.copyBytesArray() : bytes.toBytesArray();
+        }
+
+        int sizeInBytes() {
+            return source.length() + extraSource.length();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            Key that = (Key) o;
+            if (readerKey != that.readerKey) return false;
+            if (!source.equals(that.source)) return false;
+            if (!extraSource.equals(that.extraSource)) return false;
+            if (!Arrays.equals(types, that.types)) return false;
+            if (!Arrays.equals(filteringAliases, that.filteringAliases)) return false;
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = readerKey.hashCode();
+            result = 31 * result + source.hashCode();
+            result = 31 * result + extraSource.hashCode();
+            result = 31 * result + Arrays.hashCode(types);
+            result = 31 * result + Arrays.hashCode(filteringAliases);
+            return result;
+        }
+    }
+}
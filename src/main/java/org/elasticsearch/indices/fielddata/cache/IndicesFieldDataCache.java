@@ -0,0 +1,368 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices.fielddata.cache;
+
+import com.google.common.cache.*;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.Terms;
+import org.elasticsearch.ElasticSearchException;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.fielddata.*;
+import org.elasticsearch.index.fielddata.ordinals.GlobalOrdinals;
+import org.elasticsearch.monitor.jvm.JvmInfo;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A node level field data cache, shared by all the indices that use the <tt>node</tt> field data cache type.
+ * The cache is bounded by the total memory size of the field data (<tt>indices.fielddata.cache.size</tt>), and
+ * evicts the least recently used per segment field data once the limit is reached. The global ordinals of
+ * top level readers are held by the cache as well, and are accounted for and evicted the same way.
+ * <p/>
+ * Before a field data is loaded, its size is estimated and the load is rejected with a
+ * {@link FieldDataCircuitBreakingException} if it, together with the loads currently in flight, would not
+ * fit within the limit, since such a load can't be made room for by evicting other entries.
+ * <p/>
+ * Off heap field data is released once its segment is closed, since searches might still read from field data
+ * which is evicted or cleared. Such field data frees its memory once it is garbage collected.
+ */
+public class IndicesFieldDataCache extends AbstractComponent implements RemovalListener<IndicesFieldDataCache.Key, IndicesFieldDataCache.Entry> {
+
+    private final Cache<Key, Entry> cache;
+
+    private final String size;
+    private final long sizeInBytes;
+
+    // the estimated size of the loads currently in flight, they are not accounted for by the cache yet
+    private final AtomicLong loadingSizeInBytes = new AtomicLong();
+
+    @Inject
+    public IndicesFieldDataCache(Settings settings) {
+        super(settings);
+        this.size = componentSettings.get("size", "40%");
+        this.sizeInBytes = computeSizeInBytes(size);
+
+        CacheBuilder<Key, Entry> cacheBuilder = CacheBuilder.newBuilder()
+                .removalListener(this)
+                .maximumWeight(sizeInBytes).weigher(new FieldDataWeigher());
+        // guava splits the maximum weight between the cache segments, and field data entries can be large,
+        // so use a single segment to be able to use the full limit for a single entry. Loading itself happens
+        // outside of the segment lock, so this does not serialize loads
+        cacheBuilder.concurrencyLevel(1);
+        this.cache = cacheBuilder.build();
+
+        logger.debug("using size [{}], actual_size [{}]", size, new ByteSizeValue(sizeInBytes));
+    }
+
+    private static long computeSizeInBytes(String size) {
+        if (size.endsWith("%")) {
+            double percent = Double.parseDouble(size.substring(0, size.length() - 1));
+            return (long) ((percent / 100) * JvmInfo.jvmInfo().getMem().getHeapMax().bytes());
+        } else {
+            return ByteSizeValue.parseBytesSizeValue(size).bytes();
+        }
+    }
+
+    public void close() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Creates the cache for a specific index field, backed by this node level cache.
+     */
+    public IndexFieldDataCache buildIndexFieldDataCache(Index index, String fieldName) {
+        return new IndexFieldCache(index, fieldName);
+    }
+
+    @Override
+    public void onRemoval(RemovalNotification<Key, Entry> notification) {
+        Key key = notification.getKey();
+        if (key == null) {
+            return;
+        }
+        key.indexCache.onRemoval(notification);
+    }
+
+    /**
+     * Estimates the memory size of loading the field data of the provided field for a segment, based on
+     * the terms statistics of the field.
+     */
+    long estimateSizeInBytes(AtomicReaderContext context, IndexFieldData indexFieldData) throws Exception {
+        Terms terms = context.reader().terms(indexFieldData.getFieldNames().indexName());
+        if (terms == null) {
+            return 0;
+        }
+        int maxDoc = context.reader().maxDoc();
+        long sumDocFreq = terms.getSumDocFreq();
+        int docCount = terms.getDocCount();
+        // the average number of values per doc, each one takes a level of ordinals
+        int levels = 1;
+        if (sumDocFreq > 0 && docCount > 0) {
+            levels = Math.max(1, (int) Math.ceil(((double) sumDocFreq) / docCount));
+        }
+        long numTerms = terms.size();
+        if (numTerms == -1 || numTerms > ((long) maxDoc) * levels) {
+            // numeric fields also have the lower precision terms, which are not loaded
+            numTerms = ((long) maxDoc) * levels;
+        }
+        long bytesPerTerm = indexFieldData instanceof IndexNumericFieldData ? 8 : 16;
+        return (((long) maxDoc) * levels * 4) + (numTerms * bytesPerTerm);
+    }
+
+    /**
+     * Estimates the memory size of the global ordinals of the provided field for a top level reader, each
+     * segment term is mapped to a global ordinal, which in turn is mapped back to a segment and its ordinal.
+     */
+    long estimateGlobalSizeInBytes(IndexReader indexReader, IndexFieldData indexFieldData) throws Exception {
+        long size = 0;
+        for (AtomicReaderContext context : indexReader.leaves()) {
+            Terms terms = context.reader().terms(indexFieldData.getFieldNames().indexName());
+            if (terms == null) {
+                continue;
+            }
+            long numTerms = terms.size();
+            if (numTerms == -1) {
+                numTerms = context.reader().maxDoc();
+            }
+            size += numTerms * 12;
+        }
+        return size;
+    }
+
+    class IndexFieldCache implements IndexFieldDataCache, SegmentReader.CoreClosedListener, IndexReader.ReaderClosedListener {
+
+        private final Index index;
+        private final String fieldName;
+
+        private final CounterMetric memorySize = new CounterMetric();
+        private final CounterMetric evictions = new CounterMetric();
+        private final CounterMetric rejections = new CounterMetric();
+
+        IndexFieldCache(Index index, String fieldName) {
+            this.index = index;
+            this.fieldName = fieldName;
+        }
+
+        @Override
+        public <FD extends AtomicFieldData, IFD extends IndexFieldData<FD>> FD load(final AtomicReaderContext context, final IFD indexFieldData) throws Exception {
+            Key key = new Key(this, context.reader().getCoreCacheKey(), false);
+            Entry entry;
+            try {
+                entry = cache.get(key, new Callable<Entry>() {
+                    @Override
+                    public Entry call() throws Exception {
+                        long estimatedSize = estimateSizeInBytes(context, indexFieldData);
+                        long loadingSize = loadingSizeInBytes.addAndGet(estimatedSize);
+                        try {
+                            if (loadingSize > sizeInBytes) {
+                                rejections.inc();
+                                throw new FieldDataCircuitBreakingException("loading field data for [" + fieldName + "] in index [" + index.name() + "] would need an estimated ["
+                                        + new ByteSizeValue(estimatedSize) + "], which is over the limit of [" + new ByteSizeValue(sizeInBytes) + "] (["
+                                        + new ByteSizeValue(loadingSize - estimatedSize) + "] already being loaded)");
+                            }
+                            if (context.reader() instanceof SegmentReader) {
+                                ((SegmentReader) context.reader()).addCoreClosedListener(IndexFieldCache.this);
+                            }
+                            AtomicFieldData fieldData = indexFieldData.loadDirect(context);
+                            Entry entry = new Entry(fieldData, fieldData.getMemorySizeInBytes());
+                            memorySize.inc(entry.sizeInBytes);
+                            return entry;
+                        } finally {
+                            loadingSizeInBytes.addAndGet(-estimatedSize);
+                        }
+                    }
+                });
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            } catch (UncheckedExecutionException e) {
+                throw unwrap(e);
+            }
+            // field data can grow once loaded (e.g. lazily computed hashes), re-weigh it so the limit accounts for it
+            AtomicFieldData fieldData = (AtomicFieldData) entry.value;
+            long sizeInBytes = fieldData.getMemorySizeInBytes();
+            if (sizeInBytes != entry.sizeInBytes) {
+                if (cache.asMap().replace(key, entry, new Entry(fieldData, sizeInBytes))) {
+                    memorySize.inc(sizeInBytes);
+                }
+            }
+            //noinspection unchecked
+            return (FD) fieldData;
+        }
+
+        @Override
+        public GlobalOrdinals loadGlobal(final IndexReader indexReader, final IndexOrdinalFieldData indexFieldData) throws Exception {
+            Key key = new Key(this, indexReader.getCoreCacheKey(), true);
+            Entry entry;
+            try {
+                entry = cache.get(key, new Callable<Entry>() {
+                    @Override
+                    public Entry call() throws Exception {
+                        // the segment field data is accounted for on its own, load it before estimating the global ordinals
+                        List<AtomicReaderContext> leaves = indexReader.leaves();
+                        for (AtomicReaderContext context : leaves) {
+                            indexFieldData.load(context);
+                        }
+                        long estimatedSize = estimateGlobalSizeInBytes(indexReader, indexFieldData);
+                        long loadingSize = loadingSizeInBytes.addAndGet(estimatedSize);
+                        try {
+                            if (loadingSize > sizeInBytes) {
+                                rejections.inc();
+                                throw new FieldDataCircuitBreakingException("loading global ordinals for [" + fieldName + "] in index [" + index.name() + "] would need an estimated ["
+                                        + new ByteSizeValue(estimatedSize) + "], which is over the limit of [" + new ByteSizeValue(sizeInBytes) + "] (["
+                                        + new ByteSizeValue(loadingSize - estimatedSize) + "] already being loaded)");
+                            }
+                            indexReader.addReaderClosedListener(IndexFieldCache.this);
+                            GlobalOrdinals ordinals = indexFieldData.loadGlobalDirect(indexReader);
+                            Entry entry = new Entry(ordinals, ordinals.getMemorySizeInBytes());
+                            memorySize.inc(entry.sizeInBytes);
+                            return entry;
+                        } finally {
+                            loadingSizeInBytes.addAndGet(-estimatedSize);
+                        }
+                    }
+                });
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            } catch (UncheckedExecutionException e) {
+                throw unwrap(e);
+            }
+            return (GlobalOrdinals) entry.value;
+        }
+
+        private Exception unwrap(Exception e) {
+            if (e.getCause() instanceof ElasticSearchException) {
+                return (ElasticSearchException) e.getCause();
+            }
+            return e;
+        }
+
+        @Override
+        public void onClose(SegmentReader owner) {
+            Entry entry = cache.asMap().remove(new Key(this, owner.getCoreCacheKey(), false));
+            // the segment is closed, so no one can read from the field data anymore, free
+            // any off heap memory it holds eagerly instead of waiting for GC
+            if (entry != null && entry.value instanceof Releasable) {
+                ((Releasable) entry.value).release();
+            }
+        }
+
+        @Override
+        public void onClose(IndexReader reader) {
+            cache.invalidate(new Key(this, reader.getCoreCacheKey(), true));
+        }
+
+        void onRemoval(RemovalNotification<Key, Entry> notification) {
+            Entry entry = notification.getValue();
+            if (entry != null) {
+                memorySize.dec(entry.sizeInBytes);
+            }
+            if (notification.wasEvicted()) {
+                evictions.inc();
+            }
+        }
+
+        @Override
+        public void clear(Index index) {
+            for (Iterator<Key> it = cache.asMap().keySet().iterator(); it.hasNext(); ) {
+                if (it.next().indexCache == this) {
+                    // same as invalidate
+                    it.remove();
+                }
+            }
+        }
+
+        @Override
+        public void clear(Index index, String fieldName) {
+            // this cache is already specific to the index field
+            clear(index);
+        }
+
+        @Override
+        public void clear(Index index, IndexReader reader) {
+            cache.invalidate(new Key(this, reader.getCoreCacheKey(), false));
+            cache.invalidate(new Key(this, reader.getCoreCacheKey(), true));
+        }
+
+        @Override
+        public FieldDataStats stats() {
+            return new FieldDataStats(memorySize.count(), evictions.count(), rejections.count());
+        }
+    }
+
+    static class Key {
+        final IndexFieldCache indexCache;
+        final Object readerKey;
+        // the global ordinals of a top level reader, rather than the field data of a segment
+        final boolean global;
+
+        Key(IndexFieldCache indexCache, Object readerKey, boolean global) {
+            this.indexCache = indexCache;
+            this.readerKey = readerKey;
+            this.global = global;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            Key key = (Key) o;
+            return indexCache == key.indexCache && global == key.global && readerKey.equals(key.readerKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(indexCache) + readerKey.hashCode()) + (global ? 1 : 0);
+        }
+    }
+
+    /**
+     * A cached field data or global ordinals, along with the size it is weighed and accounted with.
+     */
+    static class Entry {
+        final Object value;
+        final long sizeInBytes;
+
+        Entry(Object value, long sizeInBytes) {
+            this.value = value;
+            this.sizeInBytes = sizeInBytes;
+        }
+    }
+
+    static class FieldDataWeigher implements Weigher<Key, Entry> {
+
+        @Override
+        public int weigh(Key key, Entry entry) {
+            long size = entry.sizeInBytes;
+            return size > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) size;
+        }
+    }
+}
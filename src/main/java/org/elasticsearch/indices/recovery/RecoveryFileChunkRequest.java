@@ -25,14 +25,18 @@ import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.transport.FileRegionTransportRequest;
 import org.elasticsearch.transport.TransportRequest;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  *
  */
-class RecoveryFileChunkRequest extends TransportRequest {
+class RecoveryFileChunkRequest extends TransportRequest implements FileRegionTransportRequest {
 
     private long recoveryId;
     private ShardId shardId;
@@ -42,6 +46,10 @@ class RecoveryFileChunkRequest extends TransportRequest {
     private String checksum;
     private BytesReference content;
 
+    // when sending the chunk directly from the file, the content is the region of the file channel
+    private FileChannel fileChannel;
+    private int fileRegionLength;
+
     RecoveryFileChunkRequest() {
     }
 
@@ -55,6 +63,20 @@ class RecoveryFileChunkRequest extends TransportRequest {
         this.content = content;
     }
 
+    /**
+     * A chunk which content is read from the file channel, from <tt>position</tt> and up to <tt>chunkLength</tt> bytes.
+     */
+    RecoveryFileChunkRequest(long recoveryId, ShardId shardId, String name, long position, long length, String checksum, FileChannel fileChannel, int chunkLength) {
+        this.recoveryId = recoveryId;
+        this.shardId = shardId;
+        this.name = name;
+        this.position = position;
+        this.length = length;
+        this.checksum = checksum;
+        this.fileChannel = fileChannel;
+        this.fileRegionLength = chunkLength;
+    }
+
     public long recoveryId() {
         return this.recoveryId;
     }
@@ -84,6 +106,21 @@ class RecoveryFileChunkRequest extends TransportRequest {
         return content;
     }
 
+    @Override
+    public FileChannel fileChannel() {
+        return fileChannel;
+    }
+
+    @Override
+    public long fileRegionPosition() {
+        return position;
+    }
+
+    @Override
+    public int fileRegionLength() {
+        return fileRegionLength;
+    }
+
     public RecoveryFileChunkRequest readFileChunk(StreamInput in) throws IOException {
         RecoveryFileChunkRequest request = new RecoveryFileChunkRequest();
         request.readFrom(in);
@@ -104,6 +141,30 @@ class RecoveryFileChunkRequest extends TransportRequest {
 
     @Override
     public void writeTo(StreamOutput out) throws IOException {
+        if (fileChannel == null) {
+            writeHeaderTo(out);
+            out.writeBytesReference(content);
+            return;
+        }
+        // the transport can't send the region directly from the file, read it
+        byte[] bytes = new byte[fileRegionLength];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            if (fileChannel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("read past EOF of [" + name + "]");
+            }
+        }
+        writeHeaderTo(out);
+        out.writeBytesReference(new BytesArray(bytes));
+    }
+
+    @Override
+    public void writeToBeforeFileRegion(StreamOutput out) throws IOException {
+        writeHeaderTo(out);
+        out.writeVInt(fileRegionLength);
+    }
+
+    private void writeHeaderTo(StreamOutput out) throws IOException {
         super.writeTo(out);
         out.writeLong(recoveryId);
         shardId.writeTo(out);
@@ -111,7 +172,6 @@ class RecoveryFileChunkRequest extends TransportRequest {
         out.writeVLong(position);
         out.writeVLong(length);
         out.writeOptionalString(checksum);
-        out.writeBytesReference(content);
     }
 
     @Override
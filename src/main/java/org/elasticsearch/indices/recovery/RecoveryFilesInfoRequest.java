@@ -19,6 +19,7 @@
 
 package org.elasticsearch.indices.recovery;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.index.shard.ShardId;
@@ -26,7 +27,9 @@ import org.elasticsearch.transport.TransportRequest;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -40,19 +43,25 @@ class RecoveryFilesInfoRequest extends TransportRequest {
     List<Long> phase1FileSizes;
     List<String> phase1ExistingFileNames;
     List<Long> phase1ExistingFileSizes;
+    // existing files the target should copy locally, from the recovered file name to the local file name
+    Map<String, String> phase1LocalCopies;
+    // the MD5 digests of the files to copy locally, by recovered file name, the copies are verified against
+    Map<String, String> phase1LocalCopyDigests;
     long phase1TotalSize;
     long phase1ExistingTotalSize;
 
     RecoveryFilesInfoRequest() {
     }
 
-    RecoveryFilesInfoRequest(long recoveryId, ShardId shardId, List<String> phase1FileNames, List<Long> phase1FileSizes, List<String> phase1ExistingFileNames, List<Long> phase1ExistingFileSizes, long phase1TotalSize, long phase1ExistingTotalSize) {
+    RecoveryFilesInfoRequest(long recoveryId, ShardId shardId, List<String> phase1FileNames, List<Long> phase1FileSizes, List<String> phase1ExistingFileNames, List<Long> phase1ExistingFileSizes, Map<String, String> phase1LocalCopies, Map<String, String> phase1LocalCopyDigests, long phase1TotalSize, long phase1ExistingTotalSize) {
         this.recoveryId = recoveryId;
         this.shardId = shardId;
         this.phase1FileNames = phase1FileNames;
         this.phase1FileSizes = phase1FileSizes;
         this.phase1ExistingFileNames = phase1ExistingFileNames;
         this.phase1ExistingFileSizes = phase1ExistingFileSizes;
+        this.phase1LocalCopies = phase1LocalCopies;
+        this.phase1LocalCopyDigests = phase1LocalCopyDigests;
         this.phase1TotalSize = phase1TotalSize;
         this.phase1ExistingTotalSize = phase1ExistingTotalSize;
     }
@@ -94,6 +103,19 @@ class RecoveryFilesInfoRequest extends TransportRequest {
             phase1ExistingFileSizes.add(in.readVLong());
         }
 
+        phase1LocalCopies = new HashMap<String, String>();
+        phase1LocalCopyDigests = new HashMap<String, String>();
+        if (in.getVersion().onOrAfter(Version.V_0_21_0_Beta1)) {
+            size = in.readVInt();
+            for (int i = 0; i < size; i++) {
+                phase1LocalCopies.put(in.readString(), in.readString());
+            }
+            size = in.readVInt();
+            for (int i = 0; i < size; i++) {
+                phase1LocalCopyDigests.put(in.readString(), in.readString());
+            }
+        }
+
         phase1TotalSize = in.readVLong();
         phase1ExistingTotalSize = in.readVLong();
     }
@@ -124,6 +146,19 @@ class RecoveryFilesInfoRequest extends TransportRequest {
             out.writeVLong(phase1ExistingFileSize);
         }
 
+        if (out.getVersion().onOrAfter(Version.V_0_21_0_Beta1)) {
+            out.writeVInt(phase1LocalCopies.size());
+            for (Map.Entry<String, String> entry : phase1LocalCopies.entrySet()) {
+                out.writeString(entry.getKey());
+                out.writeString(entry.getValue());
+            }
+            out.writeVInt(phase1LocalCopyDigests.size());
+            for (Map.Entry<String, String> entry : phase1LocalCopyDigests.entrySet()) {
+                out.writeString(entry.getKey());
+                out.writeString(entry.getValue());
+            }
+        }
+
         out.writeVLong(phase1TotalSize);
         out.writeVLong(phase1ExistingTotalSize);
     }
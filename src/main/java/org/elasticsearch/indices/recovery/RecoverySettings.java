@@ -40,6 +40,8 @@ public class RecoverySettings extends AbstractComponent {
 
     static {
         MetaData.addDynamicSettings("indices.recovery.file_chunk_size");
+        MetaData.addDynamicSettings("indices.recovery.max_file_chunk_size");
+        MetaData.addDynamicSettings("indices.recovery.max_chunks_in_flight");
         MetaData.addDynamicSettings("indices.recovery.translog_ops");
         MetaData.addDynamicSettings("indices.recovery.translog_size");
         MetaData.addDynamicSettings("indices.recovery.compress");
@@ -48,6 +50,8 @@ public class RecoverySettings extends AbstractComponent {
     }
 
     private volatile ByteSizeValue fileChunkSize;
+    private volatile ByteSizeValue maxFileChunkSize;
+    private volatile int maxChunksInFlight;
 
     private volatile boolean compress;
     private volatile int translogOps;
@@ -64,6 +68,8 @@ public class RecoverySettings extends AbstractComponent {
         super(settings);
 
         this.fileChunkSize = componentSettings.getAsBytesSize("file_chunk_size", settings.getAsBytesSize("index.shard.recovery.file_chunk_size", new ByteSizeValue(512, ByteSizeUnit.KB)));
+        this.maxFileChunkSize = componentSettings.getAsBytesSize("max_file_chunk_size", new ByteSizeValue(2, ByteSizeUnit.MB));
+        this.maxChunksInFlight = componentSettings.getAsInt("max_chunks_in_flight", 4);
         this.translogOps = componentSettings.getAsInt("translog_ops", settings.getAsInt("index.shard.recovery.translog_ops", 1000));
         this.translogSize = componentSettings.getAsBytesSize("translog_size", settings.getAsBytesSize("index.shard.recovery.translog_size", new ByteSizeValue(512, ByteSizeUnit.KB)));
         this.compress = componentSettings.getAsBoolean("compress", true);
@@ -78,8 +84,8 @@ public class RecoverySettings extends AbstractComponent {
             rateLimiter = new RateLimiter.SimpleRateLimiter(maxSizePerSec.mbFrac());
         }
 
-        logger.debug("using max_size_per_sec[{}], concurrent_streams [{}], file_chunk_size [{}], translog_size [{}], translog_ops [{}], and compress [{}]",
-                maxSizePerSec, concurrentStreams, fileChunkSize, translogSize, translogOps, compress);
+        logger.debug("using max_size_per_sec[{}], concurrent_streams [{}], file_chunk_size [{}], max_file_chunk_size [{}], max_chunks_in_flight [{}], translog_size [{}], translog_ops [{}], and compress [{}]",
+                maxSizePerSec, concurrentStreams, fileChunkSize, maxFileChunkSize, maxChunksInFlight, translogSize, translogOps, compress);
 
         nodeSettingsService.addListener(new ApplySettings());
     }
@@ -98,6 +104,21 @@ public class RecoverySettings extends AbstractComponent {
         return fileChunkSize;
     }
 
+    /**
+     * The largest chunk size file chunks grow to when the link to the target allows it, {@link #fileChunkSize()}
+     * being the smallest.
+     */
+    public ByteSizeValue maxFileChunkSize() {
+        return maxFileChunkSize;
+    }
+
+    /**
+     * The maximum number of chunks of a file sent without waiting for their acknowledgement.
+     */
+    public int maxChunksInFlight() {
+        return maxChunksInFlight;
+    }
+
     public boolean compress() {
         return compress;
     }
@@ -144,6 +165,18 @@ public class RecoverySettings extends AbstractComponent {
                 RecoverySettings.this.fileChunkSize = fileChunkSize;
             }
 
+            ByteSizeValue maxFileChunkSize = settings.getAsBytesSize("indices.recovery.max_file_chunk_size", RecoverySettings.this.maxFileChunkSize);
+            if (!maxFileChunkSize.equals(RecoverySettings.this.maxFileChunkSize)) {
+                logger.info("updating [indices.recovery.max_file_chunk_size] from [{}] to [{}]", RecoverySettings.this.maxFileChunkSize, maxFileChunkSize);
+                RecoverySettings.this.maxFileChunkSize = maxFileChunkSize;
+            }
+
+            int maxChunksInFlight = settings.getAsInt("indices.recovery.max_chunks_in_flight", RecoverySettings.this.maxChunksInFlight);
+            if (maxChunksInFlight != RecoverySettings.this.maxChunksInFlight) {
+                logger.info("updating [indices.recovery.max_chunks_in_flight] from [{}] to [{}]", RecoverySettings.this.maxChunksInFlight, maxChunksInFlight);
+                RecoverySettings.this.maxChunksInFlight = maxChunksInFlight;
+            }
+
             int translogOps = settings.getAsInt("indices.recovery.translog_ops", RecoverySettings.this.translogOps);
             if (translogOps != RecoverySettings.this.translogOps) {
                 logger.info("updating [indices.recovery.translog_ops] from [{}] to [{}]", RecoverySettings.this.translogOps, translogOps);
@@ -20,15 +20,21 @@
 package org.elasticsearch.indices.recovery;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.IndexInput;
 import org.elasticsearch.ElasticSearchException;
+import org.elasticsearch.ElasticSearchIllegalStateException;
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.StopWatch;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.compress.CompressorFactory;
 import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.lucene.Directories;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
@@ -44,8 +50,11 @@ import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.*;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicReference;
@@ -94,6 +103,19 @@ public class RecoverySource extends AbstractComponent {
                 try {
                     StopWatch stopWatch = new StopWatch().start();
 
+                    // files the target has under another name can be copied locally by the target instead of being sent
+                    Map<String, StoreFileMetaData> existingFilesByContent = Maps.newHashMap();
+                    Map<String, String> localCopies = Maps.newHashMap();
+                    Map<String, String> localCopyDigests = Maps.newHashMap();
+                    if (request.targetNode().version().onOrAfter(Version.V_0_21_0_Beta1)) {
+                        for (StoreFileMetaData existing : request.existingFiles().values()) {
+                            String contentKey = contentKey(existing);
+                            if (contentKey != null) {
+                                existingFilesByContent.put(contentKey, existing);
+                            }
+                        }
+                    }
+
                     for (String name : snapshot.getFiles()) {
                         StoreFileMetaData md = shard.store().metaData(name);
                         boolean useExisting = false;
@@ -109,6 +131,23 @@ public class RecoverySource extends AbstractComponent {
                                 }
                             }
                         }
+                        if (!useExisting) {
+                            String contentKey = contentKey(md);
+                            StoreFileMetaData sameContent = contentKey == null ? null : existingFilesByContent.get(contentKey);
+                            // the checksum may collide, the target verifies its copy against the digest of the file
+                            String digest = sameContent == null ? null : digest(shard, name);
+                            if (digest != null) {
+                                response.phase1ExistingFileNames.add(name);
+                                response.phase1ExistingFileSizes.add(md.length());
+                                localCopies.put(name, sameContent.name());
+                                localCopyDigests.put(name, digest);
+                                existingTotalSize += md.length();
+                                useExisting = true;
+                                if (logger.isTraceEnabled()) {
+                                    logger.trace("[{}][{}] recovery [phase1] to {}: not recovering [{}], exists in local store as [{}] with checksum [{}], size [{}]", request.shardId().index().name(), request.shardId().id(), request.targetNode(), name, sameContent.name(), md.checksum(), md.length());
+                                }
+                            }
+                        }
                         if (!useExisting) {
                             if (request.existingFiles().containsKey(name)) {
                                 logger.trace("[{}][{}] recovery [phase1] to {}: recovering [{}], exists in local store, but is different: remote [{}], local [{}]", request.shardId().index().name(), request.shardId().id(), request.targetNode(), name, request.existingFiles().get(name), md);
@@ -126,66 +165,40 @@ public class RecoverySource extends AbstractComponent {
                     logger.trace("[{}][{}] recovery [phase1] to {}: recovering_files [{}] with total_size [{}], reusing_files [{}] with total_size [{}]", request.shardId().index().name(), request.shardId().id(), request.targetNode(), response.phase1FileNames.size(), new ByteSizeValue(totalSize), response.phase1ExistingFileNames.size(), new ByteSizeValue(existingTotalSize));
 
                     RecoveryFilesInfoRequest recoveryInfoFilesRequest = new RecoveryFilesInfoRequest(request.recoveryId(), request.shardId(), response.phase1FileNames, response.phase1FileSizes,
-                            response.phase1ExistingFileNames, response.phase1ExistingFileSizes, response.phase1TotalSize, response.phase1ExistingTotalSize);
+                            response.phase1ExistingFileNames, response.phase1ExistingFileSizes, localCopies, localCopyDigests, response.phase1TotalSize, response.phase1ExistingTotalSize);
                     transportService.submitRequest(request.targetNode(), RecoveryTarget.Actions.FILES_INFO, recoveryInfoFilesRequest, TransportRequestOptions.options().withTimeout(internalActionTimeout), EmptyTransportResponseHandler.INSTANCE_SAME).txGet();
 
-                    final CountDownLatch latch = new CountDownLatch(response.phase1FileNames.size());
-                    final AtomicReference<Exception> lastException = new AtomicReference<Exception>();
-                    for (final String name : response.phase1FileNames) {
-                        recoverySettings.concurrentStreamPool().execute(new Runnable() {
-                            @Override
-                            public void run() {
-                                IndexInput indexInput = null;
-                                try {
-                                    final int BUFFER_SIZE = (int) recoverySettings.fileChunkSize().bytes();
-                                    byte[] buf = new byte[BUFFER_SIZE];
-                                    StoreFileMetaData md = shard.store().metaData(name);
-                                    // TODO: maybe use IOContext.READONCE?
-                                    indexInput = shard.store().openInputRaw(name, IOContext.READ);
-                                    boolean shouldCompressRequest = recoverySettings.compress();
-                                    if (CompressorFactory.isCompressed(indexInput)) {
-                                        shouldCompressRequest = false;
-                                    }
-
-                                    long len = indexInput.length();
-                                    long readCount = 0;
-                                    while (readCount < len) {
-                                        if (shard.state() == IndexShardState.CLOSED) { // check if the shard got closed on us
-                                            throw new IndexShardClosedException(shard.shardId());
-                                        }
-                                        int toRead = readCount + BUFFER_SIZE > len ? (int) (len - readCount) : BUFFER_SIZE;
-                                        long position = indexInput.getFilePointer();
-
-                                        if (recoverySettings.rateLimiter() != null) {
-                                            recoverySettings.rateLimiter().pause(toRead);
-                                        }
-
-                                        indexInput.readBytes(buf, 0, toRead, false);
-                                        BytesArray content = new BytesArray(buf, 0, toRead);
-                                        transportService.submitRequest(request.targetNode(), RecoveryTarget.Actions.FILE_CHUNK, new RecoveryFileChunkRequest(request.recoveryId(), request.shardId(), name, position, len, md.checksum(), content),
-                                                TransportRequestOptions.options().withCompress(shouldCompressRequest).withLowType().withTimeout(internalActionTimeout), EmptyTransportResponseHandler.INSTANCE_SAME).txGet();
-                                        readCount += toRead;
-                                    }
-                                } catch (Exception e) {
-                                    lastException.set(e);
-                                } finally {
-                                    if (indexInput != null) {
-                                        try {
-                                            indexInput.close();
-                                        } catch (IOException e) {
-                                            // ignore
-                                        }
-                                    }
-                                    latch.countDown();
-                                }
-                            }
-                        });
+                    final RecoveryTransferWindow window;
+                    if (request.targetNode().version().onOrAfter(Version.V_0_21_0_Beta1)) {
+                        window = new RecoveryTransferWindow(recoverySettings.fileChunkSize().bytes(), recoverySettings.maxFileChunkSize().bytes(), recoverySettings.maxChunksInFlight());
+                    } else {
+                        // older nodes expect the chunks of a file in order, send them one at a time
+                        window = new RecoveryTransferWindow(recoverySettings.fileChunkSize().bytes(), recoverySettings.fileChunkSize().bytes(), 1);
                     }
+                    sendFiles(response.phase1FileNames, window);
 
-                    latch.await();
-
-                    if (lastException.get() != null) {
-                        throw lastException.get();
+                    if (!localCopies.isEmpty()) {
+                        // the target copies the files locally while the other files are sent, and verifies the copies
+                        // against their digest. Those which don't match are sent as well
+                        RecoveryLocalCopiesResponse localCopiesResponse = transportService.submitRequest(request.targetNode(), RecoveryTarget.Actions.LOCAL_COPIES, new RecoveryLocalCopiesRequest(request.recoveryId(), request.shardId()),
+                                TransportRequestOptions.options().withTimeout(internalActionLongTimeout), new FutureTransportResponseHandler<RecoveryLocalCopiesResponse>() {
+                            @Override
+                            public RecoveryLocalCopiesResponse newInstance() {
+                                return new RecoveryLocalCopiesResponse();
+                            }
+                        }).txGet();
+                        if (!localCopiesResponse.failedFileNames.isEmpty()) {
+                            for (String name : localCopiesResponse.failedFileNames) {
+                                logger.debug("[{}][{}] recovery [phase1] to {}: local copy of [{}] did not match, sending it", request.shardId().index().name(), request.shardId().id(), request.targetNode(), name);
+                                int index = response.phase1ExistingFileNames.indexOf(name);
+                                long length = response.phase1ExistingFileSizes.remove(index);
+                                response.phase1ExistingFileNames.remove(index);
+                                response.phase1ExistingTotalSize -= length;
+                                response.phase1FileNames.add(name);
+                                response.phase1FileSizes.add(length);
+                            }
+                            sendFiles(localCopiesResponse.failedFileNames, window);
+                        }
                     }
 
                     // now, set the clean files request
@@ -200,6 +213,113 @@ public class RecoverySource extends AbstractComponent {
                 }
             }
 
+            /**
+             * Sends the provided files in chunks, several files at a time.
+             */
+            private void sendFiles(List<String> names, final RecoveryTransferWindow window) throws Exception {
+                final CountDownLatch latch = new CountDownLatch(names.size());
+                final AtomicReference<Exception> lastException = new AtomicReference<Exception>();
+                for (final String name : names) {
+                    recoverySettings.concurrentStreamPool().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            IndexInput indexInput = null;
+                            RandomAccessFile file = null;
+                            FileChunksInFlight chunksInFlight = null;
+                            try {
+                                StoreFileMetaData md = shard.store().metaData(name);
+                                // TODO: maybe use IOContext.READONCE?
+                                indexInput = shard.store().openInputRaw(name, IOContext.READ);
+                                boolean shouldCompressRequest = recoverySettings.compress();
+                                if (CompressorFactory.isCompressed(indexInput) || name.endsWith(".fdt")) {
+                                    // stored fields are already compressed by the codec
+                                    shouldCompressRequest = false;
+                                }
+                                long len = indexInput.length();
+                                if (len != md.length()) {
+                                    throw new ElasticSearchIllegalStateException("file [" + name + "] has length [" + len + "], but its store meta data has [" + md.length() + "]");
+                                }
+
+                                // if the file is on the file system and the chunks are not compressed, let the transport
+                                // send the chunks directly from the file, without copying them to the heap
+                                File storeFile = shouldCompressRequest ? null : shard.store().file(name);
+                                if (storeFile != null) {
+                                    file = new RandomAccessFile(storeFile, "r");
+                                    indexInput.close();
+                                    indexInput = null;
+                                    verifyFileLength(name, file, md);
+                                }
+
+                                TransportRequestOptions options = TransportRequestOptions.options().withCompress(shouldCompressRequest).withLowType().withTimeout(internalActionTimeout);
+                                chunksInFlight = new FileChunksInFlight(request.targetNode(), window);
+                                long position = 0;
+                                while (position < len) {
+                                    if (shard.state() == IndexShardState.CLOSED) { // check if the shard got closed on us
+                                        throw new IndexShardClosedException(shard.shardId());
+                                    }
+                                    chunksInFlight.acquire();
+                                    int chunkSize = window.chunkSize();
+                                    int toSend = position + chunkSize > len ? (int) (len - position) : chunkSize;
+
+                                    if (recoverySettings.rateLimiter() != null) {
+                                        recoverySettings.rateLimiter().pause(toSend);
+                                    }
+
+                                    RecoveryFileChunkRequest chunk;
+                                    if (file != null) {
+                                        // the region is sent as is, a shorter file would cut the message short
+                                        if (file.getChannel().size() < position + toSend) {
+                                            throw new ElasticSearchIllegalStateException("file [" + name + "] was truncated to [" + file.getChannel().size() + "] while sending chunk at [" + position + "] of [" + toSend + "] bytes");
+                                        }
+                                        chunk = new RecoveryFileChunkRequest(request.recoveryId(), request.shardId(), name, position, len, md.checksum(), file.getChannel(), toSend);
+                                    } else {
+                                        // a new buffer per chunk, as the previous chunks might still be in flight
+                                        byte[] buf = new byte[toSend];
+                                        indexInput.readBytes(buf, 0, toSend, false);
+                                        chunk = new RecoveryFileChunkRequest(request.recoveryId(), request.shardId(), name, position, len, md.checksum(), new BytesArray(buf));
+                                    }
+                                    chunksInFlight.send(chunk, options);
+                                    position += toSend;
+                                }
+                                chunksInFlight.awaitAll();
+                                if (file != null) {
+                                    // the chunks were read by the transport, make sure the file did not change under them
+                                    verifyFileLength(name, file, md);
+                                }
+                            } catch (Exception e) {
+                                lastException.set(e);
+                            } finally {
+                                if (chunksInFlight != null) {
+                                    // the chunks might be sent from the file, don't close it under them
+                                    chunksInFlight.awaitAllQuietly();
+                                }
+                                if (indexInput != null) {
+                                    try {
+                                        indexInput.close();
+                                    } catch (IOException e) {
+                                        // ignore
+                                    }
+                                }
+                                if (file != null) {
+                                    try {
+                                        file.close();
+                                    } catch (IOException e) {
+                                        // ignore
+                                    }
+                                }
+                                latch.countDown();
+                            }
+                        }
+                    });
+                }
+
+                latch.await();
+
+                if (lastException.get() != null) {
+                    throw lastException.get();
+                }
+            }
+
             @Override
             public void phase2(Translog.Snapshot snapshot) throws ElasticSearchException {
                 if (shard.state() == IndexShardState.CLOSED) {
@@ -284,6 +404,128 @@ public class RecoverySource extends AbstractComponent {
         return response;
     }
 
+    /**
+     * The MD5 digest of the content of the store file, <tt>null</tt> if it can't be computed, in which case the file
+     * is sent rather than copied by the target.
+     */
+    @Nullable
+    private String digest(InternalIndexShard shard, String name) {
+        try {
+            IndexInput indexInput = shard.store().openInputRaw(name, IOContext.READONCE);
+            try {
+                return Directories.md5Hex(indexInput);
+            } finally {
+                indexInput.close();
+            }
+        } catch (Exception e) {
+            logger.debug("[{}][{}] failed to compute the digest of [{}]", e, shard.shardId().index().name(), shard.shardId().id(), name);
+            return null;
+        }
+    }
+
+    /**
+     * Verifies the file, which chunks are sent as file regions, still has the length of its store meta data.
+     */
+    private void verifyFileLength(String name, RandomAccessFile file, StoreFileMetaData md) throws IOException {
+        long length = file.length();
+        if (length != md.length()) {
+            throw new ElasticSearchIllegalStateException("file [" + name + "] has length [" + length + "], but its store meta data has [" + md.length() + "]");
+        }
+    }
+
+    /**
+     * The key identifying the content of a file, used to find files the target has under another name, <tt>null</tt>
+     * if the file should not be matched by content. Only files larger than a chunk (which are worth not sending)
+     * are matched. The checksum is a weak digest, so the copies of matched files are verified by the target
+     * against a strong one.
+     */
+    @Nullable
+    private String contentKey(StoreFileMetaData md) {
+        if (md.checksum() == null || md.name().startsWith("segments") || md.length() < recoverySettings.fileChunkSize().bytes()) {
+            return null;
+        }
+        int index = md.name().lastIndexOf('.');
+        String extension = index == -1 ? "" : md.name().substring(index);
+        return extension + "/" + md.length() + "/" + md.checksum();
+    }
+
+    /**
+     * The chunks of a file sent to the target and not acknowledged yet. Up to {@link RecoveryTransferWindow#chunksInFlight()}
+     * chunks are sent without waiting for their acknowledgement, and their round trip times feed the window.
+     */
+    class FileChunksInFlight {
+
+        private final DiscoveryNode targetNode;
+        private final RecoveryTransferWindow window;
+
+        private int count;
+        private TransportException failure;
+
+        FileChunksInFlight(DiscoveryNode targetNode, RecoveryTransferWindow window) {
+            this.targetNode = targetNode;
+            this.window = window;
+        }
+
+        /**
+         * Waits until another chunk can be sent, and accounts for it.
+         */
+        synchronized void acquire() throws InterruptedException {
+            while (failure == null && count >= window.chunksInFlight()) {
+                wait();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            count++;
+        }
+
+        void send(RecoveryFileChunkRequest chunk, TransportRequestOptions options) {
+            final long startTime = System.nanoTime();
+            transportService.sendRequest(targetNode, RecoveryTarget.Actions.FILE_CHUNK, chunk, options, new EmptyTransportResponseHandler(ThreadPool.Names.SAME) {
+                @Override
+                public void handleResponse(TransportResponse.Empty response) {
+                    window.onAcknowledged(System.nanoTime() - startTime);
+                    release(null);
+                }
+
+                @Override
+                public void handleException(TransportException exp) {
+                    release(exp);
+                }
+            });
+        }
+
+        private synchronized void release(TransportException exp) {
+            count--;
+            if (exp != null && failure == null) {
+                failure = exp;
+            }
+            notifyAll();
+        }
+
+        /**
+         * Waits for all the chunks to be acknowledged, throwing the first failure if any.
+         */
+        synchronized void awaitAll() throws InterruptedException {
+            while (count > 0) {
+                wait();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        synchronized void awaitAllQuietly() {
+            try {
+                while (count > 0) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     class StartRecoveryTransportRequestHandler extends BaseTransportRequestHandler<StartRecoveryRequest> {
 
         @Override
@@ -23,9 +23,12 @@ import org.apache.lucene.store.IndexOutput;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.shard.service.InternalIndexShard;
+import org.elasticsearch.transport.TransportChannel;
 
 import java.util.List;
+import java.util.SortedMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -57,6 +60,10 @@ public class RecoveryStatus {
 
     ConcurrentMap<String, IndexOutput> openIndexOutputs = ConcurrentCollections.newConcurrentMap();
     ConcurrentMap<String, String> checksums = ConcurrentCollections.newConcurrentMap();
+    // chunks received ahead of the previous chunks of their file, by file and position, guarded by the file output
+    ConcurrentMap<String, SortedMap<Long, PendingFileChunk>> pendingFileChunks = ConcurrentCollections.newConcurrentMap();
+    // the local copies of files with the same content as recovered files, returning whether the copy was verified
+    ConcurrentMap<String, FutureTask<Boolean>> localCopies = ConcurrentCollections.newConcurrentMap();
 
     final long startTime = System.currentTimeMillis();
     long time;
@@ -71,6 +78,46 @@ public class RecoveryStatus {
     volatile long currentTranslogOperations = 0;
     AtomicLong currentFilesSize = new AtomicLong();
 
+    /**
+     * Returns <tt>true</tt> if the first chunk of the provided file was already written.
+     */
+    boolean writtenFileChunk(String name) {
+        IndexOutput indexOutput = openIndexOutputs.get(name);
+        if (indexOutput == null) {
+            return false;
+        }
+        synchronized (indexOutput) {
+            return indexOutput.getFilePointer() > 0;
+        }
+    }
+
+    /**
+     * The length of the provided file to recover, as announced by the source, or <tt>-1</tt> if it is not known.
+     */
+    long phase1FileSize(String name) {
+        List<String> fileNames = phase1FileNames;
+        List<Long> fileSizes = phase1FileSizes;
+        if (fileNames == null || fileSizes == null) {
+            return -1;
+        }
+        int index = fileNames.indexOf(name);
+        return index == -1 ? -1 : fileSizes.get(index);
+    }
+
+    /**
+     * A chunk received ahead of the previous chunks of its file. It is acknowledged once it is written, so the
+     * chunks the source keeps in flight bound the chunks held by the target.
+     */
+    static class PendingFileChunk {
+        final RecoveryFileChunkRequest request;
+        final TransportChannel channel;
+
+        PendingFileChunk(RecoveryFileChunkRequest request, TransportChannel channel) {
+            this.request = request;
+            this.channel = channel;
+        }
+    }
+
     public long startTime() {
         return startTime;
     }
@@ -20,7 +20,10 @@
 package org.elasticsearch.indices.recovery;
 
 import com.google.common.collect.Sets;
+import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.IndexOutput;
 import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.common.Nullable;
@@ -28,6 +31,7 @@ import org.elasticsearch.common.StopWatch;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.lucene.Directories;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
@@ -39,6 +43,7 @@ import org.elasticsearch.index.shard.*;
 import org.elasticsearch.index.shard.service.IndexShard;
 import org.elasticsearch.index.shard.service.InternalIndexShard;
 import org.elasticsearch.index.store.Store;
+import org.elasticsearch.index.store.StoreFileMetaData;
 import org.elasticsearch.index.translog.Translog;
 import org.elasticsearch.indices.IndexMissingException;
 import org.elasticsearch.indices.IndicesLifecycle;
@@ -46,10 +51,13 @@ import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.*;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.Collections;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import static org.elasticsearch.common.unit.TimeValue.timeValueMillis;
 
@@ -65,6 +73,7 @@ public class RecoveryTarget extends AbstractComponent {
         public static final String FILES_INFO = "index/shard/recovery/filesInfo";
         public static final String FILE_CHUNK = "index/shard/recovery/fileChunk";
         public static final String CLEAN_FILES = "index/shard/recovery/cleanFiles";
+        public static final String LOCAL_COPIES = "index/shard/recovery/localCopies";
         public static final String TRANSLOG_OPS = "index/shard/recovery/translogOps";
         public static final String PREPARE_TRANSLOG = "index/shard/recovery/prepareTranslog";
         public static final String FINALIZE = "index/shard/recovery/finalize";
@@ -92,6 +101,7 @@ public class RecoveryTarget extends AbstractComponent {
         transportService.registerHandler(Actions.FILES_INFO, new FilesInfoRequestHandler());
         transportService.registerHandler(Actions.FILE_CHUNK, new FileChunkTransportRequestHandler());
         transportService.registerHandler(Actions.CLEAN_FILES, new CleanFilesRequestHandler());
+        transportService.registerHandler(Actions.LOCAL_COPIES, new LocalCopiesRequestHandler());
         transportService.registerHandler(Actions.PREPARE_TRANSLOG, new PrepareForTranslogOperationsRequestHandler());
         transportService.registerHandler(Actions.TRANSLOG_OPS, new TranslogOperationsRequestHandler());
         transportService.registerHandler(Actions.FINALIZE, new FinalizeRecoveryRequestHandler());
@@ -334,6 +344,7 @@ public class RecoveryTarget extends AbstractComponent {
         // clean open index outputs
         for (Map.Entry<String, IndexOutput> entry : status.openIndexOutputs.entrySet()) {
             synchronized (entry.getValue()) {
+                failPendingFileChunks(status.pendingFileChunks.remove(entry.getKey()), new IndexShardClosedException(status.shardId));
                 try {
                     entry.getValue().close();
                 } catch (Exception e) {
@@ -343,6 +354,27 @@ public class RecoveryTarget extends AbstractComponent {
         }
         status.openIndexOutputs = null;
         status.checksums = null;
+        // local copies not started yet are not needed anymore
+        for (FutureTask<Boolean> localCopy : status.localCopies.values()) {
+            localCopy.cancel(false);
+        }
+    }
+
+    /**
+     * Fails the chunks of a file which were received ahead of its previous chunks, and were not written.
+     */
+    private void failPendingFileChunks(@Nullable SortedMap<Long, RecoveryStatus.PendingFileChunk> pendingChunks, Throwable failure) {
+        if (pendingChunks == null) {
+            return;
+        }
+        for (RecoveryStatus.PendingFileChunk chunk : pendingChunks.values()) {
+            try {
+                chunk.channel.sendResponse(failure);
+            } catch (Exception e) {
+                logger.debug("failed to send failure for file chunk [{}] at [{}]", e, chunk.request.name(), chunk.request.position());
+            }
+        }
+        pendingChunks.clear();
     }
 
     class PrepareForTranslogOperationsRequestHandler extends BaseTransportRequestHandler<RecoveryPrepareForTranslogOperationsRequest> {
@@ -460,7 +492,7 @@ public class RecoveryTarget extends AbstractComponent {
 
         @Override
         public void messageReceived(RecoveryFilesInfoRequest request, TransportChannel channel) throws Exception {
-            RecoveryStatus onGoingRecovery = onGoingRecoveries.get(request.recoveryId());
+            final RecoveryStatus onGoingRecovery = onGoingRecoveries.get(request.recoveryId());
             if (onGoingRecovery == null) {
                 // shard is getting closed on us
                 throw new IndexShardClosedException(request.shardId());
@@ -477,8 +509,111 @@ public class RecoveryTarget extends AbstractComponent {
             onGoingRecovery.phase1TotalSize = request.phase1TotalSize;
             onGoingRecovery.phase1ExistingTotalSize = request.phase1ExistingTotalSize;
             onGoingRecovery.stage = RecoveryStatus.Stage.INDEX;
+
+            // the local copies are done while the source sends the other files, it then waits for them
+            final Store store = onGoingRecovery.indexShard.store();
+            for (Map.Entry<String, String> entry : request.phase1LocalCopies.entrySet()) {
+                final String to = entry.getKey();
+                final String from = entry.getValue();
+                final String digest = request.phase1LocalCopyDigests.get(to);
+                FutureTask<Boolean> localCopy = new FutureTask<Boolean>(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return copyLocalFile(onGoingRecovery, store, from, to, digest);
+                    }
+                });
+                onGoingRecovery.localCopies.put(to, localCopy);
+                threadPool.generic().execute(localCopy);
+            }
             channel.sendResponse(TransportResponse.Empty.INSTANCE);
         }
+
+        /**
+         * Copies a local file which has the same content as the recovered file. Like recovered files, the copy is
+         * created under a temporary name if the recovered file name exists, and moved once all files are recovered.
+         * Returns <tt>false</tt> if the copy did not match the digest of the recovered file, or if there is no digest
+         * to verify it with, in which case the file needs to be sent.
+         */
+        private boolean copyLocalFile(RecoveryStatus onGoingRecovery, Store store, String from, String to, @Nullable String digest) throws IOException {
+            if (digest == null || onGoingRecovery.canceled) {
+                return false;
+            }
+            StoreFileMetaData md = store.metaData(from);
+            if (md == null) {
+                throw new FileNotFoundException("local file [" + from + "] to recover [" + to + "] from is missing");
+            }
+            String name = to;
+            if (store.directory().fileExists(name)) {
+                name = "recovery." + onGoingRecovery.startTime + "." + name;
+            }
+            String copyDigest;
+            IndexInput indexInput = store.openInputRaw(from, IOContext.READONCE);
+            try {
+                IndexOutput indexOutput = store.createOutputRaw(name);
+                try {
+                    copyDigest = Directories.copyWithMd5Hex(indexInput, indexOutput);
+                } finally {
+                    indexOutput.close();
+                }
+            } finally {
+                indexInput.close();
+            }
+            if (!digest.equals(copyDigest)) {
+                logger.debug("[{}][{}] local copy of [{}] to recover [{}] has digest [{}], expected [{}]", onGoingRecovery.shardId.index().name(), onGoingRecovery.shardId.id(), from, to, copyDigest, digest);
+                store.directory().deleteFile(name);
+                return false;
+            }
+            store.directory().sync(Collections.singleton(name));
+            Map<String, String> checksums = onGoingRecovery.checksums;
+            if (md.checksum() != null && checksums != null) {
+                checksums.put(to, md.checksum());
+            }
+            return true;
+        }
+    }
+
+    class LocalCopiesRequestHandler extends BaseTransportRequestHandler<RecoveryLocalCopiesRequest> {
+
+        @Override
+        public RecoveryLocalCopiesRequest newInstance() {
+            return new RecoveryLocalCopiesRequest();
+        }
+
+        @Override
+        public String executor() {
+            return ThreadPool.Names.GENERIC;
+        }
+
+        @Override
+        public void messageReceived(RecoveryLocalCopiesRequest request, TransportChannel channel) throws Exception {
+            RecoveryStatus onGoingRecovery = onGoingRecoveries.get(request.recoveryId());
+            if (onGoingRecovery == null) {
+                // shard is getting closed on us
+                throw new IndexShardClosedException(request.shardId());
+            }
+
+            List<String> failedFileNames = new ArrayList<String>();
+            for (Map.Entry<String, FutureTask<Boolean>> entry : onGoingRecovery.localCopies.entrySet()) {
+                boolean copied;
+                try {
+                    copied = entry.getValue().get();
+                } catch (ExecutionException e) {
+                    logger.debug("[{}][{}] failed to copy local file to recover [{}]", e.getCause(), request.shardId().index().name(), request.shardId().id(), entry.getKey());
+                    copied = false;
+                } catch (CancellationException e) {
+                    copied = false;
+                }
+                if (!copied) {
+                    failedFileNames.add(entry.getKey());
+                }
+            }
+            onGoingRecovery.localCopies.clear();
+            if (onGoingRecovery.canceled) {
+                onGoingRecovery.sentCanceledToSource = true;
+                throw new IndexShardClosedException(request.shardId());
+            }
+            channel.sendResponse(new RecoveryLocalCopiesResponse(failedFileNames));
+        }
     }
 
     class CleanFilesRequestHandler extends BaseTransportRequestHandler<RecoveryCleanFilesRequest> {
@@ -580,63 +715,96 @@ public class RecoveryTarget extends AbstractComponent {
             Store store = onGoingRecovery.indexShard.store();
 
             IndexOutput indexOutput;
-            if (request.position() == 0) {
-                // first request
-                onGoingRecovery.checksums.remove(request.name());
-                indexOutput = onGoingRecovery.openIndexOutputs.remove(request.name());
-                if (indexOutput != null) {
-                    try {
-                        indexOutput.close();
-                    } catch (IOException e) {
-                        // ignore
+            synchronized (onGoingRecovery) {
+                indexOutput = onGoingRecovery.openIndexOutputs.get(request.name());
+                // the chunks of a file are sent without waiting for the previous ones to be acknowledged, so any of them can
+                // be the first one to arrive. Getting the first chunk again once some were written means the file is resent
+                if (indexOutput == null || (request.position() == 0 && onGoingRecovery.writtenFileChunk(request.name()))) {
+                    onGoingRecovery.checksums.remove(request.name());
+                    indexOutput = onGoingRecovery.openIndexOutputs.remove(request.name());
+                    if (indexOutput != null) {
+                        synchronized (indexOutput) {
+                            // the chunks of the previous attempt are not going to be written
+                            failPendingFileChunks(onGoingRecovery.pendingFileChunks.remove(request.name()), new IndexShardClosedException(request.shardId()));
+                            try {
+                                indexOutput.close();
+                            } catch (IOException e) {
+                                // ignore
+                            }
+                        }
                     }
-                }
-                // we create an output with no checksum, this is because the pure binary data of the file is not
-                // the checksum (because of seek). We will create the checksum file once copying is done
+                    // we create an output with no checksum, this is because the pure binary data of the file is not
+                    // the checksum (because of seek). We will create the checksum file once copying is done
 
-                // also, we check if the file already exists, if it does, we create a file name based
-                // on the current recovery "id" and later we make the switch, the reason for that is that
-                // we only want to overwrite the index files once we copied all over, and not create a
-                // case where the index is half moved
+                    // also, we check if the file already exists, if it does, we create a file name based
+                    // on the current recovery "id" and later we make the switch, the reason for that is that
+                    // we only want to overwrite the index files once we copied all over, and not create a
+                    // case where the index is half moved
 
-                String name = request.name();
-                if (store.directory().fileExists(name)) {
-                    name = "recovery." + onGoingRecovery.startTime + "." + name;
-                }
+                    String name = request.name();
+                    if (store.directory().fileExists(name)) {
+                        name = "recovery." + onGoingRecovery.startTime + "." + name;
+                    }
 
-                indexOutput = store.createOutputRaw(name);
+                    indexOutput = store.createOutputRaw(name);
 
-                onGoingRecovery.openIndexOutputs.put(request.name(), indexOutput);
-            } else {
-                indexOutput = onGoingRecovery.openIndexOutputs.get(request.name());
-            }
-            if (indexOutput == null) {
-                // shard is getting closed on us
-                throw new IndexShardClosedException(request.shardId());
+                    onGoingRecovery.openIndexOutputs.put(request.name(), indexOutput);
+                    onGoingRecovery.pendingFileChunks.put(request.name(), new TreeMap<Long, RecoveryStatus.PendingFileChunk>());
+                }
             }
+            // the chunks written along with this one, which were waiting for it to be acknowledged
+            List<TransportChannel> writtenChannels = null;
             synchronized (indexOutput) {
+                SortedMap<Long, RecoveryStatus.PendingFileChunk> pendingChunks = onGoingRecovery.pendingFileChunks.get(request.name());
                 try {
-                    if (recoverySettings.rateLimiter() != null) {
-                        recoverySettings.rateLimiter().pause(request.content().length());
+                    if (pendingChunks == null || onGoingRecovery.openIndexOutputs.get(request.name()) != indexOutput) {
+                        // shard is getting closed on us, or the file is getting resent
+                        throw new IndexShardClosedException(request.shardId());
                     }
-                    BytesReference content = request.content();
-                    if (!content.hasArray()) {
-                        content = content.toBytesArray();
-                    }
-                    indexOutput.writeBytes(content.array(), content.arrayOffset(), content.length());
-                    onGoingRecovery.currentFilesSize.addAndGet(request.length());
-                    if (indexOutput.getFilePointer() == request.length()) {
-                        // we are done
-                        indexOutput.close();
-                        // write the checksum
-                        if (request.checksum() != null) {
-                            onGoingRecovery.checksums.put(request.name(), request.checksum());
+                    verifyChunk(onGoingRecovery, request);
+                    if (request.position() != indexOutput.getFilePointer()) {
+                        // a previous chunk is still on its way, write this one once it is, and only acknowledge
+                        // it then, so the source does not send more chunks than it keeps in flight
+                        pendingChunks.put(request.position(), new RecoveryStatus.PendingFileChunk(request, channel));
+                        return;
+                    } else {
+                        writeChunk(onGoingRecovery, indexOutput, request);
+                        RecoveryStatus.PendingFileChunk pending;
+                        while ((pending = pendingChunks.remove(indexOutput.getFilePointer())) != null) {
+                            if (writtenChannels == null) {
+                                writtenChannels = new ArrayList<TransportChannel>();
+                            }
+                            writtenChannels.add(pending.channel);
+                            writeChunk(onGoingRecovery, indexOutput, pending.request);
+                        }
+                        if (indexOutput.getFilePointer() > request.length() || (indexOutput.getFilePointer() == request.length() && !pendingChunks.isEmpty())) {
+                            throw new CorruptIndexException("recovered file [" + request.name() + "] has chunks past or overlapping its length [" + request.length() + "]");
+                        }
+                        if (indexOutput.getFilePointer() == request.length()) {
+                            // we are done
+                            indexOutput.close();
+                            // write the checksum
+                            if (request.checksum() != null) {
+                                onGoingRecovery.checksums.put(request.name(), request.checksum());
+                            }
+                            store.directory().sync(Collections.singleton(request.name()));
+                            onGoingRecovery.openIndexOutputs.remove(request.name());
+                            onGoingRecovery.pendingFileChunks.remove(request.name());
                         }
-                        store.directory().sync(Collections.singleton(request.name()));
-                        onGoingRecovery.openIndexOutputs.remove(request.name());
                     }
                 } catch (IOException e) {
                     onGoingRecovery.openIndexOutputs.remove(request.name());
+                    onGoingRecovery.pendingFileChunks.remove(request.name());
+                    failPendingFileChunks(pendingChunks, e);
+                    if (writtenChannels != null) {
+                        for (TransportChannel writtenChannel : writtenChannels) {
+                            try {
+                                writtenChannel.sendResponse(e);
+                            } catch (IOException e1) {
+                                // ignore
+                            }
+                        }
+                    }
                     try {
                         indexOutput.close();
                     } catch (IOException e1) {
@@ -645,7 +813,38 @@ public class RecoveryTarget extends AbstractComponent {
                     throw e;
                 }
             }
+            if (writtenChannels != null) {
+                for (TransportChannel writtenChannel : writtenChannels) {
+                    writtenChannel.sendResponse(TransportResponse.Empty.INSTANCE);
+                }
+            }
             channel.sendResponse(TransportResponse.Empty.INSTANCE);
         }
+
+        /**
+         * Verifies the chunk is within its file, and the file has the length announced with the files to recover.
+         */
+        private void verifyChunk(RecoveryStatus onGoingRecovery, RecoveryFileChunkRequest chunk) throws IOException {
+            long expectedLength = onGoingRecovery.phase1FileSize(chunk.name());
+            if (expectedLength != -1 && chunk.length() != expectedLength) {
+                throw new CorruptIndexException("recovered file [" + chunk.name() + "] has length [" + chunk.length() + "], expected [" + expectedLength + "]");
+            }
+            if (chunk.position() + chunk.content().length() > chunk.length()) {
+                throw new CorruptIndexException("recovered file [" + chunk.name() + "] has a chunk at [" + chunk.position() + "] of [" + chunk.content().length()
+                        + "] bytes, past its length [" + chunk.length() + "]");
+            }
+        }
+
+        private void writeChunk(RecoveryStatus onGoingRecovery, IndexOutput indexOutput, RecoveryFileChunkRequest chunk) throws IOException {
+            if (recoverySettings.rateLimiter() != null) {
+                recoverySettings.rateLimiter().pause(chunk.content().length());
+            }
+            BytesReference content = chunk.content();
+            if (!content.hasArray()) {
+                content = content.toBytesArray();
+            }
+            indexOutput.writeBytes(content.array(), content.arrayOffset(), content.length());
+            onGoingRecovery.currentFilesSize.addAndGet(chunk.length());
+        }
     }
 }
@@ -0,0 +1,92 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices.recovery;
+
+/**
+ * Sizes the file chunks sent during recovery, and how many of them are kept in flight per file, based on the
+ * round trip times of the chunks acknowledged by the target. Shared by all the files of a recovery, since they
+ * go over the same link.
+ * <p/>
+ * The window (bytes in flight per file) starts at a single chunk of the configured size, and grows as long as
+ * the round trip time stays close to the smallest one seen. Once the round trip time grows, the extra time is
+ * spent queued (in the network or on the target), and the window shrinks back.
+ */
+class RecoveryTransferWindow {
+
+    // the number of chunks the window is split to, before the chunk size grows past the minimum (or less, when
+    // fewer chunks can be in flight)
+    private static final int TARGET_CHUNKS = 4;
+
+    private final long minChunkSize;
+    private final long maxChunkSize;
+    private final int maxChunksInFlight;
+    private final int targetChunks;
+    private final long maxWindow;
+
+    private long window;
+    private long minRtt = Long.MAX_VALUE;
+    private double smoothedRtt = -1;
+
+    RecoveryTransferWindow(long minChunkSize, long maxChunkSize, int maxChunksInFlight) {
+        this.minChunkSize = Math.max(1, minChunkSize);
+        this.maxChunkSize = Math.max(this.minChunkSize, maxChunkSize);
+        this.maxChunksInFlight = Math.max(1, maxChunksInFlight);
+        this.targetChunks = Math.min(TARGET_CHUNKS, this.maxChunksInFlight);
+        this.maxWindow = this.maxChunkSize * this.maxChunksInFlight;
+        this.window = this.minChunkSize;
+    }
+
+    /**
+     * The size of the next chunk to send.
+     */
+    synchronized int chunkSize() {
+        return (int) Math.min(maxChunkSize, Math.max(minChunkSize, window / targetChunks));
+    }
+
+    /**
+     * The number of chunks of a file that can be waiting for their acknowledgement.
+     */
+    synchronized int chunksInFlight() {
+        long chunkSize = chunkSize();
+        return (int) Math.min(maxChunksInFlight, Math.max(1, (window + chunkSize - 1) / chunkSize));
+    }
+
+    synchronized long window() {
+        return window;
+    }
+
+    /**
+     * Called once a chunk got acknowledged by the target, <tt>rttNanos</tt> after it was sent.
+     */
+    synchronized void onAcknowledged(long rttNanos) {
+        rttNanos = Math.max(1, rttNanos);
+        minRtt = Math.min(minRtt, rttNanos);
+        smoothedRtt = smoothedRtt < 0 ? rttNanos : 0.875 * smoothedRtt + 0.125 * rttNanos;
+        // the part of the window which is queued rather than transferred, grow while it is less than a quarter
+        // of the window (a chunk, when it is split in four), shrink once it is more than three quarters
+        double queued = 1 - minRtt / smoothedRtt;
+        long chunkSize = chunkSize();
+        if (queued < 1.0 / TARGET_CHUNKS) {
+            window = Math.min(maxWindow, window + chunkSize);
+        } else if (queued > 3.0 / TARGET_CHUNKS) {
+            window = Math.max(minChunkSize, window - chunkSize);
+        }
+    }
+}
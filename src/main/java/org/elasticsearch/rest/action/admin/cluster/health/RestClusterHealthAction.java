@@ -106,6 +106,7 @@ public class RestClusterHealthAction extends BaseRestHandler {
                     builder.field(Fields.RELOCATING_SHARDS, response.relocatingShards());
                     builder.field(Fields.INITIALIZING_SHARDS, response.initializingShards());
                     builder.field(Fields.UNASSIGNED_SHARDS, response.unassignedShards());
+                    builder.field(Fields.NUMBER_OF_PENDING_TASKS, response.numberOfPendingTasks());
 
                     if (!response.validationFailures().isEmpty()) {
                         builder.startArray(Fields.VALIDATION_FAILURES);
@@ -205,6 +206,7 @@ public class RestClusterHealthAction extends BaseRestHandler {
         static final XContentBuilderString NUMBER_OF_REPLICAS = new XContentBuilderString("number_of_replicas");
         static final XContentBuilderString NUMBER_OF_NODES = new XContentBuilderString("number_of_nodes");
         static final XContentBuilderString NUMBER_OF_DATA_NODES = new XContentBuilderString("number_of_data_nodes");
+        static final XContentBuilderString NUMBER_OF_PENDING_TASKS = new XContentBuilderString("number_of_pending_tasks");
         static final XContentBuilderString ACTIVE_PRIMARY_SHARDS = new XContentBuilderString("active_primary_shards");
         static final XContentBuilderString ACTIVE_SHARDS = new XContentBuilderString("active_shards");
         static final XContentBuilderString RELOCATING_SHARDS = new XContentBuilderString("relocating_shards");
@@ -19,22 +19,33 @@
 
 package org.elasticsearch.rest.action.bulk;
 
+import com.google.common.collect.Lists;
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.WriteConsistencyLevel;
 import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.support.replication.ReplicationType;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.client.Requests;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentBuilderString;
 import org.elasticsearch.rest.*;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 
 import static org.elasticsearch.rest.RestRequest.Method.POST;
 import static org.elasticsearch.rest.RestRequest.Method.PUT;
@@ -53,10 +64,19 @@ import static org.elasticsearch.rest.action.support.RestXContentBuilder.restCont
  */
 public class RestBulkAction extends BaseRestHandler {
 
+    // when streaming, the body is executed in batches of (up to) these many actions or bytes
+    private final int streamBatchActions;
+    private final ByteSizeValue streamBatchSize;
+    private final int streamConcurrentBatches;
+
     @Inject
     public RestBulkAction(Settings settings, Client client, RestController controller) {
         super(settings, client);
 
+        this.streamBatchActions = Math.max(1, componentSettings.getAsInt("stream.batch_actions", 1000));
+        this.streamBatchSize = componentSettings.getAsBytesSize("stream.batch_size", new ByteSizeValue(5, ByteSizeUnit.MB));
+        this.streamConcurrentBatches = Math.max(1, componentSettings.getAsInt("stream.concurrent_batches", 2));
+
         controller.registerHandler(POST, "/_bulk", this);
         controller.registerHandler(PUT, "/_bulk", this);
         controller.registerHandler(POST, "/{index}/_bulk", this);
@@ -67,22 +87,15 @@ public class RestBulkAction extends BaseRestHandler {
 
     @Override
     public void handleRequest(final RestRequest request, final RestChannel channel) {
-        BulkRequest bulkRequest = Requests.bulkRequest();
-        bulkRequest.listenerThreaded(false);
-        String defaultIndex = request.param("index");
-        String defaultType = request.param("type");
-
-        String replicationType = request.param("replication");
-        if (replicationType != null) {
-            bulkRequest.replicationType(ReplicationType.fromString(replicationType));
-        }
-        String consistencyLevel = request.param("consistency");
-        if (consistencyLevel != null) {
-            bulkRequest.consistencyLevel(WriteConsistencyLevel.fromString(consistencyLevel));
+        if (request.paramAsBoolean("stream", false)) {
+            new StreamedBulk(request, channel).start();
+            return;
         }
-        bulkRequest.refresh(request.paramAsBoolean("refresh", bulkRequest.refresh()));
+
+        BulkRequest bulkRequest = newBulkRequest(request);
+        bulkRequest.listenerThreaded(false);
         try {
-            bulkRequest.add(request.content(), request.contentUnsafe(), defaultIndex, defaultType);
+            bulkRequest.add(request.content(), request.contentUnsafe(), request.param("index"), request.param("type"));
         } catch (Exception e) {
             try {
                 XContentBuilder builder = restContentBuilder(request);
@@ -99,38 +112,7 @@ public class RestBulkAction extends BaseRestHandler {
                 try {
                     XContentBuilder builder = restContentBuilder(request);
                     builder.startObject();
-                    builder.field(Fields.TOOK, response.tookInMillis());
-                    builder.startArray(Fields.ITEMS);
-                    for (BulkItemResponse itemResponse : response) {
-                        builder.startObject();
-                        builder.startObject(itemResponse.opType());
-                        builder.field(Fields._INDEX, itemResponse.index());
-                        builder.field(Fields._TYPE, itemResponse.type());
-                        builder.field(Fields._ID, itemResponse.id());
-                        long version = itemResponse.version();
-                        if (version != -1) {
-                            builder.field(Fields._VERSION, itemResponse.version());
-                        }
-                        if (itemResponse.failed()) {
-                            builder.field(Fields.ERROR, itemResponse.failure().message());
-                        } else {
-                            builder.field(Fields.OK, true);
-                        }
-                        if (itemResponse.response() instanceof IndexResponse) {
-                            IndexResponse indexResponse = itemResponse.response();
-                            if (indexResponse.matches() != null) {
-                                builder.startArray(Fields.MATCHES);
-                                for (String match : indexResponse.matches()) {
-                                    builder.value(match);
-                                }
-                                builder.endArray();
-                            }
-                        }
-                        builder.endObject();
-                        builder.endObject();
-                    }
-                    builder.endArray();
-
+                    toXContent(builder, response.tookInMillis(), response);
                     builder.endObject();
                     channel.sendResponse(new XContentRestResponse(request, OK, builder));
                 } catch (Exception e) {
@@ -149,6 +131,201 @@ public class RestBulkAction extends BaseRestHandler {
         });
     }
 
+    private BulkRequest newBulkRequest(RestRequest request) {
+        BulkRequest bulkRequest = Requests.bulkRequest();
+        String replicationType = request.param("replication");
+        if (replicationType != null) {
+            bulkRequest.replicationType(ReplicationType.fromString(replicationType));
+        }
+        String consistencyLevel = request.param("consistency");
+        if (consistencyLevel != null) {
+            bulkRequest.consistencyLevel(WriteConsistencyLevel.fromString(consistencyLevel));
+        }
+        bulkRequest.refresh(request.paramAsBoolean("refresh", bulkRequest.refresh()));
+        return bulkRequest;
+    }
+
+    private static void toXContent(XContentBuilder builder, long tookInMillis, Iterable<BulkItemResponse> items) throws IOException {
+        builder.field(Fields.TOOK, tookInMillis);
+        builder.startArray(Fields.ITEMS);
+        for (BulkItemResponse itemResponse : items) {
+            builder.startObject();
+            builder.startObject(itemResponse.opType());
+            builder.field(Fields._INDEX, itemResponse.index());
+            builder.field(Fields._TYPE, itemResponse.type());
+            builder.field(Fields._ID, itemResponse.id());
+            long version = itemResponse.version();
+            if (version != -1) {
+                builder.field(Fields._VERSION, itemResponse.version());
+            }
+            if (itemResponse.failed()) {
+                builder.field(Fields.ERROR, itemResponse.failure().message());
+            } else {
+                builder.field(Fields.OK, true);
+            }
+            if (itemResponse.response() instanceof IndexResponse) {
+                IndexResponse indexResponse = itemResponse.response();
+                if (indexResponse.matches() != null) {
+                    builder.startArray(Fields.MATCHES);
+                    for (String match : indexResponse.matches()) {
+                        builder.value(match);
+                    }
+                    builder.endArray();
+                }
+            }
+            builder.endObject();
+            builder.endObject();
+        }
+        builder.endArray();
+    }
+
+    /**
+     * Executes the body in batches, parsing the next batch only once one of the (up to <tt>concurrent_batches</tt>)
+     * batches in flight is done, so the parsed actions held in memory are bounded no matter how large the body is.
+     * Each batch is a regular bulk request, grouped by shard. Actions of executed batches are not rolled back if a
+     * later part of the body fails to parse, the actions of the batch that failed to parse are reported as failed
+     * items.
+     */
+    class StreamedBulk {
+
+        private final RestRequest request;
+        private final RestChannel channel;
+        private final BytesReference content;
+        private final boolean contentUnsafe;
+        private final long startTime = System.currentTimeMillis();
+
+        // the responses of each batch, in the order of the batches
+        private final List<BulkItemResponse[]> batchResponses = Lists.newArrayList();
+        private int from = 0;
+        private int batchesInFlight;
+        private Exception parseFailure;
+        private boolean responded;
+
+        StreamedBulk(RestRequest request, RestChannel channel) {
+            this.request = request;
+            this.channel = channel;
+            // the body is parsed while batches execute, and after the request handling returned, when an unsafe
+            // content may already be reused by the transport
+            if (request.contentUnsafe()) {
+                this.content = request.content().copyBytesArray();
+            } else {
+                this.content = request.content();
+            }
+            this.contentUnsafe = false;
+        }
+
+        void start() {
+            for (int i = 0; i < streamConcurrentBatches; i++) {
+                if (!executeNextBatch()) {
+                    break;
+                }
+            }
+            maybeRespond();
+        }
+
+        /**
+         * Parses and executes the next batch, returns <tt>false</tt> if there is nothing left to execute.
+         */
+        private boolean executeNextBatch() {
+            final BulkRequest batch = newBulkRequest(request);
+            // don't execute the next batch on the thread executing the previous one
+            batch.listenerThreaded(true);
+            final int batchIndex;
+            synchronized (this) {
+                if (from == -1 || parseFailure != null) {
+                    return false;
+                }
+                try {
+                    from = batch.addBatch(content, from, contentUnsafe, request.param("index"), request.param("type"), null, streamBatchActions, streamBatchSize.bytes());
+                } catch (Exception e) {
+                    parseFailure = e;
+                    if (batch.numberOfActions() > 0) {
+                        // the actions parsed before the failure are not executed
+                        batchResponses.add(failedItems(batch, "not executed, failed to parse the rest of the batch: " + e.getMessage()));
+                    }
+                    return false;
+                }
+                if (batch.numberOfActions() == 0) {
+                    from = -1;
+                    return false;
+                }
+                batchIndex = batchResponses.size();
+                batchResponses.add(null);
+                batchesInFlight++;
+            }
+            client.bulk(batch, new ActionListener<BulkResponse>() {
+                @Override
+                public void onResponse(BulkResponse response) {
+                    onBatchDone(batchIndex, response.items());
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    onBatchDone(batchIndex, failedItems(batch, ExceptionsHelper.detailedMessage(e)));
+                }
+            });
+            return true;
+        }
+
+        /**
+         * Creates failures for all the actions of the batch.
+         */
+        private BulkItemResponse[] failedItems(BulkRequest batch, String message) {
+            BulkItemResponse[] items = new BulkItemResponse[batch.numberOfActions()];
+            for (int i = 0; i < items.length; i++) {
+                ActionRequest actionRequest = batch.requests().get(i);
+                if (actionRequest instanceof IndexRequest) {
+                    IndexRequest indexRequest = (IndexRequest) actionRequest;
+                    items[i] = new BulkItemResponse(i, indexRequest.opType().toString().toLowerCase(Locale.ENGLISH),
+                            new BulkItemResponse.Failure(indexRequest.index(), indexRequest.type(), indexRequest.id(), message));
+                } else {
+                    DeleteRequest deleteRequest = (DeleteRequest) actionRequest;
+                    items[i] = new BulkItemResponse(i, "delete",
+                            new BulkItemResponse.Failure(deleteRequest.index(), deleteRequest.type(), deleteRequest.id(), message));
+                }
+            }
+            return items;
+        }
+
+        private void onBatchDone(int batchIndex, BulkItemResponse[] items) {
+            synchronized (this) {
+                batchResponses.set(batchIndex, items);
+                batchesInFlight--;
+            }
+            executeNextBatch();
+            maybeRespond();
+        }
+
+        private void maybeRespond() {
+            synchronized (this) {
+                if (responded || batchesInFlight > 0 || (from != -1 && parseFailure == null)) {
+                    return;
+                }
+                responded = true;
+            }
+            try {
+                XContentBuilder builder = restContentBuilder(request);
+                builder.startObject();
+                if (parseFailure != null) {
+                    builder.field(Fields.ERROR, parseFailure.getMessage());
+                }
+                List<BulkItemResponse> items = Lists.newArrayList();
+                for (BulkItemResponse[] batchItems : batchResponses) {
+                    items.addAll(Arrays.asList(batchItems));
+                }
+                toXContent(builder, System.currentTimeMillis() - startTime, items);
+                builder.endObject();
+                channel.sendResponse(new XContentRestResponse(request, parseFailure == null ? OK : BAD_REQUEST, builder));
+            } catch (Exception e) {
+                try {
+                    channel.sendResponse(new XContentThrowableRestResponse(request, e));
+                } catch (IOException e1) {
+                    logger.error("Failed to send failure response", e1);
+                }
+            }
+        }
+    }
+
     static final class Fields {
         static final XContentBuilderString ITEMS = new XContentBuilderString("items");
         static final XContentBuilderString _INDEX = new XContentBuilderString("_index");
@@ -26,6 +26,7 @@ import org.elasticsearch.common.inject.AbstractModule;
 import org.elasticsearch.common.inject.multibindings.MapBinder;
 import org.elasticsearch.common.inject.multibindings.Multibinder;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.script.expression.ExpressionScriptEngineService;
 import org.elasticsearch.script.mvel.MvelScriptEngineService;
 
 import java.util.List;
@@ -75,6 +76,7 @@ public class ScriptModule extends AbstractModule {
 
         Multibinder<ScriptEngineService> multibinder = Multibinder.newSetBinder(binder(), ScriptEngineService.class);
         multibinder.addBinding().to(NativeScriptEngineService.class);
+        multibinder.addBinding().to(ExpressionScriptEngineService.class);
         try {
             multibinder.addBinding().to(MvelScriptEngineService.class);
         } catch (Throwable t) {
@@ -210,7 +210,8 @@ public class ScriptService extends AbstractComponent {
             return false;
         }
         // we allow "native" executions since they register through plugins, so they are "allowed"
-        return !"native".equals(lang);
+        // and "expression" ones since they can only compute over numeric fields, params and the score
+        return !"native".equals(lang) && !"expression".equals(lang);
     }
 
     public static class CacheKey {
@@ -0,0 +1,412 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.script.expression;
+
+import java.util.List;
+
+/**
+ * A compiled expression, a tree of nodes evaluating to a primitive double. The tree is immutable and
+ * shared by all the scripts executing it, the per execution state (the current doc, score, field values
+ * and parameters) is held by the {@link ExpressionSearchScript} passed to {@link #evaluate}.
+ */
+public abstract class Expression {
+
+    /**
+     * Evaluates the expression against the current state of the script.
+     */
+    public abstract double evaluate(ExpressionSearchScript script);
+
+    /**
+     * The root of a parsed expression, along with the fields and parameters it reads, indexed by the
+     * slots used by the {@link Field} and {@link Param} nodes.
+     */
+    public static class Compiled {
+
+        private final String source;
+        private final Expression root;
+        private final List<String> fields;
+        private final List<String> params;
+
+        public Compiled(String source, Expression root, List<String> fields, List<String> params) {
+            this.source = source;
+            this.root = root;
+            this.fields = fields;
+            this.params = params;
+            }
+
+        public String source() {
+            return source;
+        }
+
+        public Expression root() {
+            return root;
+        }
+
+        public List<String> fields() {
+            return fields;
+        }
+
+        public List<String> params() {
+            return params;
+        }
+    }
+
+    static final class Constant extends Expression {
+
+        final double value;
+
+        Constant(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public double evaluate(ExpressionSearchScript script) {
+            return value;
+        }
+    }
+
+    static final class Param extends Expression {
+
+        private final int slot;
+
+        Param(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public double evaluate(ExpressionSearchScript script) {
+            return script.params[slot];
+        }
+    }
+
+    static final class Score extends Expression {
+
+        @Override
+        public double evaluate(ExpressionSearchScript script) {
+            return script.score();
+        }
+    }
+
+    /**
+     * The (first) value of the field for the current doc, 0 if the doc has no value.
+     */
+    static final class Field extends Expression {
+
+        private final int slot;
+
+        Field(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public double evaluate(ExpressionSearchScript script) {
+            return script.values[slot].getValueMissing(script.docId, 0);
+        }
+    }
+
+    /**
+     * 1 if the current doc has no value for the field, 0 otherwise.
+     */
+    static final class FieldEmpty extends Expression {
+
+        private final int slot;
+
+        FieldEmpty(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public double evaluate(ExpressionSearchScript script) {
+            return script.values[slot].hasValue(script.docId) ? 0 : 1;
+        }
+    }
+
+    static final class Negate extends Expression {
+
+        private final Expression operand;
+
+        Negate(Expression operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public double evaluate(ExpressionSearchScript script) {
+            return -operand.evaluate(script);
+        }
+    }
+
+    static final class Not extends Expression {
+
+        private final Expression operand;
+
+        Not(Expression operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public double evaluate(ExpressionSearchScript script) {
+            return operand.evaluate(script) == 0 ? 1 : 0;
+        }
+    }
+
+    static final class Add extends Expression {
+
+        private final Expression left;
+        private final Expression right;
+
+        Add(Expression left, Expression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public double evaluate(ExpressionSearchScript script) {
+            return left.evaluate(script) + right.evaluate(script);
+        }
+    }
+
+    static final class Subtract extends Expression {
+
+        private final Expression left;
+        private final Expression right;
+
+        Subtract(Expression left, Expression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public double evaluate(ExpressionSearchScript script) {
+            return left.evaluate(script) - right.evaluate(script);
+        }
+    }
+
+    static final class Multiply extends Expression {
+
+        private final Expression left;
+        private final Expression right;
+
+        Multiply(Expression left, Expression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public double evaluate(ExpressionSearchScript script) {
+            return left.evaluate(script) * right.evaluate(script);
+        }
+    }
+
+    static final class Divide extends Expression {
+
+        private final Expression left;
+        private final Expression right;
+
+        Divide(Expression left, Expression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public double evaluate(ExpressionSearchScript script) {
+            return left.evaluate(script) / right.evaluate(script);
+        }
+    }
+
+    static final class Remainder extends Expression {
+
+        private final Expression left;
+        private final Expression right;
+
+        Remainder(Expression left, Expression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public double evaluate(ExpressionSearchScript script) {
+            return left.evaluate(script) % right.evaluate(script);
+        }
+    }
+
+    /**
+     * Comparisons and boolean operators evaluate to 1 (true) or 0 (false), any non 0 value is true.
+     */
+    static final class Compare extends Expression {
+
+        static final int LT = 0, LTE = 1, GT = 2, GTE = 3, EQ = 4, NEQ = 5;
+
+        private final int op;
+        private final Expression left;
+        private final Expression right;
+
+        Compare(int op, Expression left, Expression right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public double evaluate(ExpressionSearchScript script) {
+            double l = left.evaluate(script);
+            double r = right.evaluate(script);
+            boolean result;
+            switch (op) {
+                case LT:
+                    result = l < r;
+                    break;
+                case LTE:
+                    result = l <= r;
+                    break;
+                case GT:
+                    result = l > r;
+                    break;
+                case GTE:
+                    result = l >= r;
+                    break;
+                case EQ:
+                    result = l == r;
+                    break;
+                default:
+                    result = l != r;
+            }
+            return result ? 1 : 0;
+        }
+    }
+
+    static final class And extends Expression {
+
+        private final Expression left;
+        private final Expression right;
+
+        And(Expression left, Expression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public double evaluate(ExpressionSearchScript script) {
+            return left.evaluate(script) != 0 && right.evaluate(script) != 0 ? 1 : 0;
+        }
+    }
+
+    static final class Or extends Expression {
+
+        private final Expression left;
+        private final Expression right;
+
+        Or(Expression left, Expression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public double evaluate(ExpressionSearchScript script) {
+            return left.evaluate(script) != 0 || right.evaluate(script) != 0 ? 1 : 0;
+        }
+    }
+
+    static final class Conditional extends Expression {
+
+        private final Expression condition;
+        private final Expression then;
+        private final Expression otherwise;
+
+        Conditional(Expression condition, Expression then, Expression otherwise) {
+            this.condition = condition;
+            this.then = then;
+            this.otherwise = otherwise;
+        }
+
+        @Override
+        public double evaluate(ExpressionSearchScript script) {
+            return condition.evaluate(script) != 0 ? then.evaluate(script) : otherwise.evaluate(script);
+        }
+    }
+
+    /**
+     * The built in functions, all operating on and returning doubles.
+     */
+    static final class Function extends Expression {
+
+        static final String[] NAMES = new String[]{
+                "abs", "sqrt", "ln", "log10", "exp", "floor", "ceil", "sin", "cos", "tan", "min", "max", "pow", "atan2"
+        };
+        // the number of arguments of each function, indexed like NAMES
+        static final int[] ARITIES = new int[]{1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 2, 2, 2, 2};
+
+        static final int ABS = 0, SQRT = 1, LN = 2, LOG10 = 3, EXP = 4, FLOOR = 5, CEIL = 6, SIN = 7, COS = 8, TAN = 9,
+                MIN = 10, MAX = 11, POW = 12, ATAN2 = 13;
+
+        private final int function;
+        private final Expression arg1;
+        private final Expression arg2;
+
+        Function(int function, Expression arg1, Expression arg2) {
+            this.function = function;
+            this.arg1 = arg1;
+            this.arg2 = arg2;
+        }
+
+        static int lookup(String name) {
+            for (int i = 0; i < NAMES.length; i++) {
+                if (NAMES[i].equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public double evaluate(ExpressionSearchScript script) {
+            double a = arg1.evaluate(script);
+            switch (function) {
+                case ABS:
+                    return Math.abs(a);
+                case SQRT:
+                    return Math.sqrt(a);
+                case LN:
+                    return Math.log(a);
+                case LOG10:
+                    return Math.log10(a);
+                case EXP:
+                    return Math.exp(a);
+                case FLOOR:
+                    return Math.floor(a);
+                case CEIL:
+                    return Math.ceil(a);
+                case SIN:
+                    return Math.sin(a);
+                case COS:
+                    return Math.cos(a);
+                case TAN:
+                    return Math.tan(a);
+                case MIN:
+                    return Math.min(a, arg2.evaluate(script));
+                case MAX:
+                    return Math.max(a, arg2.evaluate(script));
+                case POW:
+                    return Math.pow(a, arg2.evaluate(script));
+                default:
+                    return Math.atan2(a, arg2.evaluate(script));
+            }
+        }
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.script.expression;
+
+import com.google.common.collect.Lists;
+import org.elasticsearch.script.ScriptException;
+
+import java.util.List;
+
+/**
+ * A recursive descent parser of numeric expressions, for example <tt>doc['price'].value * factor + ln(_score)</tt>.
+ * <p/>
+ * Supports number literals, parameters (bound by name from the script params), <tt>_score</tt>,
+ * <tt>doc['field'].value</tt> and <tt>doc['field'].empty</tt> (<tt>.value</tt> can be omitted),
+ * the arithmetic, comparison, boolean and conditional (<tt>?:</tt>) operators, and the functions
+ * listed in {@link Expression.Function}. All values are doubles, booleans are represented as 1 and 0.
+ */
+public class ExpressionParser {
+
+    private final String source;
+    private int pos;
+
+    private final List<String> fields = Lists.newArrayList();
+    private final List<String> params = Lists.newArrayList();
+
+    private ExpressionParser(String source) {
+        this.source = source;
+    }
+
+    public static Expression.Compiled parse(String source) throws ScriptException {
+        ExpressionParser parser = new ExpressionParser(source);
+        Expression root = parser.conditional();
+        parser.skipWhitespace();
+        if (parser.pos < source.length()) {
+            throw parser.error("unexpected character [" + source.charAt(parser.pos) + "]");
+        }
+        return new Expression.Compiled(source, root, parser.fields, parser.params);
+    }
+
+    private Expression conditional() {
+        Expression condition = or();
+        if (consume('?')) {
+            Expression then = conditional();
+            expect(':');
+            Expression otherwise = conditional();
+            return new Expression.Conditional(condition, then, otherwise);
+        }
+        return condition;
+    }
+
+    private Expression or() {
+        Expression left = and();
+        while (consume("||")) {
+            left = new Expression.Or(left, and());
+        }
+        return left;
+    }
+
+    private Expression and() {
+        Expression left = comparison();
+        while (consume("&&")) {
+            left = new Expression.And(left, comparison());
+        }
+        return left;
+    }
+
+    private Expression comparison() {
+        Expression left = additive();
+        while (true) {
+            int op;
+            if (consume("<=")) {
+                op = Expression.Compare.LTE;
+            } else if (consume(">=")) {
+                op = Expression.Compare.GTE;
+            } else if (consume("==")) {
+                op = Expression.Compare.EQ;
+            } else if (consume("!=")) {
+                op = Expression.Compare.NEQ;
+            } else if (consume('<')) {
+                op = Expression.Compare.LT;
+            } else if (consume('>')) {
+                op = Expression.Compare.GT;
+            } else {
+                return left;
+            }
+            left = new Expression.Compare(op, left, additive());
+        }
+    }
+
+    private Expression additive() {
+        Expression left = multiplicative();
+        while (true) {
+            if (consume('+')) {
+                left = new Expression.Add(left, multiplicative());
+            } else if (consume('-')) {
+                left = new Expression.Subtract(left, multiplicative());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Expression multiplicative() {
+        Expression left = unary();
+        while (true) {
+            if (consume('*')) {
+                left = new Expression.Multiply(left, unary());
+            } else if (consume('/')) {
+                left = new Expression.Divide(left, unary());
+            } else if (consume('%')) {
+                left = new Expression.Remainder(left, unary());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Expression unary() {
+        if (consume('-')) {
+            Expression operand = unary();
+            if (operand instanceof Expression.Constant) {
+                return new Expression.Constant(-((Expression.Constant) operand).value);
+            }
+            return new Expression.Negate(operand);
+        }
+        if (consume('+')) {
+            return unary();
+        }
+        if (peek() == '!' && peek(1) != '=') {
+            pos++;
+            return new Expression.Not(unary());
+        }
+        return primary();
+    }
+
+    private Expression primary() {
+        skipWhitespace();
+        if (pos >= source.length()) {
+            throw error("unexpected end of expression");
+        }
+        char c = source.charAt(pos);
+        if (c == '(') {
+            pos++;
+            Expression expression = conditional();
+            expect(')');
+            return expression;
+        }
+        if (Character.isDigit(c) || c == '.') {
+            return number();
+        }
+        if (Character.isJavaIdentifierStart(c)) {
+            String identifier = identifier();
+            if ("doc".equals(identifier)) {
+                return field();
+            }
+            if ("_score".equals(identifier)) {
+                return new Expression.Score();
+            }
+            if (consume('(')) {
+                return function(identifier);
+            }
+            return new Expression.Param(slot(params, identifier));
+        }
+        throw error("unexpected character [" + c + "]");
+    }
+
+    private Expression number() {
+        int start = pos;
+        while (pos < source.length() && (Character.isDigit(source.charAt(pos)) || source.charAt(pos) == '.')) {
+            pos++;
+        }
+        if (pos < source.length() && (source.charAt(pos) == 'e' || source.charAt(pos) == 'E')) {
+            pos++;
+            if (pos < source.length() && (source.charAt(pos) == '+' || source.charAt(pos) == '-')) {
+                pos++;
+            }
+            while (pos < source.length() && Character.isDigit(source.charAt(pos))) {
+                pos++;
+            }
+        }
+        String number = source.substring(start, pos);
+        try {
+            return new Expression.Constant(Double.parseDouble(number));
+        } catch (NumberFormatException e) {
+            pos = start;
+            throw error("invalid number [" + number + "]");
+        }
+    }
+
+    private Expression field() {
+        expect('[');
+        skipWhitespace();
+        char quote = peek();
+        if (quote != '\'' && quote != '"') {
+            throw error("expected a quoted field name");
+        }
+        int end = source.indexOf(quote, pos + 1);
+        if (end == -1) {
+            throw error("unterminated field name");
+        }
+        String field = source.substring(pos + 1, end);
+        pos = end + 1;
+        expect(']');
+        int slot = slot(fields, field);
+        skipWhitespace();
+        if (peek() == '.' && pos + 1 < source.length() && Character.isJavaIdentifierStart(source.charAt(pos + 1))) {
+            pos++;
+            String property = identifier();
+            if ("empty".equals(property)) {
+                return new Expression.FieldEmpty(slot);
+            }
+            if (!"value".equals(property)) {
+                throw error("unknown field property [" + property + "], only [value] and [empty] are supported");
+            }
+        }
+        return new Expression.Field(slot);
+    }
+
+    private Expression function(String name) {
+        int function = Expression.Function.lookup(name);
+        if (function == -1 && "log".equals(name)) {
+            function = Expression.Function.LN;
+        }
+        if (function == -1) {
+            throw error("unknown function [" + name + "]");
+        }
+        Expression arg1 = conditional();
+        Expression arg2 = null;
+        if (Expression.Function.ARITIES[function] == 2) {
+            expect(',');
+            arg2 = conditional();
+        }
+        expect(')');
+        return new Expression.Function(function, arg1, arg2);
+    }
+
+    private String identifier() {
+        int start = pos;
+        pos++;
+        while (pos < source.length() && Character.isJavaIdentifierPart(source.charAt(pos))) {
+            pos++;
+        }
+        return source.substring(start, pos);
+    }
+
+    private static int slot(List<String> names, String name) {
+        int slot = names.indexOf(name);
+        if (slot == -1) {
+            slot = names.size();
+            names.add(name);
+        }
+        return slot;
+    }
+
+    private char peek() {
+        return peek(0);
+    }
+
+    private char peek(int offset) {
+        skipWhitespace();
+        return pos + offset < source.length() ? source.charAt(pos + offset) : 0;
+    }
+
+    private boolean consume(char c) {
+        if (peek() == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean consume(String token) {
+        skipWhitespace();
+        if (source.startsWith(token, pos)) {
+            pos += token.length();
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!consume(c)) {
+            if (pos >= source.length()) {
+                throw error("expected [" + c + "] but reached the end of the expression");
+            }
+            throw error("expected [" + c + "] but found [" + source.charAt(pos) + "]");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private ScriptException error(String message) {
+        return new ScriptException("failed to parse expression [" + source + "] at position [" + pos + "]: " + message);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.script.expression;
+
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.fielddata.IndexFieldData;
+import org.elasticsearch.index.fielddata.IndexNumericFieldData;
+import org.elasticsearch.script.ExecutableScript;
+import org.elasticsearch.script.ScriptEngineService;
+import org.elasticsearch.script.ScriptException;
+import org.elasticsearch.script.SearchScript;
+import org.elasticsearch.search.lookup.SearchLookup;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A script engine for numeric expressions (see {@link ExpressionParser} for the syntax). Expressions are
+ * compiled once into a tree of primitive double evaluators, which makes them much cheaper to execute per
+ * doc than dynamic scripts, for example in custom score queries or script based sorting. Since they can only
+ * read numeric fields, parameters and the score, they are also safe to run when dynamic scripts are disabled.
+ */
+public class ExpressionScriptEngineService extends AbstractComponent implements ScriptEngineService {
+
+    @Inject
+    public ExpressionScriptEngineService(Settings settings) {
+        super(settings);
+    }
+
+    @Override
+    public String[] types() {
+        return new String[]{"expression"};
+    }
+
+    @Override
+    public String[] extensions() {
+        return new String[]{"expression"};
+    }
+
+    @Override
+    public Object compile(String script) {
+        return ExpressionParser.parse(script);
+    }
+
+    @Override
+    public ExecutableScript executable(Object compiledScript, @Nullable Map<String, Object> vars) {
+        Expression.Compiled compiled = (Expression.Compiled) compiledScript;
+        if (!compiled.fields().isEmpty()) {
+            throw new ScriptException("expression [" + compiled.source() + "] reads doc fields and can only be executed as part of a search");
+        }
+        return new ExpressionSearchScript(compiled, new IndexNumericFieldData[0], params(compiled, vars));
+    }
+
+    @Override
+    public SearchScript search(Object compiledScript, SearchLookup lookup, @Nullable Map<String, Object> vars) {
+        Expression.Compiled compiled = (Expression.Compiled) compiledScript;
+        List<String> fields = compiled.fields();
+        IndexNumericFieldData[] fieldData = new IndexNumericFieldData[fields.size()];
+        for (int i = 0; i < fieldData.length; i++) {
+            IndexFieldData indexFieldData = lookup.doc().fieldData(fields.get(i));
+            if (!(indexFieldData instanceof IndexNumericFieldData)) {
+                throw new ScriptException("expression [" + compiled.source() + "] can only read numeric fields, [" + fields.get(i) + "] is not numeric");
+            }
+            fieldData[i] = (IndexNumericFieldData) indexFieldData;
+        }
+        return new ExpressionSearchScript(compiled, fieldData, params(compiled, vars));
+    }
+
+    @Override
+    public Object execute(Object compiledScript, Map<String, Object> vars) {
+        return executable(compiledScript, vars).run();
+    }
+
+    @Override
+    public Object unwrap(Object value) {
+        return value;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private static double[] params(Expression.Compiled compiled, @Nullable Map<String, Object> vars) {
+        List<String> names = compiled.params();
+        double[] params = new double[names.size()];
+        for (int i = 0; i < params.length; i++) {
+            String name = names.get(i);
+            Object value = vars == null ? null : vars.get(name);
+            if (value == null) {
+                throw new ScriptException("expression [" + compiled.source() + "] requires the [" + name + "] parameter");
+            }
+            params[i] = toDouble(compiled, name, value);
+        }
+        return params;
+    }
+
+    static double toDouble(Expression.Compiled compiled, String name, Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof Boolean) {
+            return ((Boolean) value) ? 1 : 0;
+        }
+        throw new ScriptException("expression [" + compiled.source() + "] parameter [" + name + "] must be a number, got [" + value + "]");
+    }
+}
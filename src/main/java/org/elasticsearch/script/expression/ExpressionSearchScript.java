@@ -0,0 +1,127 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.script.expression;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.search.Scorer;
+import org.elasticsearch.index.fielddata.DoubleValues;
+import org.elasticsearch.index.fielddata.IndexNumericFieldData;
+import org.elasticsearch.script.ScriptException;
+import org.elasticsearch.script.SearchScript;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Executes a compiled {@link Expression}. Fields are read as primitive doubles straight from their field data,
+ * and the score and parameters are kept as primitives as well, so that evaluating the expression per doc
+ * does not allocate (as long as {@link #runAsDouble()} and friends are used instead of {@link #run()}).
+ */
+public class ExpressionSearchScript implements SearchScript {
+
+    private final Expression.Compiled compiled;
+    private final IndexNumericFieldData[] fieldData;
+
+    // the state read by the expression nodes
+    final double[] params;
+    final DoubleValues[] values;
+    int docId;
+
+    private Scorer scorer;
+    private float score = Float.NaN;
+
+    public ExpressionSearchScript(Expression.Compiled compiled, IndexNumericFieldData[] fieldData, double[] params) {
+        this.compiled = compiled;
+        this.fieldData = fieldData;
+        this.params = params;
+        this.values = new DoubleValues[fieldData.length];
+    }
+
+    double score() {
+        if (scorer == null) {
+            return score;
+        }
+        try {
+            return scorer.score();
+        } catch (IOException e) {
+            throw new ScriptException("failed to read the score for expression [" + compiled.source() + "]", e);
+        }
+    }
+
+    @Override
+    public void setScorer(Scorer scorer) {
+        this.scorer = scorer;
+    }
+
+    @Override
+    public void setNextReader(AtomicReaderContext context) {
+        for (int i = 0; i < fieldData.length; i++) {
+            values[i] = fieldData[i].load(context).getDoubleValues();
+        }
+    }
+
+    @Override
+    public void setNextDocId(int doc) {
+        this.docId = doc;
+    }
+
+    @Override
+    public void setNextSource(Map<String, Object> source) {
+        // expressions only read field data
+    }
+
+    @Override
+    public void setNextScore(float score) {
+        this.score = score;
+    }
+
+    @Override
+    public void setNextVar(String name, Object value) {
+        int slot = compiled.params().indexOf(name);
+        if (slot != -1) {
+            params[slot] = ExpressionScriptEngineService.toDouble(compiled, name, value);
+        }
+    }
+
+    @Override
+    public double runAsDouble() {
+        return compiled.root().evaluate(this);
+    }
+
+    @Override
+    public float runAsFloat() {
+        return (float) runAsDouble();
+    }
+
+    @Override
+    public long runAsLong() {
+        return (long) runAsDouble();
+    }
+
+    @Override
+    public Object run() {
+        return runAsDouble();
+    }
+
+    @Override
+    public Object unwrap(Object value) {
+        return value;
+    }
+}
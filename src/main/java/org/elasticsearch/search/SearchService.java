@@ -22,6 +22,7 @@ package org.elasticsearch.search;
 import com.google.common.collect.ImmutableMap;
 import org.apache.lucene.search.TopDocs;
 import org.elasticsearch.ElasticSearchException;
+import org.elasticsearch.ElasticSearchIllegalArgumentException;
 import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
@@ -44,6 +45,7 @@ import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.shard.service.IndexShard;
 import org.elasticsearch.indices.IndicesLifecycle;
 import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.indices.cache.query.IndicesQueryCache;
 import org.elasticsearch.indices.warmer.IndicesWarmer;
 import org.elasticsearch.script.ScriptService;
 import org.elasticsearch.search.dfs.CachedDfSource;
@@ -80,6 +82,8 @@ public class SearchService extends AbstractLifecycleComponent<SearchService> {
 
     private final ScriptService scriptService;
 
+    private final IndicesQueryCache indicesQueryCache;
+
     private final DfsPhase dfsPhase;
 
     private final QueryPhase queryPhase;
@@ -102,13 +106,14 @@ public class SearchService extends AbstractLifecycleComponent<SearchService> {
 
     @Inject
     public SearchService(Settings settings, ClusterService clusterService, IndicesService indicesService, IndicesLifecycle indicesLifecycle, IndicesWarmer indicesWarmer, ThreadPool threadPool,
-                         ScriptService scriptService, DfsPhase dfsPhase, QueryPhase queryPhase, FetchPhase fetchPhase) {
+                         ScriptService scriptService, IndicesQueryCache indicesQueryCache, DfsPhase dfsPhase, QueryPhase queryPhase, FetchPhase fetchPhase) {
         super(settings);
         this.threadPool = threadPool;
         this.clusterService = clusterService;
         this.indicesService = indicesService;
         this.indicesWarmer = indicesWarmer;
         this.scriptService = scriptService;
+        this.indicesQueryCache = indicesQueryCache;
         this.dfsPhase = dfsPhase;
         this.queryPhase = queryPhase;
         this.fetchPhase = fetchPhase;
@@ -191,8 +196,14 @@ public class SearchService extends AbstractLifecycleComponent<SearchService> {
             if (context.scroll() == null) {
                 throw new ElasticSearchException("Scroll must be provided when scanning...");
             }
+            if (context.resumableScan() && context.from() > 0) {
+                throw new ElasticSearchIllegalArgumentException("from is not supported by resumable scans, they resume after the last returned doc");
+            }
             contextProcessing(context);
             queryPhase.execute(context);
+            if (context.resumableScan()) {
+                context.releaseSearcher();
+            }
             contextProcessedSuccessfully(context);
             return context.queryResult();
         } catch (RuntimeException e) {
@@ -208,6 +219,10 @@ public class SearchService extends AbstractLifecycleComponent<SearchService> {
         SearchContext context = findContext(request.id());
         contextProcessing(context);
         try {
+            if (context.resumableScan()) {
+                // resume on the current point in time of the shard
+                context.acquireSearcher();
+            }
             processScroll(request, context);
             if (context.searchType() == SearchType.COUNT) {
                 // first scanning, reset the from to 0
@@ -220,6 +235,9 @@ public class SearchService extends AbstractLifecycleComponent<SearchService> {
             if (context.scroll() == null || context.fetchResult().hits().hits().length < context.size()) {
                 freeContext(request.id());
             } else {
+                if (context.resumableScan()) {
+                    context.releaseSearcher();
+                }
                 contextProcessedSuccessfully(context);
             }
             return new ScrollQueryFetchSearchResult(new QueryFetchSearchResult(context.queryResult(), context.fetchResult()), context.shardTarget());
@@ -239,7 +257,7 @@ public class SearchService extends AbstractLifecycleComponent<SearchService> {
             context.indexShard().searchService().onPreQueryPhase(context);
             long time = System.nanoTime();
             contextProcessing(context);
-            queryPhase.execute(context);
+            executeQueryPhaseWithCache(context);
             if (context.searchType() == SearchType.COUNT) {
                 freeContext(context.id());
             } else {
@@ -257,6 +275,27 @@ public class SearchService extends AbstractLifecycleComponent<SearchService> {
         }
     }
 
+    /**
+     * Executes the query phase, serving the result from the query cache when the request can be cached.
+     */
+    private void executeQueryPhaseWithCache(SearchContext context) throws ElasticSearchException {
+        if (!indicesQueryCache.canCache(context)) {
+            queryPhase.execute(context);
+            return;
+        }
+        try {
+            if (indicesQueryCache.loadIntoContext(context)) {
+                context.indexShard().searchService().onQueryCacheHit(context);
+                return;
+            }
+            context.indexShard().searchService().onQueryCacheMiss(context);
+            queryPhase.execute(context);
+            indicesQueryCache.put(context);
+        } catch (IOException e) {
+            throw new QueryPhaseExecutionException(context, "Failed to use the query cache", e);
+        }
+    }
+
     public ScrollQuerySearchResult executeQueryPhase(InternalScrollSearchRequest request) throws ElasticSearchException {
         SearchContext context = findContext(request.id());
         try {
@@ -89,6 +89,8 @@ public class SearchSourceBuilder implements ToXContent {
 
     private boolean trackScores = false;
 
+    private boolean resumableScan = false;
+
     private Float minScore;
 
     private long timeoutInMillis = -1;
@@ -332,6 +334,18 @@ public class SearchSourceBuilder implements ToXContent {
         return this;
     }
 
+    /**
+     * Applies when scanning, and controls if the shards release their searcher between two batches of the
+     * scan and resume from the last document returned (by uid), instead of keeping the point in time view
+     * the scan started with (and the segments it uses) open until the scan is done. A resumable scan sees
+     * the changes made while scanning, each live document is still returned at most once. Documents are
+     * returned in uid order, so <tt>from</tt> is not supported. Defaults to <tt>false</tt>.
+     */
+    public SearchSourceBuilder resumableScan(boolean resumableScan) {
+        this.resumableScan = resumableScan;
+        return this;
+    }
+
     /**
      * Add a facet to perform as part of the search.
      */
@@ -679,6 +693,10 @@ public class SearchSourceBuilder implements ToXContent {
             }
         }
 
+        if (resumableScan) {
+            builder.field("resumable_scan", resumableScan);
+        }
+
         if (indexBoost != null) {
             builder.startObject("indices_boost");
             for (TObjectFloatIterator<String> it = indexBoost.iterator(); it.hasNext(); ) {
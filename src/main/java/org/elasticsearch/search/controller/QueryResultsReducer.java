@@ -0,0 +1,223 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.controller;
+
+import com.google.common.collect.Lists;
+import org.apache.lucene.search.*;
+import org.apache.lucene.util.PriorityQueue;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.lucene.search.ShardFieldDocSortedHitQueue;
+import org.elasticsearch.search.SearchShardTarget;
+import org.elasticsearch.search.facet.Facet;
+import org.elasticsearch.search.facet.FacetProcessors;
+import org.elasticsearch.search.facet.InternalFacets;
+import org.elasticsearch.search.fetch.FetchSearchResultProvider;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.elasticsearch.search.query.QuerySearchResult;
+import org.elasticsearch.search.query.QuerySearchResultProvider;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reduces the query results of the shards while they are received. The results are buffered, and once the
+ * buffer is full their top docs are added to a queue of the top <tt>from + size</tt> docs and their facets
+ * are reduced along with the facets reduced so far. Only a light copy of each reduced result (its id, shard
+ * and hits totals) is then kept in the query results, so the memory needed by the reduce does not grow with
+ * the number of shards searched.
+ * <p/>
+ * Facets are reduced the same way the facets of several shards are, so for the terms facets only the top
+ * terms of each reduce are kept.
+ */
+public class QueryResultsReducer {
+
+    private static final ShardDoc[] EMPTY = new ShardDoc[0];
+
+    private final SearchPhaseController searchPhaseController;
+
+    private final FacetProcessors facetProcessors;
+
+    private final int bufferSize;
+
+    private final Map<SearchShardTarget, QuerySearchResultProvider> queryResults;
+
+    private final List<QuerySearchResult> buffer;
+
+    private PriorityQueue queue;
+
+    private int from;
+
+    private boolean sorted;
+
+    private int sortScoreIndex = -1;
+
+    private List<Facet> facets;
+
+    private long totalHits;
+
+    private float maxScore = Float.NEGATIVE_INFINITY;
+
+    private boolean timedOut;
+
+    QueryResultsReducer(SearchPhaseController searchPhaseController, FacetProcessors facetProcessors, int bufferSize,
+                        Map<SearchShardTarget, QuerySearchResultProvider> queryResults) {
+        this.searchPhaseController = searchPhaseController;
+        this.facetProcessors = facetProcessors;
+        this.bufferSize = bufferSize;
+        this.queryResults = queryResults;
+        this.buffer = Lists.newArrayListWithCapacity(bufferSize);
+    }
+
+    /**
+     * Adds the query result of a shard, reducing the buffered results if the buffer is full.
+     */
+    public synchronized void add(QuerySearchResult result) {
+        buffer.add(result);
+        if (buffer.size() >= bufferSize) {
+            reduceBuffer();
+        }
+    }
+
+    /**
+     * The top docs, from <tt>from</tt> and up to <tt>size</tt>, of all the shards.
+     */
+    public synchronized ShardDoc[] sortDocs() {
+        reduceBuffer();
+        if (queue == null) {
+            return EMPTY;
+        }
+        // the queue holds up to from + size docs, the "from" ones being down the queue
+        int resultDocsSize = queue.size() - from;
+        if (resultDocsSize <= 0) {
+            return EMPTY;
+        }
+        ShardDoc[] shardDocs = new ShardDoc[resultDocsSize];
+        for (int i = resultDocsSize - 1; i >= 0; i--) {
+            shardDocs[i] = (ShardDoc) queue.pop();
+        }
+        return shardDocs;
+    }
+
+    public synchronized InternalSearchResponse merge(ShardDoc[] sortedDocs, Map<SearchShardTarget, ? extends FetchSearchResultProvider> fetchResults) {
+        reduceBuffer();
+        if (queue == null) {
+            // no results, return an empty response
+            return InternalSearchResponse.EMPTY;
+        }
+        InternalFacets facets = this.facets == null ? null : new InternalFacets(this.facets);
+        float maxScore = Float.isInfinite(this.maxScore) ? Float.NaN : this.maxScore;
+        return searchPhaseController.merge(sortedDocs, sorted, sortScoreIndex, facets, totalHits, maxScore, timedOut, fetchResults);
+    }
+
+    private void reduceBuffer() {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        if (queue == null) {
+            createQueue();
+        }
+
+        for (QuerySearchResult result : buffer) {
+            TopDocs topDocs = result.topDocs();
+            if (result.searchTimedOut()) {
+                timedOut = true;
+            }
+            totalHits += topDocs.totalHits;
+            if (!Float.isNaN(topDocs.getMaxScore())) {
+                maxScore = Math.max(maxScore, topDocs.getMaxScore());
+            }
+            for (ScoreDoc doc : topDocs.scoreDocs) {
+                ShardDoc shardDoc;
+                if (sorted) {
+                    shardDoc = new ShardFieldDoc(result.shardTarget(), doc.doc, doc.score, ((FieldDoc) doc).fields);
+                } else {
+                    shardDoc = new ShardScoreDoc(result.shardTarget(), doc.doc, doc.score);
+                }
+                if (queue.insertWithOverflow(shardDoc) == shardDoc) {
+                    // filled the queue, the next docs of this shard are not competitive either
+                    break;
+                }
+            }
+        }
+
+        reduceFacets();
+
+        for (QuerySearchResult result : buffer) {
+            // keep what the fetch phase and the scroll id need, the hits and facets are reduced
+            QuerySearchResult reduced = new QuerySearchResult(result.id(), result.shardTarget());
+            reduced.from(result.from()).size(result.size());
+            reduced.topDocs(new TopDocs(result.topDocs().totalHits, Lucene.EMPTY_SCORE_DOCS, result.topDocs().getMaxScore()));
+            reduced.searchTimedOut(result.searchTimedOut());
+            queryResults.put(result.shardTarget(), reduced);
+        }
+        buffer.clear();
+    }
+
+    private void createQueue() {
+        QuerySearchResult first = buffer.get(0);
+        from = first.from();
+        int queueSize = first.from() + first.size();
+        if (first.topDocs() instanceof TopFieldDocs) {
+            sorted = true;
+            TopFieldDocs fieldDocs = (TopFieldDocs) first.topDocs();
+            SearchPhaseController.resolveSortFields(fieldDocs.fields, buffer);
+            for (int i = 0; i < fieldDocs.fields.length; i++) {
+                if (fieldDocs.fields[i].getType() == SortField.Type.SCORE) {
+                    sortScoreIndex = i;
+                }
+            }
+            queue = new ShardFieldDocSortedHitQueue(fieldDocs.fields, queueSize);
+        } else {
+            queue = new ScoreDocQueue(queueSize);
+        }
+        if (first.facets() != null && first.facets().facets() != null && !first.facets().facets().isEmpty()) {
+            facets = Lists.newArrayList();
+        }
+    }
+
+    private void reduceFacets() {
+        if (facets == null) {
+            return;
+        }
+        // we rely on the fact that the order of facets is the same on all query results
+        List<Facet> bufferFacets = buffer.get(0).facets().facets();
+        List<Facet> namedFacets = Lists.newArrayList();
+        for (int i = 0; i < bufferFacets.size(); i++) {
+            Facet facet = bufferFacets.get(i);
+            namedFacets.clear();
+            if (i < facets.size()) {
+                namedFacets.add(facets.get(i));
+            }
+            for (QuerySearchResult result : buffer) {
+                for (Facet facet1 : result.facets()) {
+                    if (facet.name().equals(facet1.name())) {
+                        namedFacets.add(facet1);
+                    }
+                }
+            }
+            Facet reducedFacet = facetProcessors.processor(facet.type()).reduce(facet.name(), namedFacets);
+            if (i < facets.size()) {
+                facets.set(i, reducedFacet);
+            } else {
+                facets.add(reducedFacet);
+            }
+        }
+    }
+}
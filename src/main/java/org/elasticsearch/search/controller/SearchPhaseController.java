@@ -76,17 +76,32 @@ public class SearchPhaseController extends AbstractComponent {
 
     private final boolean optimizeSingleShard;
 
+    private final int reduceBufferSize;
+
     @Inject
     public SearchPhaseController(Settings settings, FacetProcessors facetProcessors) {
         super(settings);
         this.facetProcessors = facetProcessors;
         this.optimizeSingleShard = componentSettings.getAsBoolean("optimize_single_shard", true);
+        this.reduceBufferSize = componentSettings.getAsInt("reduce_buffer_size", 512);
     }
 
     public boolean optimizeSingleShard() {
         return optimizeSingleShard;
     }
 
+    /**
+     * Creates a reducer for the query results of a search on <tt>numberOfShards</tt> shards when they are more than
+     * the reduce buffer size, otherwise returns <tt>null</tt> and the results are reduced once they are all received.
+     */
+    @Nullable
+    public QueryResultsReducer newQueryResultsReducer(int numberOfShards, Map<SearchShardTarget, QuerySearchResultProvider> queryResults) {
+        if (numberOfShards <= reduceBufferSize) {
+            return null;
+        }
+        return new QueryResultsReducer(this, facetProcessors, reduceBufferSize, queryResults);
+    }
+
     public AggregatedDfs aggregateDfs(Iterable<DfsSearchResult> results) {
         TMap<Term, TermStatistics> termStatistics = new ExtTHashMap<Term, TermStatistics>(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR);
         TMap<String, CollectionStatistics> fieldStatistics = new ExtTHashMap<String, CollectionStatistics>(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR);
@@ -185,32 +200,8 @@ public class SearchPhaseController extends AbstractComponent {
         }
         PriorityQueue queue;
         if (queryResultProvider.queryResult().topDocs() instanceof TopFieldDocs) {
-            // sorting, first if the type is a String, chance CUSTOM to STRING so we handle nulls properly (since our CUSTOM String sorting might return null)
             TopFieldDocs fieldDocs = (TopFieldDocs) queryResultProvider.queryResult().topDocs();
-            for (int i = 0; i < fieldDocs.fields.length; i++) {
-                boolean allValuesAreNull = true;
-                boolean resolvedField = false;
-                for (QuerySearchResultProvider resultProvider : results) {
-                    for (ScoreDoc doc : resultProvider.queryResult().topDocs().scoreDocs) {
-                        FieldDoc fDoc = (FieldDoc) doc;
-                        if (fDoc.fields[i] != null) {
-                            allValuesAreNull = false;
-                            if (fDoc.fields[i] instanceof String) {
-                                fieldDocs.fields[i] = new SortField(fieldDocs.fields[i].getField(), SortField.Type.STRING, fieldDocs.fields[i].getReverse());
-                            }
-                            resolvedField = true;
-                            break;
-                        }
-                    }
-                    if (resolvedField) {
-                        break;
-                    }
-                }
-                if (!resolvedField && allValuesAreNull && fieldDocs.fields[i].getField() != null) {
-                    // we did not manage to resolve a field (and its not score or doc, which have no field), and all the fields are null (which can only happen for STRING), make it a STRING
-                    fieldDocs.fields[i] = new SortField(fieldDocs.fields[i].getField(), SortField.Type.STRING, fieldDocs.fields[i].getReverse());
-                }
-            }
+            resolveSortFields(fieldDocs.fields, results);
             queue = new ShardFieldDocSortedHitQueue(fieldDocs.fields, queueSize);
 
             // we need to accumulate for all and then filter the from
@@ -264,6 +255,37 @@ public class SearchPhaseController extends AbstractComponent {
         return shardDocs;
     }
 
+    /**
+     * Sorting, first if the type is a String, change CUSTOM to STRING so we handle nulls properly (since our
+     * CUSTOM String sorting might return null).
+     */
+    static void resolveSortFields(SortField[] fields, Iterable<? extends QuerySearchResultProvider> results) {
+        for (int i = 0; i < fields.length; i++) {
+            boolean allValuesAreNull = true;
+            boolean resolvedField = false;
+            for (QuerySearchResultProvider resultProvider : results) {
+                for (ScoreDoc doc : resultProvider.queryResult().topDocs().scoreDocs) {
+                    FieldDoc fDoc = (FieldDoc) doc;
+                    if (fDoc.fields[i] != null) {
+                        allValuesAreNull = false;
+                        if (fDoc.fields[i] instanceof String) {
+                            fields[i] = new SortField(fields[i].getField(), SortField.Type.STRING, fields[i].getReverse());
+                        }
+                        resolvedField = true;
+                        break;
+                    }
+                }
+                if (resolvedField) {
+                    break;
+                }
+            }
+            if (!resolvedField && allValuesAreNull && fields[i].getField() != null) {
+                // we did not manage to resolve a field (and its not score or doc, which have no field), and all the fields are null (which can only happen for STRING), make it a STRING
+                fields[i] = new SortField(fields[i].getField(), SortField.Type.STRING, fields[i].getReverse());
+            }
+        }
+    }
+
     public Map<SearchShardTarget, ExtTIntArrayList> docIdsToLoad(ShardDoc[] shardDocs) {
         Map<SearchShardTarget, ExtTIntArrayList> result = Maps.newHashMap();
         for (ShardDoc shardDoc : shardDocs) {
@@ -340,6 +362,11 @@ public class SearchPhaseController extends AbstractComponent {
             maxScore = Float.NaN;
         }
 
+        return merge(sortedDocs, sorted, sortScoreIndex, facets, totalHits, maxScore, timedOut, fetchResults);
+    }
+
+    InternalSearchResponse merge(ShardDoc[] sortedDocs, boolean sorted, int sortScoreIndex, @Nullable InternalFacets facets,
+                                 long totalHits, float maxScore, boolean timedOut, Map<SearchShardTarget, ? extends FetchSearchResultProvider> fetchResults) {
         // clean the fetch counter
         for (FetchSearchResultProvider fetchSearchResultProvider : fetchResults.values()) {
             fetchSearchResultProvider.fetchResult().initCounter();
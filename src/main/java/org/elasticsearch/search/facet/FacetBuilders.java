@@ -21,11 +21,13 @@ package org.elasticsearch.search.facet;
 
 import org.elasticsearch.index.query.FilterBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.facet.cardinality.CardinalityFacetBuilder;
 import org.elasticsearch.search.facet.datehistogram.DateHistogramFacetBuilder;
 import org.elasticsearch.search.facet.filter.FilterFacetBuilder;
 import org.elasticsearch.search.facet.geodistance.GeoDistanceFacetBuilder;
 import org.elasticsearch.search.facet.histogram.HistogramFacetBuilder;
 import org.elasticsearch.search.facet.histogram.HistogramScriptFacetBuilder;
+import org.elasticsearch.search.facet.percentiles.PercentilesFacetBuilder;
 import org.elasticsearch.search.facet.query.QueryFacetBuilder;
 import org.elasticsearch.search.facet.range.RangeFacetBuilder;
 import org.elasticsearch.search.facet.range.RangeScriptFacetBuilder;
@@ -71,6 +73,14 @@ public class FacetBuilders {
         return new StatisticalScriptFacetBuilder(facetName);
     }
 
+    public static CardinalityFacetBuilder cardinalityFacet(String facetName) {
+        return new CardinalityFacetBuilder(facetName);
+    }
+
+    public static PercentilesFacetBuilder percentilesFacet(String facetName) {
+        return new PercentilesFacetBuilder(facetName);
+    }
+
     public static HistogramFacetBuilder histogramFacet(String facetName) {
         return new HistogramFacetBuilder(facetName);
     }
@@ -22,10 +22,12 @@ package org.elasticsearch.search.facet;
 import com.google.common.collect.Lists;
 import org.elasticsearch.common.inject.AbstractModule;
 import org.elasticsearch.common.inject.multibindings.Multibinder;
+import org.elasticsearch.search.facet.cardinality.CardinalityFacetProcessor;
 import org.elasticsearch.search.facet.datehistogram.DateHistogramFacetProcessor;
 import org.elasticsearch.search.facet.filter.FilterFacetProcessor;
 import org.elasticsearch.search.facet.geodistance.GeoDistanceFacetProcessor;
 import org.elasticsearch.search.facet.histogram.HistogramFacetProcessor;
+import org.elasticsearch.search.facet.percentiles.PercentilesFacetProcessor;
 import org.elasticsearch.search.facet.query.QueryFacetProcessor;
 import org.elasticsearch.search.facet.range.RangeFacetProcessor;
 import org.elasticsearch.search.facet.statistical.StatisticalFacetProcessor;
@@ -51,6 +53,8 @@ public class FacetModule extends AbstractModule {
         processors.add(StatisticalFacetProcessor.class);
         processors.add(TermsFacetProcessor.class);
         processors.add(TermsStatsFacetProcessor.class);
+        processors.add(CardinalityFacetProcessor.class);
+        processors.add(PercentilesFacetProcessor.class);
     }
 
     public void addFacetProcessor(Class<? extends FacetProcessor> facetProcessor) {
@@ -21,7 +21,10 @@ package org.elasticsearch.search.facet;
 
 import com.google.common.collect.Lists;
 import org.apache.lucene.search.Filter;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.index.mapper.MapperService;
 import org.elasticsearch.index.mapper.object.ObjectMapper;
@@ -64,6 +67,32 @@ public class FacetParseElement implements SearchParseElement {
 
     @Override
     public void parse(XContentParser parser, SearchContext context) throws Exception {
+        if (context.searcher().concurrency() <= 1) {
+            context.facets(new SearchContextFacets(parse(parser, context, true)));
+            return;
+        }
+        // the segments are searched concurrently, keep the source around to create the facet collectors of each slice
+        XContentBuilder builder = XContentFactory.contentBuilder(parser.contentType());
+        builder.copyCurrentStructure(parser);
+        BytesReference source = builder.bytes();
+        context.facets(new SearchContextFacets(parseCollectors(source, context, true), source));
+    }
+
+    /**
+     * Parses the facet collectors from the provided facets source. When <tt>register</tt> is <tt>false</tt>,
+     * the collectors are not added to the searcher scopes.
+     */
+    public List<FacetCollector> parseCollectors(BytesReference source, SearchContext context, boolean register) throws Exception {
+        XContentParser parser = XContentFactory.xContent(source).createParser(source);
+        try {
+            parser.nextToken(); // move past the first START_OBJECT
+            return parse(parser, context, register);
+        } finally {
+            parser.close();
+        }
+    }
+
+    private List<FacetCollector> parse(XContentParser parser, SearchContext context, boolean register) throws Exception {
         XContentParser.Token token;
 
         List<FacetCollector> facetCollectors = null;
@@ -137,10 +166,11 @@ public class FacetParseElement implements SearchParseElement {
                     facetCollectors = Lists.newArrayList();
                 }
                 facetCollectors.add(facet);
-                context.searcher().addCollector(scope, facet);
+                if (register) {
+                    context.searcher().addCollector(scope, facet);
+                }
             }
         }
-
-        context.facets(new SearchContextFacets(facetCollectors));
+        return facetCollectors;
     }
 }
@@ -52,10 +52,13 @@ public class FacetPhase implements SearchPhase {
 
     private final FacetBinaryParseElement facetBinaryParseElement;
 
+    private final FacetProcessors facetProcessors;
+
     @Inject
-    public FacetPhase(FacetParseElement facetParseElement, FacetBinaryParseElement facetBinaryParseElement) {
+    public FacetPhase(FacetParseElement facetParseElement, FacetBinaryParseElement facetBinaryParseElement, FacetProcessors facetProcessors) {
         this.facetParseElement = facetParseElement;
         this.facetBinaryParseElement = facetBinaryParseElement;
+        this.facetProcessors = facetProcessors;
     }
 
     @Override
@@ -147,4 +150,43 @@ public class FacetPhase implements SearchPhase {
         }
         context.queryResult().facets(new InternalFacets(facets));
     }
+
+    /**
+     * Creates the facet collectors of an additional slice of segments, when they are searched concurrently.
+     * The collectors are in the same order as the context ones.
+     */
+    public List<FacetCollector> sliceCollectors(SearchContext context) throws ElasticSearchException {
+        try {
+            return facetParseElement.parseCollectors(context.facets().source(), context, false);
+        } catch (Exception e) {
+            throw new QueryPhaseExecutionException(context, "Failed to create the facets of a segments slice", e);
+        }
+    }
+
+    /**
+     * Reduces the facets collected by each slice of segments into the shard level facets. Facets which only hold
+     * their top entries have their collectors merged, so the top entries are picked once for the shard. The others
+     * are reduced the same way the facets of several shards are.
+     */
+    public void reduceSlices(SearchContext context, List<List<FacetCollector>> slicesCollectors) throws ElasticSearchException {
+        List<FacetCollector> contextCollectors = context.facets().facetCollectors();
+        List<Facet> facets = Lists.newArrayListWithCapacity(contextCollectors.size());
+        for (int i = 0; i < contextCollectors.size(); i++) {
+            FacetCollector collector = slicesCollectors.get(0).get(i);
+            if (collector instanceof MergeableFacetCollector) {
+                for (int j = 1; j < slicesCollectors.size(); j++) {
+                    ((MergeableFacetCollector) collector).merge(slicesCollectors.get(j).get(i));
+                }
+                facets.add(collector.facet());
+                continue;
+            }
+            List<Facet> sliceFacets = Lists.newArrayListWithCapacity(slicesCollectors.size());
+            for (List<FacetCollector> sliceCollectors : slicesCollectors) {
+                sliceFacets.add(sliceCollectors.get(i).facet());
+            }
+            Facet facet = sliceFacets.get(0);
+            facets.add(facetProcessors.processor(facet.type()).reduce(facet.name(), sliceFacets));
+        }
+        context.queryResult().facets(new InternalFacets(facets));
+    }
 }
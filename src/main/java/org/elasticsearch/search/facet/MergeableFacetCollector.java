@@ -0,0 +1,34 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.facet;
+
+/**
+ * A facet collector which facet only holds its top entries, and which can instead merge what another collector of
+ * the same facet collected. When the segments of a shard are searched concurrently, the collectors of the slices are
+ * merged and the top entries picked once, as reducing the facets of each slice would not be exact.
+ */
+public interface MergeableFacetCollector {
+
+    /**
+     * Merges what the provided collector, parsed from the same facet, collected on other segments into this one.
+     * The provided collector can't be used anymore once merged.
+     */
+    void merge(FacetCollector other);
+}
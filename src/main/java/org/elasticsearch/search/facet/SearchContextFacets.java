@@ -19,6 +19,9 @@
 
 package org.elasticsearch.search.facet;
 
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesReference;
+
 import java.util.List;
 
 /**
@@ -28,11 +31,27 @@ public class SearchContextFacets {
 
     private final List<FacetCollector> facetCollectors;
 
+    private final BytesReference source;
+
     public SearchContextFacets(List<FacetCollector> facetCollectors) {
+        this(facetCollectors, null);
+    }
+
+    public SearchContextFacets(List<FacetCollector> facetCollectors, @Nullable BytesReference source) {
         this.facetCollectors = facetCollectors;
+        this.source = source;
     }
 
     public List<FacetCollector> facetCollectors() {
         return facetCollectors;
     }
+
+    /**
+     * The source the facets were parsed from, only kept when the segments are searched concurrently
+     * since each slice then needs its own facet collectors.
+     */
+    @Nullable
+    public BytesReference source() {
+        return source;
+    }
 }
@@ -20,10 +20,12 @@
 package org.elasticsearch.search.facet;
 
 import org.elasticsearch.common.inject.AbstractModule;
+import org.elasticsearch.search.facet.cardinality.InternalCardinalityFacet;
 import org.elasticsearch.search.facet.datehistogram.InternalDateHistogramFacet;
 import org.elasticsearch.search.facet.filter.InternalFilterFacet;
 import org.elasticsearch.search.facet.geodistance.InternalGeoDistanceFacet;
 import org.elasticsearch.search.facet.histogram.InternalHistogramFacet;
+import org.elasticsearch.search.facet.percentiles.InternalPercentilesFacet;
 import org.elasticsearch.search.facet.query.InternalQueryFacet;
 import org.elasticsearch.search.facet.range.InternalRangeFacet;
 import org.elasticsearch.search.facet.statistical.InternalStatisticalFacet;
@@ -46,5 +48,7 @@ public class TransportFacetModule extends AbstractModule {
         InternalStatisticalFacet.registerStreams();
         InternalTermsFacet.registerStreams();
         InternalTermsStatsFacet.registerStreams();
+        InternalCardinalityFacet.registerStreams();
+        InternalPercentilesFacet.registerStreams();
     }
 }
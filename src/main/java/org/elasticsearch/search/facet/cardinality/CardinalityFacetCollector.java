@@ -0,0 +1,118 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.facet.cardinality;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.MurmurHash;
+import org.elasticsearch.index.fielddata.*;
+import org.elasticsearch.search.facet.AbstractFacetCollector;
+import org.elasticsearch.search.facet.Facet;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.IOException;
+
+/**
+ * Collects the hashes of the values of each doc into a {@link HyperLogLogPlusPlus} sketch. Numeric
+ * values are hashed directly, other values are hashed on their bytes.
+ */
+public class CardinalityFacetCollector extends AbstractFacetCollector {
+
+    private final IndexFieldData indexFieldData;
+
+    private final HyperLogLogPlusPlus sketch;
+
+    private final boolean numeric;
+
+    private final boolean floatingPoint;
+
+    private final Proc proc;
+
+    private LongValues longValues;
+
+    private DoubleValues doubleValues;
+
+    private BytesValues bytesValues;
+
+    public CardinalityFacetCollector(String facetName, IndexFieldData indexFieldData, int precision, SearchContext context) {
+        super(facetName);
+        this.indexFieldData = indexFieldData;
+        this.sketch = new HyperLogLogPlusPlus(precision);
+        this.numeric = indexFieldData instanceof IndexNumericFieldData;
+        this.floatingPoint = numeric && ((IndexNumericFieldData) indexFieldData).getNumericType().isFloatingPoint();
+        this.proc = new Proc(sketch);
+    }
+
+    @Override
+    protected void doSetNextReader(AtomicReaderContext context) throws IOException {
+        AtomicFieldData fieldData = indexFieldData.load(context);
+        if (floatingPoint) {
+            doubleValues = ((AtomicNumericFieldData) fieldData).getDoubleValues();
+        } else if (numeric) {
+            longValues = ((AtomicNumericFieldData) fieldData).getLongValues();
+        } else {
+            bytesValues = fieldData.getBytesValues();
+        }
+    }
+
+    @Override
+    protected void doCollect(int doc) throws IOException {
+        if (floatingPoint) {
+            doubleValues.forEachValueInDoc(doc, proc);
+        } else if (numeric) {
+            longValues.forEachValueInDoc(doc, proc);
+        } else {
+            bytesValues.forEachValueInDoc(doc, proc);
+        }
+    }
+
+    @Override
+    public Facet facet() {
+        return new InternalCardinalityFacet(facetName, sketch);
+    }
+
+    public static class Proc implements LongValues.ValueInDocProc, DoubleValues.ValueInDocProc, BytesValues.ValueInDocProc {
+
+        private final HyperLogLogPlusPlus sketch;
+
+        public Proc(HyperLogLogPlusPlus sketch) {
+            this.sketch = sketch;
+        }
+
+        @Override
+        public void onValue(int docId, long value) {
+            sketch.collect(MurmurHash.mix64(value));
+        }
+
+        @Override
+        public void onValue(int docId, double value) {
+            sketch.collect(MurmurHash.mix64(Double.doubleToLongBits(value)));
+        }
+
+        @Override
+        public void onValue(int docId, BytesRef value) {
+            sketch.collect(MurmurHash.hash3_x64_128(value.bytes, value.offset, value.length, 0)[0]);
+        }
+
+        @Override
+        public void onMissing(int docId) {
+        }
+    }
+}
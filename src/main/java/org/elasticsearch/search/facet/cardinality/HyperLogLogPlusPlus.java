@@ -0,0 +1,136 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.facet.cardinality;
+
+import org.elasticsearch.ElasticSearchIllegalArgumentException;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Streamable;
+
+import java.io.IOException;
+
+/**
+ * A HyperLogLog++ sketch, estimating the number of distinct (64 bit) hashes it has seen using a
+ * fixed amount of memory: one byte register per bucket, <tt>2^precision</tt> buckets.
+ * <p/>
+ * Uses 64 bit hashes (so no large range correction is needed) and linear counting below the
+ * empirically determined HLL++ thresholds, the relative error is about <tt>1.04 / sqrt(2^precision)</tt>.
+ * Sketches of the same precision can be merged, the result being the same as if all the hashes
+ * were seen by a single sketch.
+ */
+public class HyperLogLogPlusPlus implements Streamable {
+
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+    public static final int DEFAULT_PRECISION = 14;
+
+    // below these (linear counting) estimates, linear counting is more accurate, indexed by precision - MIN_PRECISION
+    private static final int[] THRESHOLDS = new int[]{10, 20, 40, 80, 220, 400, 900, 1800, 3100, 6500, 11500, 20000, 50000, 120000, 350000};
+
+    private int precision;
+    private byte[] registers;
+
+    HyperLogLogPlusPlus() {
+    }
+
+    public HyperLogLogPlusPlus(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new ElasticSearchIllegalArgumentException("precision must be in [" + MIN_PRECISION + ", " + MAX_PRECISION + "], got [" + precision + "]");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public int precision() {
+        return precision;
+    }
+
+    public void collect(long hash) {
+        int bucket = (int) (hash >>> (64 - precision));
+        // the remaining bits, with a guard bit so the rank is bounded by 64 - precision + 1
+        long w = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(w) + 1);
+        if (rank > registers[bucket]) {
+            registers[bucket] = rank;
+        }
+    }
+
+    public void merge(HyperLogLogPlusPlus other) {
+        if (precision != other.precision) {
+            throw new ElasticSearchIllegalArgumentException("can't merge sketches of different precisions [" + precision + "] and [" + other.precision + "]");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public long cardinality() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        if (zeros != 0) {
+            double linearCounting = m * Math.log((double) m / zeros);
+            if (linearCounting <= THRESHOLDS[precision - MIN_PRECISION]) {
+                return Math.round(linearCounting);
+            }
+        }
+        return Math.round(alpha(m) * m * m / sum);
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+    public static HyperLogLogPlusPlus readHyperLogLogPlusPlus(StreamInput in) throws IOException {
+        HyperLogLogPlusPlus sketch = new HyperLogLogPlusPlus();
+        sketch.readFrom(in);
+        return sketch;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        precision = in.readVInt();
+        registers = new byte[1 << precision];
+        in.readBytes(registers, 0, registers.length);
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeVInt(precision);
+        out.writeBytes(registers);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.facet.cardinality;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.elasticsearch.common.MurmurHash;
+import org.elasticsearch.index.fielddata.IndexOrdinalFieldData;
+import org.elasticsearch.index.fielddata.OrdinalsBytesValues;
+import org.elasticsearch.index.fielddata.ordinals.GlobalOrdinals;
+import org.elasticsearch.index.fielddata.ordinals.Ordinals;
+import org.elasticsearch.search.facet.AbstractFacetCollector;
+import org.elasticsearch.search.facet.Facet;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Marks the {@link GlobalOrdinals global ordinals} of the values of each doc, and only hashes the
+ * value of each marked ordinal into the {@link HyperLogLogPlusPlus} sketch once all docs have been
+ * collected, so each distinct value is hashed once no matter how many docs have it.
+ */
+public class OrdinalsCardinalityFacetCollector extends AbstractFacetCollector {
+
+    private final IndexOrdinalFieldData indexFieldData;
+
+    private final int precision;
+
+    private final IndexReader indexReader;
+
+    private final GlobalOrdinals globalOrdinals;
+
+    private final Aggregator aggregator;
+
+    private Ordinals.Docs ordinals;
+
+    public OrdinalsCardinalityFacetCollector(String facetName, IndexOrdinalFieldData indexFieldData, int precision, SearchContext context) {
+        super(facetName);
+        this.indexFieldData = indexFieldData;
+        this.precision = precision;
+        this.indexReader = context.searcher().getIndexReader();
+        this.globalOrdinals = indexFieldData.loadGlobal(indexReader);
+        this.aggregator = new Aggregator(new FixedBitSet(globalOrdinals.getNumOrds()));
+    }
+
+    @Override
+    protected void doSetNextReader(AtomicReaderContext context) throws IOException {
+        ordinals = indexFieldData.load(context).getBytesValues().ordinals();
+        aggregator.segmentToGlobal = globalOrdinals.segmentToGlobal(context.ord);
+    }
+
+    @Override
+    protected void doCollect(int doc) throws IOException {
+        ordinals.forEachOrdinalInDoc(doc, aggregator);
+    }
+
+    @Override
+    public Facet facet() {
+        HyperLogLogPlusPlus sketch = new HyperLogLogPlusPlus(precision);
+        FixedBitSet seen = aggregator.seen;
+        // global ordinal 0 means no value
+        seen.clear(0);
+
+        List<AtomicReaderContext> leaves = indexReader.leaves();
+        OrdinalsBytesValues[] values = new OrdinalsBytesValues[leaves.size()];
+        BytesRef spare = new BytesRef();
+        int numOrds = globalOrdinals.getNumOrds();
+        for (int ord = seen.nextSetBit(0); ord != -1; ord = ord + 1 < numOrds ? seen.nextSetBit(ord + 1) : -1) {
+            int segment = globalOrdinals.segment(ord);
+            if (values[segment] == null) {
+                values[segment] = indexFieldData.load(leaves.get(segment)).getBytesValues();
+            }
+            BytesRef value = values[segment].getValueScratchByOrd(globalOrdinals.segmentOrd(ord), spare);
+            sketch.collect(MurmurHash.hash3_x64_128(value.bytes, value.offset, value.length, 0)[0]);
+        }
+        return new InternalCardinalityFacet(facetName, sketch);
+    }
+
+    static class Aggregator implements Ordinals.Docs.OrdinalInDocProc {
+
+        final FixedBitSet seen;
+        int[] segmentToGlobal;
+
+        Aggregator(FixedBitSet seen) {
+            this.seen = seen;
+        }
+
+        @Override
+        public void onOrdinal(int docId, int ordinal) {
+            seen.set(segmentToGlobal[ordinal]);
+        }
+    }
+}
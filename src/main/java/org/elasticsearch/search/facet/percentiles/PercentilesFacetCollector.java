@@ -0,0 +1,86 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.facet.percentiles;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.elasticsearch.index.fielddata.DoubleValues;
+import org.elasticsearch.index.fielddata.IndexNumericFieldData;
+import org.elasticsearch.search.facet.AbstractFacetCollector;
+import org.elasticsearch.search.facet.Facet;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.IOException;
+
+/**
+ *
+ */
+public class PercentilesFacetCollector extends AbstractFacetCollector {
+
+    private final IndexNumericFieldData indexFieldData;
+
+    private final double[] percents;
+
+    private final TDigest digest;
+
+    private final DigestProc digestProc;
+
+    private DoubleValues values;
+
+    public PercentilesFacetCollector(String facetName, IndexNumericFieldData indexFieldData, double[] percents, double compression, SearchContext context) {
+        super(facetName);
+        this.indexFieldData = indexFieldData;
+        this.percents = percents;
+        this.digest = new TDigest(compression);
+        this.digestProc = new DigestProc(digest);
+    }
+
+    @Override
+    protected void doCollect(int doc) throws IOException {
+        values.forEachValueInDoc(doc, digestProc);
+    }
+
+    @Override
+    protected void doSetNextReader(AtomicReaderContext context) throws IOException {
+        values = indexFieldData.load(context).getDoubleValues();
+    }
+
+    @Override
+    public Facet facet() {
+        return new InternalPercentilesFacet(facetName, percents, digest);
+    }
+
+    public static class DigestProc implements DoubleValues.ValueInDocProc {
+
+        private final TDigest digest;
+
+        public DigestProc(TDigest digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        public void onValue(int docId, double value) {
+            digest.add(value);
+        }
+
+        @Override
+        public void onMissing(int docId) {
+        }
+    }
+}
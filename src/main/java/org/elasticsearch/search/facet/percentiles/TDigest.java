@@ -0,0 +1,267 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.facet.percentiles;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.SorterTemplate;
+import org.elasticsearch.ElasticSearchIllegalArgumentException;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Streamable;
+
+import java.io.IOException;
+
+/**
+ * A t-digest, summarizing a distribution of values with a bounded number of weighted centroids so
+ * that quantiles can be estimated, accurately so for extreme quantiles. Centroids near the median
+ * hold many values, centroids near the tails only a few, the size of a centroid being bounded by
+ * <tt>4 * count * q * (1 - q) / compression</tt>. A higher compression keeps more centroids (about
+ * <tt>compression</tt> of them) and is more accurate.
+ * <p/>
+ * Values are buffered and merged into the centroids in sorted batches. Digests can be merged, which
+ * is how the digests of the shards are combined.
+ */
+public class TDigest implements Streamable {
+
+    public static final double DEFAULT_COMPRESSION = 100;
+
+    private double compression;
+
+    // the merged centroids, sorted by mean
+    private double[] means;
+    private long[] counts;
+    private int size;
+
+    // the values (or centroids of other digests) not merged yet
+    private double[] bufferMeans;
+    private long[] bufferCounts;
+    private int bufferSize;
+
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    TDigest() {
+    }
+
+    public TDigest(double compression) {
+        if (compression < 1) {
+            throw new ElasticSearchIllegalArgumentException("compression must be at least 1, got [" + compression + "]");
+        }
+        this.compression = compression;
+        this.means = new double[0];
+        this.counts = new long[0];
+        int bufferLength = (int) Math.ceil(compression) * 5;
+        this.bufferMeans = new double[bufferLength];
+        this.bufferCounts = new long[bufferLength];
+    }
+
+    public double compression() {
+        return compression;
+    }
+
+    /**
+     * The number of values added.
+     */
+    public long count() {
+        return count;
+    }
+
+    public double min() {
+        return min;
+    }
+
+    public double max() {
+        return max;
+    }
+
+    public void add(double value) {
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        add(value, 1);
+    }
+
+    private void add(double mean, long count) {
+        if (bufferSize == bufferMeans.length) {
+            compress();
+        }
+        bufferMeans[bufferSize] = mean;
+        bufferCounts[bufferSize] = count;
+        bufferSize++;
+        this.count += count;
+    }
+
+    public void merge(TDigest other) {
+        other.compress();
+        for (int i = 0; i < other.size; i++) {
+            add(other.means[i], other.counts[i]);
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Merges the buffered values into the centroids.
+     */
+    void compress() {
+        if (bufferSize == 0) {
+            return;
+        }
+        // sort the centroids and the buffer together
+        final int length = size + bufferSize;
+        final double[] allMeans = ArrayUtil.grow(means, length);
+        final long[] allCounts = ArrayUtil.grow(counts, length);
+        System.arraycopy(bufferMeans, 0, allMeans, size, bufferSize);
+        System.arraycopy(bufferCounts, 0, allCounts, size, bufferSize);
+        new SorterTemplate() {
+            double pivot;
+
+            @Override
+            protected void swap(int i, int j) {
+                double mean = allMeans[i];
+                allMeans[i] = allMeans[j];
+                allMeans[j] = mean;
+                long count = allCounts[i];
+                allCounts[i] = allCounts[j];
+                allCounts[j] = count;
+            }
+
+            @Override
+            protected int compare(int i, int j) {
+                return Double.compare(allMeans[i], allMeans[j]);
+            }
+
+            @Override
+            protected void setPivot(int i) {
+                pivot = allMeans[i];
+            }
+
+            @Override
+            protected int comparePivot(int j) {
+                return Double.compare(pivot, allMeans[j]);
+            }
+        }.quickSort(0, length - 1);
+
+        // merge adjacent centroids (in place) as long as the size bound allows it
+        int merged = 0;
+        long countSoFar = 0;
+        for (int i = 1; i < length; i++) {
+            long proposedCount = allCounts[merged] + allCounts[i];
+            double q = (countSoFar + proposedCount / 2.0) / count;
+            double bound = 4 * count * q * (1 - q) / compression;
+            if (proposedCount <= Math.max(1, bound)) {
+                allMeans[merged] += (allMeans[i] - allMeans[merged]) * allCounts[i] / proposedCount;
+                allCounts[merged] = proposedCount;
+            } else {
+                countSoFar += allCounts[merged];
+                merged++;
+                allMeans[merged] = allMeans[i];
+                allCounts[merged] = allCounts[i];
+            }
+        }
+
+        means = allMeans;
+        counts = allCounts;
+        size = merged + 1;
+        bufferSize = 0;
+    }
+
+    /**
+     * The estimated value below which the <tt>percent</tt> (between 0 and 100) of the values fall,
+     * <tt>NaN</tt> if no values were added.
+     */
+    public double percentile(double percent) {
+        compress();
+        if (size == 0) {
+            return Double.NaN;
+        }
+        if (size == 1) {
+            return means[0];
+        }
+        double index = percent / 100 * count;
+        if (index <= 0) {
+            return min;
+        }
+        if (index >= count) {
+            return max;
+        }
+
+        // interpolate between the centers of the centroids (and the min / max at the edges)
+        double previousMean = min;
+        double previousIndex = 0;
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            double centerIndex = total + counts[i] / 2.0;
+            if (index < centerIndex) {
+                return interpolate(previousMean, previousIndex, means[i], centerIndex, index);
+            }
+            previousMean = means[i];
+            previousIndex = centerIndex;
+            total += counts[i];
+        }
+        return interpolate(previousMean, previousIndex, max, count, index);
+    }
+
+    private static double interpolate(double fromValue, double fromIndex, double toValue, double toIndex, double index) {
+        if (toIndex == fromIndex) {
+            return fromValue;
+        }
+        return fromValue + (toValue - fromValue) * (index - fromIndex) / (toIndex - fromIndex);
+    }
+
+    public static TDigest readTDigest(StreamInput in) throws IOException {
+        TDigest digest = new TDigest();
+        digest.readFrom(in);
+        return digest;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        compression = in.readDouble();
+        count = in.readVLong();
+        min = in.readDouble();
+        max = in.readDouble();
+        size = in.readVInt();
+        means = new double[size];
+        counts = new long[size];
+        for (int i = 0; i < size; i++) {
+            means[i] = in.readDouble();
+            counts[i] = in.readVLong();
+        }
+        int bufferLength = (int) Math.ceil(compression) * 5;
+        bufferMeans = new double[bufferLength];
+        bufferCounts = new long[bufferLength];
+        bufferSize = 0;
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        compress();
+        out.writeDouble(compression);
+        out.writeVLong(count);
+        out.writeDouble(min);
+        out.writeDouble(max);
+        out.writeVInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeDouble(means[i]);
+            out.writeVLong(counts[i]);
+        }
+    }
+}
@@ -34,6 +34,8 @@ import org.elasticsearch.index.fielddata.IndexNumericFieldData;
 import org.elasticsearch.script.SearchScript;
 import org.elasticsearch.search.facet.AbstractFacetCollector;
 import org.elasticsearch.search.facet.Facet;
+import org.elasticsearch.search.facet.FacetCollector;
+import org.elasticsearch.search.facet.MergeableFacetCollector;
 import org.elasticsearch.search.facet.terms.TermsFacet;
 import org.elasticsearch.search.facet.terms.support.EntryPriorityQueue;
 import org.elasticsearch.search.internal.SearchContext;
@@ -45,7 +47,7 @@ import java.util.Set;
 /**
  *
  */
-public class TermsDoubleFacetCollector extends AbstractFacetCollector {
+public class TermsDoubleFacetCollector extends AbstractFacetCollector implements MergeableFacetCollector {
 
     private final IndexNumericFieldData indexFieldData;
 
@@ -109,6 +111,11 @@ public class TermsDoubleFacetCollector extends AbstractFacetCollector {
         values.forEachValueInDoc(doc, aggregator);
     }
 
+    @Override
+    public void merge(FacetCollector other) {
+        aggregator.merge(((TermsDoubleFacetCollector) other).aggregator);
+    }
+
     @Override
     public Facet facet() {
         TDoubleIntHashMap facets = aggregator.facets();
@@ -200,6 +207,16 @@ public class TermsDoubleFacetCollector extends AbstractFacetCollector {
             total++;
         }
 
+        void merge(StaticAggregatorValueProc other) {
+            for (TDoubleIntIterator it = other.facets.iterator(); it.hasNext(); ) {
+                it.advance();
+                facets.adjustOrPutValue(it.key(), it.value(), it.value());
+            }
+            missing += other.missing;
+            total += other.total;
+            CacheRecycler.pushDoubleIntMap(other.facets);
+        }
+
         @Override
         public void onMissing(int docId) {
             missing++;
@@ -35,7 +35,9 @@ import org.elasticsearch.index.mapper.FieldMapper;
 import org.elasticsearch.script.SearchScript;
 import org.elasticsearch.search.facet.AbstractFacetCollector;
 import org.elasticsearch.search.facet.Facet;
+import org.elasticsearch.search.facet.FacetCollector;
 import org.elasticsearch.search.facet.FacetPhaseExecutionException;
+import org.elasticsearch.search.facet.MergeableFacetCollector;
 import org.elasticsearch.search.facet.terms.support.EntryPriorityQueue;
 import org.elasticsearch.search.internal.SearchContext;
 
@@ -47,7 +49,7 @@ import java.util.regex.Pattern;
 /**
  *
  */
-public class FieldsTermsStringFacetCollector extends AbstractFacetCollector {
+public class FieldsTermsStringFacetCollector extends AbstractFacetCollector implements MergeableFacetCollector {
 
     private final InternalStringTermsFacet.ComparatorType comparatorType;
 
@@ -129,6 +131,23 @@ public class FieldsTermsStringFacetCollector extends AbstractFacetCollector {
         }
     }
 
+    @Override
+    public void merge(FacetCollector other) {
+        StaticAggregatorValueProc[] otherAggregators = ((FieldsTermsStringFacetCollector) other).aggregators;
+        // the aggregators of a collector share the same map
+        TObjectIntHashMap<HashedBytesRef> facets = aggregators[0].facets();
+        TObjectIntHashMap<HashedBytesRef> otherFacets = otherAggregators[0].facets();
+        for (TObjectIntIterator<HashedBytesRef> it = otherFacets.iterator(); it.hasNext(); ) {
+            it.advance();
+            facets.adjustOrPutValue(it.key(), it.value(), it.value());
+        }
+        CacheRecycler.pushObjectIntMap(otherFacets);
+        for (int i = 0; i < aggregators.length; i++) {
+            aggregators[i].missing += otherAggregators[i].missing;
+            aggregators[i].total += otherAggregators[i].total;
+        }
+    }
+
     @Override
     public Facet facet() {
         TObjectIntHashMap<HashedBytesRef> facets = aggregators[0].facets(); // we share the map between all aggregators
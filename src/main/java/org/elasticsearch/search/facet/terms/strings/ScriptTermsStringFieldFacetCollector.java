@@ -31,6 +31,8 @@ import org.elasticsearch.common.collect.BoundedTreeSet;
 import org.elasticsearch.script.SearchScript;
 import org.elasticsearch.search.facet.AbstractFacetCollector;
 import org.elasticsearch.search.facet.Facet;
+import org.elasticsearch.search.facet.FacetCollector;
+import org.elasticsearch.search.facet.MergeableFacetCollector;
 import org.elasticsearch.search.facet.terms.support.EntryPriorityQueue;
 import org.elasticsearch.search.internal.SearchContext;
 
@@ -43,7 +45,7 @@ import java.util.regex.Pattern;
 /**
  *
  */
-public class ScriptTermsStringFieldFacetCollector extends AbstractFacetCollector {
+public class ScriptTermsStringFieldFacetCollector extends AbstractFacetCollector implements MergeableFacetCollector {
 
     private final InternalStringTermsFacet.ComparatorType comparatorType;
 
@@ -144,6 +146,18 @@ public class ScriptTermsStringFieldFacetCollector extends AbstractFacetCollector
         return true;
     }
 
+    @Override
+    public void merge(FacetCollector other) {
+        ScriptTermsStringFieldFacetCollector otherCollector = (ScriptTermsStringFieldFacetCollector) other;
+        for (TObjectIntIterator<BytesRef> it = otherCollector.facets.iterator(); it.hasNext(); ) {
+            it.advance();
+            facets.adjustOrPutValue(it.key(), it.value(), it.value());
+        }
+        CacheRecycler.pushObjectIntMap(otherCollector.facets);
+        missing += otherCollector.missing;
+        total += otherCollector.total;
+    }
+
     @Override
     public Facet facet() {
         if (facets.isEmpty()) {
@@ -34,6 +34,8 @@ import org.elasticsearch.index.fielddata.IndexFieldData;
 import org.elasticsearch.script.SearchScript;
 import org.elasticsearch.search.facet.AbstractFacetCollector;
 import org.elasticsearch.search.facet.Facet;
+import org.elasticsearch.search.facet.FacetCollector;
+import org.elasticsearch.search.facet.MergeableFacetCollector;
 import org.elasticsearch.search.facet.terms.TermsFacet;
 import org.elasticsearch.search.facet.terms.support.EntryPriorityQueue;
 import org.elasticsearch.search.internal.SearchContext;
@@ -46,7 +48,7 @@ import java.util.regex.Pattern;
 /**
  *
  */
-public class TermsStringFacetCollector extends AbstractFacetCollector {
+public class TermsStringFacetCollector extends AbstractFacetCollector implements MergeableFacetCollector {
 
     private final IndexFieldData indexFieldData;
 
@@ -111,6 +113,11 @@ public class TermsStringFacetCollector extends AbstractFacetCollector {
         values.forEachValueInDoc(doc, aggregator);
     }
 
+    @Override
+    public void merge(FacetCollector other) {
+        aggregator.merge(((TermsStringFacetCollector) other).aggregator);
+    }
+
     @Override
     public Facet facet() {
         TObjectIntHashMap<HashedBytesRef> facets = aggregator.facets();
@@ -207,6 +214,16 @@ public class TermsStringFacetCollector extends AbstractFacetCollector {
             total++;
         }
 
+        void merge(StaticAggregatorValueProc other) {
+            for (TObjectIntIterator<HashedBytesRef> it = other.facets.iterator(); it.hasNext(); ) {
+                it.advance();
+                facets.adjustOrPutValue(it.key(), it.value(), it.value());
+            }
+            missing += other.missing;
+            total += other.total;
+            CacheRecycler.pushObjectIntMap(other.facets);
+        }
+
         @Override
         public void onMissing(int docId) {
             missing++;
@@ -16,35 +16,37 @@
  * specific language governing permissions and limitations
  * under the License.
  */
-
 package org.elasticsearch.search.facet.terms.strings;
 
 import com.google.common.collect.ImmutableSet;
 import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.PriorityQueue;
 import org.elasticsearch.common.CacheRecycler;
-import org.elasticsearch.common.collect.BoundedTreeSet;
 import org.elasticsearch.index.fielddata.IndexOrdinalFieldData;
 import org.elasticsearch.index.fielddata.OrdinalsBytesValues;
+import org.elasticsearch.index.fielddata.ordinals.GlobalOrdinals;
 import org.elasticsearch.index.fielddata.ordinals.Ordinals;
 import org.elasticsearch.search.facet.AbstractFacetCollector;
 import org.elasticsearch.search.facet.Facet;
+import org.elasticsearch.search.facet.FacetCollector;
+import org.elasticsearch.search.facet.MergeableFacetCollector;
 import org.elasticsearch.search.facet.terms.TermsFacet;
-import org.elasticsearch.search.facet.terms.support.EntryPriorityQueue;
 import org.elasticsearch.search.internal.SearchContext;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
- *
+ * Counts the terms of each doc by their {@link GlobalOrdinals global ordinal}, so the counts of all the
+ * segments end up in a single array, and only the top terms are resolved to their value.
  */
-public class TermsStringOrdinalsFacetCollector extends AbstractFacetCollector {
+public class TermsStringOrdinalsFacetCollector extends AbstractFacetCollector implements MergeableFacetCollector {
 
     private final IndexOrdinalFieldData indexFieldData;
 
@@ -52,18 +54,17 @@ public class TermsStringOrdinalsFacetCollector extends AbstractFacetCollector {
 
     private final int size;
 
-    private final int numberOfShards;
-
     private final int minCount;
 
-    private OrdinalsBytesValues values;
+    private final IndexReader indexReader;
+
+    private final GlobalOrdinals globalOrdinals;
 
-    private final List<ReaderAggregator> aggregators;
+    private final OrdinalsBytesValues[] segmentValues;
 
-    private ReaderAggregator current;
+    private final Aggregator aggregator;
 
-    long missing;
-    long total;
+    private OrdinalsBytesValues values;
 
     private final ImmutableSet<BytesRef> excluded;
 
@@ -75,7 +76,6 @@ public class TermsStringOrdinalsFacetCollector extends AbstractFacetCollector {
         this.indexFieldData = indexFieldData;
         this.size = size;
         this.comparatorType = comparatorType;
-        this.numberOfShards = context.numberOfShards();
 
         if (excluded == null || excluded.isEmpty()) {
             this.excluded = null;
@@ -91,108 +91,54 @@ public class TermsStringOrdinalsFacetCollector extends AbstractFacetCollector {
             minCount = 0;
         }
 
-        this.aggregators = new ArrayList<ReaderAggregator>(context.searcher().getIndexReader().leaves().size());
+        this.indexReader = context.searcher().getIndexReader();
+        this.globalOrdinals = indexFieldData.loadGlobal(indexReader);
+        this.segmentValues = new OrdinalsBytesValues[indexReader.leaves().size()];
+        this.aggregator = new Aggregator(CacheRecycler.popIntArray(globalOrdinals.getNumOrds()));
     }
 
     @Override
     protected void doSetNextReader(AtomicReaderContext context) throws IOException {
-        if (current != null) {
-            missing += current.counts[0];
-            total += current.total - current.counts[0];
-            if (current.values.ordinals().getNumOrds() > 1) {
-                aggregators.add(current);
-            }
-        }
-        values = indexFieldData.load(context).getBytesValues();
-        current = new ReaderAggregator(values);
+        assert ReaderUtil.getTopLevelContext(context).reader() == indexReader;
+        values = segmentValues(context.ord);
+        aggregator.segmentToGlobal = globalOrdinals.segmentToGlobal(context.ord);
     }
 
     @Override
     protected void doCollect(int doc) throws IOException {
-        values.ordinals().forEachOrdinalInDoc(doc, current);
+        values.ordinals().forEachOrdinalInDoc(doc, aggregator);
     }
 
     @Override
-    public Facet facet() {
-        if (current != null) {
-            missing += current.counts[0];
-            total += current.total - current.counts[0];
-            // if we have values for this one, add it
-            if (current.values.ordinals().getNumOrds() > 1) {
-                aggregators.add(current);
-            }
-        }
-
-        AggregatorPriorityQueue queue = new AggregatorPriorityQueue(aggregators.size());
-
-        for (ReaderAggregator aggregator : aggregators) {
-            if (aggregator.nextPosition()) {
-                queue.add(aggregator);
-            }
+    public void merge(FacetCollector other) {
+        // both collectors count the global ordinals of the same top level reader
+        Aggregator otherAggregator = ((TermsStringOrdinalsFacetCollector) other).aggregator;
+        int[] counts = aggregator.counts;
+        int[] otherCounts = otherAggregator.counts;
+        int numOrds = globalOrdinals.getNumOrds();
+        for (int ord = 0; ord < numOrds; ord++) {
+            counts[ord] += otherCounts[ord];
         }
+        aggregator.total += otherAggregator.total;
+        CacheRecycler.pushIntArray(otherCounts);
+    }
 
-        // YACK, we repeat the same logic, but once with an optimizer priority queue for smaller sizes
-        if (size < EntryPriorityQueue.LIMIT) {
-            // optimize to use priority size
-            EntryPriorityQueue ordered = new EntryPriorityQueue(size, comparatorType.comparator());
-
-            while (queue.size() > 0) {
-                ReaderAggregator agg = queue.top();
-                BytesRef value = agg.values.makeSafe(agg.current); // we need to makeSafe it, since we end up pushing it... (can we get around this?)
-                int count = 0;
-                do {
-                    count += agg.counts[agg.position];
-                    if (agg.nextPosition()) {
-                        agg = queue.updateTop();
-                    } else {
-                        // we are done with this reader
-                        queue.pop();
-                        agg = queue.top();
-                    }
-                } while (agg != null && value.equals(agg.current));
-
-                if (count > minCount) {
-                    if (excluded != null && excluded.contains(value)) {
-                        continue;
-                    }
-                    // LUCENE 4 UPGRADE: use Lucene's RegexCapabilities
-                    if (matcher != null && !matcher.reset(value.utf8ToString()).matches()) {
-                        continue;
-                    }
-                    InternalStringTermsFacet.TermEntry entry = new InternalStringTermsFacet.TermEntry(value, count);
-                    ordered.insertWithOverflow(entry);
-                }
-            }
-            InternalStringTermsFacet.TermEntry[] list = new InternalStringTermsFacet.TermEntry[ordered.size()];
-            for (int i = ordered.size() - 1; i >= 0; i--) {
-                list[i] = (InternalStringTermsFacet.TermEntry) ordered.pop();
-            }
-
-            for (ReaderAggregator aggregator : aggregators) {
-                CacheRecycler.pushIntArray(aggregator.counts);
+    @Override
+    public Facet facet() {
+        final int[] counts = aggregator.counts;
+        long missing = counts[0];
+        long total = aggregator.total - missing;
+
+        int numOrds = globalOrdinals.getNumOrds();
+        OrdinalPriorityQueue ordered = new OrdinalPriorityQueue(Math.min(size, numOrds), comparatorType, counts);
+        BytesRef spare = new BytesRef();
+        Ord entry = null;
+        for (int ord = 1; ord < numOrds; ord++) {
+            if (counts[ord] <= minCount) {
+                continue;
             }
-
-            return new InternalStringTermsFacet(facetName, comparatorType, size, Arrays.asList(list), missing, total);
-        }
-
-        BoundedTreeSet<InternalStringTermsFacet.TermEntry> ordered = new BoundedTreeSet<InternalStringTermsFacet.TermEntry>(comparatorType.comparator(), size);
-
-        while (queue.size() > 0) {
-            ReaderAggregator agg = queue.top();
-            BytesRef value = agg.values.makeSafe(agg.current); // we need to makeSafe it, since we end up pushing it... (can we work around that?)
-            int count = 0;
-            do {
-                count += agg.counts[agg.position];
-                if (agg.nextPosition()) {
-                    agg = queue.updateTop();
-                } else {
-                    // we are done with this reader
-                    queue.pop();
-                    agg = queue.top();
-                }
-            } while (agg != null && value.equals(agg.current));
-
-            if (count > minCount) {
+            if (excluded != null || matcher != null) {
+                BytesRef value = valueScratch(ord, spare);
                 if (excluded != null && excluded.contains(value)) {
                     continue;
                 }
@@ -200,57 +146,102 @@ public class TermsStringOrdinalsFacetCollector extends AbstractFacetCollector {
                 if (matcher != null && !matcher.reset(value.utf8ToString()).matches()) {
                     continue;
                 }
-                InternalStringTermsFacet.TermEntry entry = new InternalStringTermsFacet.TermEntry(value, count);
-                ordered.add(entry);
             }
+            if (entry == null) {
+                entry = new Ord();
+            }
+            entry.ord = ord;
+            // reuse the entry that was pushed out of the queue (if any)
+            entry = ordered.insertWithOverflow(entry);
         }
 
+        // only now resolve the values of the top terms
+        InternalStringTermsFacet.TermEntry[] list = new InternalStringTermsFacet.TermEntry[ordered.size()];
+        for (int i = ordered.size() - 1; i >= 0; i--) {
+            int ord = ordered.pop().ord;
+            list[i] = new InternalStringTermsFacet.TermEntry(BytesRef.deepCopyOf(valueScratch(ord, spare)), counts[ord]);
+        }
 
-        for (ReaderAggregator aggregator : aggregators) {
-            CacheRecycler.pushIntArray(aggregator.counts);
+        CacheRecycler.pushIntArray(counts);
+
+        return new InternalStringTermsFacet(facetName, comparatorType, size, Arrays.asList(list), missing, total);
+    }
+
+    private OrdinalsBytesValues segmentValues(int segment) {
+        if (segmentValues[segment] == null) {
+            List<AtomicReaderContext> leaves = indexReader.leaves();
+            segmentValues[segment] = indexFieldData.load(leaves.get(segment)).getBytesValues();
         }
+        return segmentValues[segment];
+    }
 
-        return new InternalStringTermsFacet(facetName, comparatorType, size, ordered, missing, total);
+    private BytesRef valueScratch(int globalOrd, BytesRef spare) {
+        OrdinalsBytesValues values = segmentValues(globalOrdinals.segment(globalOrd));
+        return values.getValueScratchByOrd(globalOrdinals.segmentOrd(globalOrd), spare);
     }
 
-    public static class ReaderAggregator implements Ordinals.Docs.OrdinalInDocProc {
+    static class Aggregator implements Ordinals.Docs.OrdinalInDocProc {
 
-        final OrdinalsBytesValues values;
         final int[] counts;
+        int[] segmentToGlobal;
+        long total;
 
-        int position = 0;
-        BytesRef current;
-        int total;
-
-        public ReaderAggregator(OrdinalsBytesValues values) {
-            this.values = values;
-            this.counts = CacheRecycler.popIntArray(values.ordinals().getNumOrds());
+        Aggregator(int[] counts) {
+            this.counts = counts;
         }
 
         @Override
         public void onOrdinal(int docId, int ordinal) {
-            counts[ordinal]++;
+            counts[segmentToGlobal[ordinal]]++;
             total++;
         }
+    }
 
-        public boolean nextPosition() {
-            if (++position >= values.ordinals().getNumOrds()) {
-                return false;
-            }
-            current = values.getValueByOrd(position);
-            return true;
-        }
+    static class Ord {
+        int ord;
     }
 
-    public static class AggregatorPriorityQueue extends PriorityQueue<ReaderAggregator> {
+    /**
+     * Orders global ordinals the same way {@link TermsFacet.ComparatorType} orders the entries, relying
+     * on the global ordinals being in term order.
+     */
+    static class OrdinalPriorityQueue extends PriorityQueue<Ord> {
 
-        public AggregatorPriorityQueue(int size) {
+        private final TermsFacet.ComparatorType comparatorType;
+        private final int[] counts;
+
+        OrdinalPriorityQueue(int size, TermsFacet.ComparatorType comparatorType, int[] counts) {
             super(size);
+            this.comparatorType = comparatorType;
+            this.counts = counts;
         }
 
         @Override
-        protected boolean lessThan(ReaderAggregator a, ReaderAggregator b) {
-            return a.current.compareTo(b.current) < 0;
+        protected boolean lessThan(Ord a, Ord b) {
+            return compare(a.ord, b.ord) > 0; // reverse, since we reverse again when adding to a list
+        }
+
+        private int compare(int ord1, int ord2) {
+            switch (comparatorType) {
+                case COUNT:
+                    return compareCount(ord1, ord2);
+                case REVERSE_COUNT:
+                    return -compareCount(ord1, ord2);
+                case TERM:
+                    return ord1 - ord2;
+                case REVERSE_TERM:
+                    return ord2 - ord1;
+                default:
+                    throw new IllegalStateException("unknown comparator type [" + comparatorType + "]");
+            }
+        }
+
+        private int compareCount(int ord1, int ord2) {
+            int i = counts[ord2] - counts[ord1];
+            if (i == 0) {
+                i = ord2 - ord1;
+            }
+            return i;
         }
     }
 }
@@ -21,6 +21,7 @@ package org.elasticsearch.search.facet.termsstats.doubles;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import gnu.trove.iterator.TDoubleObjectIterator;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.search.Scorer;
 import org.elasticsearch.common.CacheRecycler;
@@ -30,6 +31,8 @@ import org.elasticsearch.index.fielddata.IndexNumericFieldData;
 import org.elasticsearch.script.SearchScript;
 import org.elasticsearch.search.facet.AbstractFacetCollector;
 import org.elasticsearch.search.facet.Facet;
+import org.elasticsearch.search.facet.FacetCollector;
+import org.elasticsearch.search.facet.MergeableFacetCollector;
 import org.elasticsearch.search.facet.termsstats.TermsStatsFacet;
 import org.elasticsearch.search.internal.SearchContext;
 
@@ -38,7 +41,7 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 
-public class TermsStatsDoubleFacetCollector extends AbstractFacetCollector {
+public class TermsStatsDoubleFacetCollector extends AbstractFacetCollector implements MergeableFacetCollector {
 
     private final TermsStatsFacet.ComparatorType comparatorType;
 
@@ -92,6 +95,11 @@ public class TermsStatsDoubleFacetCollector extends AbstractFacetCollector {
         keyValues.forEachValueInDoc(doc, aggregator);
     }
 
+    @Override
+    public void merge(FacetCollector other) {
+        aggregator.merge(((TermsStatsDoubleFacetCollector) other).aggregator);
+    }
+
     @Override
     public Facet facet() {
         if (aggregator.entries.isEmpty()) {
@@ -139,6 +147,25 @@ public class TermsStatsDoubleFacetCollector extends AbstractFacetCollector {
             valueFieldData.forEachValueInDoc(docId, valueAggregator);
         }
 
+        void merge(Aggregator other) {
+            for (TDoubleObjectIterator<InternalTermsStatsDoubleFacet.DoubleEntry> it = other.entries.iterator(); it.hasNext(); ) {
+                it.advance();
+                InternalTermsStatsDoubleFacet.DoubleEntry otherEntry = it.value();
+                InternalTermsStatsDoubleFacet.DoubleEntry doubleEntry = entries.get(it.key());
+                if (doubleEntry == null) {
+                    entries.put(it.key(), otherEntry);
+                } else {
+                    doubleEntry.count += otherEntry.count;
+                    doubleEntry.totalCount += otherEntry.totalCount;
+                    doubleEntry.total += otherEntry.total;
+                    doubleEntry.min = Math.min(doubleEntry.min, otherEntry.min);
+                    doubleEntry.max = Math.max(doubleEntry.max, otherEntry.max);
+                }
+            }
+            missing += other.missing;
+            CacheRecycler.pushDoubleObjectMap(other.entries);
+        }
+
         @Override
         public void onMissing(int docId) {
             missing++;
@@ -21,6 +21,7 @@ package org.elasticsearch.search.facet.termsstats.longs;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import gnu.trove.iterator.TLongObjectIterator;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.search.Scorer;
 import org.elasticsearch.common.CacheRecycler;
@@ -31,6 +32,8 @@ import org.elasticsearch.index.fielddata.LongValues;
 import org.elasticsearch.script.SearchScript;
 import org.elasticsearch.search.facet.AbstractFacetCollector;
 import org.elasticsearch.search.facet.Facet;
+import org.elasticsearch.search.facet.FacetCollector;
+import org.elasticsearch.search.facet.MergeableFacetCollector;
 import org.elasticsearch.search.facet.termsstats.TermsStatsFacet;
 import org.elasticsearch.search.internal.SearchContext;
 
@@ -39,7 +42,7 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 
-public class TermsStatsLongFacetCollector extends AbstractFacetCollector {
+public class TermsStatsLongFacetCollector extends AbstractFacetCollector implements MergeableFacetCollector {
 
     private final TermsStatsFacet.ComparatorType comparatorType;
 
@@ -93,6 +96,11 @@ public class TermsStatsLongFacetCollector extends AbstractFacetCollector {
         keyValues.forEachValueInDoc(doc, aggregator);
     }
 
+    @Override
+    public void merge(FacetCollector other) {
+        aggregator.merge(((TermsStatsLongFacetCollector) other).aggregator);
+    }
+
     @Override
     public Facet facet() {
         if (aggregator.entries.isEmpty()) {
@@ -142,6 +150,25 @@ public class TermsStatsLongFacetCollector extends AbstractFacetCollector {
             valueValues.forEachValueInDoc(docId, valueAggregator);
         }
 
+        void merge(Aggregator other) {
+            for (TLongObjectIterator<InternalTermsStatsLongFacet.LongEntry> it = other.entries.iterator(); it.hasNext(); ) {
+                it.advance();
+                InternalTermsStatsLongFacet.LongEntry otherEntry = it.value();
+                InternalTermsStatsLongFacet.LongEntry longEntry = entries.get(it.key());
+                if (longEntry == null) {
+                    entries.put(it.key(), otherEntry);
+                } else {
+                    longEntry.count += otherEntry.count;
+                    longEntry.totalCount += otherEntry.totalCount;
+                    longEntry.total += otherEntry.total;
+                    longEntry.min = Math.min(longEntry.min, otherEntry.min);
+                    longEntry.max = Math.max(longEntry.max, otherEntry.max);
+                }
+            }
+            missing += other.missing;
+            CacheRecycler.pushLongObjectMap(other.entries);
+        }
+
         @Override
         public void onMissing(int docId) {
             missing++;
@@ -33,6 +33,8 @@ import org.elasticsearch.index.fielddata.IndexNumericFieldData;
 import org.elasticsearch.script.SearchScript;
 import org.elasticsearch.search.facet.AbstractFacetCollector;
 import org.elasticsearch.search.facet.Facet;
+import org.elasticsearch.search.facet.FacetCollector;
+import org.elasticsearch.search.facet.MergeableFacetCollector;
 import org.elasticsearch.search.facet.termsstats.TermsStatsFacet;
 import org.elasticsearch.search.internal.SearchContext;
 
@@ -40,8 +42,9 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 
-public class TermsStatsStringFacetCollector extends AbstractFacetCollector {
+public class TermsStatsStringFacetCollector extends AbstractFacetCollector implements MergeableFacetCollector {
 
     private final TermsStatsFacet.ComparatorType comparatorType;
 
@@ -96,6 +99,11 @@ public class TermsStatsStringFacetCollector extends AbstractFacetCollector {
         keyValues.forEachValueInDoc(doc, aggregator);
     }
 
+    @Override
+    public void merge(FacetCollector other) {
+        aggregator.merge(((TermsStatsStringFacetCollector) other).aggregator);
+    }
+
     @Override
     public Facet facet() {
         if (aggregator.entries.isEmpty()) {
@@ -146,6 +154,24 @@ public class TermsStatsStringFacetCollector extends AbstractFacetCollector {
             valueValues.forEachValueInDoc(docId, valueAggregator);
         }
 
+        void merge(Aggregator other) {
+            for (Map.Entry<HashedBytesRef, InternalTermsStatsStringFacet.StringEntry> entry : other.entries.entrySet()) {
+                InternalTermsStatsStringFacet.StringEntry otherEntry = entry.getValue();
+                InternalTermsStatsStringFacet.StringEntry stringEntry = entries.get(entry.getKey());
+                if (stringEntry == null) {
+                    entries.put(entry.getKey(), otherEntry);
+                } else {
+                    stringEntry.count += otherEntry.count;
+                    stringEntry.totalCount += otherEntry.totalCount;
+                    stringEntry.total += otherEntry.total;
+                    stringEntry.min = Math.min(stringEntry.min, otherEntry.min);
+                    stringEntry.max = Math.max(stringEntry.max, otherEntry.max);
+                }
+            }
+            missing += other.missing;
+            CacheRecycler.pushHashMap(other.entries);
+        }
+
         @Override
         public void onMissing(int docId) {
             missing++;
@@ -25,6 +25,8 @@ import com.google.common.collect.Maps;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.search.*;
+import org.elasticsearch.ElasticSearchException;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.lucene.MinimumScoreCollector;
 import org.elasticsearch.common.lucene.MultiCollector;
 import org.elasticsearch.common.lucene.search.AndFilter;
@@ -34,8 +36,13 @@ import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.search.dfs.CachedDfSource;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  *
@@ -48,6 +55,12 @@ public class ContextIndexSearcher extends IndexSearcher {
         public static final String NA = "_na_";
     }
 
+    /**
+     * The number of slices the segments of a shard are split into when searching, each slice being
+     * searched on its own thread. Defaults to <tt>1</tt>, searching the segments one after the other.
+     */
+    public static final String INDEX_SEARCH_CONCURRENCY = "index.search.concurrency";
+
     private final SearchContext searchContext;
 
     private final IndexReader reader;
@@ -65,6 +78,13 @@ public class ContextIndexSearcher extends IndexSearcher {
         setSimilarity(searcher.searcher().getSimilarity());
     }
 
+    /**
+     * The number of slices the segments should be split into when searching, see {@link #INDEX_SEARCH_CONCURRENCY}.
+     */
+    public int concurrency() {
+        return Math.max(1, Math.min(searchContext.indexShard().searchService().concurrency(), leafContexts.size()));
+    }
+
     public void dfSource(CachedDfSource dfSource) {
         this.dfSource = dfSource;
     }
@@ -81,6 +101,13 @@ public class ContextIndexSearcher extends IndexSearcher {
         collectors.add(collector);
     }
 
+    public List<Collector> collectors(String scope) {
+        if (scopeCollectors == null) {
+            return null;
+        }
+        return scopeCollectors.get(scope);
+    }
+
     public List<Collector> removeCollectors(String scope) {
         if (scopeCollectors == null) {
             return null;
@@ -200,6 +227,118 @@ public class ContextIndexSearcher extends IndexSearcher {
         }
     }
 
+    /**
+     * Searches the segments concurrently, split into as many slices as there are hit collectors. The first slice is searched on the calling thread and the others on the executor, each
+     * collector being only used by its own slice. As with a sequential search, the post filter only applies to the hit
+     * collector of a slice, and the minimum score to its facet collectors as well. Scoped collectors are not added to
+     * the slices, they must be part of the provided facet collectors (<tt>null</tt> if there are none), and timeouts
+     * are not supported.
+     */
+    public void search(Query query, List<Collector> hitCollectors, @Nullable List<Collector[]> facetCollectors, Executor executor) throws IOException {
+        Filter filter = combinedFilter(null);
+        if (filter != null) {
+            query = wrapFilter(query, filter);
+        }
+        final Weight weight = createNormalizedWeight(query);
+        List<List<AtomicReaderContext>> slices = slices(leafContexts, hitCollectors.size());
+
+        final CountDownLatch latch = new CountDownLatch(slices.size() - 1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        for (int i = 1; i < slices.size(); i++) {
+            final List<AtomicReaderContext> slice = slices.get(i);
+            final Collector collector = sliceCollector(hitCollectors.get(i), facetCollectors == null ? null : facetCollectors.get(i));
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        ContextIndexSearcher.super.search(slice, weight, collector);
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            };
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        }
+        try {
+            super.search(slices.get(0), weight, sliceCollector(hitCollectors.get(0), facetCollectors == null ? null : facetCollectors.get(0)));
+        } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+        }
+
+        // the slices use the reader and the collectors, so we wait for them even if interrupted
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        Throwable t = failure.get();
+        if (t != null) {
+            if (t instanceof IOException) {
+                throw (IOException) t;
+            }
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            }
+            throw new ElasticSearchException("failed to search segments concurrently", t);
+        }
+    }
+
+    private Collector sliceCollector(Collector hitCollector, @Nullable Collector[] facetCollectors) {
+        Collector collector = hitCollector;
+        if (searchContext.parsedFilter() != null && Scopes.MAIN.equals(processingScope)) {
+            collector = new FilteredCollector(collector, searchContext.parsedFilter());
+        }
+        if (facetCollectors != null && facetCollectors.length > 0) {
+            collector = new MultiCollector(collector, facetCollectors);
+        }
+        // apply the minimum score after multi collector so we filter facets as well
+        if (searchContext.minimumScore() != null) {
+            collector = new MinimumScoreCollector(collector, searchContext.minimumScore());
+        }
+        return collector;
+    }
+
+    /**
+     * Splits the leaves, in doc base order, into <tt>count</tt> contiguous slices of similar doc counts. Merging
+     * the hits of the slices in slice order then breaks score ties by doc id, as a sequential search does.
+     */
+    static List<List<AtomicReaderContext>> slices(List<AtomicReaderContext> leaves, int count) {
+        long totalDocs = 0;
+        for (AtomicReaderContext leaf : leaves) {
+            totalDocs += leaf.reader().maxDoc();
+        }
+        List<List<AtomicReaderContext>> slices = new ArrayList<List<AtomicReaderContext>>(count);
+        List<AtomicReaderContext> slice = new ArrayList<AtomicReaderContext>();
+        long docs = 0;
+        for (int i = 0; i < leaves.size(); i++) {
+            AtomicReaderContext leaf = leaves.get(i);
+            slice.add(leaf);
+            docs += leaf.reader().maxDoc();
+            int slicesLeft = count - slices.size() - 1;
+            int leavesLeft = leaves.size() - i - 1;
+            // close the slice once the slices so far hold their share of the docs, keeping a leaf for each slice left
+            if (slicesLeft > 0 && (docs * count >= totalDocs * (slices.size() + 1) || leavesLeft == slicesLeft)) {
+                slices.add(slice);
+                slice = new ArrayList<AtomicReaderContext>();
+            }
+        }
+        slices.add(slice);
+        return slices;
+    }
+
     @Override
     public Explanation explain(Query query, int doc) throws IOException {
         if (searchContext.aliasFilter() == null) {
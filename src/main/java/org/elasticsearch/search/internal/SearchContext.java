@@ -95,7 +95,7 @@ public class SearchContext implements Releasable {
 
     private SearchType searchType;
 
-    private final Engine.Searcher engineSearcher;
+    private Engine.Searcher engineSearcher;
 
     private final ScriptService scriptService;
 
@@ -103,7 +103,7 @@ public class SearchContext implements Releasable {
 
     private final IndexService indexService;
 
-    private final ContextIndexSearcher searcher;
+    private ContextIndexSearcher searcher;
 
     private final DfsSearchResult dfsResult;
 
@@ -142,6 +142,8 @@ public class SearchContext implements Releasable {
 
     private boolean trackScores = false; // when sorting, track scores as well...
 
+    private boolean resumableScan = false;
+
     private ParsedQuery originalQuery;
 
     private Query query;
@@ -164,6 +166,8 @@ public class SearchContext implements Releasable {
 
     private boolean queryRewritten;
 
+    private boolean nowInMillisUsed;
+
     private volatile long keepAlive;
 
     private volatile long lastAccessTime;
@@ -203,10 +207,40 @@ public class SearchContext implements Releasable {
                 scopePhase.clear();
             }
         }
-        engineSearcher.release();
+        if (engineSearcher != null) {
+            engineSearcher.release();
+        }
         return true;
     }
 
+    /**
+     * Releases the searcher between two batches of a resumable scan, so that the context does not keep
+     * the segments it searched open. {@link #acquireSearcher()} must be called before the next batch.
+     */
+    public void releaseSearcher() {
+        if (engineSearcher == null) {
+            return;
+        }
+        engineSearcher.release();
+        engineSearcher = null;
+        searcher = null;
+        // the lookup holds on to the last reader it was used with
+        searchLookup = null;
+    }
+
+    /**
+     * Acquires a new searcher, on the current point in time of the shard, after {@link #releaseSearcher()}.
+     */
+    public void acquireSearcher() {
+        if (engineSearcher != null) {
+            return;
+        }
+        engineSearcher = indexShard.searcher();
+        searcher = new ContextIndexSearcher(this, engineSearcher);
+        // the query was rewritten against the previous reader
+        parsedQuery(parsedQuery());
+    }
+
     /**
      * Should be called before executing the main query and after all other parameters have been set.
      */
@@ -272,9 +306,18 @@ public class SearchContext implements Releasable {
     }
 
     public long nowInMillis() {
+        nowInMillisUsed = true;
         return request.nowInMillis();
     }
 
+    /**
+     * <tt>true</tt> if the request relies on the current time (for example, date math using <tt>now</tt>), in which
+     * case its results can't be reused for a later identical request.
+     */
+    public boolean nowInMillisUsed() {
+        return nowInMillisUsed;
+    }
+
     public Scroll scroll() {
         return this.scroll;
     }
@@ -327,6 +370,10 @@ public class SearchContext implements Releasable {
         return this.searcher;
     }
 
+    public IndexService indexService() {
+        return this.indexService;
+    }
+
     public IndexShard indexShard() {
         return this.indexShard;
     }
@@ -394,6 +441,18 @@ public class SearchContext implements Releasable {
         return this;
     }
 
+    public SearchContext resumableScan(boolean resumableScan) {
+        this.resumableScan = resumableScan;
+        return this;
+    }
+
+    /**
+     * Should a scan release its searcher between batches and resume from the last returned document.
+     */
+    public boolean resumableScan() {
+        return this.resumableScan;
+    }
+
     public boolean trackScores() {
         return this.trackScores;
     }
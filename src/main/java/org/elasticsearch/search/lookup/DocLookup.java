@@ -24,6 +24,7 @@ import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.search.Scorer;
 import org.elasticsearch.ElasticSearchIllegalArgumentException;
 import org.elasticsearch.common.Nullable;
+import org.elasticsearch.index.fielddata.IndexFieldData;
 import org.elasticsearch.index.fielddata.IndexFieldDataService;
 import org.elasticsearch.index.fielddata.ScriptDocValues;
 import org.elasticsearch.index.mapper.FieldMapper;
@@ -95,17 +96,25 @@ public class DocLookup implements Map {
         String fieldName = key.toString();
         ScriptDocValues scriptValues = localCacheFieldData.get(fieldName);
         if (scriptValues == null) {
-            FieldMapper mapper = mapperService.smartNameFieldMapper(fieldName, types);
-            if (mapper == null) {
-                throw new ElasticSearchIllegalArgumentException("No field found for [" + fieldName + "] in mapping with types " + Arrays.toString(types) + "");
-            }
-            scriptValues = fieldDataService.getForField(mapper).load(reader).getScriptValues();
+            scriptValues = fieldData(fieldName).load(reader).getScriptValues();
             localCacheFieldData.put(fieldName, scriptValues);
         }
         scriptValues.setNextDocId(docId);
         return scriptValues;
     }
 
+    /**
+     * The field data of the provided field, for scripts that read the field values directly instead
+     * of going through the (boxing) script doc values.
+     */
+    public IndexFieldData fieldData(String fieldName) {
+        FieldMapper mapper = mapperService.smartNameFieldMapper(fieldName, types);
+        if (mapper == null) {
+            throw new ElasticSearchIllegalArgumentException("No field found for [" + fieldName + "] in mapping with types " + Arrays.toString(types) + "");
+        }
+        return fieldDataService.getForField(mapper);
+    }
+
     public boolean containsKey(Object key) {
         // assume its a string...
         String fieldName = key.toString();
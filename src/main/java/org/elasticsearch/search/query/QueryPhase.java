@@ -20,22 +20,26 @@
 package org.elasticsearch.search.query;
 
 import com.google.common.collect.ImmutableMap;
-import org.apache.lucene.search.Collector;
-import org.apache.lucene.search.Query;
-import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.search.TotalHitCountCollector;
+import com.google.common.collect.Lists;
+import org.apache.lucene.search.*;
 import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.index.search.nested.NestedChildrenCollector;
 import org.elasticsearch.search.SearchParseElement;
 import org.elasticsearch.search.SearchPhase;
+import org.elasticsearch.search.facet.FacetCollector;
 import org.elasticsearch.search.facet.FacetPhase;
 import org.elasticsearch.search.internal.ContextIndexSearcher;
 import org.elasticsearch.search.internal.ScopePhase;
 import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.search.sort.SortParseElement;
+import org.elasticsearch.search.scan.ResumableScanParseElement;
 import org.elasticsearch.search.sort.TrackScoresParseElement;
+import org.elasticsearch.threadpool.ThreadPool;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -45,9 +49,12 @@ public class QueryPhase implements SearchPhase {
 
     private final FacetPhase facetPhase;
 
+    private final ThreadPool threadPool;
+
     @Inject
-    public QueryPhase(FacetPhase facetPhase) {
+    public QueryPhase(FacetPhase facetPhase, ThreadPool threadPool) {
         this.facetPhase = facetPhase;
+        this.threadPool = threadPool;
     }
 
     @Override
@@ -65,6 +72,8 @@ public class QueryPhase implements SearchPhase {
                 .put("sort", new SortParseElement())
                 .put("trackScores", new TrackScoresParseElement())
                 .put("track_scores", new TrackScoresParseElement())
+                .put("resumableScan", new ResumableScanParseElement())
+                .put("resumable_scan", new ResumableScanParseElement())
                 .put("min_score", new MinScoreParseElement())
                 .put("minScore", new MinScoreParseElement())
                 .put("timeout", new TimeoutParseElement())
@@ -166,7 +175,10 @@ public class QueryPhase implements SearchPhase {
                 numDocs = 1;
             }
 
-            if (searchContext.searchType() == SearchType.COUNT) {
+            int slices = slices(searchContext);
+            if (slices > 1) {
+                topDocs = searchSlices(searchContext, query, numDocs, slices);
+            } else if (searchContext.searchType() == SearchType.COUNT) {
                 TotalHitCountCollector collector = new TotalHitCountCollector();
                 searchContext.searcher().search(query, collector);
                 topDocs = new TopDocs(collector.getTotalHits(), Lucene.EMPTY_SCORE_DOCS, 0);
@@ -187,4 +199,87 @@ public class QueryPhase implements SearchPhase {
 
         facetPhase.execute(searchContext);
     }
+
+    /**
+     * The number of slices the segments are split into for the main query, <tt>1</tt> when the search
+     * can't be executed concurrently (scan and scroll, child and nested scopes, timeouts, and facets not
+     * collected along with the main query).
+     */
+    private int slices(SearchContext context) {
+        int concurrency = context.searcher().concurrency();
+        if (concurrency <= 1) {
+            return 1;
+        }
+        if (context.searchType() == SearchType.SCAN || context.scroll() != null || context.scopePhases() != null || context.timeoutInMillis() != -1) {
+            return 1;
+        }
+        if (context.nestedQueries() != null && !context.nestedQueries().isEmpty()) {
+            return 1;
+        }
+        if (context.facets() != null && context.facets().facetCollectors() != null) {
+            if (context.facets().source() == null || context.searcher().hasCollectors(ContextIndexSearcher.Scopes.GLOBAL)) {
+                return 1;
+            }
+            // facets collected in other scopes can't be split into slices
+            List<Collector> mainCollectors = context.searcher().collectors(ContextIndexSearcher.Scopes.MAIN);
+            if (mainCollectors == null || mainCollectors.size() != context.facets().facetCollectors().size()) {
+                return 1;
+            }
+            // the wrapped facet of a nested facet can't be merged, and reducing it might not be exact
+            for (FacetCollector facetCollector : context.facets().facetCollectors()) {
+                if (facetCollector instanceof NestedChildrenCollector) {
+                    return 1;
+                }
+            }
+        }
+        return concurrency;
+    }
+
+    /**
+     * Searches the main query with the segments split into slices searched concurrently, each slice having
+     * its own hits and facets collectors, which are then merged.
+     */
+    private TopDocs searchSlices(SearchContext context, Query query, int numDocs, int slices) throws IOException {
+        numDocs = Math.min(numDocs, Math.max(1, context.searcher().getIndexReader().maxDoc()));
+        List<Collector> hitCollectors = Lists.newArrayListWithCapacity(slices);
+        List<List<FacetCollector>> facetCollectors = Lists.newArrayListWithCapacity(slices);
+        List<Collector[]> sliceFacetCollectors = null;
+        for (int i = 0; i < slices; i++) {
+            Collector hitCollector;
+            if (context.searchType() == SearchType.COUNT) {
+                hitCollector = new TotalHitCountCollector();
+            } else if (context.sort() != null) {
+                hitCollector = TopFieldCollector.create(context.sort(), numDocs, true, context.trackScores(), context.trackScores(), false);
+            } else {
+                hitCollector = TopScoreDocCollector.create(numDocs, false);
+            }
+            hitCollectors.add(hitCollector);
+            if (context.facets() != null && context.facets().facetCollectors() != null) {
+                List<FacetCollector> collectors = i == 0 ? context.facets().facetCollectors() : facetPhase.sliceCollectors(context);
+                facetCollectors.add(collectors);
+                if (sliceFacetCollectors == null) {
+                    sliceFacetCollectors = Lists.newArrayListWithCapacity(slices);
+                }
+                sliceFacetCollectors.add(collectors.toArray(new Collector[collectors.size()]));
+            }
+        }
+
+        context.searcher().search(query, hitCollectors, sliceFacetCollectors, threadPool.executor(ThreadPool.Names.SEARCH_SEGMENTS));
+
+        if (!facetCollectors.isEmpty()) {
+            facetPhase.reduceSlices(context, facetCollectors);
+        }
+        if (context.searchType() == SearchType.COUNT) {
+            int totalHits = 0;
+            for (Collector hitCollector : hitCollectors) {
+                totalHits += ((TotalHitCountCollector) hitCollector).getTotalHits();
+            }
+            return new TopDocs(totalHits, Lucene.EMPTY_SCORE_DOCS, 0);
+        }
+        TopDocs[] slicesTopDocs = new TopDocs[slices];
+        for (int i = 0; i < slices; i++) {
+            slicesTopDocs[i] = ((TopDocsCollector) hitCollectors.get(i)).topDocs();
+        }
+        return TopDocs.merge(context.sort(), numDocs, slicesTopDocs);
+    }
 }
@@ -1,32 +1,52 @@
 package org.elasticsearch.search.scan;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
-import org.apache.lucene.index.AtomicReaderContext;
-import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.*;
 import org.apache.lucene.search.*;
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.PriorityQueue;
+import org.elasticsearch.common.RamUsage;
 import org.elasticsearch.common.lucene.docset.AllDocIdSet;
+import org.elasticsearch.common.lucene.search.AndFilter;
 import org.elasticsearch.common.lucene.search.XFilteredQuery;
+import org.elasticsearch.index.mapper.internal.UidFieldMapper;
 import org.elasticsearch.search.internal.SearchContext;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 /**
  * The scan context allows to optimize readers we already processed during scanning. We do that by keeping track
  * of the count per reader, and if we are done with it, we no longer process it by using a filter that returns
  * null docIdSet for this reader.
+ * <p/>
+ * A {@link SearchContext#resumableScan() resumable} scan does not rely on the searcher staying the same between
+ * batches, and instead resumes from the last uid it returned: each batch seeks the uid terms of all the segments
+ * of the current searcher to the last uid, and walks them in order from there, returning the live docs matching
+ * the query. The docs of the next uids are checked against the query in chunks, advancing a scorer over them in
+ * doc id order, so a batch only looks at the uids following the last one returned.
  */
 public class ScanContext {
 
     private final Map<IndexReader, ReaderState> readerStates = Maps.newHashMap();
 
+    // resumable scan state, the last uid returned
+    private BytesRef lastUid;
+
     public void clear() {
         readerStates.clear();
     }
 
     public TopDocs execute(SearchContext context) throws IOException {
+        if (context.resumableScan()) {
+            return executeResumable(context);
+        }
         ScanCollector collector = new ScanCollector(readerStates, context.from(), context.size(), context.trackScores());
         Query query = new XFilteredQuery(context.query(), new ScanFilter(readerStates, collector));
         try {
@@ -37,6 +57,210 @@ public class ScanContext {
         return collector.topDocs();
     }
 
+    private TopDocs executeResumable(SearchContext context) throws IOException {
+        List<AtomicReaderContext> leaves = context.searcher().getIndexReader().leaves();
+        // the weight scores the leaves directly, so apply the alias and post filters the searcher would apply
+        Query query = context.query();
+        Filter filter = combinedFilter(context);
+        if (filter != null) {
+            query = new XFilteredQuery(query, filter);
+        }
+        Weight weight = context.searcher().createNormalizedWeight(query);
+        int chunkSize = Math.max(context.size(), 16);
+
+        UidQueue queue = new UidQueue(leaves.size());
+        for (AtomicReaderContext leaf : leaves) {
+            Terms terms = leaf.reader().terms(UidFieldMapper.NAME);
+            if (terms == null) {
+                continue;
+            }
+            TermsEnum termsEnum = terms.iterator(null);
+            BytesRef uid;
+            if (lastUid == null) {
+                uid = termsEnum.next();
+            } else {
+                TermsEnum.SeekStatus status = termsEnum.seekCeil(lastUid);
+                if (status == TermsEnum.SeekStatus.END) {
+                    uid = null;
+                } else if (status == TermsEnum.SeekStatus.FOUND) {
+                    uid = termsEnum.next();
+                } else {
+                    uid = termsEnum.term();
+                }
+            }
+            if (uid != null) {
+                SegmentUids segmentUids = new SegmentUids(leaf, weight, termsEnum, uid, chunkSize, context.trackScores(), context.minimumScore());
+                if (segmentUids.next()) {
+                    queue.add(segmentUids);
+                }
+            }
+        }
+
+        ArrayList<ScoreDoc> docs = new ArrayList<ScoreDoc>(context.size());
+        while (docs.size() < context.size() && queue.size() > 0) {
+            // the same uid can be found in several segments, though it is live in at most one of them
+            SegmentUids top = queue.top();
+            docs.add(new ScoreDoc(top.context.docBase + top.doc, top.score));
+            lastUid = top.uid;
+            if (top.next()) {
+                queue.updateTop();
+            } else {
+                queue.pop();
+            }
+        }
+        return new TopDocs(docs.size(), docs.toArray(new ScoreDoc[docs.size()]), 0f);
+    }
+
+    private static Filter combinedFilter(SearchContext context) {
+        Filter aliasFilter = context.aliasFilter();
+        Filter postFilter = context.parsedFilter();
+        if (aliasFilter == null) {
+            return postFilter;
+        }
+        if (postFilter == null) {
+            return aliasFilter;
+        }
+        return new AndFilter(ImmutableList.of(postFilter, aliasFilter));
+    }
+
+    /**
+     * Walks the uids of a segment in order, returning the live docs matching the query.
+     */
+    static class SegmentUids {
+
+        final AtomicReaderContext context;
+        final Weight weight;
+        final TermsEnum termsEnum;
+        final int chunkSize;
+        final boolean trackScores;
+        final Float minimumScore;
+
+        // the next uid term to check, null once all of them were
+        private BytesRef nextUid;
+        private DocsEnum docsEnum;
+
+        // the live docs of the current chunk of uids, in uid order, and whether they match the query
+        private BytesRef[] uids;
+        private int[] docs;
+        private boolean[] matches;
+        private float[] scores;
+        private long[] docsOrder;
+        private int count;
+        private int index;
+
+        // the current matching doc
+        BytesRef uid;
+        int doc;
+        float score;
+
+        SegmentUids(AtomicReaderContext context, Weight weight, TermsEnum termsEnum, BytesRef nextUid, int chunkSize, boolean trackScores, Float minimumScore) {
+            this.context = context;
+            this.weight = weight;
+            this.termsEnum = termsEnum;
+            this.nextUid = nextUid;
+            this.chunkSize = chunkSize;
+            this.trackScores = trackScores;
+            this.minimumScore = minimumScore;
+            this.uids = new BytesRef[chunkSize];
+            this.docs = new int[chunkSize];
+            this.matches = new boolean[chunkSize];
+            this.scores = new float[chunkSize];
+            this.docsOrder = new long[chunkSize];
+        }
+
+        /**
+         * Moves to the next matching doc, returning <tt>false</tt> if there are no more.
+         */
+        boolean next() throws IOException {
+            while (true) {
+                while (index < count) {
+                    int i = index++;
+                    if (matches[i]) {
+                        uid = uids[i];
+                        doc = docs[i];
+                        score = scores[i];
+                        return true;
+                    }
+                }
+                if (nextUid == null) {
+                    return false;
+                }
+                nextChunk();
+            }
+        }
+
+        private void nextChunk() throws IOException {
+            Bits liveDocs = context.reader().getLiveDocs();
+            count = 0;
+            index = 0;
+            while (count < chunkSize && nextUid != null) {
+                // nested docs share the uid of their root doc, but never match the query
+                BytesRef termUid = BytesRef.deepCopyOf(nextUid);
+                docsEnum = termsEnum.docs(liveDocs, docsEnum, DocsEnum.FLAG_NONE);
+                for (int termDoc = docsEnum.nextDoc(); termDoc != DocIdSetIterator.NO_MORE_DOCS; termDoc = docsEnum.nextDoc()) {
+                    if (count == docs.length) {
+                        int newLength = ArrayUtil.oversize(count + 1, RamUsage.NUM_BYTES_OBJECT_REF);
+                        uids = Arrays.copyOf(uids, newLength);
+                        docs = Arrays.copyOf(docs, newLength);
+                        matches = Arrays.copyOf(matches, newLength);
+                        scores = Arrays.copyOf(scores, newLength);
+                        docsOrder = Arrays.copyOf(docsOrder, newLength);
+                    }
+                    uids[count] = termUid;
+                    docs[count] = termDoc;
+                    matches[count] = false;
+                    docsOrder[count] = ((long) termDoc << 32) | count;
+                    count++;
+                }
+                nextUid = termsEnum.next();
+            }
+
+            // check the docs against the query, advancing the scorer in doc id order
+            Scorer scorer = weight.scorer(context, true, false, liveDocs);
+            if (scorer == null) {
+                return;
+            }
+            Arrays.sort(docsOrder, 0, count);
+            int current = -1;
+            for (int i = 0; i < count; i++) {
+                int target = (int) (docsOrder[i] >>> 32);
+                int slot = (int) docsOrder[i];
+                if (current < target) {
+                    current = scorer.advance(target);
+                    if (current == DocIdSetIterator.NO_MORE_DOCS) {
+                        break;
+                    }
+                }
+                if (current == target) {
+                    if (minimumScore == null) {
+                        matches[slot] = true;
+                        scores[slot] = trackScores ? scorer.score() : 0f;
+                    } else {
+                        float score = scorer.score();
+                        matches[slot] = score > minimumScore;
+                        scores[slot] = trackScores ? score : 0f;
+                    }
+                }
+            }
+        }
+    }
+
+    static class UidQueue extends PriorityQueue<SegmentUids> {
+
+        UidQueue(int maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        protected boolean lessThan(SegmentUids a, SegmentUids b) {
+            int cmp = a.uid.compareTo(b.uid);
+            if (cmp != 0) {
+                return cmp < 0;
+            }
+            return a.context.ord < b.context.ord;
+        }
+    }
+
     static class ScanCollector extends Collector {
 
         private final Map<IndexReader, ReaderState> readerStates;
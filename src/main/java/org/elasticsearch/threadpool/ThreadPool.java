@@ -66,7 +66,9 @@ public class ThreadPool extends AbstractComponent {
         public static final String INDEX = "index";
         public static final String BULK = "bulk";
         public static final String SEARCH = "search";
+        public static final String SEARCH_SEGMENTS = "search_segments";
         public static final String PERCOLATE = "percolate";
+        public static final String PERCOLATE_QUERIES = "percolate_queries";
         public static final String MANAGEMENT = "management";
         public static final String FLUSH = "flush";
         public static final String MERGE = "merge";
@@ -107,7 +109,9 @@ public class ThreadPool extends AbstractComponent {
                 .put(Names.BULK, settingsBuilder().put("type", "cached").build())
                 .put(Names.GET, settingsBuilder().put("type", "cached").build())
                 .put(Names.SEARCH, settingsBuilder().put("type", "cached").build())
+                .put(Names.SEARCH_SEGMENTS, settingsBuilder().put("type", "fixed").put("size", Runtime.getRuntime().availableProcessors()).build())
                 .put(Names.PERCOLATE, settingsBuilder().put("type", "cached").build())
+                .put(Names.PERCOLATE_QUERIES, settingsBuilder().put("type", "fixed").put("size", Runtime.getRuntime().availableProcessors()).build())
                 .put(Names.MANAGEMENT, settingsBuilder().put("type", "scaling").put("keep_alive", "5m").put("size", 5).build())
                 .put(Names.FLUSH, settingsBuilder().put("type", "scaling").put("keep_alive", "5m").put("size", 10).build())
                 .put(Names.MERGE, settingsBuilder().put("type", "scaling").put("keep_alive", "5m").put("size", 20).build())
@@ -0,0 +1,50 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.transport;
+
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * A request which serialized form ends with a region of a file, written as a bytes reference (its length as
+ * a vint, followed by the bytes). Transports that can send the region straight from the file (without copying
+ * it to the heap) write the rest of the request using {@link #writeToBeforeFileRegion(StreamOutput)}, the
+ * others simply use {@link #writeTo(StreamOutput)}, which reads the region into the stream.
+ */
+public interface FileRegionTransportRequest {
+
+    /**
+     * The channel of the file the request ends with, <tt>null</tt> if the request does not end with a file region.
+     */
+    FileChannel fileChannel();
+
+    long fileRegionPosition();
+
+    int fileRegionLength();
+
+    /**
+     * Writes the request up to, and including, the length of the file region.
+     */
+    void writeToBeforeFileRegion(StreamOutput out) throws IOException;
+
+    void writeTo(StreamOutput out) throws IOException;
+}
@@ -28,7 +28,10 @@ import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.component.AbstractLifecycleComponent;
 import org.elasticsearch.common.compress.CompressorFactory;
 import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.io.stream.BytePagePool;
 import org.elasticsearch.common.io.stream.CachedStreamOutput;
+import org.elasticsearch.common.io.stream.PagedBytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.netty.NettyStaticSetup;
 import org.elasticsearch.common.netty.OpenChannelsHandler;
@@ -39,6 +42,7 @@ import org.elasticsearch.common.transport.BoundTransportAddress;
 import org.elasticsearch.common.transport.InetSocketTransportAddress;
 import org.elasticsearch.common.transport.PortsRange;
 import org.elasticsearch.common.transport.TransportAddress;
+import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.monitor.jvm.JvmInfo;
@@ -128,6 +132,9 @@ public class NettyTransport extends AbstractLifecycleComponent<Transport> implem
     final ByteSizeValue maxCumulationBufferCapacity;
     final int maxCompositeBufferComponents;
 
+    // the pages requests and responses are serialized to
+    final BytePagePool pagePool;
+
     private final ThreadPool threadPool;
 
     private volatile OpenChannelsHandler serverOpenChannels;
@@ -195,6 +202,12 @@ public class NettyTransport extends AbstractLifecycleComponent<Transport> implem
         this.maxCumulationBufferCapacity = componentSettings.getAsBytesSize("max_cumulation_buffer_capacity", null);
         this.maxCompositeBufferComponents = componentSettings.getAsInt("max_composite_buffer_components", -1);
 
+        ByteSizeValue bufferPageSize = componentSettings.getAsBytesSize("buffer_page_size", new ByteSizeValue(16, ByteSizeUnit.KB));
+        // by default, keep up to 1/32 of the heap (and no more than 64mb) of pages around for reuse
+        ByteSizeValue bufferPoolSize = componentSettings.getAsBytesSize("buffer_pool_size", new ByteSizeValue(Math.min(JvmInfo.jvmInfo().mem().heapMax().bytes() / 32, 64 * 1024 * 1024)));
+        boolean bufferDirect = componentSettings.getAsBoolean("buffer_direct", false);
+        this.pagePool = new BytePagePool((int) bufferPageSize.bytes(), (int) (bufferPoolSize.bytes() / bufferPageSize.bytes()), bufferDirect);
+
         long defaultReceiverPredictor = 512 * 1024;
         if (JvmInfo.jvmInfo().mem().directMemoryMax().bytes() > 0) {
             // we can guess a better default...
@@ -520,31 +533,57 @@ public class NettyTransport extends AbstractLifecycleComponent<Transport> implem
         }
 
         CachedStreamOutput.Entry cachedEntry = CachedStreamOutput.popEntry();
-
-        byte status = 0;
-        status = TransportStatus.setRequest(status);
-
-        if (options.compress()) {
-            status = TransportStatus.setCompress(status);
-            cachedEntry.bytes().skip(NettyHeader.HEADER_SIZE);
-            StreamOutput stream = cachedEntry.handles(CompressorFactory.defaultCompressor());
-            stream.setVersion(node.version());
-            stream.writeString(action);
-            request.writeTo(stream);
-            stream.close();
-        } else {
-            StreamOutput stream = cachedEntry.handles();
-            cachedEntry.bytes().skip(NettyHeader.HEADER_SIZE);
+        PagedBytesStreamOutput bytes = new PagedBytesStreamOutput(pagePool);
+        boolean success = false;
+        try {
+            byte status = 0;
+            status = TransportStatus.setRequest(status);
+
+            FileRegionTransportRequest fileRegionRequest = null;
+            bytes.skip(NettyHeader.HEADER_SIZE);
+            StreamOutput stream;
+            if (options.compress()) {
+                status = TransportStatus.setCompress(status);
+                stream = cachedEntry.handles(CompressorFactory.defaultCompressor().streamOutput(bytes));
+            } else {
+                stream = cachedEntry.handles(bytes);
+                if (request instanceof FileRegionTransportRequest && ((FileRegionTransportRequest) request).fileChannel() != null) {
+                    fileRegionRequest = (FileRegionTransportRequest) request;
+                }
+            }
             stream.setVersion(node.version());
             stream.writeString(action);
-            request.writeTo(stream);
+            if (fileRegionRequest != null) {
+                fileRegionRequest.writeToBeforeFileRegion(stream);
+            } else {
+                request.writeTo(stream);
+            }
             stream.close();
-        }
-        ChannelBuffer buffer = cachedEntry.bytes().bytes().toChannelBuffer();
-        NettyHeader.writeHeader(buffer, requestId, status, node.version());
 
-        ChannelFuture future = targetChannel.write(buffer);
-        future.addListener(new CacheFutureListener(cachedEntry));
+            ChannelBuffer buffer = bytes.toChannelBuffer();
+            ChannelFuture future;
+            if (fileRegionRequest != null) {
+                NettyHeader.writeHeader(buffer, requestId, status, node.version(), fileRegionRequest.fileRegionLength());
+                FileRegion region = new DefaultFileRegion(fileRegionRequest.fileChannel(), fileRegionRequest.fileRegionPosition(), fileRegionRequest.fileRegionLength(), false);
+                // the message is written in two parts, make sure no other message gets written in between
+                synchronized (targetChannel) {
+                    targetChannel.write(buffer);
+                    future = targetChannel.write(region);
+                }
+            } else {
+                NettyHeader.writeHeader(buffer, requestId, status, node.version());
+                synchronized (targetChannel) {
+                    future = targetChannel.write(buffer);
+                }
+            }
+            future.addListener(new ReleaseFutureListener(bytes));
+            success = true;
+        } finally {
+            CachedStreamOutput.pushEntry(cachedEntry);
+            if (!success) {
+                bytes.release();
+            }
+        }
         // We handle close connection exception in the #exceptionCaught method, which is the main reason we want to add this future
 //        channelFuture.addListener(new ChannelFutureListener() {
 //            @Override public void operationComplete(ChannelFuture future) throws Exception {
@@ -830,6 +869,23 @@ public class NettyTransport extends AbstractLifecycleComponent<Transport> implem
         }
     }
 
+    /**
+     * Releases the pages a message was written to, once the message got written.
+     */
+    public static class ReleaseFutureListener implements ChannelFutureListener {
+
+        private final Releasable releasable;
+
+        public ReleaseFutureListener(Releasable releasable) {
+            this.releasable = releasable;
+        }
+
+        @Override
+        public void operationComplete(ChannelFuture channelFuture) throws Exception {
+            releasable.release();
+        }
+    }
+
     public static class CacheFutureListener implements ChannelFutureListener {
 
         private final CachedStreamOutput.Entry cachedEntry;
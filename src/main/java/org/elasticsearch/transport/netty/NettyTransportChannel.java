@@ -24,6 +24,7 @@ import org.elasticsearch.common.compress.CompressorFactory;
 import org.elasticsearch.common.io.ThrowableObjectOutputStream;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.CachedStreamOutput;
+import org.elasticsearch.common.io.stream.PagedBytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.transport.*;
 import org.elasticsearch.transport.support.TransportStatus;
@@ -73,28 +74,35 @@ public class NettyTransportChannel implements TransportChannel {
             options.withCompress(true);
         }
         CachedStreamOutput.Entry cachedEntry = CachedStreamOutput.popEntry();
-
-        byte status = 0;
-        status = TransportStatus.setResponse(status);
-
-        if (options.compress()) {
-            status = TransportStatus.setCompress(status);
-            cachedEntry.bytes().skip(NettyHeader.HEADER_SIZE);
-            StreamOutput stream = cachedEntry.handles(CompressorFactory.defaultCompressor());
-            stream.setVersion(version);
-            response.writeTo(stream);
-            stream.close();
-        } else {
-            StreamOutput stream = cachedEntry.handles();
+        PagedBytesStreamOutput bytes = new PagedBytesStreamOutput(transport.pagePool);
+        boolean success = false;
+        try {
+            byte status = 0;
+            status = TransportStatus.setResponse(status);
+
+            bytes.skip(NettyHeader.HEADER_SIZE);
+            StreamOutput stream;
+            if (options.compress()) {
+                status = TransportStatus.setCompress(status);
+                stream = cachedEntry.handles(CompressorFactory.defaultCompressor().streamOutput(bytes));
+            } else {
+                stream = cachedEntry.handles(bytes);
+            }
             stream.setVersion(version);
-            cachedEntry.bytes().skip(NettyHeader.HEADER_SIZE);
             response.writeTo(stream);
             stream.close();
+
+            ChannelBuffer buffer = bytes.toChannelBuffer();
+            NettyHeader.writeHeader(buffer, requestId, status, version);
+            ChannelFuture future = channel.write(buffer);
+            future.addListener(new NettyTransport.ReleaseFutureListener(bytes));
+            success = true;
+        } finally {
+            CachedStreamOutput.pushEntry(cachedEntry);
+            if (!success) {
+                bytes.release();
+            }
         }
-        ChannelBuffer buffer = cachedEntry.bytes().bytes().toChannelBuffer();
-        NettyHeader.writeHeader(buffer, requestId, status, version);
-        ChannelFuture future = channel.write(buffer);
-        future.addListener(new NettyTransport.CacheFutureListener(cachedEntry));
     }
 
     @Override
@@ -0,0 +1,162 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.benchmark.percolator;
+
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.common.StopWatch;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.inject.AbstractModule;
+import org.elasticsearch.common.inject.Injector;
+import org.elasticsearch.common.inject.ModulesBuilder;
+import org.elasticsearch.common.inject.util.Providers;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.settings.SettingsModule;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.IndexNameModule;
+import org.elasticsearch.index.analysis.AnalysisModule;
+import org.elasticsearch.index.cache.IndexCacheModule;
+import org.elasticsearch.index.codec.CodecModule;
+import org.elasticsearch.index.engine.IndexEngineModule;
+import org.elasticsearch.index.mapper.MapperServiceModule;
+import org.elasticsearch.index.percolator.PercolatorExecutor;
+import org.elasticsearch.index.query.IndexQueryParserModule;
+import org.elasticsearch.index.settings.IndexSettingsModule;
+import org.elasticsearch.index.similarity.SimilarityModule;
+import org.elasticsearch.indices.query.IndicesQueriesModule;
+import org.elasticsearch.script.ScriptModule;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.threadpool.ThreadPoolModule;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
+
+/**
+ * Measures the garbage generated per percolation with a fresh memory index per doc (a max reuse size of 0)
+ * compared to reusing the memory index of the percolating thread.
+ */
+public class PercolatorMemoryIndexReuseBenchmark {
+
+    private static final int NUMBER_OF_QUERIES = 1000;
+    private static final int NUMBER_OF_WORDS = 10000;
+    private static final int NUMBER_OF_WARMUP = 2000;
+    private static final int NUMBER_OF_ITERATIONS = 20000;
+
+    public static void main(String[] args) throws Exception {
+        for (String maxReuseSize : new String[]{"0", "1mb", "0", "1mb"}) {
+            run(maxReuseSize);
+        }
+    }
+
+    private static void run(String maxReuseSize) throws Exception {
+        Settings settings = ImmutableSettings.settingsBuilder()
+                .put("index.percolator.memory_index.max_reuse_size", maxReuseSize)
+                .build();
+        Index index = new Index("test");
+        Injector injector = new ModulesBuilder().add(
+                new CodecModule(settings),
+                new SettingsModule(settings),
+                new ThreadPoolModule(settings),
+                new ScriptModule(settings),
+                new IndicesQueriesModule(),
+                new MapperServiceModule(),
+                new IndexSettingsModule(index, settings),
+                new IndexCacheModule(settings),
+                new AnalysisModule(settings),
+                new IndexEngineModule(settings),
+                new SimilarityModule(settings),
+                new IndexQueryParserModule(settings),
+                new IndexNameModule(index),
+                new AbstractModule() {
+                    @Override
+                    protected void configure() {
+                        bind(PercolatorExecutor.class).asEagerSingleton();
+                        bind(ClusterService.class).toProvider(Providers.of((ClusterService) null));
+                    }
+                }
+        ).createInjector();
+
+        PercolatorExecutor percolatorExecutor = injector.getInstance(PercolatorExecutor.class);
+
+        Random random = new Random(0);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            text.append("word").append(random.nextInt(NUMBER_OF_WORDS)).append(' ');
+        }
+        XContentBuilder doc = XContentFactory.jsonBuilder().startObject().startObject("doc")
+                .field("field1", random.nextInt(100))
+                .field("field2", text.toString())
+                .field("field3", "value")
+                .endObject().endObject();
+        BytesArray source = new BytesArray(doc.bytes().toBytes());
+
+        for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+            percolatorExecutor.addQuery("query" + i, termQuery("field2", "word" + random.nextInt(NUMBER_OF_WORDS)));
+        }
+
+        for (int i = 0; i < NUMBER_OF_WARMUP; i++) {
+            percolatorExecutor.percolate(new PercolatorExecutor.SourceRequest("type1", source));
+        }
+
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        long gcCount = gcCount();
+        long gcTime = gcTime();
+        StopWatch stopWatch = new StopWatch().start();
+        for (int i = 0; i < NUMBER_OF_ITERATIONS; i++) {
+            percolatorExecutor.percolate(new PercolatorExecutor.SourceRequest("type1", source));
+        }
+        stopWatch.stop();
+        allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBytes;
+        gcCount = gcCount() - gcCount;
+        gcTime = gcTime() - gcTime;
+
+        System.out.println("max_reuse_size [" + maxReuseSize + "]: "
+                + (NUMBER_OF_ITERATIONS / stopWatch.totalTime().secondsFrac()) + " percolations/sec, "
+                + (allocatedBytes / NUMBER_OF_ITERATIONS) + " bytes allocated per percolation, "
+                + gcCount + " collections taking " + gcTime + "ms");
+
+        percolatorExecutor.close();
+        injector.getInstance(ThreadPool.class).shutdownNow();
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += gc.getCollectionCount();
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += gc.getCollectionTime();
+        }
+        return time;
+    }
+}
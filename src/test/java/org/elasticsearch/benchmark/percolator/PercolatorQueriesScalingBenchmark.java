@@ -0,0 +1,150 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.benchmark.percolator;
+
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.common.StopWatch;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.inject.AbstractModule;
+import org.elasticsearch.common.inject.Injector;
+import org.elasticsearch.common.inject.ModulesBuilder;
+import org.elasticsearch.common.inject.util.Providers;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.settings.SettingsModule;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.IndexNameModule;
+import org.elasticsearch.index.analysis.AnalysisModule;
+import org.elasticsearch.index.cache.IndexCacheModule;
+import org.elasticsearch.index.codec.CodecModule;
+import org.elasticsearch.index.engine.IndexEngineModule;
+import org.elasticsearch.index.mapper.MapperServiceModule;
+import org.elasticsearch.index.percolator.PercolatorExecutor;
+import org.elasticsearch.index.query.IndexQueryParserModule;
+import org.elasticsearch.index.settings.IndexSettingsModule;
+import org.elasticsearch.index.similarity.SimilarityModule;
+import org.elasticsearch.indices.query.IndicesQueriesModule;
+import org.elasticsearch.script.ScriptModule;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.threadpool.ThreadPoolModule;
+
+import java.util.Random;
+
+import static org.elasticsearch.index.query.QueryBuilders.*;
+
+/**
+ * Measures how the percolate throughput scales with the number of registered queries, with and
+ * without pre-filtering the queries by the terms of the percolated doc, and with the queries
+ * evaluated on a single thread or split across all the available processors.
+ */
+public class PercolatorQueriesScalingBenchmark {
+
+    private static final int[] NUMBER_OF_QUERIES = {1000, 10000, 50000, 200000};
+    private static final int NUMBER_OF_ITERATIONS = 200;
+    private static final int NUMBER_OF_WORDS = 50000;
+    private static final int[] CONCURRENCY = {1, Runtime.getRuntime().availableProcessors()};
+
+    public static void main(String[] args) throws Exception {
+        for (int concurrency : CONCURRENCY) {
+            for (boolean prefilter : new boolean[]{false, true}) {
+                for (int numberOfQueries : NUMBER_OF_QUERIES) {
+                    run(concurrency, prefilter, numberOfQueries);
+                }
+            }
+        }
+    }
+
+    private static void run(int concurrency, boolean prefilter, int numberOfQueries) throws Exception {
+        Settings settings = ImmutableSettings.settingsBuilder()
+                .put("index.cache.filter.type", "none")
+                .put("index.percolator.prefilter", prefilter)
+                .put("index.percolator.concurrency", concurrency)
+                .build();
+        Index index = new Index("test");
+        Injector injector = new ModulesBuilder().add(
+                new CodecModule(settings),
+                new SettingsModule(settings),
+                new ThreadPoolModule(settings),
+                new ScriptModule(settings),
+                new IndicesQueriesModule(),
+                new MapperServiceModule(),
+                new IndexSettingsModule(index, settings),
+                new IndexCacheModule(settings),
+                new AnalysisModule(settings),
+                new IndexEngineModule(settings),
+                new SimilarityModule(settings),
+                new IndexQueryParserModule(settings),
+                new IndexNameModule(index),
+                new AbstractModule() {
+                    @Override
+                    protected void configure() {
+                        bind(PercolatorExecutor.class).asEagerSingleton();
+                        bind(ClusterService.class).toProvider(Providers.of((ClusterService) null));
+                    }
+                }
+        ).createInjector();
+
+        PercolatorExecutor percolatorExecutor = injector.getInstance(PercolatorExecutor.class);
+
+        Random random = new Random(0);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            text.append("word").append(random.nextInt(NUMBER_OF_WORDS)).append(' ');
+        }
+        XContentBuilder doc = XContentFactory.jsonBuilder().startObject().startObject("doc")
+                .field("field1", random.nextInt(100))
+                .field("field2", text.toString())
+                .endObject().endObject();
+        BytesArray source = new BytesArray(doc.bytes().toBytes());
+        // introduce the mappings
+        percolatorExecutor.percolate(new PercolatorExecutor.SourceRequest("type1", source));
+
+        // mostly term based queries, with a few queries that can't be pre-filtered
+        for (int i = 0; i < numberOfQueries; i++) {
+            if (i % 100 == 0) {
+                percolatorExecutor.addQuery("query" + i, rangeQuery("field1").from(random.nextInt(100)));
+            } else if (i % 2 == 0) {
+                percolatorExecutor.addQuery("query" + i, boolQuery()
+                        .must(termQuery("field2", "word" + random.nextInt(NUMBER_OF_WORDS)))
+                        .must(termQuery("field2", "word" + random.nextInt(NUMBER_OF_WORDS))));
+            } else {
+                percolatorExecutor.addQuery("query" + i, termQuery("field2", "word" + random.nextInt(NUMBER_OF_WORDS)));
+            }
+        }
+
+        for (int i = 0; i < 10; i++) {
+            percolatorExecutor.percolate(new PercolatorExecutor.SourceRequest("type1", source));
+        }
+
+        int matches = 0;
+        StopWatch stopWatch = new StopWatch().start();
+        for (int i = 0; i < NUMBER_OF_ITERATIONS; i++) {
+            matches = percolatorExecutor.percolate(new PercolatorExecutor.SourceRequest("type1", source)).matches().size();
+        }
+        stopWatch.stop();
+        System.out.println("concurrency [" + concurrency + "], prefilter [" + prefilter + "], queries [" + numberOfQueries + "], matches [" + matches + "]: "
+                + (NUMBER_OF_ITERATIONS / stopWatch.totalTime().secondsFrac()) + " percolations/sec");
+
+        percolatorExecutor.close();
+        injector.getInstance(ThreadPool.class).shutdownNow();
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices.recovery;
+
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Unit tests for {@link RecoveryTransferWindow}, in its package since it is package private.
+ */
+public class RecoveryTransferWindowTests {
+
+    private static final long LOW_RTT = 1000;
+    private static final long HIGH_RTT = 100000;
+
+    @Test
+    public void testStartsWithASingleMinimumChunk() {
+        RecoveryTransferWindow window = new RecoveryTransferWindow(10, 100, 4);
+        assertThat(window.window(), equalTo(10l));
+        assertThat(window.chunkSize(), equalTo(10));
+        assertThat(window.chunksInFlight(), equalTo(1));
+    }
+
+    @Test
+    public void testGrowsWithLowRoundTripTimes() {
+        RecoveryTransferWindow window = new RecoveryTransferWindow(10, 100, 4);
+        long previousWindow = window.window();
+        int previousChunkSize = window.chunkSize();
+        int previousChunksInFlight = window.chunksInFlight();
+        for (int i = 0; i < 50; i++) {
+            window.onAcknowledged(LOW_RTT);
+            assertWithinBounds(window, 10, 100, 4);
+            assertThat(window.window(), greaterThanOrEqualTo(previousWindow));
+            assertThat(window.chunkSize(), greaterThanOrEqualTo(previousChunkSize));
+            assertThat(window.chunksInFlight(), greaterThanOrEqualTo(previousChunksInFlight));
+            previousWindow = window.window();
+            previousChunkSize = window.chunkSize();
+            previousChunksInFlight = window.chunksInFlight();
+        }
+        assertThat(window.window(), equalTo(400l));
+        assertThat(window.chunkSize(), equalTo(100));
+        assertThat(window.chunksInFlight(), equalTo(4));
+    }
+
+    @Test
+    public void testShrinksWithHighRoundTripTimes() {
+        RecoveryTransferWindow window = new RecoveryTransferWindow(10, 100, 4);
+        for (int i = 0; i < 50; i++) {
+            window.onAcknowledged(LOW_RTT);
+        }
+        assertThat(window.chunkSize(), equalTo(100));
+
+        long previousWindow = window.window();
+        int previousChunkSize = window.chunkSize();
+        for (int i = 0; i < 50; i++) {
+            window.onAcknowledged(HIGH_RTT);
+            assertWithinBounds(window, 10, 100, 4);
+            assertThat(window.window(), lessThanOrEqualTo(previousWindow));
+            assertThat(window.chunkSize(), lessThanOrEqualTo(previousChunkSize));
+            previousWindow = window.window();
+            previousChunkSize = window.chunkSize();
+        }
+        assertThat(window.chunkSize(), equalTo(10));
+        assertThat(window.chunksInFlight(), lessThan(4));
+
+        // once the round trip times are back to the minimum, the window grows back to its maximum
+        for (int i = 0; i < 100; i++) {
+            window.onAcknowledged(LOW_RTT);
+            assertWithinBounds(window, 10, 100, 4);
+        }
+        assertThat(window.window(), equalTo(400l));
+        assertThat(window.chunkSize(), equalTo(100));
+        assertThat(window.chunksInFlight(), equalTo(4));
+    }
+
+    @Test
+    public void testSingleChunkInFlight() {
+        RecoveryTransferWindow window = new RecoveryTransferWindow(10, 100, 1);
+        for (int i = 0; i < 50; i++) {
+            window.onAcknowledged(LOW_RTT);
+            assertWithinBounds(window, 10, 100, 1);
+        }
+        // with a single chunk in flight, the chunk is the whole window
+        assertThat(window.window(), equalTo(100l));
+        assertThat(window.chunkSize(), equalTo(100));
+        for (int i = 0; i < 50; i++) {
+            window.onAcknowledged(HIGH_RTT);
+            assertWithinBounds(window, 10, 100, 1);
+        }
+        assertThat(window.chunkSize(), lessThan(100));
+    }
+
+    @Test
+    public void testInvalidBounds() {
+        RecoveryTransferWindow window = new RecoveryTransferWindow(100, 10, 0);
+        assertThat(window.chunkSize(), equalTo(100));
+        assertThat(window.chunksInFlight(), equalTo(1));
+        for (int i = 0; i < 20; i++) {
+            window.onAcknowledged(i % 2 == 0 ? LOW_RTT : HIGH_RTT);
+            assertThat(window.chunkSize(), equalTo(100));
+            assertThat(window.chunksInFlight(), equalTo(1));
+        }
+    }
+
+    private void assertWithinBounds(RecoveryTransferWindow window, int minChunkSize, int maxChunkSize, int maxChunksInFlight) {
+        assertThat(window.chunkSize(), allOf(greaterThanOrEqualTo(minChunkSize), lessThanOrEqualTo(maxChunkSize)));
+        assertThat(window.chunksInFlight(), allOf(greaterThanOrEqualTo(1), lessThanOrEqualTo(maxChunksInFlight)));
+        assertThat(window.window(), allOf(greaterThanOrEqualTo((long) minChunkSize), lessThanOrEqualTo((long) maxChunkSize * maxChunksInFlight)));
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices.recovery;
+
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.elasticsearch.ElasticSearchException;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthStatus;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.index.shard.IndexShardClosedException;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.shard.service.InternalIndexShard;
+import org.elasticsearch.index.store.Store;
+import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.node.internal.InternalNode;
+import org.elasticsearch.test.integration.AbstractNodesTests;
+import org.elasticsearch.transport.EmptyTransportResponseHandler;
+import org.elasticsearch.transport.TransportFuture;
+import org.elasticsearch.transport.TransportRequestOptions;
+import org.elasticsearch.transport.TransportResponse;
+import org.elasticsearch.transport.TransportService;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import static org.elasticsearch.client.Requests.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.testng.Assert.fail;
+
+/**
+ * Sends the chunks of a file out of order to the target of an ongoing (throttled) recovery, and resends the file
+ * while some of its chunks are held by the target waiting for the previous ones. In its package, since the file
+ * chunk request is package private.
+ */
+public class ResentFileChunkTests extends AbstractNodesTests {
+
+    private static final String FILE_NAME = "_resent_file_chunk_test";
+    private static final int CHUNK_SIZE = 1024;
+
+    @AfterMethod
+    public void closeNodes() {
+        closeAllNodes();
+    }
+
+    @Test
+    public void testFileResentWithHeldChunks() throws Exception {
+        // the source is throttled, so the recovery is still sending the files of the shard while the test runs
+        startNode("server1", ImmutableSettings.settingsBuilder()
+                .put("indices.recovery.file_chunk_size", "1kb")
+                .put("indices.recovery.max_size_per_sec", "2kb"));
+        client("server1").admin().indices().create(createIndexRequest("test").settings(ImmutableSettings.settingsBuilder()
+                .put("index.number_of_shards", 1).put("index.number_of_replicas", 0))).actionGet();
+        for (int i = 0; i < 500; i++) {
+            client("server1").index(indexRequest("test").type("type1").id(Integer.toString(i))
+                    .source("{ \"type1\" : { \"id\" : \"" + i + "\", \"name\" : \"value " + i + " of the resent file chunk test\" } }")).actionGet();
+        }
+        client("server1").admin().indices().flush(flushRequest("test")).actionGet();
+
+        startNode("server2");
+        client("server1").admin().indices().prepareUpdateSettings("test").setSettings(ImmutableSettings.settingsBuilder().put("index.number_of_replicas", 1)).execute().actionGet();
+
+        ShardId shardId = new ShardId("test", 0);
+        RecoveryTarget recoveryTarget = ((InternalNode) node("server2")).injector().getInstance(RecoveryTarget.class);
+        RecoveryStatus status = null;
+        for (int i = 0; i < 300 && (status == null || status.stage() != RecoveryStatus.Stage.INDEX); i++) {
+            Thread.sleep(100);
+            status = recoveryTarget.peerRecoveryStatus(shardId);
+        }
+        assertThat(status, notNullValue());
+        assertThat(status.stage(), equalTo(RecoveryStatus.Stage.INDEX));
+
+        TransportService transportService = ((InternalNode) node("server1")).injector().getInstance(TransportService.class);
+        DiscoveryNode targetNode = ((InternalNode) node("server2")).injector().getInstance(ClusterService.class).localNode();
+        Random random = new Random();
+        byte[] firstAttempt = new byte[4 * CHUNK_SIZE];
+        random.nextBytes(firstAttempt);
+        byte[] secondAttempt = new byte[4 * CHUNK_SIZE];
+        random.nextBytes(secondAttempt);
+
+        // the first chunk is written and acknowledged, the last two wait for the second one
+        sendChunk(transportService, targetNode, status, firstAttempt, 0).txGet();
+        TransportFuture<TransportResponse.Empty> heldThird = sendChunk(transportService, targetNode, status, firstAttempt, 2);
+        TransportFuture<TransportResponse.Empty> heldFourth = sendChunk(transportService, targetNode, status, firstAttempt, 3);
+        awaitPendingChunks(status, 2);
+        assertThat(heldThird.isDone(), equalTo(false));
+        assertThat(heldFourth.isDone(), equalTo(false));
+
+        // resending the first chunk fails the held chunks of the previous attempt
+        sendChunk(transportService, targetNode, status, secondAttempt, 0).txGet();
+        assertResentFailure(heldThird);
+        assertResentFailure(heldFourth);
+        assertThat(pendingChunks(status), equalTo(0));
+
+        // the chunks of the resent file are held until the ones before them are written, and only then acknowledged
+        TransportFuture<TransportResponse.Empty> fourth = sendChunk(transportService, targetNode, status, secondAttempt, 3);
+        TransportFuture<TransportResponse.Empty> third = sendChunk(transportService, targetNode, status, secondAttempt, 2);
+        awaitPendingChunks(status, 2);
+        assertThat(fourth.isDone(), equalTo(false));
+        assertThat(third.isDone(), equalTo(false));
+        sendChunk(transportService, targetNode, status, secondAttempt, 1).txGet();
+        third.txGet();
+        fourth.txGet();
+        assertThat(status.openIndexOutputs.containsKey(FILE_NAME), equalTo(false));
+        assertThat(status.pendingFileChunks.containsKey(FILE_NAME), equalTo(false));
+        // the file of the first attempt exists, so the resent one is written under a temporary name, and moved in place
+        // when the recovery cleans its files (which also removes it, as it is not one of the shard), read it before
+        byte[] resent = readFile(status.indexShard.store(), "recovery." + status.startTime() + "." + FILE_NAME);
+        assertThat(Arrays.equals(resent, secondAttempt), equalTo(true));
+
+        // the recovery itself is not affected
+        client("server1").admin().cluster().prepareUpdateSettings().setTransientSettings(ImmutableSettings.settingsBuilder()
+                .put("indices.recovery.max_size_per_sec", "0").build()).execute().actionGet();
+        ClusterHealthResponse clusterHealth = client("server1").admin().cluster().health(clusterHealthRequest().waitForGreenStatus().waitForNodes("2")).actionGet();
+        assertThat(clusterHealth.timedOut(), equalTo(false));
+        assertThat(clusterHealth.status(), equalTo(ClusterHealthStatus.GREEN));
+
+        Store primary = store("server1");
+        Store replica = store("server2");
+        for (String name : primary.directory().listAll()) {
+            if (name.startsWith("_") && !Store.isChecksum(name)) {
+                assertThat("content of [" + name + "]", Arrays.equals(readFile(replica, name), readFile(primary, name)), equalTo(true));
+            }
+        }
+        client("server1").admin().indices().refresh(refreshRequest("test")).actionGet();
+        assertThat(client("server1").prepareSearch("test").setPreference("_local").setSize(0).execute().actionGet().hits().totalHits(), equalTo(500l));
+        assertThat(client("server2").prepareSearch("test").setPreference("_local").setSize(0).execute().actionGet().hits().totalHits(), equalTo(500l));
+    }
+
+    private TransportFuture<TransportResponse.Empty> sendChunk(TransportService transportService, DiscoveryNode targetNode, RecoveryStatus status,
+                                                               byte[] content, int chunk) {
+        RecoveryFileChunkRequest request = new RecoveryFileChunkRequest(status.recoveryId, status.indexShard.shardId(), FILE_NAME,
+                chunk * CHUNK_SIZE, content.length, null, new BytesArray(content, chunk * CHUNK_SIZE, CHUNK_SIZE));
+        return transportService.submitRequest(targetNode, RecoveryTarget.Actions.FILE_CHUNK, request,
+                TransportRequestOptions.options().withLowType(), EmptyTransportResponseHandler.INSTANCE_SAME);
+    }
+
+    private void assertResentFailure(TransportFuture<TransportResponse.Empty> future) {
+        try {
+            future.txGet();
+            fail("the held chunk of the previous attempt should have failed");
+        } catch (ElasticSearchException e) {
+            assertThat(ExceptionsHelper.unwrapCause(e), instanceOf(IndexShardClosedException.class));
+        }
+    }
+
+    private void awaitPendingChunks(RecoveryStatus status, int expected) throws InterruptedException {
+        for (int i = 0; i < 100 && pendingChunks(status) != expected; i++) {
+            Thread.sleep(50);
+        }
+        assertThat(pendingChunks(status), equalTo(expected));
+    }
+
+    private int pendingChunks(RecoveryStatus status) {
+        IndexOutput indexOutput = status.openIndexOutputs.get(FILE_NAME);
+        if (indexOutput == null) {
+            return -1;
+        }
+        synchronized (indexOutput) {
+            Map<Long, RecoveryStatus.PendingFileChunk> pendingChunks = status.pendingFileChunks.get(FILE_NAME);
+            return pendingChunks == null ? -1 : pendingChunks.size();
+        }
+    }
+
+    private Store store(String node) {
+        IndicesService indicesService = ((InternalNode) node(node)).injector().getInstance(IndicesService.class);
+        return ((InternalIndexShard) indicesService.indexServiceSafe("test").shardSafe(0)).store();
+    }
+
+    private byte[] readFile(Store store, String name) throws IOException {
+        IndexInput indexInput = store.openInputRaw(name, IOContext.READ);
+        try {
+            byte[] bytes = new byte[(int) indexInput.length()];
+            indexInput.readBytes(bytes, 0, bytes.length);
+            return bytes;
+        } finally {
+            indexInput.close();
+        }
+    }
+}
@@ -23,7 +23,9 @@ import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthStatus;
 import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
 import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
 import org.elasticsearch.action.get.MultiGetResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.Base64;
@@ -203,6 +205,63 @@ public class GetActionTests extends AbstractNodesTests {
         assertThat(response.responses()[0].response().field("field").values().get(0).toString(), equalTo("value1"));
     }
 
+    @Test
+    public void multiGetAcrossSegmentsTests() throws Exception {
+        try {
+            client.admin().indices().prepareDelete("test").execute().actionGet();
+        } catch (Exception e) {
+            // fine
+        }
+        client.admin().indices().prepareCreate("test").setSettings(ImmutableSettings.settingsBuilder().put("index.refresh_interval", -1)).execute().actionGet();
+
+        ClusterHealthResponse clusterHealth = client.admin().cluster().health(clusterHealthRequest().waitForGreenStatus()).actionGet();
+        assertThat(clusterHealth.timedOut(), equalTo(false));
+
+        for (int i = 0; i < 50; i++) {
+            client.prepareIndex("test", "type1", Integer.toString(i)).setSource("field", "value" + i).execute().actionGet();
+            if (i % 10 == 9) {
+                client.admin().indices().prepareFlush().execute().actionGet();
+            }
+        }
+        // updates and deletes only visible in realtime
+        for (int i = 0; i < 50; i += 5) {
+            client.prepareIndex("test", "type1", Integer.toString(i)).setSource("field", "updated" + i).execute().actionGet();
+        }
+        client.prepareDelete("test", "type1", "7").execute().actionGet();
+
+        for (boolean realtime : new boolean[]{true, false}) {
+            MultiGetRequestBuilder request = client.prepareMultiGet().setRealtime(realtime);
+            for (int i = 59; i >= 0; i--) {
+                request.add("test", "type1", Integer.toString(i));
+            }
+            // duplicates and items without a type
+            request.add("test", "type1", "3");
+            request.add("test", null, "4");
+            MultiGetResponse response = request.execute().actionGet();
+            assertThat(response.responses().length, equalTo(62));
+
+            for (int i = 0; i < 60; i++) {
+                MultiGetItemResponse item = response.responses()[i];
+                int id = 59 - i;
+                assertThat(item.failed(), equalTo(false));
+                assertThat(item.id(), equalTo(Integer.toString(id)));
+                if (id >= 50 || (realtime && id == 7)) {
+                    assertThat(item.response().exists(), equalTo(false));
+                } else if (realtime && id % 5 == 0) {
+                    assertThat(item.response().exists(), equalTo(true));
+                    assertThat(item.response().version(), equalTo(2l));
+                    assertThat(item.response().sourceAsMap().get("field").toString(), equalTo("updated" + id));
+                } else {
+                    assertThat(item.response().exists(), equalTo(true));
+                    assertThat(item.response().version(), equalTo(1l));
+                    assertThat(item.response().sourceAsMap().get("field").toString(), equalTo("value" + id));
+                }
+            }
+            assertThat(response.responses()[60].response().sourceAsMap().get("field").toString(), equalTo("value3"));
+            assertThat(response.responses()[61].response().sourceAsMap().get("field").toString(), equalTo("value4"));
+        }
+    }
+
     @Test
     public void realtimeGetWithCompress() throws Exception {
         client.admin().indices().prepareDelete().execute().actionGet();
@@ -23,6 +23,8 @@ import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.percolate.MultiPercolateRequestBuilder;
+import org.elasticsearch.action.percolate.MultiPercolateResponse;
 import org.elasticsearch.action.percolate.PercolateResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.xcontent.XContentFactory;
@@ -255,6 +257,77 @@ public class SimplePercolatorTests extends AbstractNodesTests {
             assertThat(index.matches().size(), equalTo(1));
             assertThat(index.matches(), hasItem("kuku"));
         }
+
+        // test bulk with different percolate queries
+        bulkRequestBuilder = client.prepareBulk();
+        for (int i = 0; i < 10; i++) {
+            bulkRequestBuilder.add(client.prepareIndex("test", "type1", Integer.toString(i)).setSource("field1", "value1")
+                    .setPercolate(i % 2 == 0 ? "color:blue" : "color:green"));
+        }
+        bulkResponse = bulkRequestBuilder.execute().actionGet();
+        assertThat(bulkResponse.hasFailures(), equalTo(false));
+        for (BulkItemResponse bulkItemResponse : bulkResponse) {
+            IndexResponse index = bulkItemResponse.response();
+            if (Integer.parseInt(index.id()) % 2 == 0) {
+                assertThat(index.matches().size(), equalTo(1));
+                assertThat(index.matches(), hasItem("kuku"));
+            } else {
+                assertThat(index.matches().size(), equalTo(0));
+            }
+        }
+    }
+
+    @Test
+    public void multiPercolate() throws Exception {
+        try {
+            client.admin().indices().prepareDelete("test").execute().actionGet();
+        } catch (Exception e) {
+            // ignore
+        }
+        try {
+            client.admin().indices().prepareDelete("_percolator").execute().actionGet();
+        } catch (Exception e) {
+            // ignore
+        }
+
+        client.admin().indices().prepareCreate("test").setSettings(settingsBuilder().put("index.number_of_shards", 2)).execute().actionGet();
+        client.admin().cluster().prepareHealth().setWaitForGreenStatus().execute().actionGet();
+
+        logger.info("--> register queries");
+        client.prepareIndex("_percolator", "test", "kuku")
+                .setSource(jsonBuilder().startObject()
+                        .field("query", termQuery("field1", "value1"))
+                        .endObject())
+                .setRefresh(true)
+                .execute().actionGet();
+        client.prepareIndex("_percolator", "test", "bubu")
+                .setSource(jsonBuilder().startObject()
+                        .field("query", termQuery("field1", "value2"))
+                        .endObject())
+                .setRefresh(true)
+                .execute().actionGet();
+        client.admin().cluster().prepareHealth().setWaitForGreenStatus().setWaitForActiveShards(4).execute().actionGet();
+
+        MultiPercolateRequestBuilder multiPercolateRequestBuilder = client.prepareMultiPercolate();
+        for (int i = 0; i < 10; i++) {
+            multiPercolateRequestBuilder.add(client.preparePercolate("test", "type1").setSource(jsonBuilder().startObject().startObject("doc")
+                    .field("field1", i % 2 == 0 ? "value1" : "value2")
+                    .endObject().endObject()));
+        }
+        // percolating against a missing index only fails its own item
+        multiPercolateRequestBuilder.add(client.preparePercolate("test2", "type1").setSource(jsonBuilder().startObject().startObject("doc")
+                .field("field1", "value1")
+                .endObject().endObject()));
+
+        MultiPercolateResponse response = multiPercolateRequestBuilder.execute().actionGet();
+        assertThat(response.responses().length, equalTo(11));
+        for (int i = 0; i < 10; i++) {
+            MultiPercolateResponse.Item item = response.responses()[i];
+            assertThat(item.isFailure(), equalTo(false));
+            assertThat(item.response().matches().size(), equalTo(1));
+            assertThat(item.response().matches(), hasItem(i % 2 == 0 ? "kuku" : "bubu"));
+        }
+        assertThat(response.responses()[10].isFailure(), equalTo(true));
     }
 
     @Test
@@ -0,0 +1,124 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.integration.recovery;
+
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthStatus;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.shard.service.InternalIndexShard;
+import org.elasticsearch.index.store.Store;
+import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.node.internal.InternalNode;
+import org.elasticsearch.test.integration.AbstractNodesTests;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.elasticsearch.client.Requests.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Recovers a replica with the file chunks sent as file regions (not compressed) and as streams (compressed),
+ * and verifies the recovered files have the same content as the primary ones.
+ */
+public class FileRegionRecoveryTests extends AbstractNodesTests {
+
+    @AfterMethod
+    public void closeNodes() {
+        closeAllNodes();
+    }
+
+    @Test
+    public void testFileRegionRecovery() throws Exception {
+        recoverAndCompare(ImmutableSettings.settingsBuilder().put("indices.recovery.compress", false).put("indices.recovery.file_chunk_size", "1kb").build());
+    }
+
+    @Test
+    public void testStreamRecovery() throws Exception {
+        recoverAndCompare(ImmutableSettings.settingsBuilder().put("indices.recovery.compress", true).put("indices.recovery.file_chunk_size", "1kb").build());
+    }
+
+    private void recoverAndCompare(Settings settings) throws Exception {
+        startNode("server1", settings);
+        client("server1").admin().indices().create(createIndexRequest("test").settings(ImmutableSettings.settingsBuilder()
+                .put("index.number_of_shards", 1).put("index.number_of_replicas", 1))).actionGet();
+
+        for (int i = 0; i < 500; i++) {
+            client("server1").index(indexRequest("test").type("type1").id(Integer.toString(i))
+                    .source("{ \"type1\" : { \"id\" : \"" + i + "\", \"name\" : \"value " + i + " of the recovery test\" } }")).actionGet();
+        }
+        client("server1").admin().indices().flush(flushRequest("test")).actionGet();
+
+        startNode("server2", settings);
+        ClusterHealthResponse clusterHealth = client("server1").admin().cluster().health(clusterHealthRequest().waitForGreenStatus().waitForNodes("2")).actionGet();
+        assertThat(clusterHealth.timedOut(), equalTo(false));
+        assertThat(clusterHealth.status(), equalTo(ClusterHealthStatus.GREEN));
+
+        Store primary = store("server1");
+        Store replica = store("server2");
+        Set<String> primaryFiles = segmentFiles(primary);
+        assertThat(segmentFiles(replica), equalTo(primaryFiles));
+        for (String name : primaryFiles) {
+            assertThat("content of [" + name + "]", readFile(replica, name), equalTo(readFile(primary, name)));
+        }
+
+        client("server1").admin().indices().refresh(refreshRequest("test")).actionGet();
+        for (int i = 0; i < 5; i++) {
+            assertThat(client("server1").prepareCount("test").execute().actionGet().count(), equalTo(500l));
+        }
+    }
+
+    private Store store(String node) {
+        IndicesService indicesService = ((InternalNode) node(node)).injector().getInstance(IndicesService.class);
+        return ((InternalIndexShard) indicesService.indexServiceSafe("test").shardSafe(0)).store();
+    }
+
+    private Set<String> segmentFiles(Store store) throws IOException {
+        Set<String> files = new TreeSet<String>();
+        for (String name : store.directory().listAll()) {
+            if (name.startsWith("_") && !Store.isChecksum(name)) {
+                files.add(name);
+            }
+        }
+        return files;
+    }
+
+    private String readFile(Store store, String name) throws IOException {
+        IndexInput indexInput = store.openInputRaw(name, IOContext.READ);
+        try {
+            byte[] bytes = new byte[(int) indexInput.length()];
+            indexInput.readBytes(bytes, 0, bytes.length);
+            StringBuilder sb = new StringBuilder();
+            for (byte b : bytes) {
+                sb.append(Integer.toHexString(b & 0xff)).append(' ');
+            }
+            return sb.toString();
+        } finally {
+            indexInput.close();
+        }
+    }
+}
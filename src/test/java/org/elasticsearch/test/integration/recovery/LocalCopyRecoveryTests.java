@@ -0,0 +1,154 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.integration.recovery;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.SimpleFSDirectory;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthStatus;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.NodeEnvironment;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.shard.service.InternalIndexShard;
+import org.elasticsearch.index.store.Store;
+import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.node.internal.InternalNode;
+import org.elasticsearch.test.integration.AbstractNodesTests;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.elasticsearch.client.Requests.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Recovers a replica on a node which has a file of the primary under another name (with the same length and
+ * checksum), which the target copies locally instead of having it sent.
+ */
+public class LocalCopyRecoveryTests extends AbstractNodesTests {
+
+    @AfterMethod
+    public void closeNodes() {
+        closeAllNodes();
+    }
+
+    @Test
+    public void testLocalCopy() throws Exception {
+        recoverWithLocalCopy(false);
+    }
+
+    @Test
+    public void testLocalCopyNotMatchingDigest() throws Exception {
+        // the local file has the same length and checksum, but not the same content, so it must be sent
+        recoverWithLocalCopy(true);
+    }
+
+    private void recoverWithLocalCopy(boolean corrupt) throws Exception {
+        Settings settings = ImmutableSettings.settingsBuilder().put("indices.recovery.file_chunk_size", "1kb").build();
+        startNode("server1", settings);
+        client("server1").admin().indices().create(createIndexRequest("test").settings(ImmutableSettings.settingsBuilder()
+                .put("index.number_of_shards", 1).put("index.number_of_replicas", 0))).actionGet();
+        for (int i = 0; i < 500; i++) {
+            client("server1").index(indexRequest("test").type("type1").id(Integer.toString(i))
+                    .source("{ \"type1\" : { \"id\" : \"" + i + "\", \"name\" : \"value " + i + " of the local copy test\" } }")).actionGet();
+        }
+        client("server1").admin().indices().flush(flushRequest("test")).actionGet();
+
+        startNode("server2", settings);
+        ClusterHealthResponse clusterHealth = client("server1").admin().cluster().health(clusterHealthRequest().waitForGreenStatus().waitForNodes("2")).actionGet();
+        assertThat(clusterHealth.timedOut(), equalTo(false));
+
+        // put the stored fields of the primary in the shard directory of the second node, under another name
+        Store primary = store("server1");
+        String storedFields = null;
+        for (String name : primary.directory().listAll()) {
+            if (name.endsWith(".fdt")) {
+                storedFields = name;
+            }
+        }
+        assertThat(storedFields, notNullValue());
+        String checksum = primary.metaData(storedFields).checksum();
+        assertThat(checksum, notNullValue());
+        byte[] content = readFile(primary, storedFields);
+        assertThat(content.length, greaterThan(1024));
+        if (corrupt) {
+            content[content.length / 2]++;
+        }
+
+        NodeEnvironment nodeEnvironment = ((InternalNode) node("server2")).injector().getInstance(NodeEnvironment.class);
+        File location = new File(nodeEnvironment.shardLocations(new ShardId("test", 0))[0], "index");
+        location.mkdirs();
+        String localName = "_100.fdt";
+        SimpleFSDirectory directory = new SimpleFSDirectory(location);
+        try {
+            IndexOutput output = directory.createOutput(localName, IOContext.DEFAULT);
+            output.writeBytes(content, content.length);
+            output.close();
+            output = directory.createOutput("_checksums-" + System.currentTimeMillis(), IOContext.DEFAULT);
+            output.writeInt(0); // version
+            output.writeStringStringMap(ImmutableMap.of(localName, checksum));
+            output.close();
+        } finally {
+            directory.close();
+        }
+
+        client("server1").admin().indices().prepareUpdateSettings("test").setSettings(ImmutableSettings.settingsBuilder().put("index.number_of_replicas", 1)).execute().actionGet();
+        clusterHealth = client("server1").admin().cluster().health(clusterHealthRequest().waitForGreenStatus().waitForNodes("2")).actionGet();
+        assertThat(clusterHealth.timedOut(), equalTo(false));
+        assertThat(clusterHealth.status(), equalTo(ClusterHealthStatus.GREEN));
+
+        Store replica = store("server2");
+        assertThat(replica.directory().fileExists(localName), equalTo(false));
+        for (String name : primary.directory().listAll()) {
+            if (name.startsWith("_") && !Store.isChecksum(name)) {
+                assertThat("content of [" + name + "]", Arrays.equals(readFile(replica, name), readFile(primary, name)), equalTo(true));
+            }
+        }
+
+        client("server1").admin().indices().refresh(refreshRequest("test")).actionGet();
+        for (int i = 0; i < 5; i++) {
+            assertThat(client("server1").prepareCount("test").execute().actionGet().count(), equalTo(500l));
+        }
+    }
+
+    private Store store(String node) {
+        IndicesService indicesService = ((InternalNode) node(node)).injector().getInstance(IndicesService.class);
+        return ((InternalIndexShard) indicesService.indexServiceSafe("test").shardSafe(0)).store();
+    }
+
+    private byte[] readFile(Store store, String name) throws IOException {
+        IndexInput indexInput = store.openInputRaw(name, IOContext.READ);
+        try {
+            byte[] bytes = new byte[(int) indexInput.length()];
+            indexInput.readBytes(bytes, 0, bytes.length);
+            return bytes;
+        } finally {
+            indexInput.close();
+        }
+    }
+}
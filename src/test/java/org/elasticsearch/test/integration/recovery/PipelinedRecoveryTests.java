@@ -0,0 +1,114 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.integration.recovery;
+
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthStatus;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.shard.service.InternalIndexShard;
+import org.elasticsearch.index.store.Store;
+import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.node.internal.InternalNode;
+import org.elasticsearch.test.integration.AbstractNodesTests;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.elasticsearch.client.Requests.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Recovers replicas with several chunks of each file in flight, small chunks (so the files are split in many of
+ * them) and several connections between the nodes, so chunks of a file can arrive out of order.
+ */
+public class PipelinedRecoveryTests extends AbstractNodesTests {
+
+    @AfterMethod
+    public void closeNodes() {
+        closeAllNodes();
+    }
+
+    @Test
+    public void testPipelinedRecovery() throws Exception {
+        Settings settings = ImmutableSettings.settingsBuilder()
+                .put("indices.recovery.file_chunk_size", "1kb")
+                .put("indices.recovery.max_file_chunk_size", "4kb")
+                .put("indices.recovery.max_chunks_in_flight", 8)
+                .put("transport.connections_per_node.low", 4)
+                .build();
+        startNode("server1", settings);
+        client("server1").admin().indices().create(createIndexRequest("test").settings(ImmutableSettings.settingsBuilder()
+                .put("index.number_of_shards", 1).put("index.number_of_replicas", 0))).actionGet();
+        for (int i = 0; i < 2000; i++) {
+            client("server1").index(indexRequest("test").type("type1").id(Integer.toString(i))
+                    .source("{ \"type1\" : { \"id\" : \"" + i + "\", \"name\" : \"value " + i + " of the pipelined recovery test\" } }")).actionGet();
+            if (i % 500 == 499) {
+                // several segments, so several files are recovered concurrently
+                client("server1").admin().indices().flush(flushRequest("test")).actionGet();
+            }
+        }
+
+        startNode("server2", settings);
+        client("server1").admin().indices().prepareUpdateSettings("test").setSettings(ImmutableSettings.settingsBuilder().put("index.number_of_replicas", 1)).execute().actionGet();
+        ClusterHealthResponse clusterHealth = client("server1").admin().cluster().health(clusterHealthRequest().waitForGreenStatus().waitForNodes("2")).actionGet();
+        assertThat(clusterHealth.timedOut(), equalTo(false));
+        assertThat(clusterHealth.status(), equalTo(ClusterHealthStatus.GREEN));
+
+        Store primary = store("server1");
+        Store replica = store("server2");
+        int compared = 0;
+        for (String name : primary.directory().listAll()) {
+            if (name.startsWith("_") && !Store.isChecksum(name)) {
+                assertThat("content of [" + name + "]", Arrays.equals(readFile(replica, name), readFile(primary, name)), equalTo(true));
+                compared++;
+            }
+        }
+        assertThat(compared, greaterThan(1));
+
+        client("server1").admin().indices().refresh(refreshRequest("test")).actionGet();
+        for (int i = 0; i < 5; i++) {
+            // each node searches its own copy of the shard
+            assertThat(client("server1").prepareSearch("test").setPreference("_local").setSize(0).execute().actionGet().hits().totalHits(), equalTo(2000l));
+            assertThat(client("server2").prepareSearch("test").setPreference("_local").setSize(0).execute().actionGet().hits().totalHits(), equalTo(2000l));
+        }
+    }
+
+    private Store store(String node) {
+        IndicesService indicesService = ((InternalNode) node(node)).injector().getInstance(IndicesService.class);
+        return ((InternalIndexShard) indicesService.indexServiceSafe("test").shardSafe(0)).store();
+    }
+
+    private byte[] readFile(Store store, String name) throws IOException {
+        IndexInput indexInput = store.openInputRaw(name, IOContext.READ);
+        try {
+            byte[] bytes = new byte[(int) indexInput.length()];
+            indexInput.readBytes(bytes, 0, bytes.length);
+            return bytes;
+        } finally {
+            indexInput.close();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.integration.rest.bulk;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.io.Streams;
+import org.elasticsearch.common.transport.InetSocketTransportAddress;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.http.HttpServerTransport;
+import org.elasticsearch.node.internal.InternalNode;
+import org.elasticsearch.test.integration.AbstractNodesTests;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+
+import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilder;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Sends streamed bulk bodies over http, executed in batches of 2 actions.
+ */
+public class StreamedBulkRestTests extends AbstractNodesTests {
+
+    private Client client;
+
+    @BeforeClass
+    public void createNodes() throws Exception {
+        startNode("node1", settingsBuilder().put("rest.action.bulk.stream.batch_actions", 2));
+        client = client("node1");
+    }
+
+    @AfterClass
+    public void closeNodes() {
+        client.close();
+        closeAllNodes();
+    }
+
+    @Test
+    public void testMalformedLineInTheMiddle() throws Exception {
+        client.admin().indices().prepareDelete().execute().actionGet();
+        client.admin().indices().prepareCreate("test").setSettings(settingsBuilder().put("index.number_of_shards", 1)).execute().actionGet();
+        client.admin().cluster().prepareHealth().setWaitForGreenStatus().execute().actionGet();
+
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 6; i++) {
+            if (i == 3) {
+                body.append("{ \"index\" : { \"_index\" : \"test\"\n");
+            }
+            body.append("{ \"index\" : { \"_index\" : \"test\", \"_type\" : \"type1\", \"_id\" : \"").append(i).append("\" } }\n");
+            body.append("{ \"field1\" : \"value").append(i).append("\" }\n");
+        }
+
+        HttpURLConnection connection = (HttpURLConnection) bulkUrl().openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        OutputStream out = connection.getOutputStream();
+        out.write(body.toString().getBytes(Charsets.UTF_8));
+        out.close();
+        assertThat(connection.getResponseCode(), equalTo(400));
+        byte[] content = Streams.copyToByteArray(connection.getErrorStream());
+        connection.disconnect();
+
+        Map<String, Object> response = XContentHelper.convertToMap(content, false).v2();
+        assertThat(response.get("error"), notNullValue());
+        List<Map<String, Object>> items = items(response);
+        // the first batch is executed, the action parsed before the malformed line is reported as failed
+        assertThat(items.size(), equalTo(3));
+        assertThat(items.get(0).get("_id"), equalTo((Object) "0"));
+        assertThat(items.get(0).get("ok"), equalTo((Object) true));
+        assertThat(items.get(1).get("_id"), equalTo((Object) "1"));
+        assertThat(items.get(1).get("ok"), equalTo((Object) true));
+        assertThat(items.get(2).get("_id"), equalTo((Object) "2"));
+        assertThat(items.get(2).get("error"), notNullValue());
+
+        client.admin().indices().prepareRefresh("test").execute().actionGet();
+        assertThat(client.prepareCount("test").execute().actionGet().count(), equalTo(2l));
+        assertThat(client.prepareGet("test", "type1", "2").execute().actionGet().exists(), equalTo(false));
+        assertThat(client.prepareGet("test", "type1", "5").execute().actionGet().exists(), equalTo(false));
+    }
+
+    private URL bulkUrl() throws Exception {
+        HttpServerTransport httpServerTransport = ((InternalNode) node("node1")).injector().getInstance(HttpServerTransport.class);
+        InetSocketAddress address = ((InetSocketTransportAddress) httpServerTransport.boundAddress().publishAddress()).address();
+        return new URL("http", address.getAddress().getHostAddress(), address.getPort(), "/_bulk?stream=true");
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> items(Map<String, Object> response) {
+        List<Map<String, Object>> items = Lists.newArrayList();
+        for (Object item : (List<Object>) response.get("items")) {
+            items.add((Map<String, Object>) ((Map<String, Object>) item).values().iterator().next());
+        }
+        return items;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.integration.search.basic;
+
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.facet.histogram.HistogramFacet;
+import org.elasticsearch.search.facet.statistical.StatisticalFacet;
+import org.elasticsearch.search.facet.terms.TermsFacet;
+import org.elasticsearch.search.sort.SortOrder;
+import org.elasticsearch.test.integration.AbstractNodesTests;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilder;
+import static org.elasticsearch.index.query.QueryBuilders.*;
+import static org.elasticsearch.search.facet.FacetBuilders.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Checks that reducing the shard results while they are received returns the same results as reducing them
+ * once they are all received. The first node reduces every two shard results, the second one all at once.
+ */
+public class IncrementalReduceSearchTests extends AbstractNodesTests {
+
+    private Client incremental;
+
+    private Client gathered;
+
+    @BeforeClass
+    public void createNodes() throws Exception {
+        startNode("server1", settingsBuilder().put("search.controller.reduce_buffer_size", 2));
+        startNode("server2");
+        incremental = client("server1");
+        gathered = client("server2");
+    }
+
+    @AfterClass
+    public void closeNodes() {
+        incremental.close();
+        gathered.close();
+        closeAllNodes();
+    }
+
+    @Test
+    public void testSameResultsAsGatheredReduce() throws Exception {
+        incremental.admin().indices().prepareDelete().execute().actionGet();
+        incremental.admin().indices().prepareCreate("test")
+                .setSettings(settingsBuilder().put("index.number_of_shards", 7).put("index.number_of_replicas", 0))
+                .execute().actionGet();
+        incremental.admin().cluster().prepareHealth().setWaitForGreenStatus().execute().actionGet();
+
+        for (int i = 0; i < 300; i++) {
+            incremental.prepareIndex("test", "type", Integer.toString(i))
+                    .setSource("tag", "tag" + (i % 11), "text", i % 3 == 0 ? "foo bar" : "foo", "num", i)
+                    .execute().actionGet();
+        }
+        incremental.admin().indices().prepareRefresh().execute().actionGet();
+
+        for (SearchType searchType : new SearchType[]{SearchType.QUERY_THEN_FETCH, SearchType.DFS_QUERY_THEN_FETCH, SearchType.COUNT}) {
+            assertSameResults(searchType, matchAllQuery(), false, 0);
+            assertSameResults(searchType, queryString("bar OR tag3"), false, 0);
+            assertSameResults(searchType, queryString("bar OR tag3"), true, 0);
+            assertSameResults(searchType, rangeQuery("num").from(20).to(250), true, 15);
+            assertSameResults(searchType, termQuery("text", "baz"), false, 0);
+        }
+    }
+
+    private void assertSameResults(SearchType searchType, QueryBuilder query, boolean sort, int from) {
+        SearchResponse expected = search(gathered, searchType, query, sort, from);
+        SearchResponse actual = search(incremental, searchType, query, sort, from);
+        assertThat(actual.hits().totalHits(), equalTo(expected.hits().totalHits()));
+        assertThat(actual.hits().maxScore(), equalTo(expected.hits().maxScore()));
+        assertThat(actual.hits().hits().length, equalTo(expected.hits().hits().length));
+        for (int i = 0; i < expected.hits().hits().length; i++) {
+            assertThat(actual.hits().getAt(i).id(), equalTo(expected.hits().getAt(i).id()));
+            assertThat(actual.hits().getAt(i).score(), equalTo(expected.hits().getAt(i).score()));
+        }
+
+        TermsFacet expectedTerms = expected.facets().facet("tags");
+        TermsFacet actualTerms = actual.facets().facet("tags");
+        assertThat(actualTerms.totalCount(), equalTo(expectedTerms.totalCount()));
+        assertThat(actualTerms.entries().size(), equalTo(expectedTerms.entries().size()));
+        for (int i = 0; i < expectedTerms.entries().size(); i++) {
+            assertThat(actualTerms.entries().get(i).term(), equalTo(expectedTerms.entries().get(i).term()));
+            assertThat(actualTerms.entries().get(i).count(), equalTo(expectedTerms.entries().get(i).count()));
+        }
+
+        HistogramFacet expectedHistogram = expected.facets().facet("histogram");
+        HistogramFacet actualHistogram = actual.facets().facet("histogram");
+        assertThat(actualHistogram.entries().size(), equalTo(expectedHistogram.entries().size()));
+        for (int i = 0; i < expectedHistogram.entries().size(); i++) {
+            assertThat(actualHistogram.entries().get(i).key(), equalTo(expectedHistogram.entries().get(i).key()));
+            assertThat(actualHistogram.entries().get(i).count(), equalTo(expectedHistogram.entries().get(i).count()));
+        }
+
+        StatisticalFacet expectedStats = expected.facets().facet("stats");
+        StatisticalFacet actualStats = actual.facets().facet("stats");
+        assertThat(actualStats.count(), equalTo(expectedStats.count()));
+        assertThat(actualStats.total(), equalTo(expectedStats.total()));
+        assertThat(actualStats.min(), equalTo(expectedStats.min()));
+        assertThat(actualStats.max(), equalTo(expectedStats.max()));
+    }
+
+    private SearchResponse search(Client client, SearchType searchType, QueryBuilder query, boolean sort, int from) {
+        SearchResponse response = client.prepareSearch("test").setSearchType(searchType).setQuery(query).setFrom(from).setSize(20)
+                .addSort(sort ? "num" : "_score", SortOrder.DESC)
+                .addFacet(termsFacet("tags").field("tag").size(20))
+                .addFacet(histogramFacet("histogram").field("num").interval(50))
+                .addFacet(statisticalFacet("stats").field("num"))
+                .execute().actionGet();
+        assertThat(response.failedShards(), equalTo(0));
+        return response;
+    }
+}
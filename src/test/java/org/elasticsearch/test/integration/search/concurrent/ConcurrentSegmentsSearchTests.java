@@ -0,0 +1,242 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.integration.search.concurrent;
+
+import org.elasticsearch.action.admin.cluster.node.stats.NodesStatsResponse;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.facet.statistical.StatisticalFacet;
+import org.elasticsearch.search.facet.terms.TermsFacet;
+import org.elasticsearch.search.internal.ContextIndexSearcher;
+import org.elasticsearch.search.sort.SortOrder;
+import org.elasticsearch.test.integration.AbstractNodesTests;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.threadpool.ThreadPoolStats;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilder;
+import static org.elasticsearch.index.query.FilterBuilders.termFilter;
+import static org.elasticsearch.index.query.QueryBuilders.*;
+import static org.elasticsearch.search.facet.FacetBuilders.statisticalFacet;
+import static org.elasticsearch.search.facet.FacetBuilders.termsFacet;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+/**
+ * Checks that searching the segments of a shard concurrently returns the same results as searching them
+ * one after the other.
+ */
+public class ConcurrentSegmentsSearchTests extends AbstractNodesTests {
+
+    private Client client;
+
+    @BeforeClass
+    public void createNodes() throws Exception {
+        startNode("node1");
+        client = getClient();
+    }
+
+    @AfterClass
+    public void closeNodes() {
+        client.close();
+        closeAllNodes();
+    }
+
+    protected Client getClient() {
+        return client("node1");
+    }
+
+    @Test
+    public void testSameResultsAsSequentialSearch() throws Exception {
+        client.admin().indices().prepareDelete().execute().actionGet();
+        client.admin().indices().prepareCreate("sequential")
+                .setSettings(settingsBuilder().put("index.number_of_shards", 1).put("index.number_of_replicas", 0))
+                .execute().actionGet();
+        client.admin().indices().prepareCreate("concurrent")
+                .setSettings(settingsBuilder().put("index.number_of_shards", 1).put("index.number_of_replicas", 0)
+                        .put(ContextIndexSearcher.INDEX_SEARCH_CONCURRENCY, 3))
+                .execute().actionGet();
+        client.admin().cluster().prepareHealth().setWaitForGreenStatus().execute().actionGet();
+
+        // each refresh creates a new segment
+        for (int segment = 0; segment < 5; segment++) {
+            for (int i = 0; i < 40; i++) {
+                int id = segment * 40 + i;
+                for (String index : new String[]{"sequential", "concurrent"}) {
+                    client.prepareIndex(index, "type", Integer.toString(id))
+                            .setSource("tag", "tag" + (id % 7), "text", id % 3 == 0 ? "foo bar" : "foo", "num", id)
+                            .execute().actionGet();
+                }
+            }
+            client.admin().indices().prepareRefresh().execute().actionGet();
+        }
+        assertThat(client.admin().indices().prepareSegments("concurrent").execute().actionGet()
+                .indices().get("concurrent").shards().get(0).shards()[0].segments().size(), greaterThan(1));
+
+        long completed = completedSegmentsTasks();
+
+        assertSameResults(SearchType.COUNT, matchAllQuery(), false);
+        assertSameResults(SearchType.COUNT, rangeQuery("num").from(15).to(150), false);
+        assertSameResults(SearchType.QUERY_THEN_FETCH, matchAllQuery(), true);
+        assertSameResults(SearchType.QUERY_THEN_FETCH, termQuery("text", "foo"), false);
+        assertSameResults(SearchType.QUERY_THEN_FETCH, queryString("bar OR tag3"), false);
+        assertSameResults(SearchType.DFS_QUERY_THEN_FETCH, queryString("bar OR tag3"), true);
+
+        // the other slices were searched on the search segments thread pool
+        assertThat(completedSegmentsTasks(), greaterThan(completed));
+    }
+
+    @Test
+    public void testTermsFacetSameAsSequentialSearch() throws Exception {
+        client.admin().indices().prepareDelete().execute().actionGet();
+        client.admin().indices().prepareCreate("sequential")
+                .setSettings(settingsBuilder().put("index.number_of_shards", 1).put("index.number_of_replicas", 0)
+                        .put(ContextIndexSearcher.INDEX_SEARCH_CONCURRENCY, 1))
+                .execute().actionGet();
+        client.admin().indices().prepareCreate("concurrent")
+                .setSettings(settingsBuilder().put("index.number_of_shards", 1).put("index.number_of_replicas", 0)
+                        .put(ContextIndexSearcher.INDEX_SEARCH_CONCURRENCY, 4))
+                .execute().actionGet();
+        client.admin().cluster().prepareHealth().setWaitForGreenStatus().execute().actionGet();
+
+        // every segment is dominated by its own terms, while "common" is the most frequent term overall,
+        // so truncating each slice to the top entries would drop it
+        int id = 0;
+        for (int segment = 0; segment < 8; segment++) {
+            for (int i = 0; i < 9; i++) {
+                int term = i < 5 ? segment : i < 7 ? (segment + 1) % 8 : 8;
+                for (String index : new String[]{"sequential", "concurrent"}) {
+                    client.prepareIndex(index, "type", Integer.toString(id))
+                            .setSource("tag", term == 8 ? "common" : "local" + term, "tag_num", term, "num", id)
+                            .execute().actionGet();
+                }
+                id++;
+            }
+            client.admin().indices().prepareRefresh().execute().actionGet();
+        }
+        assertThat(client.admin().indices().prepareSegments("concurrent").execute().actionGet()
+                .indices().get("concurrent").shards().get(0).shards()[0].segments().size(), greaterThan(3));
+
+        for (String field : new String[]{"tag", "tag_num"}) {
+            for (TermsFacet.ComparatorType order : new TermsFacet.ComparatorType[]{TermsFacet.ComparatorType.COUNT, TermsFacet.ComparatorType.TERM}) {
+                TermsFacet expected = searchTermsFacet("sequential", field, order);
+                TermsFacet actual = searchTermsFacet("concurrent", field, order);
+                assertThat(actual.totalCount(), equalTo(expected.totalCount()));
+                assertThat(actual.otherCount(), equalTo(expected.otherCount()));
+                assertThat(actual.entries().size(), equalTo(expected.entries().size()));
+                for (int i = 0; i < expected.entries().size(); i++) {
+                    assertThat(actual.entries().get(i).term(), equalTo(expected.entries().get(i).term()));
+                    assertThat(actual.entries().get(i).count(), equalTo(expected.entries().get(i).count()));
+                }
+            }
+            // the global top term is not among the top entries of any single slice
+            assertThat(searchTermsFacet("concurrent", field, TermsFacet.ComparatorType.COUNT).entries().get(0).count(), equalTo(16));
+        }
+
+        // the post filter only applies to the hits, the facets are computed on all the docs matching the query
+        for (String field : new String[]{"tag", "tag_num"}) {
+            SearchResponse expected = searchPostFilter("sequential", field);
+            SearchResponse actual = searchPostFilter("concurrent", field);
+            assertThat(expected.hits().totalHits(), equalTo(16l));
+            assertThat(actual.hits().totalHits(), equalTo(expected.hits().totalHits()));
+            TermsFacet expectedTerms = expected.facets().facet("tags");
+            TermsFacet actualTerms = actual.facets().facet("tags");
+            assertThat(expectedTerms.totalCount(), equalTo(72l));
+            assertThat(actualTerms.totalCount(), equalTo(expectedTerms.totalCount()));
+            assertThat(actualTerms.entries().size(), equalTo(expectedTerms.entries().size()));
+            for (int i = 0; i < expectedTerms.entries().size(); i++) {
+                assertThat(actualTerms.entries().get(i).term(), equalTo(expectedTerms.entries().get(i).term()));
+                assertThat(actualTerms.entries().get(i).count(), equalTo(expectedTerms.entries().get(i).count()));
+            }
+        }
+    }
+
+    private SearchResponse searchPostFilter(String index, String field) {
+        SearchResponse response = client.prepareSearch(index).setQuery(matchAllQuery())
+                .setFilter(termFilter("tag", "common"))
+                .addFacet(termsFacet("tags").field(field).size(2))
+                .execute().actionGet();
+        assertThat(response.failedShards(), equalTo(0));
+        return response;
+    }
+
+    private TermsFacet searchTermsFacet(String index, String field, TermsFacet.ComparatorType order) {
+        SearchResponse response = client.prepareSearch(index).setSearchType(SearchType.COUNT).setQuery(matchAllQuery())
+                .addFacet(termsFacet("tags").field(field).size(2).order(order))
+                .execute().actionGet();
+        assertThat(response.failedShards(), equalTo(0));
+        return response.facets().facet("tags");
+    }
+
+    private void assertSameResults(SearchType searchType, QueryBuilder query, boolean sort) {
+        SearchResponse expected = search("sequential", searchType, query, sort);
+        SearchResponse actual = search("concurrent", searchType, query, sort);
+        assertThat(actual.failedShards(), equalTo(0));
+        assertThat(actual.hits().totalHits(), equalTo(expected.hits().totalHits()));
+        assertThat(actual.hits().hits().length, equalTo(expected.hits().hits().length));
+        for (int i = 0; i < expected.hits().hits().length; i++) {
+            assertThat(actual.hits().getAt(i).id(), equalTo(expected.hits().getAt(i).id()));
+            if (!sort) {
+                assertThat(actual.hits().getAt(i).score(), equalTo(expected.hits().getAt(i).score()));
+            }
+        }
+
+        TermsFacet expectedTerms = expected.facets().facet("tags");
+        TermsFacet actualTerms = actual.facets().facet("tags");
+        assertThat(actualTerms.missingCount(), equalTo(expectedTerms.missingCount()));
+        assertThat(actualTerms.entries().size(), equalTo(expectedTerms.entries().size()));
+        for (int i = 0; i < expectedTerms.entries().size(); i++) {
+            assertThat(actualTerms.entries().get(i).term(), equalTo(expectedTerms.entries().get(i).term()));
+            assertThat(actualTerms.entries().get(i).count(), equalTo(expectedTerms.entries().get(i).count()));
+        }
+
+        StatisticalFacet expectedStats = expected.facets().facet("stats");
+        StatisticalFacet actualStats = actual.facets().facet("stats");
+        assertThat(actualStats.count(), equalTo(expectedStats.count()));
+        assertThat(actualStats.total(), equalTo(expectedStats.total()));
+        assertThat(actualStats.min(), equalTo(expectedStats.min()));
+        assertThat(actualStats.max(), equalTo(expectedStats.max()));
+    }
+
+    private SearchResponse search(String index, SearchType searchType, QueryBuilder query, boolean sort) {
+        SearchResponse response = client.prepareSearch(index).setSearchType(searchType).setQuery(query).setSize(25)
+                .addSort(sort ? "num" : "_score", SortOrder.DESC)
+                .addFacet(termsFacet("tags").field("tag").size(10))
+                .addFacet(statisticalFacet("stats").field("num"))
+                .execute().actionGet();
+        assertThat(response.failedShards(), equalTo(0));
+        return response;
+    }
+
+    private long completedSegmentsTasks() {
+        NodesStatsResponse nodesStats = client.admin().cluster().prepareNodesStats().setThreadPool(true).execute().actionGet();
+        for (ThreadPoolStats.Stats stats : nodesStats.nodes()[0].threadPool()) {
+            if (ThreadPool.Names.SEARCH_SEGMENTS.equals(stats.name())) {
+                return stats.completed();
+            }
+        }
+        return 0;
+    }
+}
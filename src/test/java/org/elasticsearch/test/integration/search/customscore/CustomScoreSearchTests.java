@@ -229,6 +229,56 @@ public class CustomScoreSearchTests extends AbstractNodesTests {
         assertThat(response.hits().getAt(1).id(), equalTo("2"));
     }
 
+    @Test
+    public void testCustomExpressionBoost() throws Exception {
+        client.admin().indices().prepareDelete().execute().actionGet();
+        client.admin().indices().prepareCreate("test").setSettings(settingsBuilder().put("index.number_of_shards", 1)).execute().actionGet();
+
+        client.index(indexRequest("test").type("type1").id("1")
+                .source(jsonBuilder().startObject().field("test", "value beck").field("num1", 1.0f).endObject())).actionGet();
+        client.index(indexRequest("test").type("type1").id("2")
+                .source(jsonBuilder().startObject().field("test", "value check").field("num1", 2.0f).endObject())).actionGet();
+        client.index(indexRequest("test").type("type1").id("3")
+                .source(jsonBuilder().startObject().field("test", "value none").endObject())).actionGet();
+        client.admin().indices().refresh(refreshRequest()).actionGet();
+
+        logger.info("running doc['num1'].value");
+        SearchResponse response = client.search(searchRequest()
+                .source(searchSource().query(customScoreQuery(termQuery("test", "value")).lang("expression").script("doc['num1'].value + 1")))
+        ).actionGet();
+
+        assertThat(response.hits().totalHits(), equalTo(3l));
+        assertThat(response.hits().getAt(0).id(), equalTo("2"));
+        assertThat((double) response.hits().getAt(0).score(), equalTo(3.0));
+        assertThat(response.hits().getAt(1).id(), equalTo("1"));
+        assertThat((double) response.hits().getAt(1).score(), equalTo(2.0));
+        assertThat(response.hits().getAt(2).id(), equalTo("3"));
+        assertThat((double) response.hits().getAt(2).score(), equalTo(1.0));
+
+        logger.info("running -doc['num1'].value * factor with docs without a value last");
+        response = client.search(searchRequest()
+                .source(searchSource().query(customScoreQuery(termQuery("test", "value")).lang("expression")
+                        .script("doc['num1'].empty ? -100 : -doc['num1'].value * factor").param("factor", 2)))
+        ).actionGet();
+
+        assertThat(response.hits().totalHits(), equalTo(3l));
+        assertThat(response.hits().getAt(0).id(), equalTo("1"));
+        assertThat((double) response.hits().getAt(0).score(), equalTo(-2.0));
+        assertThat(response.hits().getAt(1).id(), equalTo("2"));
+        assertThat((double) response.hits().getAt(1).score(), equalTo(-4.0));
+        assertThat(response.hits().getAt(2).id(), equalTo("3"));
+
+        logger.info("running pow(doc['num1'].value, 2) * _score");
+        response = client.search(searchRequest()
+                .source(searchSource().query(customScoreQuery(termQuery("test", "value")).lang("expression").script("pow(doc['num1'].value, 2) * _score")))
+        ).actionGet();
+
+        assertThat(response.hits().totalHits(), equalTo(3l));
+        assertThat(response.hits().getAt(0).id(), equalTo("2"));
+        assertThat(response.hits().getAt(1).id(), equalTo("1"));
+        assertThat(response.hits().getAt(0).score(), equalTo(response.hits().getAt(1).score() * 4));
+    }
+
     @Test
     public void testTriggerBooleanScorer() throws Exception {
         client.admin().indices().prepareDelete().execute().actionGet();
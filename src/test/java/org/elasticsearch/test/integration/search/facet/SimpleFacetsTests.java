@@ -19,6 +19,7 @@
 
 package org.elasticsearch.test.integration.search.facet;
 
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.action.search.ShardSearchFailure;
@@ -27,9 +28,11 @@ import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.search.facet.cardinality.CardinalityFacet;
 import org.elasticsearch.search.facet.datehistogram.DateHistogramFacet;
 import org.elasticsearch.search.facet.filter.FilterFacet;
 import org.elasticsearch.search.facet.histogram.HistogramFacet;
+import org.elasticsearch.search.facet.percentiles.PercentilesFacet;
 import org.elasticsearch.search.facet.query.QueryFacet;
 import org.elasticsearch.search.facet.range.RangeFacet;
 import org.elasticsearch.search.facet.statistical.StatisticalFacet;
@@ -907,6 +910,125 @@ public class SimpleFacetsTests extends AbstractNodesTests {
         }
     }
 
+    @Test
+    public void testCardinalityFacets() throws Exception {
+        try {
+            client.admin().indices().prepareDelete("test").execute().actionGet();
+        } catch (Exception e) {
+            // ignore
+        }
+        client.admin().indices().prepareCreate("test").execute().actionGet();
+        client.admin().cluster().prepareHealth().setWaitForGreenStatus().execute().actionGet();
+
+        for (int i = 0; i < 300; i++) {
+            client.prepareIndex("test", "type1").setSource(jsonBuilder().startObject()
+                    .field("num", i % 100)
+                    .field("dbl", (i % 100) / 2.0)
+                    .field("tag", "tag" + (i % 100))
+                    .startArray("multi_tag").value("a" + (i % 40)).value("b" + (i % 40)).endArray()
+                    .field("even", i % 2 == 0)
+                    .endObject()).execute().actionGet();
+            if (i == 150) {
+                client.admin().indices().prepareFlush().setRefresh(true).execute().actionGet();
+            }
+        }
+        client.admin().indices().prepareRefresh().execute().actionGet();
+
+        for (int i = 0; i < numberOfRuns(); i++) {
+            SearchResponse searchResponse = client.prepareSearch()
+                    .setQuery(matchAllQuery())
+                    .addFacet(cardinalityFacet("num").field("num"))
+                    .addFacet(cardinalityFacet("dbl").field("dbl"))
+                    .addFacet(cardinalityFacet("tag").field("tag"))
+                    .addFacet(cardinalityFacet("multi_tag").field("multi_tag"))
+                    .addFacet(cardinalityFacet("tag_low_precision").field("tag").precision(4))
+                    .execute().actionGet();
+            assertThat(searchResponse.failedShards(), equalTo(0));
+
+            assertThat((double) searchResponse.facets().<CardinalityFacet>facet("num").cardinality(), closeTo(100, 2));
+            assertThat((double) searchResponse.facets().<CardinalityFacet>facet("dbl").cardinality(), closeTo(100, 2));
+            assertThat((double) searchResponse.facets().<CardinalityFacet>facet("tag").cardinality(), closeTo(100, 2));
+            assertThat((double) searchResponse.facets().<CardinalityFacet>facet("multi_tag").cardinality(), closeTo(80, 2));
+            // 16 buckets, the standard error is about 26%
+            assertThat((double) searchResponse.facets().<CardinalityFacet>facet("tag_low_precision").cardinality(), closeTo(100, 80));
+
+            searchResponse = client.prepareSearch()
+                    .setQuery(termQuery("even", true))
+                    .addFacet(cardinalityFacet("num").field("num"))
+                    .addFacet(cardinalityFacet("tag").field("tag"))
+                    .execute().actionGet();
+            assertThat(searchResponse.failedShards(), equalTo(0));
+
+            assertThat((double) searchResponse.facets().<CardinalityFacet>facet("num").cardinality(), closeTo(50, 2));
+            assertThat((double) searchResponse.facets().<CardinalityFacet>facet("tag").cardinality(), closeTo(50, 2));
+        }
+    }
+
+    @Test
+    public void testPercentilesFacets() throws Exception {
+        try {
+            client.admin().indices().prepareDelete("test").execute().actionGet();
+        } catch (Exception e) {
+            // ignore
+        }
+        client.admin().indices().prepareCreate("test").execute().actionGet();
+        client.admin().cluster().prepareHealth().setWaitForGreenStatus().execute().actionGet();
+
+        BulkRequestBuilder bulk = client.prepareBulk();
+        for (int i = 1; i <= 1000; i++) {
+            bulk.add(client.prepareIndex("test", "type1").setSource(jsonBuilder().startObject()
+                    .field("num", i)
+                    .field("dbl", i / 10.0)
+                    .field("even", i % 2 == 0)
+                    .endObject()));
+        }
+        assertThat(bulk.execute().actionGet().hasFailures(), equalTo(false));
+        client.admin().indices().prepareRefresh().execute().actionGet();
+
+        for (int i = 0; i < numberOfRuns(); i++) {
+            SearchResponse searchResponse = client.prepareSearch()
+                    .setQuery(matchAllQuery())
+                    .addFacet(percentilesFacet("num").field("num").percents(1, 50, 99))
+                    .addFacet(percentilesFacet("dbl").field("dbl"))
+                    .addFacet(percentilesFacet("num_compressed").field("num").compression(5))
+                    .execute().actionGet();
+            assertThat(searchResponse.failedShards(), equalTo(0));
+
+            PercentilesFacet facet = searchResponse.facets().facet("num");
+            assertThat(facet.count(), equalTo(1000l));
+            assertThat(facet.min(), equalTo(1d));
+            assertThat(facet.max(), equalTo(1000d));
+            assertThat(facet.percents(), equalTo(new double[]{1, 50, 99}));
+            assertThat(facet.percentile(0), equalTo(1d));
+            assertThat(facet.percentile(1), closeTo(10, 2));
+            assertThat(facet.percentile(50), closeTo(500, 10));
+            assertThat(facet.percentile(99), closeTo(990, 2));
+            assertThat(facet.percentile(100), equalTo(1000d));
+
+            facet = searchResponse.facets().facet("dbl");
+            assertThat(facet.count(), equalTo(1000l));
+            assertThat(facet.percents().length, equalTo(7));
+            assertThat(facet.percentile(25), closeTo(25, 1));
+            assertThat(facet.percentile(95), closeTo(95, 1));
+
+            // only a few centroids, less accurate
+            facet = searchResponse.facets().facet("num_compressed");
+            assertThat(facet.count(), equalTo(1000l));
+            assertThat(facet.percentile(50), closeTo(500, 100));
+
+            searchResponse = client.prepareSearch()
+                    .setQuery(termQuery("even", true))
+                    .addFacet(percentilesFacet("num").field("num"))
+                    .execute().actionGet();
+            assertThat(searchResponse.failedShards(), equalTo(0));
+
+            facet = searchResponse.facets().facet("num");
+            assertThat(facet.count(), equalTo(500l));
+            assertThat(facet.min(), equalTo(2d));
+            assertThat(facet.percentile(50), closeTo(500, 10));
+        }
+    }
+
     @Test
     public void testHistoFacetEdge() throws Exception {
         try {
@@ -20,6 +20,7 @@
 package org.elasticsearch.test.integration.search.scan;
 
 import com.google.common.collect.Sets;
+import org.elasticsearch.action.search.SearchPhaseExecutionException;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.client.Client;
@@ -34,9 +35,14 @@ import org.testng.annotations.Test;
 import java.util.Set;
 
 import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+import static org.elasticsearch.index.query.FilterBuilders.termFilter;
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import static org.elasticsearch.index.query.QueryBuilders.prefixQuery;
 import static org.elasticsearch.index.query.QueryBuilders.termQuery;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.testng.Assert.fail;
 
 public class SearchScanTests extends AbstractNodesTests {
 
@@ -119,4 +125,238 @@ public class SearchScanTests extends AbstractNodesTests {
 
         assertThat(expectedIds, equalTo(ids));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testResumableScanAcrossChanges() throws Exception {
+        try {
+            client.admin().indices().prepareDelete("test").execute().actionGet();
+        } catch (Exception e) {
+            // ignore
+        }
+        client.admin().indices().prepareCreate("test").setSettings(ImmutableSettings.settingsBuilder().put("index.number_of_shards", 2)).execute().actionGet();
+        client.admin().cluster().prepareHealth().setWaitForGreenStatus().execute().actionGet();
+
+        for (int i = 0; i < 100; i++) {
+            client.prepareIndex("test", "tweet", Integer.toString(i)).setSource(
+                    jsonBuilder().startObject().field("user", i % 2 == 0 ? "kimchy1" : "kimchy2").field("message", "test").endObject()).execute().actionGet();
+            // make some segments
+            if (i % 10 == 0) {
+                client.admin().indices().prepareFlush().execute().actionGet();
+            }
+        }
+        client.admin().indices().prepareRefresh().execute().actionGet();
+
+        SearchResponse searchResponse = client.prepareSearch()
+                .setSearchType(SearchType.SCAN)
+                .setQuery(termQuery("user", "kimchy1"))
+                .setSize(7)
+                .setResumableScan(true)
+                .setScroll(TimeValue.timeValueMinutes(2))
+                .execute().actionGet();
+        assertThat(searchResponse.hits().totalHits(), equalTo(50l));
+
+        Set<String> ids = Sets.newHashSet();
+        searchResponse = client.prepareSearchScroll(searchResponse.scrollId()).setScroll(TimeValue.timeValueMinutes(2)).execute().actionGet();
+        assertThat(searchResponse.failedShards(), equalTo(0));
+        for (SearchHit hit : searchResponse.hits()) {
+            ids.add(hit.id());
+        }
+        assertThat(ids.size(), equalTo(14));
+
+        // change the index while scanning: delete unseen matching docs, update the seen ones and merge all segments
+        Set<String> deletedIds = Sets.newHashSet();
+        for (int i = 0; i < 100; i += 2) {
+            String id = Integer.toString(i);
+            if (ids.contains(id)) {
+                client.prepareIndex("test", "tweet", id).setSource(
+                        jsonBuilder().startObject().field("user", "kimchy1").field("message", "updated").endObject()).execute().actionGet();
+            } else if (deletedIds.size() < 10) {
+                client.prepareDelete("test", "tweet", id).execute().actionGet();
+                deletedIds.add(id);
+            }
+        }
+        client.admin().indices().prepareRefresh().execute().actionGet();
+        client.admin().indices().prepareOptimize("test").setMaxNumSegments(1).execute().actionGet();
+        client.admin().indices().prepareRefresh().execute().actionGet();
+
+        while (true) {
+            searchResponse = client.prepareSearchScroll(searchResponse.scrollId()).setScroll(TimeValue.timeValueMinutes(2)).execute().actionGet();
+            assertThat(searchResponse.failedShards(), equalTo(0));
+            for (SearchHit hit : searchResponse.hits()) {
+                assertThat(hit.id() + " should not exists in the result set", ids.contains(hit.id()), equalTo(false));
+                assertThat(hit.id() + " should have been deleted", deletedIds.contains(hit.id()), equalTo(false));
+                ids.add(hit.id());
+            }
+            if (searchResponse.hits().hits().length == 0) {
+                break;
+            }
+        }
+
+        Set<String> expectedIds = Sets.newHashSet();
+        for (int i = 0; i < 100; i += 2) {
+            if (!deletedIds.contains(Integer.toString(i))) {
+                expectedIds.add(Integer.toString(i));
+            }
+        }
+        assertThat(ids, equalTo(expectedIds));
+    }
+
+    @Test
+    public void testResumableScanTrackScores() throws Exception {
+        try {
+            client.admin().indices().prepareDelete("test").execute().actionGet();
+        } catch (Exception e) {
+            // ignore
+        }
+        client.admin().indices().prepareCreate("test").setSettings(ImmutableSettings.settingsBuilder().put("index.number_of_shards", 1)).execute().actionGet();
+        client.admin().cluster().prepareHealth().setWaitForGreenStatus().execute().actionGet();
+
+        for (int i = 0; i < 20; i++) {
+            client.prepareIndex("test", "tweet", Integer.toString(i)).setSource(
+                    jsonBuilder().startObject().field("user", i % 2 == 0 ? "kimchy1" : "kimchy2").endObject()).execute().actionGet();
+            if (i % 5 == 0) {
+                client.admin().indices().prepareFlush().execute().actionGet();
+            }
+        }
+        client.admin().indices().prepareRefresh().execute().actionGet();
+
+        SearchResponse searchResponse = client.prepareSearch()
+                .setSearchType(SearchType.SCAN)
+                .setQuery(termQuery("user", "kimchy1"))
+                .setSize(3)
+                .setTrackScores(true)
+                .setResumableScan(true)
+                .setScroll(TimeValue.timeValueMinutes(2))
+                .execute().actionGet();
+        assertThat(searchResponse.hits().totalHits(), equalTo(10l));
+
+        Set<String> ids = Sets.newHashSet();
+        while (true) {
+            searchResponse = client.prepareSearchScroll(searchResponse.scrollId()).setScroll(TimeValue.timeValueMinutes(2)).execute().actionGet();
+            assertThat(searchResponse.failedShards(), equalTo(0));
+            for (SearchHit hit : searchResponse.hits()) {
+                assertThat(hit.score(), greaterThan(0f));
+                ids.add(hit.id());
+            }
+            if (searchResponse.hits().hits().length == 0) {
+                break;
+            }
+        }
+        assertThat(ids.size(), equalTo(10));
+    }
+
+    @Test
+    public void testResumableScanRejectsFrom() throws Exception {
+        try {
+            client.admin().indices().prepareDelete("test").execute().actionGet();
+        } catch (Exception e) {
+            // ignore
+        }
+        client.admin().indices().prepareCreate("test").setSettings(ImmutableSettings.settingsBuilder().put("index.number_of_shards", 1)).execute().actionGet();
+        client.admin().cluster().prepareHealth().setWaitForGreenStatus().execute().actionGet();
+        client.prepareIndex("test", "tweet", "1").setSource(jsonBuilder().startObject().field("user", "kimchy1").endObject()).setRefresh(true).execute().actionGet();
+
+        try {
+            client.prepareSearch()
+                    .setSearchType(SearchType.SCAN)
+                    .setQuery(termQuery("user", "kimchy1"))
+                    .setFrom(5)
+                    .setSize(3)
+                    .setResumableScan(true)
+                    .setScroll(TimeValue.timeValueMinutes(2))
+                    .execute().actionGet();
+            fail("from should be rejected by resumable scans");
+        } catch (SearchPhaseExecutionException e) {
+            // all the shards rejected it
+        }
+    }
+
+    @Test
+    public void testResumableScanFilteredAlias() throws Exception {
+        createResumableScanIndex();
+        client.admin().indices().prepareAliases().addAlias("test", "alias1", termFilter("user", "kimchy1")).execute().actionGet();
+
+        SearchResponse searchResponse = client.prepareSearch("alias1")
+                .setSearchType(SearchType.SCAN)
+                .setQuery(matchAllQuery())
+                .setSize(3)
+                .setResumableScan(true)
+                .setScroll(TimeValue.timeValueMinutes(2))
+                .execute().actionGet();
+        assertThat(searchResponse.hits().totalHits(), equalTo(10l));
+
+        Set<String> ids = scanAll(searchResponse);
+        assertThat(ids.size(), equalTo(10));
+        for (String id : ids) {
+            assertThat(id + " is hidden by the alias", Integer.parseInt(id) % 2, equalTo(0));
+        }
+    }
+
+    @Test
+    public void testResumableScanPostFilter() throws Exception {
+        createResumableScanIndex();
+
+        SearchResponse searchResponse = client.prepareSearch("test")
+                .setSearchType(SearchType.SCAN)
+                .setQuery(prefixQuery("message", "te"))
+                .setFilter(termFilter("user", "kimchy1"))
+                .setSize(3)
+                .setResumableScan(true)
+                .setScroll(TimeValue.timeValueMinutes(2))
+                .execute().actionGet();
+
+        Set<String> ids = Sets.newHashSet();
+        searchResponse = client.prepareSearchScroll(searchResponse.scrollId()).setScroll(TimeValue.timeValueMinutes(2)).execute().actionGet();
+        assertThat(searchResponse.failedShards(), equalTo(0));
+        for (SearchHit hit : searchResponse.hits()) {
+            ids.add(hit.id());
+        }
+
+        // terms the prefix query could not have been rewritten to when the scan started
+        for (int i = 20; i < 24; i++) {
+            client.prepareIndex("test", "tweet", Integer.toString(i)).setSource(
+                    jsonBuilder().startObject().field("user", i % 2 == 0 ? "kimchy1" : "kimchy2").field("message", "text" + i).endObject()).execute().actionGet();
+        }
+        client.admin().indices().prepareRefresh().execute().actionGet();
+
+        ids.addAll(scanAll(searchResponse));
+        Set<String> expectedIds = Sets.newHashSet();
+        for (int i = 0; i < 24; i += 2) {
+            expectedIds.add(Integer.toString(i));
+        }
+        assertThat(ids, equalTo(expectedIds));
+    }
+
+    private void createResumableScanIndex() throws Exception {
+        try {
+            client.admin().indices().prepareDelete("test").execute().actionGet();
+        } catch (Exception e) {
+            // ignore
+        }
+        client.admin().indices().prepareCreate("test").setSettings(ImmutableSettings.settingsBuilder().put("index.number_of_shards", 1)).execute().actionGet();
+        client.admin().cluster().prepareHealth().setWaitForGreenStatus().execute().actionGet();
+
+        for (int i = 0; i < 20; i++) {
+            client.prepareIndex("test", "tweet", Integer.toString(i)).setSource(
+                    jsonBuilder().startObject().field("user", i % 2 == 0 ? "kimchy1" : "kimchy2").field("message", "test").endObject()).execute().actionGet();
+            if (i % 5 == 0) {
+                client.admin().indices().prepareFlush().execute().actionGet();
+            }
+        }
+        client.admin().indices().prepareRefresh().execute().actionGet();
+    }
+
+    private Set<String> scanAll(SearchResponse searchResponse) {
+        Set<String> ids = Sets.newHashSet();
+        while (true) {
+            searchResponse = client.prepareSearchScroll(searchResponse.scrollId()).setScroll(TimeValue.timeValueMinutes(2)).execute().actionGet();
+            assertThat(searchResponse.failedShards(), equalTo(0));
+            for (SearchHit hit : searchResponse.hits()) {
+                assertThat(hit.id() + " returned twice", ids.add(hit.id()), equalTo(true));
+            }
+            if (searchResponse.hits().hits().length == 0) {
+                return ids;
+            }
+        }
+    }
+}
@@ -21,9 +21,15 @@ package org.elasticsearch.test.integration.search.stats;
 
 import org.elasticsearch.action.admin.cluster.node.stats.NodesStatsResponse;
 import org.elasticsearch.action.admin.indices.stats.IndicesStats;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.indices.cache.query.IndicesQueryCache;
+import org.elasticsearch.node.internal.InternalNode;
+import org.elasticsearch.search.facet.FacetBuilders;
+import org.elasticsearch.search.facet.terms.TermsFacet;
 import org.elasticsearch.test.integration.AbstractNodesTests;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
@@ -90,4 +96,77 @@ public class SearchStatsTests extends AbstractNodesTests {
         assertThat(nodeStats.nodes()[0].indices().search().total().queryCount(), greaterThan(0l));
         assertThat(nodeStats.nodes()[0].indices().search().total().queryTimeInMillis(), greaterThan(0l));
     }
+
+    @Test
+    public void testQueryCacheStats() throws Exception {
+        client.admin().indices().prepareDelete().execute().actionGet();
+        client.admin().indices().prepareCreate("test")
+                .setSettings(settingsBuilder().put("index.number_of_shards", 3).put("index.number_of_replicas", 0).put(IndicesQueryCache.INDEX_CACHE_QUERY_ENABLED, true))
+                .execute().actionGet();
+        client.admin().cluster().prepareHealth().setWaitForGreenStatus().execute().actionGet();
+
+        for (int i = 0; i < 100; i++) {
+            client.prepareIndex("test", "type", Integer.toString(i)).setSource("field", i % 2 == 0 ? "even" : "odd", "date", "2012-01-01").execute().actionGet();
+        }
+        // make sure no background merge swaps the reader while we search
+        client.admin().indices().prepareOptimize("test").setMaxNumSegments(1).setWaitForMerge(true).execute().actionGet();
+
+        for (int i = 0; i < 5; i++) {
+            SearchResponse searchResponse = client.prepareSearch("test").setSearchType(SearchType.COUNT)
+                    .setQuery(QueryBuilders.matchAllQuery())
+                    .addFacet(FacetBuilders.termsFacet("facet1").field("field"))
+                    .execute().actionGet();
+            assertThat(searchResponse.failedShards(), equalTo(0));
+            assertThat(searchResponse.hits().totalHits(), equalTo(100l));
+            TermsFacet facet = searchResponse.facets().facet("facet1");
+            assertThat(facet.entries().size(), equalTo(2));
+            assertThat(facet.entries().get(0).count(), equalTo(50));
+        }
+
+        IndicesStats indicesStats = client.admin().indices().prepareStats("test").execute().actionGet();
+        // the first search misses on every shard, the following ones hit
+        assertThat(indicesStats.total().search().total().queryCacheMissCount(), equalTo(3l));
+        assertThat(indicesStats.total().search().total().queryCacheHitCount(), equalTo(12l));
+        assertThat(queryCacheCount(), equalTo(3l));
+
+        // a refresh exposes a new reader, so the cached results are not used anymore
+        for (int i = 100; i < 110; i++) {
+            client.prepareIndex("test", "type", Integer.toString(i)).setSource("field", "even", "date", "2012-01-01").execute().actionGet();
+        }
+        client.admin().indices().prepareOptimize("test").setMaxNumSegments(1).setWaitForMerge(true).execute().actionGet();
+
+        SearchResponse searchResponse = client.prepareSearch("test").setSearchType(SearchType.COUNT)
+                .setQuery(QueryBuilders.matchAllQuery())
+                .addFacet(FacetBuilders.termsFacet("facet1").field("field"))
+                .execute().actionGet();
+        assertThat(searchResponse.hits().totalHits(), equalTo(110l));
+        TermsFacet facet = searchResponse.facets().facet("facet1");
+        assertThat(facet.entries().get(0).term().string(), equalTo("even"));
+        assertThat(facet.entries().get(0).count(), equalTo(60));
+        indicesStats = client.admin().indices().prepareStats("test").execute().actionGet();
+        assertThat(indicesStats.total().search().total().queryCacheMissCount(), equalTo(6l));
+        // the entries of the previous readers are removed once they are closed
+        for (int i = 0; i < 100 && queryCacheCount() != 3; i++) {
+            Thread.sleep(100);
+        }
+        assertThat(queryCacheCount(), equalTo(3l));
+
+        // searches relying on the current time are never cached
+        searchResponse = client.prepareSearch("test").setSearchType(SearchType.COUNT)
+                .setQuery(QueryBuilders.rangeQuery("date").lte("now"))
+                .execute().actionGet();
+        assertThat(searchResponse.failedShards(), equalTo(0));
+        assertThat(searchResponse.hits().totalHits(), equalTo(110l));
+        indicesStats = client.admin().indices().prepareStats("test").execute().actionGet();
+        assertThat(indicesStats.total().search().total().queryCacheMissCount(), equalTo(6l));
+        assertThat(indicesStats.total().search().total().queryCacheHitCount(), equalTo(12l));
+    }
+
+    private long queryCacheCount() {
+        long count = 0;
+        for (String node : new String[]{"server1", "server2"}) {
+            count += ((InternalNode) node(node)).injector().getInstance(IndicesQueryCache.class).count();
+        }
+        return count;
+    }
 }
@@ -28,6 +28,7 @@ import org.testng.annotations.Test;
 import static org.elasticsearch.common.io.Streams.copyToStringFromClasspath;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.instanceOf;
 
 public class BulkRequestTests {
@@ -58,4 +59,29 @@ public class BulkRequestTests {
         bulkRequest.add(bulkAction.getBytes(), 0, bulkAction.length(), true, null, null);
         assertThat(bulkRequest.numberOfActions(), equalTo(3));
     }
+
+    @Test
+    public void testBulkInBatches() throws Exception {
+        String bulkAction = copyToStringFromClasspath("/org/elasticsearch/test/unit/action/bulk/simple-bulk.json");
+        BytesArray data = new BytesArray(bulkAction.getBytes());
+
+        BulkRequest batch1 = new BulkRequest();
+        int from = batch1.addBatch(data, 0, false, null, null, null, 2, -1);
+        assertThat(batch1.numberOfActions(), equalTo(2));
+        assertThat(((IndexRequest) batch1.requests().get(0)).source().toBytes(), equalTo(new BytesArray("{ \"field1\" : \"value1\" }").toBytes()));
+        assertThat(batch1.requests().get(1), instanceOf(DeleteRequest.class));
+        assertThat(from, greaterThan(0));
+
+        BulkRequest batch2 = new BulkRequest();
+        from = batch2.addBatch(data, from, false, null, null, null, 2, -1);
+        assertThat(batch2.numberOfActions(), equalTo(1));
+        assertThat(((IndexRequest) batch2.requests().get(0)).source().toBytes(), equalTo(new BytesArray("{ \"field1\" : \"value3\" }").toBytes()));
+        assertThat(from, equalTo(-1));
+
+        // bounded by size, each batch gets at least one action
+        BulkRequest batch = new BulkRequest();
+        from = batch.addBatch(data, 0, false, null, null, null, -1, 1);
+        assertThat(batch.numberOfActions(), equalTo(1));
+        assertThat(from, greaterThan(0));
+    }
 }
@@ -0,0 +1,61 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.action.percolate;
+
+import org.elasticsearch.action.percolate.MultiPercolateRequest;
+import org.elasticsearch.common.io.Streams;
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ */
+@Test
+public class MultiPercolateRequestTests {
+
+    @Test
+    public void simpleAdd() throws Exception {
+        byte[] data = Streams.copyToBytesFromClasspath("/org/elasticsearch/test/unit/action/percolate/simple-mpercolate1.json");
+        MultiPercolateRequest request = new MultiPercolateRequest().add(data, 0, data.length, false, "default", "type0");
+        assertThat(request.requests().size(), equalTo(4));
+        assertThat(request.requests().get(0).index(), equalTo("test"));
+        assertThat(request.requests().get(0).type(), equalTo("type1"));
+        assertThat(request.requests().get(0).source().toUtf8(), containsString("value1"));
+        assertThat(request.requests().get(1).index(), equalTo("test"));
+        assertThat(request.requests().get(1).type(), equalTo("type0"));
+        assertThat(request.requests().get(1).source().toUtf8(), containsString("value2"));
+        assertThat(request.requests().get(2).index(), equalTo("default"));
+        assertThat(request.requests().get(2).type(), equalTo("type0"));
+        assertThat(request.requests().get(3).index(), equalTo("default"));
+        assertThat(request.requests().get(3).type(), equalTo("type2"));
+        assertThat(request.requests().get(3).preferLocalShard(), equalTo(false));
+        assertThat(request.requests().get(3).source().toUtf8(), containsString("blue"));
+        assertThat(request.validate(), nullValue());
+    }
+
+    @Test
+    public void missingIndex() throws Exception {
+        byte[] data = Streams.copyToBytesFromClasspath("/org/elasticsearch/test/unit/action/percolate/simple-mpercolate1.json");
+        MultiPercolateRequest request = new MultiPercolateRequest().add(data, 0, data.length, false, null, null);
+        assertThat(request.requests().size(), equalTo(4));
+        assertThat(request.validate(), notNullValue());
+    }
+}
@@ -33,6 +33,9 @@ import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.elasticsearch.cluster.ClusterState.newClusterStateBuilder;
 import static org.elasticsearch.cluster.metadata.IndexMetaData.newIndexMetaDataBuilder;
 import static org.elasticsearch.cluster.metadata.MetaData.newMetaDataBuilder;
@@ -336,6 +339,52 @@ public class FailedShardsRoutingTests {
         assertThat(strategy.applyFailedShard(clusterState, new ImmutableShardRouting("test", 0, "node1", true, INITIALIZING, 0)).changed(), equalTo(false));
     }
 
+    @Test
+    public void failMultipleShardsAtOnce() {
+        AllocationService strategy = new AllocationService(settingsBuilder()
+                .put("cluster.routing.allocation.concurrent_recoveries", 10)
+                .put("cluster.routing.allocation.allow_rebalance", "always")
+                .build());
+
+        logger.info("Building initial routing table");
+
+        MetaData metaData = newMetaDataBuilder()
+                .put(newIndexMetaDataBuilder("test").numberOfShards(2).numberOfReplicas(0))
+                .build();
+
+        RoutingTable routingTable = routingTable()
+                .addAsNew(metaData.index("test"))
+                .build();
+
+        ClusterState clusterState = newClusterStateBuilder().metaData(metaData).routingTable(routingTable).build();
+
+        logger.info("Adding two nodes and performing rerouting");
+        clusterState = newClusterStateBuilder().state(clusterState).nodes(newNodesBuilder().put(newNode("node1")).put(newNode("node2"))).build();
+        routingTable = strategy.reroute(clusterState).routingTable();
+        clusterState = newClusterStateBuilder().state(clusterState).routingTable(routingTable).build();
+
+        List<ShardRouting> shardsToFail = new ArrayList<ShardRouting>();
+        for (int i = 0; i < routingTable.index("test").shards().size(); i++) {
+            assertThat(routingTable.index("test").shard(i).primaryShard().state(), equalTo(INITIALIZING));
+            shardsToFail.add(new ImmutableShardRouting(routingTable.index("test").shard(i).primaryShard()));
+        }
+
+        logger.info("fail both shards at once, both should be reallocated on the other node");
+        RoutingTable prevRoutingTable = routingTable;
+        RoutingAllocation.Result rerouteResult = strategy.applyFailedShards(clusterState, shardsToFail);
+        assertThat(rerouteResult.changed(), equalTo(true));
+        routingTable = rerouteResult.routingTable();
+        clusterState = newClusterStateBuilder().state(clusterState).routingTable(routingTable).build();
+
+        for (int i = 0; i < routingTable.index("test").shards().size(); i++) {
+            assertThat(routingTable.index("test").shard(i).primaryShard().state(), equalTo(INITIALIZING));
+            assertThat(routingTable.index("test").shard(i).primaryShard().currentNodeId(), not(equalTo(prevRoutingTable.index("test").shard(i).primaryShard().currentNodeId())));
+        }
+
+        logger.info("fail the shards again, see that nothing happens");
+        assertThat(strategy.applyFailedShards(clusterState, shardsToFail).changed(), equalTo(false));
+    }
+
     @Test
     public void rebalanceFailure() {
         AllocationService strategy = new AllocationService(settingsBuilder()
@@ -20,6 +20,7 @@
 package org.elasticsearch.test.unit.cluster.serialization;
 
 import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.IncompatibleClusterStateVersionException;
 import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.node.DiscoveryNodes;
@@ -36,6 +37,7 @@ import static org.elasticsearch.cluster.metadata.MetaData.newMetaDataBuilder;
 import static org.elasticsearch.cluster.routing.RoutingBuilders.routingTable;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
 
 /**
  *
@@ -90,6 +92,65 @@ public class ClusterSerializationTests {
         assertThat(target.prettyPrint(), equalTo(source.prettyPrint()));
     }
 
+    @Test
+    public void testClusterStateDiffSerialization() throws Exception {
+        MetaData metaData = newMetaDataBuilder()
+                .put(newIndexMetaDataBuilder("test1").numberOfShards(10).numberOfReplicas(1))
+                .put(newIndexMetaDataBuilder("test2").numberOfShards(5).numberOfReplicas(1))
+                .build();
+
+        RoutingTable routingTable = routingTable()
+                .addAsNew(metaData.index("test1"))
+                .addAsNew(metaData.index("test2"))
+                .build();
+
+        DiscoveryNodes nodes = DiscoveryNodes.newNodesBuilder().put(newNode("node1")).put(newNode("node2")).put(newNode("node3")).localNodeId("node1").masterNodeId("node2").build();
+
+        ClusterState previousState = newClusterStateBuilder().version(1).nodes(nodes).metaData(metaData).routingTable(routingTable).build();
+
+        AllocationService strategy = new AllocationService();
+        previousState = newClusterStateBuilder().state(previousState).routingTable(strategy.reroute(previousState).routingTable()).build();
+
+        // remove one index, and add another one
+        metaData = newMetaDataBuilder().metaData(previousState.metaData())
+                .remove("test2")
+                .put(newIndexMetaDataBuilder("test3").numberOfShards(3).numberOfReplicas(0))
+                .build();
+        routingTable = RoutingTable.builder().routingTable(previousState.routingTable())
+                .remove("test2")
+                .addAsNew(metaData.index("test3"))
+                .build();
+        ClusterState clusterState = newClusterStateBuilder().state(previousState).version(2).metaData(metaData).routingTable(routingTable).build();
+        clusterState = newClusterStateBuilder().state(clusterState).routingTable(strategy.reroute(clusterState).routingTable()).build();
+
+        ClusterState receivedPreviousState = ClusterState.Builder.fromBytes(ClusterState.Builder.toBytes(previousState), newNode("node1"));
+
+        BytesStreamOutput outStream = new BytesStreamOutput();
+        ClusterState.Builder.writeDiffTo(previousState, clusterState, outStream);
+        BytesStreamInput inStream = new BytesStreamInput(outStream.bytes().toBytes(), false);
+        ClusterState serializedClusterState = ClusterState.Builder.readDiffFrom(inStream, receivedPreviousState, newNode("node1"));
+
+        assertThat(serializedClusterState.version(), equalTo(2l));
+        assertThat(serializedClusterState.routingTable().indicesRouting().size(), equalTo(2));
+        assertThat(serializedClusterState.routingTable().index("test1").prettyPrint(), equalTo(clusterState.routingTable().index("test1").prettyPrint()));
+        assertThat(serializedClusterState.routingTable().index("test3").prettyPrint(), equalTo(clusterState.routingTable().index("test3").prettyPrint()));
+        assertThat(serializedClusterState.metaData().indices().size(), equalTo(2));
+        assertThat(serializedClusterState.metaData().hasIndex("test2"), equalTo(false));
+        assertThat(serializedClusterState.metaData().index("test3").numberOfShards(), equalTo(3));
+        // unchanged index meta data is reused from the previous cluster state
+        assertThat(serializedClusterState.metaData().index("test1"), sameInstance(receivedPreviousState.metaData().index("test1")));
+        assertThat(serializedClusterState.nodes().masterNodeId(), equalTo("node2"));
+
+        // a diff can only be applied on the cluster state it was computed against
+        inStream = new BytesStreamInput(outStream.bytes().toBytes(), false);
+        try {
+            ClusterState.Builder.readDiffFrom(inStream, serializedClusterState, newNode("node1"));
+            assert false : "diff applied on the wrong cluster state version";
+        } catch (IncompatibleClusterStateVersionException e) {
+            // expected
+        }
+    }
+
     private DiscoveryNode newNode(String nodeId) {
         return new DiscoveryNode(nodeId, DummyTransportAddress.INSTANCE);
     }
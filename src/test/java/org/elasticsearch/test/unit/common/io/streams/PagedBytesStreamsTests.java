@@ -0,0 +1,129 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.common.io.streams;
+
+import org.elasticsearch.common.io.stream.BytePagePool;
+import org.elasticsearch.common.io.stream.PagedBytesStreamOutput;
+import org.elasticsearch.transport.netty.ChannelBufferStreamInput;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+/**
+ */
+@Test
+public class PagedBytesStreamsTests {
+
+    @Test
+    public void testSimpleStreams() throws Exception {
+        simpleStreams(false);
+        simpleStreams(true);
+    }
+
+    private void simpleStreams(boolean direct) throws Exception {
+        // small pages, so values get written across pages
+        BytePagePool pool = new BytePagePool(7, 100, direct);
+        PagedBytesStreamOutput out = new PagedBytesStreamOutput(pool);
+        out.skip(5);
+        out.writeBoolean(false);
+        out.writeByte((byte) 1);
+        out.writeShort((short) -1);
+        out.writeInt(-1);
+        out.writeVInt(2);
+        out.writeLong(-3);
+        out.writeVLong(4);
+        out.writeFloat(1.1f);
+        out.writeDouble(2.2);
+        out.writeString("hello");
+        out.writeString("goodbye");
+        byte[] bytes = new byte[100];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        out.writeBytes(bytes);
+
+        ChannelBuffer buffer = out.toChannelBuffer();
+        assertThat(buffer.readableBytes(), equalTo(out.size()));
+        buffer.setInt(1, 42);
+
+        ChannelBufferStreamInput in = new ChannelBufferStreamInput(buffer);
+        assertThat(in.readByte(), equalTo((byte) 0));
+        assertThat(in.readInt(), equalTo(42));
+        assertThat(in.readBoolean(), equalTo(false));
+        assertThat(in.readByte(), equalTo((byte) 1));
+        assertThat(in.readShort(), equalTo((short) -1));
+        assertThat(in.readInt(), equalTo(-1));
+        assertThat(in.readVInt(), equalTo(2));
+        assertThat(in.readLong(), equalTo((long) -3));
+        assertThat(in.readVLong(), equalTo((long) 4));
+        assertThat((double) in.readFloat(), closeTo(1.1, 0.0001));
+        assertThat(in.readDouble(), closeTo(2.2, 0.0001));
+        assertThat(in.readString(), equalTo("hello"));
+        assertThat(in.readString(), equalTo("goodbye"));
+        byte[] read = new byte[bytes.length];
+        in.readBytes(read, 0, read.length);
+        assertThat(read, equalTo(bytes));
+        assertThat(in.available(), equalTo(0));
+
+        int pages = (out.size() + pool.pageSize() - 1) / pool.pageSize();
+        assertThat(pool.pooledPages(), equalTo(0));
+        out.release();
+        assertThat(pool.pooledPages(), equalTo(pages));
+
+        // released pages are reused
+        PagedBytesStreamOutput reused = new PagedBytesStreamOutput(pool);
+        reused.writeInt(1);
+        assertThat(pool.pooledPages(), equalTo(pages - 1));
+        reused.release();
+        assertThat(pool.pooledPages(), equalTo(pages));
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        BytePagePool pool = new BytePagePool(7, 100, false);
+        PagedBytesStreamOutput out = new PagedBytesStreamOutput(pool);
+        out.writeString("hello world");
+        int pages = (out.size() + pool.pageSize() - 1) / pool.pageSize();
+        assertThat(pages, greaterThan(1));
+
+        out.reset();
+        assertThat(out.size(), equalTo(0));
+        assertThat(out.position(), equalTo(0l));
+        assertThat(out.toChannelBuffer().readableBytes(), equalTo(0));
+        assertThat(pool.pooledPages(), equalTo(pages));
+
+        out.writeString("goodbye");
+        ChannelBufferStreamInput in = new ChannelBufferStreamInput(out.toChannelBuffer());
+        assertThat(in.readString(), equalTo("goodbye"));
+        assertThat(in.available(), equalTo(0));
+        out.release();
+        assertThat(pool.pooledPages(), equalTo(pages));
+
+        // a released output can be reset and used again
+        out.reset();
+        out.writeInt(1);
+        assertThat(out.size(), equalTo(4));
+        out.release();
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.common.lucene;
+
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RAMDirectory;
+import org.elasticsearch.common.Digest;
+import org.elasticsearch.common.lucene.Directories;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.zip.Adler32;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+/**
+ *
+ */
+public class DirectoriesTests {
+
+    @Test
+    public void testMd5Hex() throws IOException {
+        RAMDirectory dir = new RAMDirectory();
+        byte[] bytes = write(dir, "test", 100000);
+
+        IndexInput input = dir.openInput("test", IOContext.DEFAULT);
+        assertThat(Directories.md5Hex(input), equalTo(Digest.md5Hex(bytes)));
+        input.close();
+    }
+
+    @Test
+    public void testCopyWithMd5Hex() throws IOException {
+        RAMDirectory dir = new RAMDirectory();
+        byte[] bytes = write(dir, "from", 100000);
+
+        IndexInput input = dir.openInput("from", IOContext.DEFAULT);
+        IndexOutput output = dir.createOutput("to", IOContext.DEFAULT);
+        String digest = Directories.copyWithMd5Hex(input, output);
+        output.close();
+        input.close();
+        assertThat(digest, equalTo(Digest.md5Hex(bytes)));
+
+        input = dir.openInput("to", IOContext.DEFAULT);
+        byte[] copied = new byte[(int) input.length()];
+        input.readBytes(copied, 0, copied.length);
+        input.close();
+        assertThat(copied, equalTo(bytes));
+    }
+
+    @Test
+    public void testChecksumCollision() throws IOException {
+        // the same length and adler32 checksum, but not the same content
+        byte[] first = new byte[]{1, 0, 0, 1};
+        byte[] second = new byte[]{0, 1, 1, 0};
+        Adler32 checksum = new Adler32();
+        checksum.update(first);
+        long firstChecksum = checksum.getValue();
+        checksum.reset();
+        checksum.update(second);
+        assertThat(checksum.getValue(), equalTo(firstChecksum));
+
+        RAMDirectory dir = new RAMDirectory();
+        IndexOutput output = dir.createOutput("first", IOContext.DEFAULT);
+        output.writeBytes(first, first.length);
+        output.close();
+        output = dir.createOutput("second", IOContext.DEFAULT);
+        output.writeBytes(second, second.length);
+        output.close();
+
+        IndexInput firstInput = dir.openInput("first", IOContext.DEFAULT);
+        IndexInput secondInput = dir.openInput("second", IOContext.DEFAULT);
+        assertThat(Directories.md5Hex(firstInput), not(equalTo(Directories.md5Hex(secondInput))));
+        firstInput.close();
+        secondInput.close();
+    }
+
+    private byte[] write(RAMDirectory dir, String name, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        IndexOutput output = dir.createOutput(name, IOContext.DEFAULT);
+        output.writeBytes(bytes, bytes.length);
+        output.close();
+        return bytes;
+    }
+}
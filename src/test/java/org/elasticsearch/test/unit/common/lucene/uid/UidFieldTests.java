@@ -23,6 +23,7 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.index.*;
 import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.lucene.Lucene;
 import org.elasticsearch.common.lucene.uid.UidField;
 import org.elasticsearch.index.mapper.internal.UidFieldMapper;
@@ -87,4 +88,53 @@ public class UidFieldTests {
         assertThat(UidField.loadVersion(atomicReader.getContext(), new Term("_uid", "1")), equalTo(-1l));
         assertThat(UidField.loadDocIdAndVersion(atomicReader.getContext(), new Term("_uid", "1")), nullValue());
     }
+
+    @Test
+    public void testLoadDocIdAndVersions() throws Exception {
+        IndexWriter writer = new IndexWriter(new RAMDirectory(), new IndexWriterConfig(Lucene.VERSION, Lucene.STANDARD_ANALYZER));
+        for (int i = 0; i < 10; i++) {
+            Document doc = new Document();
+            doc.add(new UidField("_uid", Integer.toString(i), i + 1));
+            writer.addDocument(doc);
+            if (i == 4) {
+                // two segments
+                writer.commit();
+            }
+        }
+        // update a doc of the first segment, the live one is now in the second segment
+        Document doc = new Document();
+        doc.add(new UidField("_uid", "2", 20));
+        writer.updateDocument(new Term("_uid", "2"), doc);
+        writer.deleteDocuments(new Term("_uid", "7"));
+
+        DirectoryReader directoryReader = DirectoryReader.open(writer, true);
+        BytesRef[] uids = new BytesRef[]{new BytesRef("0"), new BytesRef("2"), new BytesRef("5"), new BytesRef("7"), new BytesRef("9"), new BytesRef("x")};
+        UidField.DocIdAndVersion[] results = new UidField.DocIdAndVersion[uids.length];
+        for (AtomicReaderContext context : directoryReader.leaves()) {
+            UidField.loadDocIdAndVersions(context, "_uid", uids, results);
+        }
+
+        for (int i = 0; i < uids.length; i++) {
+            UidField.DocIdAndVersion expected = null;
+            for (AtomicReaderContext context : directoryReader.leaves()) {
+                expected = UidField.loadDocIdAndVersion(context, new Term("_uid", uids[i]));
+                if (expected != null) {
+                    break;
+                }
+            }
+            if (expected == null) {
+                assertThat(results[i], nullValue());
+            } else {
+                assertThat(results[i].version, equalTo(expected.version));
+                assertThat(results[i].docId, equalTo(expected.docId));
+                assertThat(results[i].reader.ord, equalTo(expected.reader.ord));
+            }
+        }
+        assertThat(results[0].version, equalTo(1l));
+        assertThat(results[1].version, equalTo(20l));
+        assertThat(results[2].version, equalTo(6l));
+        assertThat(results[3], nullValue());
+        assertThat(results[4].version, equalTo(10l));
+        assertThat(results[5], nullValue());
+    }
 }
@@ -0,0 +1,250 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.index.engine.robin;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.index.engine.robin.VersionMap;
+import org.elasticsearch.index.translog.Translog;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ */
+public class VersionMapTests {
+
+    @Test
+    public void testPutAndFind() {
+        VersionMap versionMap = new VersionMap(4);
+        int numDocs = 10000;
+        for (int i = 0; i < numDocs; i++) {
+            put(versionMap, "type#" + i, i, (i % 3) == 0, 10, new Translog.Location(1, i, i + 1));
+        }
+        assertThat(versionMap.size(), equalTo(numDocs));
+        for (int i = 0; i < numDocs; i++) {
+            BytesRef uid = new BytesRef("type#" + i);
+            int hash = VersionMap.hash(uid);
+            VersionMap.Segment segment = versionMap.segment(hash);
+            synchronized (segment) {
+                int slot = segment.find(uid, hash);
+                assertThat(slot >= 0, equalTo(true));
+                assertThat(segment.version(slot), equalTo((long) i));
+                assertThat(segment.delete(slot), equalTo((i % 3) == 0));
+                assertThat(segment.time(slot), equalTo(10l));
+                Translog.Location location = segment.translogLocation(slot);
+                assertThat(location.translogId, equalTo(1l));
+                assertThat(location.translogLocation, equalTo((long) i));
+                assertThat(location.size, equalTo(i + 1));
+            }
+        }
+        assertThat(find(versionMap, "type#" + numDocs), equalTo(-1l));
+
+        // update in place, with a uid that is a slice of a larger array
+        BytesRef uid = new BytesRef("xxtype#5xx");
+        uid.offset = 2;
+        uid.length = 6;
+        put(versionMap, uid, 100, false, 10, null);
+        assertThat(versionMap.size(), equalTo(numDocs));
+        assertThat(find(versionMap, "type#5"), equalTo(100l));
+        int hash = VersionMap.hash(uid);
+        VersionMap.Segment segment = versionMap.segment(hash);
+        synchronized (segment) {
+            assertThat(segment.translogLocation(segment.find(uid, hash)), nullValue());
+        }
+
+        versionMap.clear();
+        assertThat(versionMap.size(), equalTo(0));
+        assertThat(find(versionMap, "type#1"), equalTo(-1l));
+    }
+
+    @Test
+    public void testPrune() {
+        VersionMap versionMap = new VersionMap(2);
+        put(versionMap, "type#1", 1, false, 10, null);
+        put(versionMap, "type#2", 1, true, 10, null);
+        put(versionMap, "type#3", 1, true, 50, null);
+        put(versionMap, "type#4", 1, false, 100, null);
+
+        // deletes are not GC'ed
+        versionMap.prune(100, -1);
+        assertThat(versionMap.size(), equalTo(3));
+        assertThat(find(versionMap, "type#1"), equalTo(-1l));
+        assertThat(find(versionMap, "type#2"), equalTo(1l));
+        assertThat(find(versionMap, "type#3"), equalTo(1l));
+        assertThat(find(versionMap, "type#4"), equalTo(1l));
+
+        // deletes older than 60 are GC'ed
+        versionMap.prune(100, 60);
+        assertThat(versionMap.size(), equalTo(2));
+        assertThat(find(versionMap, "type#2"), equalTo(-1l));
+        assertThat(find(versionMap, "type#3"), equalTo(1l));
+        assertThat(find(versionMap, "type#4"), equalTo(1l));
+
+        versionMap.prune(200, 10);
+        assertThat(versionMap.size(), equalTo(0));
+
+        // still usable after being emptied
+        put(versionMap, "type#1", 2, false, 300, null);
+        assertThat(find(versionMap, "type#1"), equalTo(2l));
+    }
+
+    @Test
+    public void testPruneLargeTable() {
+        VersionMap versionMap = new VersionMap(1);
+        for (int i = 0; i < 5000; i++) {
+            put(versionMap, "type#" + i, i, false, i < 100 ? 20 : 10, null);
+        }
+        versionMap.prune(15, -1);
+        assertThat(versionMap.size(), equalTo(100));
+        for (int i = 0; i < 5000; i++) {
+            assertThat(find(versionMap, "type#" + i), equalTo(i < 100 ? (long) i : -1l));
+        }
+    }
+
+    @Test
+    public void testLookupDoesNotLock() throws Exception {
+        final VersionMap versionMap = new VersionMap(1);
+        put(versionMap, "type#1", 3, false, 10, new Translog.Location(1, 2, 3));
+        final BytesRef uid = new BytesRef("type#1");
+        final int hash = VersionMap.hash(uid);
+        final AtomicReference<VersionMap.Value> value = new AtomicReference<VersionMap.Value>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        synchronized (versionMap.segment(hash)) {
+            new Thread() {
+                @Override
+                public void run() {
+                    value.set(versionMap.segment(hash).lookup(uid, hash));
+                    latch.countDown();
+                }
+            }.start();
+            latch.await();
+        }
+        assertThat(value.get().version(), equalTo(3l));
+        assertThat(value.get().delete(), equalTo(false));
+        assertThat(value.get().translogLocation().translogLocation, equalTo(2l));
+        assertThat(versionMap.segment(hash).lookup(new BytesRef("type#2"), VersionMap.hash(new BytesRef("type#2"))), nullValue());
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        final VersionMap versionMap = new VersionMap(2);
+        final int numDocs = 500;
+        final int numUpdates = 50;
+        final CyclicBarrier barrier = new CyclicBarrier(4);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread[] threads = new Thread[4];
+        // a writer updating all the docs over and over (growing, compacting and pruning the tables), every value
+        // of a put derives from its version, so lookups can check they never see values of different puts
+        threads[0] = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    barrier.await();
+                    for (int version = 1; version <= numUpdates; version++) {
+                        for (int i = 0; i < numDocs; i++) {
+                            put(versionMap, "type#" + i, version, (version % 2) == 0, version, new Translog.Location(version, version * 2, version * 3));
+                        }
+                        if ((version % 10) == 5) {
+                            // drops all the entries, the next round adds them again
+                            versionMap.prune(version + 1, 0);
+                            assertThat(versionMap.size(), equalTo(0));
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                } finally {
+                    done.set(true);
+                }
+            }
+        };
+        for (int t = 1; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        barrier.await();
+                        long[] lastVersions = new long[numDocs];
+                        while (!done.get()) {
+                            for (int i = 0; i < numDocs; i++) {
+                                BytesRef uid = new BytesRef("type#" + i);
+                                int hash = VersionMap.hash(uid);
+                                VersionMap.Value value = versionMap.segment(hash).lookup(uid, hash);
+                                if (value == null) {
+                                    continue;
+                                }
+                                long version = value.version();
+                                assertThat(version, greaterThanOrEqualTo(lastVersions[i]));
+                                assertThat(value.delete(), equalTo((version % 2) == 0));
+                                assertThat(value.time(), equalTo(version));
+                                assertThat(value.translogLocation().translogId, equalTo(version));
+                                assertThat(value.translogLocation().translogLocation, equalTo(version * 2));
+                                assertThat(value.translogLocation().size, equalTo((int) version * 3));
+                                lastVersions[i] = version;
+                            }
+                        }
+                    } catch (Throwable t) {
+                        failure.set(t);
+                    }
+                }
+            };
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(failure.get(), nullValue());
+        assertThat(versionMap.size(), equalTo(numDocs));
+        assertThat(find(versionMap, "type#7"), equalTo((long) numUpdates));
+    }
+
+    private static void put(VersionMap versionMap, String uid, long version, boolean delete, long time, Translog.Location location) {
+        put(versionMap, new BytesRef(uid), version, delete, time, location);
+    }
+
+    private static void put(VersionMap versionMap, BytesRef uid, long version, boolean delete, long time, Translog.Location location) {
+        int hash = VersionMap.hash(uid);
+        VersionMap.Segment segment = versionMap.segment(hash);
+        synchronized (segment) {
+            segment.put(uid, hash, version, delete, time, location);
+        }
+    }
+
+    /**
+     * Returns the version of the uid, or -1 if it is not in the map.
+     */
+    private static long find(VersionMap versionMap, String uid) {
+        BytesRef bytes = new BytesRef(uid);
+        int hash = VersionMap.hash(bytes);
+        VersionMap.Segment segment = versionMap.segment(hash);
+        synchronized (segment) {
+            int slot = segment.find(bytes, hash);
+            return slot == -1 ? -1 : segment.version(slot);
+        }
+    }
+}
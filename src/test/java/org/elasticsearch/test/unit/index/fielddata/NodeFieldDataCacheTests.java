@@ -0,0 +1,233 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.index.fielddata;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.*;
+import org.apache.lucene.store.RAMDirectory;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.fielddata.*;
+import org.elasticsearch.index.fielddata.ordinals.DirectOrdinals;
+import org.elasticsearch.index.fielddata.ordinals.GlobalOrdinals;
+import org.elasticsearch.index.mapper.FieldMapper;
+import org.elasticsearch.indices.fielddata.cache.IndicesFieldDataCache;
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.testng.Assert.fail;
+
+/**
+ */
+@Test
+public class NodeFieldDataCacheTests {
+
+    private static final FieldDataType TYPE = new FieldDataType("string", "paged_bytes", ImmutableMap.of("cache", "node"));
+
+    private AtomicReaderContext createReader(IndexWriter writer) throws Exception {
+        for (int i = 0; i < 100; i++) {
+            Document d = new Document();
+            d.add(new StringField("value", Integer.toString(i), Field.Store.NO));
+            d.add(new StringField("other", Integer.toString(i), Field.Store.NO));
+            writer.addDocument(d);
+        }
+        return new SlowCompositeReaderWrapper(DirectoryReader.open(writer, true)).getContext();
+    }
+
+    @Test
+    public void testCachedAndStats() throws Exception {
+        IndicesFieldDataCache indicesCache = new IndicesFieldDataCache(ImmutableSettings.settingsBuilder().put("indices.fielddata.cache.size", "10mb").build());
+        IndexFieldDataService ifdService = new IndexFieldDataService(new Index("test"), ImmutableSettings.Builder.EMPTY_SETTINGS, indicesCache);
+        IndexWriter writer = new IndexWriter(new RAMDirectory(), new IndexWriterConfig(Lucene.VERSION, new StandardAnalyzer(Lucene.VERSION)));
+        AtomicReaderContext context = createReader(writer);
+
+        IndexFieldData fieldData = ifdService.getForField(new FieldMapper.Names("value"), TYPE);
+        AtomicFieldData first = fieldData.load(context);
+        assertThat(fieldData.load(context), sameInstance(first));
+        assertThat(ifdService.getForField(new FieldMapper.Names("value"), TYPE), sameInstance(fieldData));
+
+        FieldDataStats stats = ifdService.stats();
+        assertThat(stats.getMemorySizeInBytes(), equalTo(first.getMemorySizeInBytes()));
+        assertThat(stats.getRejections(), equalTo(0l));
+
+        ifdService.clear();
+        assertThat(ifdService.stats().getMemorySizeInBytes(), equalTo(0l));
+
+        context.reader().close();
+        writer.close();
+        indicesCache.close();
+    }
+
+    @Test
+    public void testEvictedNotReleased() throws Exception {
+        FieldDataType type = new FieldDataType("string", "direct", ImmutableMap.of("cache", "node"));
+        // room for the (64k paged) direct field data of a single field
+        IndicesFieldDataCache indicesCache = new IndicesFieldDataCache(ImmutableSettings.settingsBuilder().put("indices.fielddata.cache.size", "300kb").build());
+        IndexFieldDataService ifdService = new IndexFieldDataService(new Index("test"), ImmutableSettings.Builder.EMPTY_SETTINGS, indicesCache);
+        IndexWriter writer = new IndexWriter(new RAMDirectory(), new IndexWriterConfig(Lucene.VERSION, new StandardAnalyzer(Lucene.VERSION)));
+        AtomicReaderContext context = createReader(writer);
+
+        AtomicOrdinalFieldData first = (AtomicOrdinalFieldData) ifdService.getForField(new FieldMapper.Names("value"), type).load(context);
+        DirectOrdinals firstOrdinals = (DirectOrdinals) first.getBytesValues().ordinals().ordinals();
+        long firstDirectSize = firstOrdinals.getDirectMemorySizeInBytes();
+        assertThat(firstDirectSize, greaterThan(0l));
+
+        AtomicOrdinalFieldData second = (AtomicOrdinalFieldData) ifdService.getForField(new FieldMapper.Names("other"), type).load(context);
+        FieldDataStats stats = ifdService.stats();
+        assertThat(stats.getEvictions(), equalTo(1l));
+        assertThat(stats.getMemorySizeInBytes(), equalTo(second.getMemorySizeInBytes()));
+        // searches might still read from the evicted field data, it is left to GC
+        assertThat(firstOrdinals.getDirectMemorySizeInBytes(), equalTo(firstDirectSize));
+
+        DirectOrdinals secondOrdinals = (DirectOrdinals) second.getBytesValues().ordinals().ordinals();
+        long secondDirectSize = secondOrdinals.getDirectMemorySizeInBytes();
+        ifdService.clear();
+        assertThat(secondOrdinals.getDirectMemorySizeInBytes(), equalTo(secondDirectSize));
+
+        context.reader().close();
+        writer.close();
+        indicesCache.close();
+    }
+
+    @Test
+    public void testReleasedOnSegmentClose() throws Exception {
+        FieldDataType type = new FieldDataType("string", "direct", ImmutableMap.of("cache", "node"));
+        IndicesFieldDataCache indicesCache = new IndicesFieldDataCache(ImmutableSettings.settingsBuilder().put("indices.fielddata.cache.size", "10mb").build());
+        IndexFieldDataService ifdService = new IndexFieldDataService(new Index("test"), ImmutableSettings.Builder.EMPTY_SETTINGS, indicesCache);
+        RAMDirectory directory = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(Lucene.VERSION, new StandardAnalyzer(Lucene.VERSION)));
+        for (int i = 0; i < 100; i++) {
+            Document d = new Document();
+            d.add(new StringField("value", Integer.toString(i), Field.Store.NO));
+            writer.addDocument(d);
+        }
+        writer.close();
+        DirectoryReader reader = DirectoryReader.open(directory);
+        assertThat(reader.leaves().size(), equalTo(1));
+
+        AtomicOrdinalFieldData fieldData = (AtomicOrdinalFieldData) ifdService.getForField(new FieldMapper.Names("value"), type).load(reader.leaves().get(0));
+        DirectOrdinals ordinals = (DirectOrdinals) fieldData.getBytesValues().ordinals().ordinals();
+        assertThat(ordinals.getDirectMemorySizeInBytes(), greaterThan(0l));
+
+        // the segment is closed, so its field data is released
+        reader.close();
+        assertThat(ordinals.getDirectMemorySizeInBytes(), equalTo(0l));
+        assertThat(ifdService.stats().getMemorySizeInBytes(), equalTo(0l));
+
+        indicesCache.close();
+    }
+
+    @Test
+    public void testGrownFieldDataReweighed() throws Exception {
+        FieldDataType type = new FieldDataType("string", "direct", ImmutableMap.of("cache", "node"));
+        IndicesFieldDataCache indicesCache = new IndicesFieldDataCache(ImmutableSettings.settingsBuilder().put("indices.fielddata.cache.size", "10mb").build());
+        IndexFieldDataService ifdService = new IndexFieldDataService(new Index("test"), ImmutableSettings.Builder.EMPTY_SETTINGS, indicesCache);
+        IndexWriter writer = new IndexWriter(new RAMDirectory(), new IndexWriterConfig(Lucene.VERSION, new StandardAnalyzer(Lucene.VERSION)));
+        AtomicReaderContext context = createReader(writer);
+
+        IndexFieldData fieldData = ifdService.getForField(new FieldMapper.Names("value"), type);
+        AtomicOrdinalFieldData atomicFieldData = (AtomicOrdinalFieldData) fieldData.load(context);
+        long sizeInBytes = atomicFieldData.getMemorySizeInBytes();
+        assertThat(ifdService.stats().getMemorySizeInBytes(), equalTo(sizeInBytes));
+
+        // computes the hashes off heap, which is accounted for on the next access
+        atomicFieldData.getHashedBytesValues();
+        assertThat(atomicFieldData.getMemorySizeInBytes(), greaterThan(sizeInBytes));
+        assertThat(fieldData.load(context), sameInstance((AtomicFieldData) atomicFieldData));
+        assertThat(ifdService.stats().getMemorySizeInBytes(), equalTo(atomicFieldData.getMemorySizeInBytes()));
+
+        ifdService.clear();
+        assertThat(ifdService.stats().getMemorySizeInBytes(), equalTo(0l));
+        assertThat(ifdService.stats().getEvictions(), equalTo(0l));
+
+        context.reader().close();
+        writer.close();
+        indicesCache.close();
+    }
+
+    @Test
+    public void testGlobalOrdinalsAccounted() throws Exception {
+        IndicesFieldDataCache indicesCache = new IndicesFieldDataCache(ImmutableSettings.settingsBuilder().put("indices.fielddata.cache.size", "10mb").build());
+        IndexFieldDataService ifdService = new IndexFieldDataService(new Index("test"), ImmutableSettings.Builder.EMPTY_SETTINGS, indicesCache);
+        IndexWriter writer = new IndexWriter(new RAMDirectory(), new IndexWriterConfig(Lucene.VERSION, new StandardAnalyzer(Lucene.VERSION)));
+        for (int i = 0; i < 100; i++) {
+            Document d = new Document();
+            d.add(new StringField("value", Integer.toString(i), Field.Store.NO));
+            writer.addDocument(d);
+            if (i == 49) {
+                writer.commit();
+            }
+        }
+        DirectoryReader reader = DirectoryReader.open(writer, true);
+        assertThat(reader.leaves().size(), equalTo(2));
+
+        IndexOrdinalFieldData fieldData = (IndexOrdinalFieldData) ifdService.getForField(new FieldMapper.Names("value"), TYPE);
+        GlobalOrdinals ordinals = fieldData.loadGlobal(reader);
+        assertThat(fieldData.loadGlobal(reader), sameInstance(ordinals));
+        assertThat(ordinals.getMemorySizeInBytes(), greaterThan(0l));
+
+        long segmentsSizeInBytes = 0;
+        for (AtomicReaderContext context : reader.leaves()) {
+            segmentsSizeInBytes += fieldData.load(context).getMemorySizeInBytes();
+        }
+        assertThat(ifdService.stats().getMemorySizeInBytes(), equalTo(segmentsSizeInBytes + ordinals.getMemorySizeInBytes()));
+
+        // the global ordinals are dropped once the top level reader is closed, the segments are still open by the writer
+        reader.close();
+        assertThat(ifdService.stats().getMemorySizeInBytes(), equalTo(segmentsSizeInBytes));
+
+        ifdService.clear();
+        assertThat(ifdService.stats().getMemorySizeInBytes(), equalTo(0l));
+
+        writer.close();
+        indicesCache.close();
+    }
+
+    @Test
+    public void testRejectedOverLimit() throws Exception {
+        IndicesFieldDataCache indicesCache = new IndicesFieldDataCache(ImmutableSettings.settingsBuilder().put("indices.fielddata.cache.size", "100b").build());
+        IndexFieldDataService ifdService = new IndexFieldDataService(new Index("test"), ImmutableSettings.Builder.EMPTY_SETTINGS, indicesCache);
+        IndexWriter writer = new IndexWriter(new RAMDirectory(), new IndexWriterConfig(Lucene.VERSION, new StandardAnalyzer(Lucene.VERSION)));
+        AtomicReaderContext context = createReader(writer);
+
+        IndexFieldData fieldData = ifdService.getForField(new FieldMapper.Names("value"), TYPE);
+        try {
+            fieldData.load(context);
+            fail("loading should have been rejected");
+        } catch (FieldDataCircuitBreakingException e) {
+            // all is well
+        }
+        FieldDataStats stats = ifdService.stats();
+        assertThat(stats.getRejections(), equalTo(1l));
+        assertThat(stats.getMemorySizeInBytes(), equalTo(0l));
+
+        context.reader().close();
+        writer.close();
+        indicesCache.close();
+    }
+}
@@ -23,17 +23,18 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.search.*;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.lucene.HashedBytesRef;
 import org.elasticsearch.index.fielddata.*;
+import org.elasticsearch.index.fielddata.ordinals.GlobalOrdinals;
 import org.elasticsearch.index.fielddata.util.BytesRefArrayRef;
 import org.elasticsearch.index.fielddata.util.StringArrayRef;
 import org.testng.annotations.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
-import static org.hamcrest.Matchers.equalTo;
-import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.*;
 
 /**
  */
@@ -745,4 +746,59 @@ public abstract class StringFieldDataTests extends AbstractFieldDataTests {
         d.add(new StringField("_id", "3", Field.Store.NO));
         writer.addDocument(d);
     }
+
+    private void addValue(String id, String value) throws Exception {
+        Document d = new Document();
+        d.add(new StringField("_id", id, Field.Store.NO));
+        if (value != null) {
+            d.add(new StringField("value", value, Field.Store.NO));
+        }
+        writer.addDocument(d);
+    }
+
+    @Test
+    public void testGlobalOrdinals() throws Exception {
+        IndexFieldData indexFieldData = getForField("value");
+        if (!(indexFieldData instanceof IndexOrdinalFieldData)) {
+            return;
+        }
+        IndexOrdinalFieldData ordinalFieldData = (IndexOrdinalFieldData) indexFieldData;
+
+        // three segments, with values shared across segments
+        addValue("1", two());
+        addValue("2", four());
+        writer.commit();
+        addValue("3", one());
+        addValue("4", four());
+        writer.commit();
+        addValue("5", three());
+        addValue("6", null);
+        writer.commit();
+
+        DirectoryReader reader = DirectoryReader.open(writer, true);
+        assertThat(reader.leaves().size(), equalTo(3));
+
+        GlobalOrdinals ordinals = ordinalFieldData.loadGlobal(reader);
+        assertThat(ordinalFieldData.loadGlobal(reader), sameInstance(ordinals));
+        assertThat(ordinals.getNumOrds(), equalTo(5));
+
+        assertThat(ordinals.segmentToGlobal(0), equalTo(new int[]{0, 2, 4}));
+        assertThat(ordinals.segmentToGlobal(1), equalTo(new int[]{0, 1, 4}));
+        assertThat(ordinals.segmentToGlobal(2), equalTo(new int[]{0, 3}));
+
+        String[] expected = new String[]{null, one(), two(), three(), four()};
+        for (int ord = 1; ord < ordinals.getNumOrds(); ord++) {
+            AtomicOrdinalFieldData fieldData = ordinalFieldData.load(reader.leaves().get(ordinals.segment(ord)));
+            BytesRef value = fieldData.getBytesValues().getValueByOrd(ordinals.segmentOrd(ord));
+            assertThat(value, equalTo(new BytesRef(expected[ord])));
+        }
+        // values are resolved from the first segment they appear in
+        assertThat(ordinals.segment(4), equalTo(0));
+
+        // closing the reader drops the cached global ordinals
+        reader.close();
+        reader = DirectoryReader.open(writer, true);
+        assertThat(ordinalFieldData.loadGlobal(reader), not(sameInstance(ordinals)));
+        reader.close();
+    }
 }
@@ -0,0 +1,149 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.index.percolator;
+
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.inject.AbstractModule;
+import org.elasticsearch.common.inject.Injector;
+import org.elasticsearch.common.inject.ModulesBuilder;
+import org.elasticsearch.common.inject.util.Providers;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.settings.SettingsModule;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.IndexNameModule;
+import org.elasticsearch.index.analysis.AnalysisModule;
+import org.elasticsearch.index.cache.IndexCacheModule;
+import org.elasticsearch.index.codec.CodecModule;
+import org.elasticsearch.index.engine.IndexEngineModule;
+import org.elasticsearch.index.mapper.MapperServiceModule;
+import org.elasticsearch.index.percolator.PercolatorExecutor;
+import org.elasticsearch.index.query.FilterBuilders;
+import org.elasticsearch.index.query.IndexQueryParserModule;
+import org.elasticsearch.index.settings.IndexSettingsModule;
+import org.elasticsearch.index.similarity.SimilarityModule;
+import org.elasticsearch.indices.query.IndicesQueriesModule;
+import org.elasticsearch.script.ScriptModule;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.threadpool.ThreadPoolModule;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.elasticsearch.index.query.QueryBuilders.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Percolates with the queries split into partitions evaluated on the percolate_queries thread pool.
+ */
+@Test
+public class ConcurrentPercolatorExecutorTests {
+
+    private Injector injector;
+
+    private PercolatorExecutor percolatorExecutor;
+
+    @BeforeClass
+    public void buildPercolatorService() {
+        Settings settings = ImmutableSettings.settingsBuilder()
+                .put("index.percolator.concurrency", 4)
+                .put("index.percolator.min_partition_size", 1)
+                .build();
+        Index index = new Index("test");
+        injector = new ModulesBuilder().add(
+                new CodecModule(settings),
+                new SettingsModule(settings),
+                new ThreadPoolModule(settings),
+                new ScriptModule(settings),
+                new IndicesQueriesModule(),
+                new MapperServiceModule(),
+                new IndexSettingsModule(index, settings),
+                new IndexCacheModule(settings),
+                new AnalysisModule(settings),
+                new IndexEngineModule(settings),
+                new SimilarityModule(settings),
+                new IndexQueryParserModule(settings),
+                new IndexNameModule(index),
+                new AbstractModule() {
+                    @Override
+                    protected void configure() {
+                        bind(PercolatorExecutor.class).asEagerSingleton();
+                        bind(ClusterService.class).toProvider(Providers.of((ClusterService) null));
+                    }
+                }
+        ).createInjector();
+
+        percolatorExecutor = injector.getInstance(PercolatorExecutor.class);
+    }
+
+    @AfterClass
+    public void close() {
+        injector.getInstance(ThreadPool.class).shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentPercolator() throws Exception {
+        BytesReference source = XContentFactory.jsonBuilder().startObject().startObject("doc")
+                .field("field1", 1)
+                .field("field2", "value")
+                .field("field3", "the quick brown fox")
+                .endObject().endObject().bytes();
+
+        PercolatorExecutor.Response percolate = percolatorExecutor.percolate(new PercolatorExecutor.SourceRequest("type1", source));
+        assertThat(percolate.matches(), hasSize(0));
+
+        int numberOfQueries = 200;
+        Set<String> expected = new HashSet<String>();
+        for (int i = 0; i < numberOfQueries; i++) {
+            String name = Integer.toString(i);
+            switch (i % 5) {
+                case 0:
+                    percolatorExecutor.addQuery(name, termQuery("field2", "value"));
+                    expected.add(name);
+                    break;
+                case 1:
+                    percolatorExecutor.addQuery(name, termQuery("field2", "other"));
+                    break;
+                case 2:
+                    percolatorExecutor.addQuery(name, matchQuery("field3", "quick fox"));
+                    expected.add(name);
+                    break;
+                case 3:
+                    percolatorExecutor.addQuery(name, constantScoreQuery(FilterBuilders.rangeFilter("field1").from(0).to(i)));
+                    expected.add(name);
+                    break;
+                default:
+                    percolatorExecutor.addQuery(name, constantScoreQuery(FilterBuilders.rangeFilter("field1").from(2)));
+            }
+        }
+
+        for (int i = 0; i < 10; i++) {
+            percolate = percolatorExecutor.percolate(new PercolatorExecutor.SourceRequest("type1", source));
+            assertThat(percolate.matches(), hasSize(expected.size()));
+            assertThat(new HashSet<String>(percolate.matches()), equalTo(expected));
+        }
+    }
+}
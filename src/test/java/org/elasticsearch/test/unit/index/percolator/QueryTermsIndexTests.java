@@ -0,0 +1,108 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.index.percolator;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.memory.MemoryIndex;
+import org.apache.lucene.search.*;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.lucene.search.TermFilter;
+import org.elasticsearch.common.lucene.search.XConstantScoreQuery;
+import org.elasticsearch.common.lucene.search.XFilteredQuery;
+import org.elasticsearch.index.percolator.QueryTermsIndex;
+import org.testng.annotations.Test;
+
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ */
+public class QueryTermsIndexTests {
+
+    @Test
+    public void testExtractTerms() {
+        assertThat(QueryTermsIndex.extractTerms(new TermQuery(new Term("field", "value"))), contains(new Term("field", "value")));
+
+        // required clauses, picks the longest term
+        BooleanQuery bq = new BooleanQuery();
+        bq.add(new TermQuery(new Term("field", "a")), BooleanClause.Occur.MUST);
+        bq.add(new TermQuery(new Term("field", "abc")), BooleanClause.Occur.MUST);
+        bq.add(new TermQuery(new Term("field", "abcdef")), BooleanClause.Occur.SHOULD);
+        bq.add(new TermQuery(new Term("field", "abcdefgh")), BooleanClause.Occur.MUST_NOT);
+        assertThat(QueryTermsIndex.extractTerms(bq), contains(new Term("field", "abc")));
+
+        // optional clauses only, any of them
+        bq = new BooleanQuery();
+        bq.add(new TermQuery(new Term("field", "a")), BooleanClause.Occur.SHOULD);
+        bq.add(new TermQuery(new Term("field", "b")), BooleanClause.Occur.SHOULD);
+        assertThat(QueryTermsIndex.extractTerms(bq), containsInAnyOrder(new Term("field", "a"), new Term("field", "b")));
+
+        // an optional clause we can't extract from
+        bq.add(NumericRangeQuery.newIntRange("num", 1, 10, true, true), BooleanClause.Occur.SHOULD);
+        assertThat(QueryTermsIndex.extractTerms(bq), nullValue());
+
+        // negations only
+        bq = new BooleanQuery();
+        bq.add(new TermQuery(new Term("field", "a")), BooleanClause.Occur.MUST_NOT);
+        assertThat(QueryTermsIndex.extractTerms(bq), nullValue());
+
+        PhraseQuery phraseQuery = new PhraseQuery();
+        phraseQuery.add(new Term("field", "the"));
+        phraseQuery.add(new Term("field", "quick"));
+        assertThat(QueryTermsIndex.extractTerms(phraseQuery), contains(new Term("field", "quick")));
+
+        assertThat(QueryTermsIndex.extractTerms(new XFilteredQuery(new MatchAllDocsQuery(), new TermFilter(new Term("field", "value")))),
+                contains(new Term("field", "value")));
+        assertThat(QueryTermsIndex.extractTerms(new XConstantScoreQuery(new TermFilter(new Term("field", "value")))),
+                contains(new Term("field", "value")));
+
+        assertThat(QueryTermsIndex.extractTerms(new MatchAllDocsQuery()), nullValue());
+        assertThat(QueryTermsIndex.extractTerms(new WildcardQuery(new Term("field", "v*"))), nullValue());
+    }
+
+    @Test
+    public void testCandidates() throws Exception {
+        QueryTermsIndex index = new QueryTermsIndex();
+        index.add("1", new TermQuery(new Term("field", "quick")));
+        index.add("2", new TermQuery(new Term("field", "slow")));
+        index.add("3", new TermQuery(new Term("other", "quick")));
+        index.add("4", new WildcardQuery(new Term("field", "q*")));
+        assertThat(index.unfilteredQueriesCount(), equalTo(1));
+
+        MemoryIndex memoryIndex = new MemoryIndex();
+        memoryIndex.addField("field", "the quick brown fox", new WhitespaceAnalyzer(Lucene.VERSION));
+        IndexSearcher searcher = memoryIndex.createSearcher();
+
+        Set<String> candidates = index.candidates(searcher.getIndexReader());
+        assertThat(candidates, containsInAnyOrder("1", "4"));
+
+        // re-registering a query replaces its terms
+        index.add("2", new TermQuery(new Term("field", "fox")));
+        assertThat(index.candidates(searcher.getIndexReader()), containsInAnyOrder("1", "2", "4"));
+
+        index.remove("1");
+        index.remove("4");
+        assertThat(index.unfilteredQueriesCount(), equalTo(0));
+        assertThat(index.candidates(searcher.getIndexReader()), contains("2"));
+    }
+}
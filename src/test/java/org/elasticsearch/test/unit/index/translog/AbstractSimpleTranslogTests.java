@@ -32,6 +32,7 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
@@ -168,6 +169,35 @@ public abstract class AbstractSimpleTranslogTests {
         snapshot.release();
     }
 
+    @Test
+    public void testReadLargeTranslog() throws IOException {
+        // enough operations to span several mapped chunks of the translog file
+        int numOps = 700;
+        Translog.Location[] locations = new Translog.Location[numOps];
+        for (int i = 0; i < numOps; i++) {
+            byte[] source = new byte[10 * 1024];
+            Arrays.fill(source, (byte) i);
+            locations[i] = translog.add(new Translog.Index("test", Integer.toString(i), source));
+        }
+        translog.sync();
+        for (int i = 0; i < numOps; i++) {
+            byte[] source = TranslogStreams.readSource(translog.read(locations[i])).source.toBytes();
+            assertThat(source.length, equalTo(10 * 1024));
+            assertThat(source[0], equalTo((byte) i));
+            assertThat(source[source.length - 1], equalTo((byte) i));
+        }
+
+        Translog.Snapshot snapshot = translog.snapshot();
+        for (int i = 0; i < numOps; i++) {
+            assertThat(snapshot.hasNext(), equalTo(true));
+            Translog.Index index = (Translog.Index) snapshot.next();
+            assertThat(index.id(), equalTo(Integer.toString(i)));
+            assertThat(index.source().get(index.source().length() - 1), equalTo((byte) i));
+        }
+        assertThat(snapshot.hasNext(), equalTo(false));
+        snapshot.release();
+    }
+
     @Test
     public void testSnapshot() {
         Translog.Snapshot snapshot = translog.snapshot();
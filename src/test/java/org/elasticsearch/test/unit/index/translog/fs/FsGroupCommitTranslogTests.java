@@ -0,0 +1,150 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.index.translog.fs;
+
+import org.elasticsearch.common.io.FileSystemUtils;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.index.translog.fs.FsTranslog;
+import org.elasticsearch.index.translog.fs.RafReference;
+import org.elasticsearch.index.translog.fs.SimpleFsTranslogFile;
+import org.elasticsearch.test.unit.index.translog.AbstractSimpleTranslogTests;
+import org.elasticsearch.test.unit.index.translog.TranslogSizeMatcher;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ *
+ */
+public class FsGroupCommitTranslogTests extends AbstractSimpleTranslogTests {
+
+    @Override
+    protected Translog create() {
+        Translog translog = new FsTranslog(shardId,
+                ImmutableSettings.settingsBuilder().put("index.translog.fs.group_commit", true).build(),
+                new File("data/fs-translog"));
+        translog.syncOnEachOperation(true);
+        return translog;
+    }
+
+    @Test
+    public void testConcurrentOperations() throws Exception {
+        final int numThreads = 8;
+        final int numOps = 200;
+        final CountDownLatch latch = new CountDownLatch(1);
+        final CopyOnWriteArrayList<Throwable> failures = new CopyOnWriteArrayList<Throwable>();
+        Thread[] threads = new Thread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            final int threadId = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        latch.await();
+                        for (int j = 0; j < numOps; j++) {
+                            translog.add(new Translog.Index("test", threadId + "_" + j, new byte[]{(byte) j}));
+                        }
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        latch.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(failures.isEmpty(), equalTo(true));
+        assertThat(translog.syncNeeded(), equalTo(false));
+
+        Translog.Snapshot snapshot = translog.snapshot();
+        assertThat(snapshot, TranslogSizeMatcher.translogSize(numThreads * numOps));
+        snapshot.release();
+    }
+
+    /**
+     * With group commit, concurrent writes to a simple (unbuffered) file finish out of order. An operation must only
+     * be reported durable once all the operations before it are written as well.
+     */
+    @Test
+    public void testSimpleFileConcurrentWritesAndSyncs() throws Exception {
+        File file = new File("data/fs-translog/simple-group-commit");
+        file.getParentFile().mkdirs();
+        final RafReference raf = new RafReference(file);
+        final SimpleFsTranslogFile translogFile = new SimpleFsTranslogFile(shardId, 1, raf, false, true);
+        final int numThreads = 8;
+        final int numOps = 200;
+        final CountDownLatch latch = new CountDownLatch(1);
+        final CopyOnWriteArrayList<Throwable> failures = new CopyOnWriteArrayList<Throwable>();
+        Thread[] threads = new Thread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        latch.await();
+                        for (int j = 0; j < numOps; j++) {
+                            // the operations are never zero, so the parts of the file not written yet are spotted
+                            byte[] data = new byte[1 + (j % 64)];
+                            Arrays.fill(data, (byte) 1);
+                            Translog.Location location = translogFile.add(data, 0, data.length);
+                            long end = location.translogLocation + location.size;
+                            translogFile.syncUpTo(end);
+                            // everything up to our operation was written before it was reported durable
+                            ByteBuffer written = ByteBuffer.allocate((int) end);
+                            raf.channel().read(written, 0);
+                            for (int k = 0; k < end; k++) {
+                                if (written.get(k) == 0) {
+                                    throw new AssertionError("operation ending at [" + end + "] reported durable before position [" + k + "] was written");
+                                }
+                            }
+                        }
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        latch.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(failures.toString(), failures.isEmpty(), equalTo(true));
+        assertThat(translogFile.syncNeeded(), equalTo(false));
+        assertThat(translogFile.estimatedNumberOfOperations(), equalTo(numThreads * numOps));
+        translogFile.close(true);
+    }
+
+    @AfterClass
+    public void cleanup() {
+        FileSystemUtils.deleteRecursively(new File("data/fs-translog"), true);
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.rest.action.bulk;
+
+import com.google.common.collect.Lists;
+import org.elasticsearch.action.*;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.client.AdminClient;
+import org.elasticsearch.client.support.AbstractClient;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.rest.*;
+import org.elasticsearch.rest.action.bulk.RestBulkAction;
+import org.elasticsearch.rest.support.AbstractRestRequest;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.collect.Maps.newHashMap;
+import static org.elasticsearch.common.settings.ImmutableSettings.Builder.EMPTY_SETTINGS;
+import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilder;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ */
+@Test
+public class RestBulkActionTests {
+
+    @Test
+    public void testStreamedItemsInBodyOrder() throws Exception {
+        BulkClient client = new BulkClient();
+        RecordingChannel channel = new RecordingChannel();
+        RestBulkAction action = newAction(client, 2, 2);
+
+        action.handleRequest(new StreamRequest(body(7, -1), false), channel);
+        assertThat(client.requests.size(), equalTo(2));
+
+        // complete the batches out of order
+        client.respond(1);
+        assertThat(client.requests.size(), equalTo(3));
+        client.respond(0);
+        assertThat(client.requests.size(), equalTo(4));
+        client.respond(3);
+        assertThat(channel.response, nullValue());
+        client.respond(2);
+
+        assertThat(channel.response.status(), equalTo(RestStatus.OK));
+        List<Map<String, Object>> items = items(channel.response);
+        assertThat(items.size(), equalTo(7));
+        for (int i = 0; i < 7; i++) {
+            assertThat(items.get(i).get("_id"), equalTo((Object) Integer.toString(i)));
+            assertThat(items.get(i).get("ok"), equalTo((Object) true));
+        }
+    }
+
+    @Test
+    public void testConcurrentBatchesBound() throws Exception {
+        BulkClient client = new BulkClient();
+        RecordingChannel channel = new RecordingChannel();
+        RestBulkAction action = newAction(client, 3, 2);
+
+        action.handleRequest(new StreamRequest(body(30, -1), false), channel);
+        while (channel.response == null) {
+            assertThat(client.inFlight, lessThanOrEqualTo(2));
+            client.respond(client.nextPending());
+        }
+        assertThat(client.maxInFlight, equalTo(2));
+        assertThat(client.requests.size(), equalTo(10));
+        for (BulkRequest request : client.requests) {
+            assertThat(request.numberOfActions(), equalTo(3));
+        }
+        assertThat(items(channel.response).size(), equalTo(30));
+    }
+
+    @Test
+    public void testParseFailureReportsParsedActions() throws Exception {
+        BulkClient client = new BulkClient();
+        RecordingChannel channel = new RecordingChannel();
+        RestBulkAction action = newAction(client, 2, 1);
+
+        // the malformed line comes after the first action of the second batch
+        BytesArray body = body(5, 3);
+        action.handleRequest(new StreamRequest(body, true), channel);
+        assertThat(client.requests.size(), equalTo(1));
+        assertThat(channel.response, nullValue());
+        // the unsafe content is reused once the request handling returned, the second batch is parsed after that
+        Arrays.fill(body.array(), (byte) ' ');
+        client.respond(0);
+
+        assertThat(channel.response.status(), equalTo(RestStatus.BAD_REQUEST));
+        Map<String, Object> response = XContentHelper.convertToMap(channel.response.content(), channel.response.contentOffset(), channel.response.contentLength(), false).v2();
+        assertThat(response.get("error"), notNullValue());
+        List<Map<String, Object>> items = items(channel.response);
+        assertThat(items.size(), equalTo(3));
+        assertThat(items.get(0).get("ok"), equalTo((Object) true));
+        assertThat(items.get(1).get("ok"), equalTo((Object) true));
+        assertThat(items.get(2).get("_id"), equalTo((Object) "2"));
+        assertThat(items.get(2).get("ok"), nullValue());
+        assertThat((String) items.get(2).get("error"), containsString("not executed"));
+    }
+
+    @Test
+    public void testUnsafeContentParsedAfterRequestHandled() throws Exception {
+        BulkClient client = new BulkClient();
+        RecordingChannel channel = new RecordingChannel();
+        RestBulkAction action = newAction(client, 2, 1);
+
+        BytesArray body = body(6, -1);
+        action.handleRequest(new StreamRequest(body, true), channel);
+        assertThat(client.requests.size(), equalTo(1));
+        // the unsafe content is reused once the request handling returned, the later batches are parsed after that
+        Arrays.fill(body.array(), (byte) ' ');
+        client.respond(0);
+        assertThat(client.requests.size(), equalTo(2));
+        client.respond(1);
+        assertThat(client.requests.size(), equalTo(3));
+        client.respond(2);
+
+        assertThat(channel.response.status(), equalTo(RestStatus.OK));
+        assertThat(items(channel.response).size(), equalTo(6));
+        for (int i = 0; i < 6; i++) {
+            IndexRequest indexRequest = (IndexRequest) client.requests.get(i / 2).requests().get(i % 2);
+            assertThat(indexRequest.id(), equalTo(Integer.toString(i)));
+            assertThat(indexRequest.source().toUtf8(), equalTo("{ \"field1\" : \"value" + i + "\" }"));
+        }
+    }
+
+    private RestBulkAction newAction(BulkClient client, int batchActions, int concurrentBatches) {
+        Settings settings = settingsBuilder()
+                .put("rest.action.bulk.stream.batch_actions", batchActions)
+                .put("rest.action.bulk.stream.concurrent_batches", concurrentBatches)
+                .build();
+        return new RestBulkAction(settings, client, new RestController(settings));
+    }
+
+    /**
+     * Index actions with ids from 0 to <tt>actions</tt>, with a malformed line instead of the action <tt>malformedAt</tt>.
+     */
+    private BytesArray body(int actions, int malformedAt) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < actions; i++) {
+            if (i == malformedAt) {
+                body.append("{ \"index\" : { \"_index\" : \"test\"\n");
+            }
+            body.append("{ \"index\" : { \"_index\" : \"test\", \"_type\" : \"type1\", \"_id\" : \"").append(i).append("\" } }\n");
+            body.append("{ \"field1\" : \"value").append(i).append("\" }\n");
+        }
+        return new BytesArray(body.toString());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> items(RestResponse response) throws Exception {
+        Map<String, Object> map = XContentHelper.convertToMap(response.content(), response.contentOffset(), response.contentLength(), false).v2();
+        List<Map<String, Object>> items = Lists.newArrayList();
+        for (Object item : (List<Object>) map.get("items")) {
+            items.add((Map<String, Object>) ((Map<String, Object>) item).values().iterator().next());
+        }
+        return items;
+    }
+
+    static class RecordingChannel implements RestChannel {
+
+        RestResponse response;
+
+        @Override
+        public void sendResponse(RestResponse response) {
+            assertThat("responded twice", this.response, nullValue());
+            this.response = response;
+        }
+    }
+
+    static class StreamRequest extends AbstractRestRequest {
+
+        private final Map<String, String> params = newHashMap();
+        private final BytesReference content;
+        private final boolean contentUnsafe;
+
+        StreamRequest(BytesReference content, boolean contentUnsafe) {
+            this.content = content;
+            this.contentUnsafe = contentUnsafe;
+            params.put("stream", "true");
+        }
+
+        @Override
+        public Method method() {
+            return Method.POST;
+        }
+
+        @Override
+        public String uri() {
+            return "/_bulk?stream=true";
+        }
+
+        @Override
+        public String rawPath() {
+            return "/_bulk";
+        }
+
+        @Override
+        public boolean hasContent() {
+            return true;
+        }
+
+        @Override
+        public boolean contentUnsafe() {
+            return contentUnsafe;
+        }
+
+        @Override
+        public BytesReference content() {
+            return content;
+        }
+
+        @Override
+        public String header(String name) {
+            return null;
+        }
+
+        @Override
+        public boolean hasParam(String key) {
+            return params.containsKey(key);
+        }
+
+        @Override
+        public String param(String key) {
+            return params.get(key);
+        }
+
+        @Override
+        public String param(String key, String defaultValue) {
+            String value = params.get(key);
+            return value == null ? defaultValue : value;
+        }
+
+        @Override
+        public Map<String, String> params() {
+            return params;
+        }
+    }
+
+    /**
+     * Holds on to the bulk requests, until a test responds to them.
+     */
+    static class BulkClient extends AbstractClient {
+
+        final List<BulkRequest> requests = Lists.newArrayList();
+        final List<ActionListener<BulkResponse>> listeners = Lists.newArrayList();
+        final List<Boolean> responded = Lists.newArrayList();
+        int inFlight;
+        int maxInFlight;
+
+        void respond(int index) {
+            assertThat(responded.get(index), equalTo(false));
+            responded.set(index, true);
+            BulkRequest request = requests.get(index);
+            BulkItemResponse[] items = new BulkItemResponse[request.numberOfActions()];
+            for (int i = 0; i < items.length; i++) {
+                IndexRequest indexRequest = (IndexRequest) request.requests().get(i);
+                items[i] = new BulkItemResponse(i, "index", new IndexResponse(indexRequest.index(), indexRequest.type(), indexRequest.id(), 1));
+            }
+            inFlight--;
+            listeners.get(index).onResponse(new BulkResponse(items, 0));
+        }
+
+        int nextPending() {
+            return responded.indexOf(false);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <Request extends ActionRequest, Response extends ActionResponse, RequestBuilder extends ActionRequestBuilder<Request, Response, RequestBuilder>> void execute(Action<Request, Response, RequestBuilder> action, Request request, ActionListener<Response> listener) {
+            requests.add((BulkRequest) request);
+            listeners.add((ActionListener) listener);
+            responded.add(false);
+            inFlight++;
+            maxInFlight = Math.max(maxInFlight, inFlight);
+        }
+
+        @Override
+        public <Request extends ActionRequest, Response extends ActionResponse, RequestBuilder extends ActionRequestBuilder<Request, Response, RequestBuilder>> ActionFuture<Response> execute(Action<Request, Response, RequestBuilder> action, Request request) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ThreadPool threadPool() {
+            return null;
+        }
+
+        @Override
+        public Settings settings() {
+            return EMPTY_SETTINGS;
+        }
+
+        @Override
+        public AdminClient admin() {
+            return null;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.script;
+
+import com.google.common.collect.ImmutableMap;
+import org.elasticsearch.common.inject.Injector;
+import org.elasticsearch.common.inject.ModulesBuilder;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.settings.SettingsModule;
+import org.elasticsearch.script.ExecutableScript;
+import org.elasticsearch.script.ScriptException;
+import org.elasticsearch.script.ScriptModule;
+import org.elasticsearch.script.ScriptService;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class ExpressionScriptTests {
+
+    private ScriptService scriptService;
+
+    @BeforeClass
+    public void createScriptService() {
+        Settings settings = ImmutableSettings.settingsBuilder()
+                .put("script.disable_dynamic", true)
+                .build();
+        Injector injector = new ModulesBuilder().add(
+                new SettingsModule(settings),
+                new ScriptModule(settings)).createInjector();
+        scriptService = injector.getInstance(ScriptService.class);
+    }
+
+    private double run(String script, Map<String, Object> params) {
+        return ((Number) scriptService.executable("expression", script, params).run()).doubleValue();
+    }
+
+    private double run(String script) {
+        return run(script, null);
+    }
+
+    @Test
+    public void testArithmetic() {
+        assertThat(run("1 + 2 * 3"), equalTo(7.0));
+        assertThat(run("(1 + 2) * 3"), equalTo(9.0));
+        assertThat(run("10 - 4 - 3"), equalTo(3.0));
+        assertThat(run("12 / 4 / 3"), equalTo(1.0));
+        assertThat(run("7 % 4"), equalTo(3.0));
+        assertThat(run("-2 * -3"), equalTo(6.0));
+        assertThat(run("1.5e2 + .5"), equalTo(150.5));
+    }
+
+    @Test
+    public void testBooleans() {
+        assertThat(run("1 < 2"), equalTo(1.0));
+        assertThat(run("2 <= 1"), equalTo(0.0));
+        assertThat(run("1 == 1 && 2 != 2"), equalTo(0.0));
+        assertThat(run("1 == 1 || 2 != 2"), equalTo(1.0));
+        assertThat(run("!(1 > 2)"), equalTo(1.0));
+        assertThat(run("1 > 2 ? 10 : 3 > 2 ? 20 : 30"), equalTo(20.0));
+    }
+
+    @Test
+    public void testFunctions() {
+        assertThat(run("abs(-3)"), equalTo(3.0));
+        assertThat(run("sqrt(16)"), equalTo(4.0));
+        assertThat(run("pow(2, 10)"), equalTo(1024.0));
+        assertThat(run("max(1, min(5, 3))"), equalTo(3.0));
+        assertThat(run("log10(1000)"), equalTo(3.0));
+        assertThat(run("ln(exp(2))"), equalTo(2.0));
+        assertThat(run("floor(1.5) + ceil(1.5)"), equalTo(3.0));
+    }
+
+    @Test
+    public void testParams() {
+        Map<String, Object> params = ImmutableMap.<String, Object>of("a", 2, "b", 1.5f);
+        assertThat(run("a * b + a", params), equalTo(5.0));
+
+        ExecutableScript script = scriptService.executable("expression", "a * b", params);
+        script.setNextVar("a", 4L);
+        assertThat(((Number) script.run()).doubleValue(), equalTo(6.0));
+    }
+
+    @Test(expectedExceptions = ScriptException.class)
+    public void testMissingParam() {
+        run("a + 1");
+    }
+
+    @Test(expectedExceptions = ScriptException.class)
+    public void testUnknownFunction() {
+        run("foo(1)");
+    }
+
+    @Test(expectedExceptions = ScriptException.class)
+    public void testTrailingInput() {
+        run("1 + 2)");
+    }
+
+    @Test(expectedExceptions = ScriptException.class)
+    public void testFieldsRequireSearch() {
+        run("doc['field'].value");
+    }
+}